@@ -1,26 +1,48 @@
 import greenfoot.*;  // (World, Actor, GreenfootImage, Greenfoot and MouseInfo)
-import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
-import java.util.List;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * This class can be used to read animated gif image files and extract the individual
  * images of the animation sequence.
  * 
+ * <p>By default all the frames are decoded when the GIF is loaded.  For long animations,
+ * which would use a lot of memory that way, a GifImage can instead be created to stream
+ * the GIF: the frames are then decoded as they are needed, a few frames ahead of the one
+ * being shown.  Decoded frames are kept in a cache which is shared by all the streaming
+ * GifImages of the same file, and which holds every frame of a small GIF, but only a
+ * limited number of frames of a large one.  As a frame which is dropped from the cache is
+ * decoded again when it is next needed, the images of a streaming GifImage cannot be
+ * changed: getImages() returns copies of them.
+ * 
  * @author Michael Berry
  * @author Neil Brown
  * 
- * Copyright (c) 2011,2013,2014,2018,2021
+ * Copyright (c) 2011,2013,2014,2018,2021,2026
  */
 public class GifImage
 {
-    /** The images used in the animation. */
+    /** The number of frames decoded ahead of the current frame, one per call to getCurrentImage. */
+    private static final int LOOK_AHEAD = 4;
+    /** The number of pixels of decoded frames to keep, for each file. */
+    private static final int CACHE_PIXELS = 8 * 1024 * 1024;
+
+    /** The files loaded so far, so that GifImages of the same file can share frames. */
+    private static final Map<String, WeakReference<GifFile>> loadedFiles = new HashMap<String, WeakReference<GifFile>>();
+
+    /** The file being animated, and its cache of decoded frames (used when streaming). */
+    private GifFile file;
+    /** All the frames, or null when streaming. */
     private GreenfootImage[] images;
-    /** The delay between each frame. */
-    private int[] delay;
+    /** The decoder used to decode frames which are not in the cache (created when first needed). */
+    private GifDecoder decoder;
     /** The index of the current frame in the GIF file. */
     private int currentIndex;
     /** The time passed since the last frame in ms. */
@@ -33,17 +55,35 @@ public class GifImage
      * If it's an animated GIF file then it will be displayed as an animated actor.
      */
     public GifImage(String file)
+    {
+        this(file, false);
+    }
+
+    /**
+     * Set the image of the actor, as above, optionally streaming the GIF: decoding its frames
+     * as they are needed rather than all at once.  This uses much less memory for a long
+     * animation, but the images of the animation cannot then be changed.
+     * @param file The name of the image file.
+     * @param streaming Whether to decode the frames as they are needed.
+     */
+    public GifImage(String file, boolean streaming)
     {
         pause = false;
         if(file.toLowerCase().endsWith(".gif")) {
-            loadImages(file);
+            this.file = loadFile(file);
+            if (! streaming) {
+                images = decodeAll();
+            }
         }
         else {
-            images = new GreenfootImage[] {new GreenfootImage(file)};
-            delay = new int[] {1000}; // Doesn't matter, as long as it's not zero
-            currentIndex = 0;
-            time = System.currentTimeMillis();
+            GreenfootImage image = new GreenfootImage(file);
+            this.file = new GifFile(image);
+            if (! streaming) {
+                images = new GreenfootImage[] {image};
+            }
         }
+        currentIndex = 0;
+        time = System.currentTimeMillis();
     }
 
     /**
@@ -53,27 +93,36 @@ public class GifImage
      * 
      * The images making up the GIF are shared between the two images, so any modifications to
      * the images will be shared in both GIFs.  You can call this constructor on the same source
-     * GIF multiple times.
+     * GIF multiple times.  The copy streams the GIF if the given GifImage does.
      * @param copyFrom The GifImage to copy from.
      */
     public GifImage(GifImage copyFrom)
     {
         pause = copyFrom.pause;
-        images = copyFrom.images.clone();
-        delay = copyFrom.delay.clone();
+        file = copyFrom.file;
+        if (copyFrom.images != null) {
+            images = copyFrom.images.clone();
+        }
         currentIndex = copyFrom.currentIndex;
         time = copyFrom.time;
     }
 
     /**
-     * Get all the images used in the animation
+     * Get all the images used in the animation.  If the GIF is streamed, all the frames are
+     * decoded, so for a long animation this can take a while and the list uses a lot of
+     * memory; and the images are copies, so changing them does not change the animation.
      * @return a list of GreenfootImages, corresponding to each frame.
      */
     public List<GreenfootImage> getImages()
     {
-        ArrayList<GreenfootImage> images = new ArrayList<GreenfootImage>(this.images.length);
-        for(GreenfootImage image : this.images) {
-            images.add(image);
+        ArrayList<GreenfootImage> images = new ArrayList<GreenfootImage>(file.getFrameCount());
+        for (int i = 0; i < file.getFrameCount(); i++) {
+            if (this.images != null) {
+                images.add(this.images[i]);
+            }
+            else {
+                images.add(new GreenfootImage(getFrame(i)));
+            }
         }
         return images;
     }
@@ -108,38 +157,100 @@ public class GifImage
     {
         long delta = System.currentTimeMillis() - time;
 
-        while (delta >= delay[currentIndex] && !pause) {
-            delta -= delay[currentIndex];
-            time += delay[currentIndex];
-            currentIndex = (currentIndex+1) % images.length;
+        while (delta >= file.getDelay(currentIndex) && !pause) {
+            delta -= file.getDelay(currentIndex);
+            time += file.getDelay(currentIndex);
+            currentIndex = (currentIndex+1) % file.getFrameCount();
         }
-        return images[currentIndex];
+        GreenfootImage image = getFrame(currentIndex);
+        decodeAhead();
+        return image;
     }
 
     /**
-     * Load the images
+     * Get the file with the given name, loading it if there is no GifImage of it already.
      */
-    private void loadImages(String file)
+    private static GifFile loadFile(String name)
     {
-        GifDecoder decode = new GifDecoder();
-        decode.read(file);
-        int numFrames = decode.getFrameCount();
-        if(numFrames>0) {
-            images = new GreenfootImage[numFrames];
-            delay = new int[numFrames];
+        synchronized (loadedFiles) {
+            WeakReference<GifFile> ref = loadedFiles.get(name);
+            GifFile file = ref == null ? null : ref.get();
+            if (file == null) {
+                file = new GifFile(name);
+                loadedFiles.put(name, new WeakReference<GifFile>(file));
+            }
+            return file;
         }
-        else {
-            images = new GreenfootImage[1];
-            images[0] = new GreenfootImage(1, 1);
+    }
+
+    /**
+     * Decode all the frames of the file, into images of this GifImage's own.
+     */
+    private GreenfootImage[] decodeAll()
+    {
+        GreenfootImage[] frames = new GreenfootImage[file.getFrameCount()];
+        if (file.isStill()) {
+            frames[0] = new GreenfootImage(file.getCachedFrame(0));
+            return frames;
+        }
+        GifDecoder decoder = new GifDecoder(file);
+        for (int i = 0; i < frames.length; i++) {
+            GreenfootImage decoded = decoder.decodeNextFrame();
+            // Copy, as the decoder draws the next frame on top of its image:
+            frames[i] = new GreenfootImage(decoded.getWidth(), decoded.getHeight());
+            frames[i].drawImage(decoded, 0, 0);
+        }
+        return frames;
+    }
+
+    /**
+     * Get the given frame: from this GifImage's own images, if it has them; otherwise from
+     * the cache if possible, or else by decoding it.
+     */
+    private GreenfootImage getFrame(int n)
+    {
+        if (images != null) {
+            return images[n];
         }
+        GreenfootImage image = file.getCachedFrame(n);
+        if (image == null) {
+            // Each frame is drawn on the one before, so decode from the start if need be:
+            if (decoder == null || decoder.getNextFrame() > n) {
+                decoder = new GifDecoder(file);
+            }
+            while (image == null) {
+                int next = decoder.getNextFrame();
+                GreenfootImage decoded = decoder.decodeNextFrame();
+                // Cache a copy, as the decoder draws the next frame on top of its image:
+                GreenfootImage frame = new GreenfootImage(decoded.getWidth(), decoded.getHeight());
+                frame.drawImage(decoded, 0, 0);
+                file.cacheFrame(next, frame);
+                if (next == n) {
+                    image = frame;
+                }
+            }
+        }
+        return image;
+    }
 
-        for (int i=0 ; i<numFrames ; i++) {
-            GreenfootImage image = new GreenfootImage(decode.getFrame(i).getWidth(), decode.getFrame(i).getHeight());
-            image.drawImage(decode.getFrame(i), 0, 0);
-            delay[i] = decode.getDelay(i);
-            images[i] = image;
+    /**
+     * Decode the first of the next few frames which is not in the cache, if it is the
+     * next frame the decoder will decode anyway (or the first frame, after the last).
+     */
+    private void decodeAhead()
+    {
+        if (images != null) {
+            return;
+        }
+        for (int i = 1; i <= LOOK_AHEAD && i < file.getFrameCount(); i++) {
+            int n = (currentIndex + i) % file.getFrameCount();
+            if (! file.isCached(n)) {
+                if (n == 0 || (decoder != null && decoder.getNextFrame() == n)) {
+                    getFrame(n);
+                }
+                return;
+            }
         }
-        time = System.currentTimeMillis();
     }
 
     /**
@@ -161,6 +272,133 @@ public class GifImage
             this.height = height;
         }
     }
+
+    /**
+     * The information needed to decode one frame of a GIF: where its image starts in the
+     * file, and the graphic control settings in effect for it.
+     */
+    private static class FrameInfo
+    {
+        public int offset;
+        public int delay;
+        public int dispose;
+        public boolean transparency;
+        public int transIndex;
+    }
+
+    /**
+     * A GIF file: its contents (still compressed), the position and settings of each
+     * frame, and a cache of decoded frames.  For an image which is not a GIF, there is
+     * just one frame, which is always in the cache.
+     */
+    private static class GifFile
+    {
+        /** The contents of the file. */
+        private byte[] data;
+        /** The frames in the file. */
+        private List<FrameInfo> frames = new ArrayList<FrameInfo>();
+        /** The most recently used decoded frames, by index. */
+        private Map<Integer, GreenfootImage> cache;
+        /** Whether the file is a single image which is not decoded (and is always in the cache). */
+        private boolean still;
+
+        /**
+         * Read a GIF file, and find the frames in it.
+         */
+        public GifFile(String name)
+        {
+            InputStream resource = getClass().getResourceAsStream(name);
+            if (resource == null) {
+                name = "images/" + name;
+                resource = getClass().getResourceAsStream(name);
+                if (resource == null) {
+                    throw new RuntimeException("The gif file \"" + name + "\" doesn't exist.");
+                }
+            }
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buf = new byte[8192];
+                for (int n = resource.read(buf); n != -1; n = resource.read(buf)) {
+                    bytes.write(buf, 0, n);
+                }
+                data = bytes.toByteArray();
+                resource.close();
+            } catch (IOException e) {
+                data = new byte[0];
+            }
+            new GifDecoder(this).scan();
+
+            if (! frames.isEmpty()) {
+                int[] size = new GifDecoder(this).getFrameSize();
+                int framePixels = Math.max(1, size[0] * size[1]);
+                makeCache(Math.max(LOOK_AHEAD + 2, CACHE_PIXELS / framePixels));
+            }
+            else {
+                // Not a readable GIF; show a blank image:
+                makeCache(1);
+                addStill(new GreenfootImage(1, 1));
+            }
+        }
+
+        /**
+         * Make a file with the given image as its only frame.
+         */
+        public GifFile(GreenfootImage image)
+        {
+            makeCache(1);
+            addStill(image);
+        }
+
+        private void addStill(GreenfootImage image)
+        {
+            still = true;
+            FrameInfo info = new FrameInfo();
+            info.delay = 1000; // Doesn't matter, as long as it's not zero
+            frames.add(info);
+            // Never removed, as it is the only frame:
+            cache.put(0, image);
+        }
+
+        private void makeCache(final int capacity)
+        {
+            cache = new LinkedHashMap<Integer, GreenfootImage>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, GreenfootImage> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        public int getFrameCount()
+        {
+            return frames.size();
+        }
+
+        public boolean isStill()
+        {
+            return still;
+        }
+
+        public int getDelay(int n)
+        {
+            return frames.get(n).delay;
+        }
+
+        public synchronized GreenfootImage getCachedFrame(int n)
+        {
+            return cache.get(n);
+        }
+
+        public synchronized boolean isCached(int n)
+        {
+            return cache.containsKey(n);
+        }
+
+        public synchronized void cacheFrame(int n, GreenfootImage image)
+        {
+            cache.put(n, image);
+        }
+    }
     
     /**
      * Class GifDecoder - Decodes a GIF file into one or more frames. <br><br>
@@ -168,17 +406,10 @@ public class GifImage
      * <i>I (Michael) edited this slightly on 10/09/08 to bring class up to date with generics and therefore remove warnings.
      * Also edited so that resources are grabbed from the jar file and not externally, so no security exceptions.</i>
      * <br><br>
-     * <pre>
-     *  Example:
-     *     GifDecoder d = new GifDecoder();
-     *     d.read(&quot;sample.gif&quot;);
-     *     int n = d.getFrameCount();
-     *     for (int i = 0; i &lt; n; i++) {
-     *        BufferedImage frame = d.getFrame(i);  // frame i
-     *        int t = d.getDelay(i);  // display duration of frame in milliseconds
-     *        // do something with frame
-     *     }
-     * </pre>
+     * 
+     * <i>Since edited to decode one frame at a time: the file is first scanned to find where
+     * each frame starts, and then a decoder decodes the frames in order, each drawn on the
+     * one before as specified by its disposal code.</i>
      * 
      * No copyright asserted on the source code of this class. May be used for any
      * purpose, however, refer to the Unisys LZW patent for any additional
@@ -189,7 +420,7 @@ public class GifImage
      * @version 1.03 November 2003
      * 
      */
-    private class GifDecoder
+    private static class GifDecoder
     {
         /**
          * File read status: No errors.
@@ -201,12 +432,11 @@ public class GifImage
          */
         public static final int STATUS_FORMAT_ERROR = 1;
 
-        /**
-         * File read status: Unable to open source.
-         */
-        public static final int STATUS_OPEN_ERROR = 2;
+        private GifFile file;
+
+        private byte[] data; // contents of the file
 
-        private BufferedInputStream in;
+        private int pos; // position in the file
 
         private int status;
 
@@ -248,6 +478,8 @@ public class GifImage
 
         private GreenfootImage lastImage; // previous frame
 
+        private GreenfootImage imageBeforeLast; // frame before the previous frame
+
         private byte[] block = new byte[256]; // current data block
 
         private int blockSize = 0; // block size
@@ -277,22 +509,16 @@ public class GifImage
 
         private byte[] pixels;
 
-        private ArrayList<GifFrame> frames; // frames read from current file
-
-        private int frameCount;
+        private int frameCount; // frames decoded (or found, when scanning) so far
 
         /**
-         * A single frame
+         * Prepare to decode the given file, from the first frame.
          */
-        private class GifFrame {
-            public GifFrame(GreenfootImage im, int del) {
-                image = im;
-                delay = del;
-            }
-
-            private GreenfootImage image;
-
-            private int delay;
+        public GifDecoder(GifFile file) {
+            this.file = file;
+            data = file.data;
+            status = STATUS_OK;
+            readHeader();
         }
 
         /**
@@ -305,40 +531,6 @@ public class GifImage
             int b = (rgb & 0xFF);
             return new Color(r,g,b);
         }
-        
-        /**
-         * Gets display duration for specified frame.
-         * 
-         * @param n
-         *          int index of frame
-         * @return delay in milliseconds
-         */
-        public int getDelay(int n) {
-            //
-            delay = -1;
-            if ((n >= 0) && (n < frameCount)) {
-                delay = (frames.get(n)).delay;
-            }
-            return delay;
-        }
-
-        /**
-         * Gets the number of frames read from file.
-         * 
-         * @return frame count
-         */
-        public int getFrameCount() {
-            return frameCount;
-        }
-
-        /**
-         * Gets the first (or only) image read.
-         * 
-         * @return BufferedImage containing first frame, or null if none.
-         */
-        public GreenfootImage getImage() {
-            return getFrame(0);
-        }
 
         /**
          * Gets the "Netscape" iteration count, if any. A count of 0 means repeat
@@ -350,6 +542,13 @@ public class GifImage
             return loopCount;
         }
 
+        /**
+         * Gets the index of the frame which decodeNextFrame will decode.
+         */
+        public int getNextFrame() {
+            return frameCount;
+        }
+
         /**
          * Creates new frame image from current data (and previous frames as specified
          * by their disposition codes).
@@ -361,7 +560,7 @@ public class GifImage
                     // use image before last
                     int n = frameCount - 2;
                     if (n > 0) {
-                        lastImage = getFrame(n - 1);
+                        lastImage = imageBeforeLast;
                     } else {
                         lastImage = null;
                     }
@@ -434,19 +633,6 @@ public class GifImage
             }
         }
 
-        /**
-         * Gets the image contents of frame n.
-         * 
-         * @return BufferedImage representation of frame, or null if n is invalid.
-         */
-        public GreenfootImage getFrame(int n) {
-            GreenfootImage im = null;
-            if ((n >= 0) && (n < frameCount)) {
-                im = ((GifFrame) frames.get(n)).image;
-            }
-            return im;
-        }
-
         /**
          * Gets image size.
          * 
@@ -457,91 +643,39 @@ public class GifImage
         }
 
         /**
-         * Reads GIF image from stream
-         * 
-         * @param BufferedInputStream
-         *          containing GIF file.
-         * @return read status code (0 = no errors)
+         * Finds the frames in the file, and adds them to the file's list of frames,
+         * without decoding them.
          */
-        public int read(BufferedInputStream is) {
-            init();
-            if (is != null) {
-                in = is;
-                readHeader();
-                if (!err()) {
-                    readContents();
-                    if (frameCount < 0) {
-                        status = STATUS_FORMAT_ERROR;
-                    }
-                }
-            } else {
-                status = STATUS_OPEN_ERROR;
-            }
-            try {
-                is.close();
-            } catch (IOException e) {
+        public void scan() {
+            if (!err()) {
+                readContents();
             }
-            return status;
         }
 
         /**
-         * Reads GIF image from stream
-         * 
-         * @param InputStream
-         *          containing GIF file.
-         * @return read status code (0 = no errors)
+         * Decodes the next frame.  If it cannot be decoded, the previous frame (or a
+         * blank image) is returned instead.
          */
-        public int read(InputStream is) {
-            init();
-            if (is != null) {
-                if (!(is instanceof BufferedInputStream))
-                    is = new BufferedInputStream(is);
-                in = (BufferedInputStream) is;
-                readHeader();
-                if (!err()) {
-                    readContents();
-                    if (frameCount < 0) {
-                        status = STATUS_FORMAT_ERROR;
-                    }
+        public GreenfootImage decodeNextFrame() {
+            FrameInfo info = file.frames.get(frameCount);
+            pos = info.offset;
+            dispose = info.dispose;
+            transparency = info.transparency;
+            delay = info.delay;
+            transIndex = info.transIndex;
+            readImage();
+            if (err()) {
+                // Carry on with the next frame:
+                status = STATUS_OK;
+                frameCount++;
+                if (lastImage == null) {
+                    lastImage = new GreenfootImage(Math.max(1, width), Math.max(1, height));
                 }
-            } else {
-                status = STATUS_OPEN_ERROR;
+                return lastImage;
             }
-            try {
-                is.close();
-            } catch (IOException e) {
-            }
-            return status;
+            return image;
         }
 
-        /**
-         * Reads GIF file from specified file/URL source (URL assumed if name contains
-         * ":/" or "file:")
-         * 
-         * @param name
-         *          String containing source
-         * @return read status code (0 = no errors)
-         */
-        public int read(String name) {
-            status = STATUS_OK;
-            InputStream resource = this.getClass().getResourceAsStream(name);
-            if (resource == null) {
-                name = "images/" + name;
-                resource = this.getClass().getResourceAsStream(name);
-                if (resource == null) {
-                    throw new RuntimeException("The gif file \"" + name + "\" doesn't exist.");
-                }
-            }
-            in = new BufferedInputStream(resource);
-            status = read(in);
-
-            return status;
-        }
-
-        /**
-         * Decodes LZW image data into pixel array. Adapted from John Cristy's
-         * ImageMagick.
-         */
         protected void decodeImageData() {
             int NullCode = -1;
             int npix = iw * ih;
@@ -664,27 +798,13 @@ public class GifImage
         }
 
         /**
-         * Initializes or re-initializes reader
-         */
-        protected void init() {
-            status = STATUS_OK;
-            frameCount = 0;
-            frames = new ArrayList<GifFrame>();
-            gct = null;
-            lct = null;
-        }
-
-        /**
-         * Reads a single byte from the input stream.
+         * Reads a single byte from the file.
          */
         protected int read() {
-            int curByte = 0;
-            try {
-                curByte = in.read();
-            } catch (IOException e) {
-                status = STATUS_FORMAT_ERROR;
+            if (pos >= data.length) {
+                return -1;
             }
-            return curByte;
+            return ((int) data[pos++]) & 0xff;
         }
 
         /**
@@ -696,16 +816,9 @@ public class GifImage
             blockSize = read();
             int n = 0;
             if (blockSize > 0) {
-                try {
-                    int count = 0;
-                    while (n < blockSize) {
-                        count = in.read(block, n, blockSize - n);
-                        if (count == -1)
-                            break;
-                        n += count;
-                    }
-                } catch (IOException e) {
-                }
+                n = Math.min(blockSize, data.length - pos);
+                System.arraycopy(data, pos, block, 0, n);
+                pos += n;
 
                 if (n < blockSize) {
                     status = STATUS_FORMAT_ERROR;
@@ -724,30 +837,25 @@ public class GifImage
         protected int[] readColorTable(int ncolors) {
             int nbytes = 3 * ncolors;
             int[] tab = null;
-            byte[] c = new byte[nbytes];
-            int n = 0;
-            try {
-                n = in.read(c);
-            } catch (IOException e) {
-            }
-            if (n < nbytes) {
+            if (data.length - pos < nbytes) {
                 status = STATUS_FORMAT_ERROR;
             } else {
                 tab = new int[256]; // max size to avoid bounds checks
                 int i = 0;
-                int j = 0;
+                int j = pos;
                 while (i < ncolors) {
-                    int r = ((int) c[j++]) & 0xff;
-                    int g = ((int) c[j++]) & 0xff;
-                    int b = ((int) c[j++]) & 0xff;
+                    int r = ((int) data[j++]) & 0xff;
+                    int g = ((int) data[j++]) & 0xff;
+                    int b = ((int) data[j++]) & 0xff;
                     tab[i++] = 0xff000000 | (r << 16) | (g << 8) | b;
                 }
+                pos += nbytes;
             }
             return tab;
         }
 
         /**
-         * Main file parser. Reads GIF content blocks.
+         * Main file parser. Reads GIF content blocks, recording where each image is.
          */
         protected void readContents() {
             // read GIF file content blocks
@@ -757,7 +865,7 @@ public class GifImage
                 switch (code) {
 
                 case 0x2C: // image separator
-                    readImage();
+                    scanImage();
                     break;
 
                 case 0x21: // extension
@@ -792,6 +900,7 @@ public class GifImage
                     break;
 
                 default:
+                    // Includes the end of the file, if there is no terminator
                     status = STATUS_FORMAT_ERROR;
                 }
             }
@@ -829,10 +938,38 @@ public class GifImage
             readLSD();
             if (gctFlag && !err()) {
                 gct = readColorTable(gctSize);
-                bgColor = colorFromInt(gct[bgIndex]);
+                if (gct != null) {
+                    bgColor = colorFromInt(gct[bgIndex]);
+                }
             }
         }
 
+        /**
+         * Records where the next frame is, and skips over it
+         */
+        protected void scanImage() {
+            FrameInfo info = new FrameInfo();
+            info.offset = pos;
+            info.delay = delay;
+            info.dispose = dispose;
+            info.transparency = transparency;
+            info.transIndex = transIndex;
+
+            pos += 8; // (sub)image position & size
+            int packed = read();
+            if ((packed & 0x80) != 0) {
+                pos += 3 * (2 << (packed & 7)); // local color table
+            }
+            read(); // LZW minimum code size
+            skip(); // image data
+
+            if (pos > data.length || err())
+                return;
+
+            file.frames.add(info);
+            frameCount++;
+        }
+
         /**
          * Reads next frame image
          */
@@ -857,11 +994,6 @@ public class GifImage
                 if (bgIndex == transIndex)
                     bgColor = colorFromInt(0);
             }
-            int save = 0;
-            if (transparency) {
-                save = act[transIndex];
-                act[transIndex] = 0; // set transparent color if specified
-            }
 
             if (act == null) {
                 status = STATUS_FORMAT_ERROR; // no color table defined
@@ -870,8 +1002,13 @@ public class GifImage
             if (err())
                 return;
 
+            int save = 0;
+            if (transparency) {
+                save = act[transIndex];
+                act[transIndex] = 0; // set transparent color if specified
+            }
+
             decodeImageData(); // decode pixel data
-            skip();
 
             if (err())
                 return;
@@ -883,8 +1020,6 @@ public class GifImage
 
             setPixels(); // transfer pixel data to image
 
-            frames.add(new GifFrame(image, delay)); // add image to frame list
-
             if (transparency) {
                 act[transIndex] = save;
             }
@@ -941,11 +1076,9 @@ public class GifImage
         protected void resetFrame() {
             lastDispose = dispose;
             lastRect = new Rectangle(ix, iy, iw, ih);
+            imageBeforeLast = lastImage;
             lastImage = image;
             lastBgColor = bgColor;
-            int dispose = 0;
-            boolean transparency = false;
-            int delay = 0;
             lct = null;
         }
 
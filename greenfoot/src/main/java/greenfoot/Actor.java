@@ -21,7 +21,9 @@
  */
 package greenfoot;
 
+import greenfoot.collision.CollisionMask;
 import greenfoot.collision.ibsp.Rect;
+import greenfoot.core.ParallelActRunner;
 import greenfoot.platforms.ActorDelegate;
 import greenfoot.util.GreenfootUtil;
 import threadchecker.OnThread;
@@ -101,8 +103,12 @@ public abstract class Actor
     // The following variables cache various aspects of an actor's size, including
     // its bounding box after rotation.
     
-    /** Axis-aligned bounding rectangle of the object, in pixels. */
-    private Rect boundingRect;
+    /**
+     * Axis-aligned bounding rectangle of the object, in pixels. This is updated in place
+     * (so that moving does not allocate), and is only valid if boundsValid is true.
+     */
+    private final Rect boundingRect = new Rect(0, 0, 0, 0);
+    private boolean boundsValid;
     /** X-coordinates of the rotated bounding rectangle's corners */
     private int[] boundingXs = new int[4];
     /** Y-coordinates of the rotated bounding rectangle's corners */
@@ -209,6 +215,19 @@ public abstract class Actor
      * @see #turn(int)
      */
     public void setRotation(int rotation)
+    {
+        if (world != null && ParallelActRunner.isDeferring()) {
+            ParallelActRunner.defer(() -> setRotationNow(rotation));
+            return;
+        }
+        setRotationNow(rotation);
+    }
+    
+    /**
+     * The implementation of setRotation, which (unlike setRotation) cannot be overridden,
+     * and so can be used to apply a change deferred from a parallel act.
+     */
+    private void setRotationNow(int rotation)
     {
         // First normalize
         if (rotation >= 360) {
@@ -235,7 +254,7 @@ public abstract class Actor
         if (this.rotation != rotation) {
             this.rotation = rotation;
             // Recalculate the bounding rect.
-            boundingRect = null;
+            boundsValid = false;
             // since the rotation have changed, the size probably has too.
             sizeChanged();
         }
@@ -285,6 +304,10 @@ public abstract class Actor
      */
     public void setLocation(int x, int y)
     {
+        if (world != null && ParallelActRunner.isDeferring()) {
+            ParallelActRunner.defer(() -> setLocationDrag(x, y));
+            return;
+        }
         setLocationDrag(x, y);
     }
     
@@ -377,7 +400,7 @@ public abstract class Actor
             }
 
             if (this.x != oldX || this.y != oldY) {
-                if (boundingRect != null) {
+                if (boundsValid) {
                     int dx = (this.x - oldX) * world.cellSize;
                     int dy = (this.y - oldY) * world.cellSize;
 
@@ -477,6 +500,19 @@ public abstract class Actor
      * @param image The image.
      */
     public void setImage(GreenfootImage image)
+    {
+        if (world != null && ParallelActRunner.isDeferring()) {
+            ParallelActRunner.defer(() -> setImageNow(image));
+            return;
+        }
+        setImageNow(image);
+    }
+    
+    /**
+     * The implementation of setImage, which cannot be overridden, so that it can be used
+     * to apply a change deferred from a parallel act.
+     */
+    private void setImageNow(GreenfootImage image)
     {
         if (image == null && this.image == null) {
             return;
@@ -502,7 +538,7 @@ public abstract class Actor
         this.image = image;
 
         if (sizeChanged) {
-            boundingRect = null;
+            boundsValid = false;
             sizeChanged();
         }
     }
@@ -560,7 +596,7 @@ public abstract class Actor
         
         this.x = x;
         this.y = y;
-        boundingRect = null;
+        boundsValid = false;
 
         this.setWorld(world, null);
         
@@ -574,14 +610,15 @@ public abstract class Actor
      * Get the axis-aligned bounding rectangle of the object, taking rotation into account.
      * This returns a rectangle which completely covers the rotated actor's area.
      * 
-     * @return A rect specified in pixels!
+     * @return A rect specified in pixels! It is updated when the actor moves or changes,
+     *         rather than replaced. Null if the actor is not in a world.
      */
     Rect getBoundingRect() 
     {
-        if (boundingRect == null) {
+        if (! boundsValid) {
             calcBounds();
         }
-        return boundingRect;
+        return boundsValid ? boundingRect : null;
     }
 
     /**
@@ -598,7 +635,8 @@ public abstract class Actor
         if (image == null) {
             int wx = x * cellSize + cellSize / 2;
             int wy = y * cellSize + cellSize / 2;
-            boundingRect = new Rect(wx, wy, 0, 0);
+            boundingRect.set(wx, wy, 0, 0);
+            boundsValid = true;
             for (int i = 0; i < 4; i++) {
                 boundingXs[i] = wx;
                 boundingYs[i] = wy;
@@ -623,7 +661,8 @@ public abstract class Actor
             
             int x = cellSize * this.x + (cellSize - width - 1) / 2;
             int y = cellSize * this.y + (cellSize - height - 1) / 2;
-            boundingRect = new Rect(x, y, width, height);
+            boundingRect.set(x, y, width, height);
+            boundsValid = true;
             boundingXs[0] = x; boundingYs[0] = y;
             boundingXs[1] = x + width - 1; boundingYs[1] = y;
             boundingXs[2] = boundingXs[1]; boundingYs[2] = y + height - 1;
@@ -651,7 +690,8 @@ public abstract class Actor
             // would get with floating point.
             // For instance, if something has the width 28.2, it might cover 30
             // pixels.
-            boundingRect = new Rect(minX, minY, maxX - minX + 1, maxY - minY + 1);
+            boundingRect.set(minX, minY, maxX - minX + 1, maxY - minY + 1);
+            boundsValid = true;
         }
     }
 
@@ -839,6 +879,12 @@ public abstract class Actor
     /**
      * Check whether this object intersects with another given object.
      * 
+     * <p>If the world checks collisions pixel by pixel (see
+     * {@link World#setPixelPerfectCollisions(boolean)}), the objects only intersect
+     * if a pixel of one image which is not completely transparent is drawn on the
+     * same place as such a pixel of the other. An object with no image is treated as
+     * a single pixel at the centre of its cell.
+     * 
      * @param other  The second object to detect the existing of intersection with it.
      * @return True if the object's intersect, false otherwise.
      */
@@ -854,18 +900,22 @@ public abstract class Actor
             int cellSize = world.getCellSize();
             
             // We are a point, the other actor is a rect. Rotate our relative
-            return other.containsPoint(x * cellSize + cellSize / 2, y * cellSize + cellSize / 2);
+            return other.containsPoint(x * cellSize + cellSize / 2, y * cellSize + cellSize / 2)
+                    && (! world.isPixelPerfectCollisions() || other.maskContains(x, y, cellSize));
         }
         else if (other.image == null) {
             // We are a rectangle, the other is a point
             int cellSize = world.getCellSize();
-            return containsPoint(other.x * cellSize + cellSize / 2, other.y * cellSize + cellSize / 2);
+            return containsPoint(other.x * cellSize + cellSize / 2, other.y * cellSize + cellSize / 2)
+                    && (! world.isPixelPerfectCollisions() || maskContains(other.x, other.y, cellSize));
         }
         else {
             Rect thisBounds = getBoundingRect();
             Rect otherBounds = other.getBoundingRect();
             if (rotation == 0 && other.rotation == 0) {
-                return thisBounds.intersects(otherBounds);
+                if (! thisBounds.intersects(otherBounds)) {
+                    return false;
+                }
             }
             else {
                 // First do a check based only on axis-aligned bounding boxes.
@@ -887,8 +937,44 @@ public abstract class Actor
             }
         }
         
+        if (world.isPixelPerfectCollisions()) {
+            return masksIntersect(other);
+        }
         return true;
     }
+    
+    /**
+     * Get the collision mask of this actor's image as drawn at its rotation.
+     */
+    private CollisionMask getCollisionMask(int cellSize)
+    {
+        return image.getCollisionMask().getRotated(rotation, (cellSize & 1) != 0);
+    }
+    
+    /**
+     * Check whether the images of this actor and another, which both have images, have
+     * solid pixels in the same place.
+     */
+    private boolean masksIntersect(Actor other)
+    {
+        int cellSize = world.getCellSize();
+        CollisionMask myMask = getCollisionMask(cellSize);
+        CollisionMask otherMask = other.getCollisionMask(cellSize);
+        return CollisionMask.intersects(
+                myMask, x * cellSize + cellSize / 2 + myMask.getOffsetX(),
+                y * cellSize + cellSize / 2 + myMask.getOffsetY(),
+                otherMask, other.x * cellSize + cellSize / 2 + otherMask.getOffsetX(),
+                other.y * cellSize + cellSize / 2 + otherMask.getOffsetY());
+    }
+    
+    /**
+     * Check whether this actor's image has a solid pixel at the centre of the given cell.
+     */
+    private boolean maskContains(int cellX, int cellY, int cellSize)
+    {
+        CollisionMask mask = getCollisionMask(cellSize);
+        return mask.get((cellX - x) * cellSize - mask.getOffsetX(), (cellY - y) * cellSize - mask.getOffsetY());
+    }
 
     /**
      * Return the neighbours to this object within a given distance. This
@@ -1047,7 +1133,7 @@ public abstract class Actor
             return false;
         }
 
-        if (boundingRect == null) {
+        if (! boundsValid) {
             calcBounds(); // Make sure bounds are up-to-date
         }
         
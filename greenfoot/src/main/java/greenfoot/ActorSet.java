@@ -175,6 +175,22 @@ public class ActorSet extends AbstractSet<Actor>
         }
     }
 
+    /**
+     * Copy the actors in this set, in iteration order, into the given array
+     * starting at the given index. The array must be large enough.
+     * 
+     * @return  The index following the last actor copied
+     */
+    int copyInto(Actor[] dest, int index)
+    {
+        ListNode currentActor = listHeadTail.next;
+        while (currentActor != listHeadTail) {
+            dest[index++] = currentActor.actor;
+            currentActor = currentActor.next;
+        }
+        return index;
+    }
+
     @OnThread(value = Tag.Simulation, ignoreParent = true)
     @Override
     public int size()
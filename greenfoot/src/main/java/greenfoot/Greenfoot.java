@@ -23,6 +23,7 @@ package greenfoot;
 
 import java.util.Random;
 
+import greenfoot.core.AssetPreloader;
 import greenfoot.core.Simulation;
 import greenfoot.core.WorldHandler;
 import greenfoot.sound.MicLevelGrabber;
@@ -168,6 +169,30 @@ public class Greenfoot
     }
 
 
+    /**
+     * Start loading image and sound files in the background, so that they are ready by
+     * the time they are first used, rather than being loaded at that moment.  This is
+     * best called at the start of the world's constructor.  If no file names are given,
+     * all the files in the scenario's images and sounds directories are loaded.
+     * <p>
+     * Files which can't be loaded are ignored here; the problem is reported when they are
+     * used.  While the world is being constructed, Greenfoot shows how many of the files
+     * have been loaded.
+     * 
+     * @param files  Names of image and sound files, as would be given to GreenfootImage
+     *               and GreenfootSound
+     */
+    public static void preload(String... files)
+    {
+        AssetPreloader preloader = AssetPreloader.getInstance();
+        if (files.length == 0) {
+            preloader.preloadAll();
+        }
+        for (String file : files) {
+            preloader.preload(file);
+        }
+    }
+
     /**
      * True if the mouse has been pressed (changed from a non-pressed state to
      * being pressed) on the given object. If the parameter is an Actor the
@@ -21,14 +21,15 @@
  */
 package greenfoot;
 
+import greenfoot.collision.CollisionMask;
 import greenfoot.util.GraphicsUtilities;
 import greenfoot.util.GreenfootUtil;
+import greenfoot.util.TextImageCache;
 
 import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Composite;
-import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Image;
@@ -82,6 +83,24 @@ public class GreenfootImage
      * Value from 0 to 255, with 0 being completely transparent and 255 being opaque.
      */
     private int transparency = 255;
+    
+    /**
+     * Incremented whenever the image data may have been changed (other than by replacing
+     * it with a new image), so that anything derived from the data can be invalidated.
+     */
+    private int modificationCount = 0;
+    
+    /**
+     * Whether the image data has been given out by getAwtImage(). If so, it may be changed
+     * at any time without our knowledge.
+     */
+    private boolean awtImageExposed = false;
+    
+    /**
+     * The collision mask of the image data, made when first needed. It is shared with
+     * copy-on-write copies, and is only valid while its source is the current image data.
+     */
+    private volatile CollisionMask collisionMask;
 
     /**
      * Create an image from an image file. Supported file formats are JPEG, GIF
@@ -101,19 +120,19 @@ public class GreenfootImage
         if (gImage != null)
         {
             createClone(gImage);
+            return;
         }
-        else 
-        {
-            try{
-                loadFile(filename);
-            }
-            catch(IllegalArgumentException ile){
-                GreenfootUtil.addCachedImage(filename, null);
-                throw ile;
-            }
+        
+        try{
+            loadFile(filename);
+        }
+        catch(IllegalArgumentException ile){
+            GreenfootUtil.addCachedImage(filename, null);
+            throw ile;
         }
-        //if the image was successfully cached, ensure that the image is copyOnWrite
-        boolean success = GreenfootUtil.addCachedImage(filename, new GreenfootImage(this));
+        // Share the loaded data with the cache. If the image was successfully cached,
+        // ensure that the image is copyOnWrite, so that the cached data is never changed:
+        boolean success = GreenfootUtil.addCachedImage(filename, getCopyOnWriteClone());
         if (success){
             copyOnWrite = true;
         }
@@ -142,7 +161,7 @@ public class GreenfootImage
             setImage(GraphicsUtilities.createCompatibleTranslucentImage(image.getWidth(), image.getHeight()));
             Graphics2D g = getGraphics();
             g.setComposite(AlphaComposite.Src);
-            g.drawImage(image.getAwtImage(), 0, 0, null);
+            g.drawImage(image.image, 0, 0, null);
             g.dispose();
         }
         else {
@@ -150,6 +169,7 @@ public class GreenfootImage
             // make this a copy-on-write image as well.
             this.image = image.image;
             copyOnWrite = true;
+            collisionMask = image.collisionMask;
         }
         copyStates(image, this);
     }
@@ -185,14 +205,9 @@ public class GreenfootImage
      */
     GreenfootImage(String string, int size, Color foreground, Color background, Color outline)
     {
-        String[] lines = GraphicsUtilities.splitLines(string);
-        GraphicsUtilities.MultiLineStringDimensions d = GraphicsUtilities.getMultiLineStringDimensions(lines, Font.BOLD, size);
-        image = GraphicsUtilities.createCompatibleTranslucentImage(d.getWidth(), d.getHeight());
-        Graphics2D g = (Graphics2D)image.getGraphics();
-        g.setColor(background == null ? new Color(0, 0, 0, 0) : background);
-        g.fillRect(0, 0, image.getWidth(), image.getHeight());
-        GraphicsUtilities.drawOutlinedText(g, d, foreground, outline);
-        g.dispose();
+        // The rendered text is shared with the cache, so it is copied if modified:
+        image = TextImageCache.getInstance().getTextImage(string, size, foreground, background, outline, 0);
+        copyOnWrite = true;
     }
     
     /**
@@ -237,6 +252,7 @@ public class GreenfootImage
         GreenfootImage clone = new GreenfootImage();
         clone.copyOnWrite = true;
         clone.image = image;
+        clone.collisionMask = collisionMask;
         copyStates(this, clone);
         
         return clone;
@@ -250,6 +266,7 @@ public class GreenfootImage
     {
         this.copyOnWrite = true;
         this.image = cachedImage.image;
+        this.collisionMask = cachedImage.collisionMask;
         copyStates(cachedImage, this);
     }
     
@@ -328,9 +345,64 @@ public class GreenfootImage
     public BufferedImage getAwtImage()
     {
         ensureWritableImage();
+        awtImageExposed = true;
         return image;
     }
     
+    /**
+     * Get the image data, for drawing from only: it may be shared with other images.
+     */
+    BufferedImage getImageForDrawing()
+    {
+        return image;
+    }
+    
+    /**
+     * Get a count which changes whenever the image data (as returned by
+     * {@link #getImageForDrawing()}) may have been modified in place.  If the data
+     * is replaced, by a different BufferedImage, the count need not change.
+     */
+    int getModificationCount()
+    {
+        return modificationCount;
+    }
+    
+    /**
+     * Check whether the image data may be modified without the modification count changing
+     * (because it has been given out by {@link #getAwtImage()}).
+     */
+    boolean isAwtImageExposed()
+    {
+        return awtImageExposed;
+    }
+    
+    /**
+     * Get the mask of the pixels of the image which are not completely transparent,
+     * making it if necessary.
+     */
+    CollisionMask getCollisionMask()
+    {
+        BufferedImage data = image;
+        CollisionMask mask = collisionMask;
+        if (mask == null || mask.getSource() != data || awtImageExposed) {
+            mask = CollisionMask.fromImage(data);
+            if (! awtImageExposed) {
+                // Otherwise the data may change without us knowing, so the mask can't be kept.
+                collisionMask = mask;
+            }
+        }
+        return mask;
+    }
+    
+    /**
+     * Note that the image data may be about to be modified in place.
+     */
+    private void dataModified()
+    {
+        modificationCount++;
+        collisionMask = null;
+    }
+    
     /**
      * Remember to call dispose() when no longer using the graphics object.
      */
@@ -339,6 +411,7 @@ public class GreenfootImage
         if (copyOnWrite) {
         ensureWritableImage();
         }
+        dataModified();
         Graphics2D graphics = image.createGraphics();
         initGraphics(graphics);
         return graphics;
@@ -559,6 +632,85 @@ public class GreenfootImage
         setRGBAt(x, y, color.getColorObject().getRGB());
     }
 
+    /**
+     * Get the colours of a rectangle of pixels, as ARGB values (in the form returned by
+     * java.awt.Color.getRGB(): alpha in the top 8 bits, then red, green and blue). The
+     * pixels are stored row by row, so that pixel (x + i, y + j) is at index
+     * j * width + i. This is much faster than calling getColorAt for each pixel.
+     * 
+     * @param x The horizontal coordinate of the top-left pixel.
+     * @param y The vertical coordinate of the top-left pixel.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @param pixels The array to store the pixels in, which must have room for
+     *            width * height values, or null to create a new array.
+     * @return The array holding the pixels.
+     * @throws IndexOutOfBoundsException If the rectangle is not within the image bounds.
+     */
+    public int[] getPixels(int x, int y, int width, int height, int[] pixels)
+    {
+        checkRegion(x, y, width, height, pixels);
+        if (pixels == null) {
+            pixels = new int[width * height];
+        }
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            // The raster holds exactly these values, so they can be copied straight out:
+            image.getRaster().getDataElements(x, y, width, height, pixels);
+        }
+        else {
+            image.getRGB(x, y, width, height, pixels, 0, width);
+        }
+        return pixels;
+    }
+    
+    /**
+     * Set the colours of a rectangle of pixels, from ARGB values stored row by row (see
+     * {@link #getPixels(int, int, int, int, int[])}). This is much faster than calling
+     * setColorAt for each pixel.
+     * 
+     * @param x The horizontal coordinate of the top-left pixel.
+     * @param y The vertical coordinate of the top-left pixel.
+     * @param width The width of the rectangle.
+     * @param height The height of the rectangle.
+     * @param pixels The pixels, holding at least width * height values.
+     * @throws IndexOutOfBoundsException If the rectangle is not within the image bounds.
+     */
+    public void setPixels(int x, int y, int width, int height, int[] pixels)
+    {
+        if (pixels == null) {
+            throw new NullPointerException("The pixel array must not be null.");
+        }
+        checkRegion(x, y, width, height, pixels);
+        ensureWritableImage();
+        dataModified();
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB) {
+            image.getRaster().setDataElements(x, y, width, height, pixels);
+        }
+        else {
+            image.setRGB(x, y, width, height, pixels, 0, width);
+        }
+    }
+    
+    /**
+     * Check that a rectangle is within the image, and that an array (if not null) is big
+     * enough to hold its pixels.
+     */
+    private void checkRegion(int x, int y, int width, int height, int[] pixels)
+    {
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException("The width and height must not be negative. They were: "
+                    + width + " and " + height);
+        }
+        if (x < 0 || y < 0 || x + width > getWidth() || y + height > getHeight()) {
+            throw new IndexOutOfBoundsException("The rectangle (" + x + ", " + y + ", " + width + ", " + height
+                    + ") is not within the image, which is " + getWidth() + " by " + getHeight());
+        }
+        if (pixels != null && pixels.length < width * height) {
+            throw new IllegalArgumentException("The pixel array is too small. Its length was: " + pixels.length
+                    + " and it should have been at least: " + width * height);
+        }
+    }
+
     /**
      * Set the transparency of the image.
      * 
@@ -627,6 +779,7 @@ public class GreenfootImage
         }
 
         ensureWritableImage();
+        dataModified();
         image.setRGB(x,y,rgb);
     }
  
@@ -22,6 +22,7 @@
 package greenfoot;
 
 import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
 
 /**
@@ -41,6 +42,24 @@ public class ImageVisitor
         image.drawImage(g, x, y, observer, useTranparency);
     }
     
+    /**
+     * Get the image data to draw from, without making a copy of it.
+     */
+    public static BufferedImage getImageForDrawing(GreenfootImage image)
+    {
+        return image.getImageForDrawing();
+    }
+    
+    public static int getModificationCount(GreenfootImage image)
+    {
+        return image.getModificationCount();
+    }
+    
+    public static boolean isAwtImageExposed(GreenfootImage image)
+    {
+        return image.isAwtImageExposed();
+    }
+    
     public static boolean equal(GreenfootImage image1, GreenfootImage image2)
     {
         return GreenfootImage.equal(image1, image2);
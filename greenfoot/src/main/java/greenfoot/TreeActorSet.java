@@ -50,7 +50,7 @@ public class TreeActorSet extends AbstractSet<Actor>
      */
     public TreeActorSet()
     {
-        subSets = new LinkedList<ActorSet>();
+        subSets = new ArrayList<ActorSet>();
         generalSet = new ActorSet();
         subSets.add(generalSet);
         
@@ -163,11 +163,37 @@ public class TreeActorSet extends AbstractSet<Actor>
     public int size()
     {
         int size = 0;
-        for (Iterator<ActorSet> i = subSets.iterator(); i.hasNext(); ) {
-            size += i.next().size();
+        for (int i = 0; i < subSets.size(); i++) {
+            size += subSets.get(i).size();
         }
         return size;
     }
+    
+    /**
+     * Copy the actors in this set, in iteration order, into an array. This
+     * avoids the iterator and list allocation of copying via a collection:
+     * if the given array is large enough (at least {@link #size()}), it is
+     * used and returned; otherwise a larger array is allocated and returned,
+     * which the caller should keep for re-use. Elements of the array beyond
+     * the copied actors are left unchanged.
+     * 
+     * @param buffer  The array to copy into, if large enough
+     * @return  The array containing the actors
+     */
+    public Actor[] snapshot(Actor[] buffer)
+    {
+        int size = size();
+        if (buffer.length < size) {
+            // Leave some room for growth:
+            buffer = new Actor[size + size / 2];
+        }
+        
+        int index = 0;
+        for (int i = 0; i < subSets.size(); i++) {
+            index = subSets.get(i).copyInto(buffer, index);
+        }
+        return buffer;
+    }
 
     @OnThread(value = Tag.Simulation, ignoreParent = true)
     @Override
@@ -24,7 +24,9 @@ package greenfoot;
 
 import greenfoot.collision.ColManager;
 import greenfoot.collision.CollisionChecker;
+import greenfoot.collision.grid.GridColChecker;
 import greenfoot.collision.ibsp.Rect;
+import greenfoot.core.ParallelActRunner;
 import greenfoot.core.TextLabel;
 import greenfoot.core.WorldHandler;
 import threadchecker.OnThread;
@@ -62,7 +64,7 @@ public abstract class World
 
     // private CollisionChecker collisionChecker = new GridCollisionChecker();
     // private CollisionChecker collisionChecker = new BVHInsChecker();
-    private CollisionChecker collisionChecker = new ColManager();
+    private CollisionChecker collisionChecker;
     
     //{
     //    collisionChecker = new CollisionProfiler(collisionChecker);
@@ -77,6 +79,12 @@ public abstract class World
     private TreeActorSet objectsInPaintOrder;    
     private TreeActorSet objectsInActOrder;
     
+    // Classes whose objects may act in parallel (null if none)
+    private Class<?>[] parallelActClasses;
+    
+    // Whether actors' images are compared pixel by pixel when checking for collisions
+    private boolean pixelPerfectCollisions;
+    
     // List of text labels displayed over the world
     List<TextLabel> textLabels = new ArrayList<TextLabel>(); 
 
@@ -121,10 +129,34 @@ public abstract class World
      * @param bounded     Should actors be restricted to the world boundary?
      */
     public World(int worldWidth, int worldHeight, int cellSize, boolean bounded)
+    {
+        this(worldWidth, worldHeight, cellSize, bounded, false);
+    }
+
+    /**
+     * Construct a new world. The size of the world (in number of cells) and the
+     * size of each cell (in pixels) must be specified. This constructor also
+     * allows choosing a collision detection method suited to worlds containing
+     * a large number of actors which are all of a similar size, such as
+     * particles, bullets or tiles, and which move frequently.
+     * 
+     * @param worldWidth  The width of the world (in cells).
+     * @param worldHeight The height of the world (in cells).
+     * @param cellSize    Size of a cell in pixels.
+     * @param bounded     Should actors be restricted to the world boundary?
+     * @param gridCollision  Should collision detection use a uniform grid?
+     */
+    public World(int worldWidth, int worldHeight, int cellSize, boolean bounded, boolean gridCollision)
     {
         this.width = worldWidth;
         this.height = worldHeight;
         this.cellSize = cellSize;
+        if (gridCollision) {
+            collisionChecker = new ColManager(new GridColChecker());
+        }
+        else {
+            collisionChecker = new ColManager();
+        }
         collisionChecker.initialize(worldWidth, worldHeight, cellSize, false);
         this.isBounded = bounded;
         
@@ -411,6 +443,89 @@ public abstract class World
         objectsInActOrder.setClassOrder(false, classes);
     }
     
+    /**
+     * Allow objects of the given classes (or their subclasses) to act in parallel, using
+     * several processors. This is intended for actors whose act() method only looks at
+     * the world and changes the actor's own fields, such as many simple creatures moving
+     * around.
+     * 
+     * <p>Objects of these classes which are next to each other in the act order (see
+     * {@link #setActOrder(Class...)}) act together. While they do, any changes they make
+     * to the world - setting the location, rotation or image of an actor in the world, and
+     * adding or removing actors - are delayed until they have all acted, and are then
+     * made in act order. This means that these actors all see the world (including their
+     * own location) as it was before any of them acted.
+     * 
+     * <p>The act() methods must not change other shared state, such as the fields of other
+     * objects or static variables, or the results are unpredictable.
+     * 
+     * @param classes
+     *            The classes whose objects may act in parallel, or none (or null) to
+     *            make all objects act one after the other (the default).
+     */
+    public void setParallelAct(Class<?> ... classes)
+    {
+        if (classes == null || classes.length == 0) {
+            parallelActClasses = null;
+        }
+        else {
+            parallelActClasses = classes.clone();
+        }
+    }
+    
+    /**
+     * Set whether collisions between actors are checked pixel by pixel. If so, two actors
+     * only intersect if their images, as drawn in the world, have pixels in the same
+     * place which are not completely transparent; otherwise, they intersect if the
+     * (rotated) rectangles covered by their images overlap (the default). This affects
+     * getIntersectingObjects, getOneIntersectingObject and isTouching in Actor.
+     * 
+     * <p>The pixels of each image are examined the first time it is checked (and again
+     * after it has been changed), so checking pixel by pixel costs little more than
+     * checking rectangles for actors whose images rarely change.
+     * 
+     * @param pixelPerfect  Whether collisions are checked pixel by pixel
+     */
+    public void setPixelPerfectCollisions(boolean pixelPerfect)
+    {
+        pixelPerfectCollisions = pixelPerfect;
+    }
+    
+    /**
+     * Check whether collisions between actors are checked pixel by pixel.
+     */
+    boolean isPixelPerfectCollisions()
+    {
+        return pixelPerfectCollisions;
+    }
+    
+    /**
+     * Check whether the given actor may act in parallel with others.
+     */
+    boolean isParallelAct(Actor actor)
+    {
+        if (parallelActClasses == null) {
+            return false;
+        }
+        for (Class<?> cls : parallelActClasses) {
+            if (cls.isInstance(actor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Prepare for actors to act in parallel: queries on the collision checker must then
+     * only read from it.
+     */
+    void prepareForParallelAct()
+    {
+        if (collisionChecker instanceof ColManager) {
+            ((ColManager) collisionChecker).makeAllCollisionObjects();
+        }
+    }
+    
     /**
      * Add an Actor to the world.
      * 
@@ -419,6 +534,19 @@ public abstract class World
      * @param y The y coordinate of the location where the object is added.
      */
     public void addObject(Actor object, int x, int y)
+    {
+        if (ParallelActRunner.isDeferring()) {
+            ParallelActRunner.defer(() -> addObjectNow(object, x, y));
+            return;
+        }
+        addObjectNow(object, x, y);
+    }
+    
+    /**
+     * The implementation of addObject, which cannot be overridden, so that it can be
+     * used to apply an addition deferred from a parallel act.
+     */
+    private void addObjectNow(Actor object, int x, int y)
     {
         if (object.world != null) {
             if (object.world == this) {
@@ -450,6 +578,19 @@ public abstract class World
      * @param object the object to remove
      */
     public void removeObject(Actor object)
+    {
+        if (ParallelActRunner.isDeferring()) {
+            ParallelActRunner.defer(() -> removeObjectNow(object));
+            return;
+        }
+        removeObjectNow(object);
+    }
+    
+    /**
+     * The implementation of removeObject, which cannot be overridden, so that it can be
+     * used to apply a removal deferred from a parallel act.
+     */
+    private void removeObjectNow(Actor object)
     {
         if (object == null || object.world != this) {
             return;
@@ -81,6 +81,23 @@ public class WorldVisitor
         w.startSequence();
     }
 
+    /**
+     * Check whether the given actor may act in parallel with others.
+     * @see World#setParallelAct(Class...)
+     */
+    public static boolean isParallelAct(World w, Actor actor)
+    {
+        return w.isParallelAct(actor);
+    }
+
+    /**
+     * Prepare the world for actors to act in parallel.
+     */
+    public static void prepareForParallelAct(World w)
+    {
+        w.prepareForParallelAct();
+    }
+
     public static void paintDebug(World world, Graphics g)
     {
         world.paintDebug(g);
@@ -22,13 +22,17 @@
 package greenfoot.collision;
 
 import greenfoot.Actor;
+import greenfoot.ActorSet;
 import greenfoot.collision.ibsp.IBSPColChecker;
+import greenfoot.core.SimulationProfiler;
+import greenfoot.core.SimulationProfiler.Phase;
 
 import java.awt.Graphics;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,14 +49,37 @@ import java.util.Map.Entry;
 public class ColManager implements CollisionChecker
 {
 
-    /** Map from classes to objects that are not part of the collision checking (yet). */
-    private Map<Class<? extends Actor>, LinkedList<Actor>> freeObjects = new HashMap<Class<? extends Actor>, LinkedList<Actor>>();
+    /**
+     * Map from classes to objects that are not part of the collision checking (yet).
+     * ActorSet gives constant-time removal, so actors which are never collision
+     * checked can come and go cheaply.
+     */
+    private Map<Class<? extends Actor>, ActorSet> freeObjects = new HashMap<Class<? extends Actor>, ActorSet>();
     
     /** Classes that are part of the collision checking. */
     private Set<Class<? extends Actor>> collisionClasses = new HashSet<Class<? extends Actor>>();
     
     /** The actual collision checker. */
-    private CollisionChecker collisionChecker = new IBSPColChecker();
+    private CollisionChecker collisionChecker;
+    
+    /** Times the collision queries, when the simulation is being profiled. */
+    private final SimulationProfiler profiler = SimulationProfiler.getInstance();
+
+    /**
+     * Create a collision manager delegating to an IBSP collision checker.
+     */
+    public ColManager()
+    {
+        this(new IBSPColChecker());
+    }
+
+    /**
+     * Create a collision manager delegating to the given collision checker.
+     */
+    public ColManager(CollisionChecker collisionChecker)
+    {
+        this.collisionChecker = collisionChecker;
+    }
 
     /**
      * Ensures that objects of this class are in the collision checker
@@ -60,48 +87,69 @@ public class ColManager implements CollisionChecker
      */
     private void makeCollisionObjects(Class<? extends Actor> cls, boolean includeSubclasses)
     {
+        if (freeObjects.isEmpty()) {
+            return;
+        }
+        
+        // Gather all the objects to move, so that they can be added to the
+        // collision checker in one go.
+        List<Actor> newObjects = null;
+        
         if (cls == null) {
-            //long start = System.nanoTime();
-            Set<Entry<Class<? extends Actor>, LinkedList<Actor>>> entries = freeObjects.entrySet();
-            for (Entry<Class<? extends Actor>, LinkedList<Actor>> entry : entries) {
-                // TODO: bulk add could be faster if implemented in collision checker?
+            newObjects = new ArrayList<Actor>();
+            for (Entry<Class<? extends Actor>, ActorSet> entry : freeObjects.entrySet()) {
                 for (Actor actor : entry.getValue()) {
-                    collisionChecker.addObject(actor);
+                    newObjects.add(actor);
                 }
                 collisionClasses.add(entry.getKey());
             }
-            //long end = System.nanoTime();
-
-            //System.out.println("move all took seconds: " + (end - start) / 1000000000d);
             freeObjects.clear();
         }
-        else if (collisionClasses.contains(cls)) {
-        }
         else {
-            List<? extends Actor> classSet = freeObjects.remove(cls);
-
-            if( classSet != null) {
+            ActorSet classSet = freeObjects.remove(cls);
+            if (classSet != null) {
                 collisionClasses.add(cls);
-    
-                // Add all the objects to the collision checker
-                // TODO: bulk add could be faster if implemented in collision checker?
+                newObjects = new ArrayList<Actor>(classSet.size());
                 for (Actor actor : classSet) {
-                    collisionChecker.addObject(actor);
+                    newObjects.add(actor);
                 }
             }
-        }
-
-        if (includeSubclasses) {
-            // Clone it to avoid concurrent modification:
-            Set<Entry<Class<? extends Actor>, LinkedList<Actor>>> entries = 
-                    new HashSet<Entry<Class<? extends Actor>, LinkedList<Actor>>>(freeObjects.entrySet());
-            // Run through all classes to see if any of them is a subclass.
-            for (Entry<Class<? extends Actor>, LinkedList<Actor>> entry : entries) {
-                if(cls.isAssignableFrom(entry.getKey())) {
-                    makeCollisionObjects(entry.getKey(), false);
+            
+            if (includeSubclasses) {
+                // Run through all classes to see if any of them is a subclass.
+                Iterator<Entry<Class<? extends Actor>, ActorSet>> i = freeObjects.entrySet().iterator();
+                while (i.hasNext()) {
+                    Entry<Class<? extends Actor>, ActorSet> entry = i.next();
+                    if (cls.isAssignableFrom(entry.getKey())) {
+                        if (newObjects == null) {
+                            newObjects = new ArrayList<Actor>();
+                        }
+                        for (Actor actor : entry.getValue()) {
+                            newObjects.add(actor);
+                        }
+                        collisionClasses.add(entry.getKey());
+                        i.remove();
+                    }
                 }
             }
         }
+        
+        if (newObjects != null) {
+            collisionChecker.addObjects(newObjects);
+        }
+    }
+
+    /**
+     * Ensure that all objects are in the collision checker. Subsequent queries will then
+     * not modify the collision objects or the checker, until objects are next added,
+     * removed, moved or resized.
+     */
+    public void makeAllCollisionObjects()
+    {
+        makeCollisionObjects(null, false);
+        if (collisionChecker instanceof IBSPColChecker) {
+            ((IBSPColChecker) collisionChecker).rippleAreas();
+        }
     }
 
     /**
@@ -123,25 +171,44 @@ public class ColManager implements CollisionChecker
             collisionChecker.addObject(actor);
         }
         else {
-            LinkedList<Actor> classSet = freeObjects.get(cls);
+            ActorSet classSet = freeObjects.get(cls);
             if (classSet == null) {
-                classSet = new LinkedList<Actor>();
+                classSet = new ActorSet();
                 freeObjects.put(cls, classSet);
             }
             classSet.add(actor);
         }
     }
 
+    public void addObjects(Collection<? extends Actor> actors)
+    {
+        for (Actor actor : actors) {
+            addObject(actor);
+        }
+    }
+
     public <T extends Actor> List<T> getIntersectingObjects(Actor actor, Class<T> cls)
     {
-        prepareForCollision(actor, cls);
-        return collisionChecker.getIntersectingObjects(actor, cls);
+        long start = profiler.beginPhase();
+        try {
+            prepareForCollision(actor, cls);
+            return collisionChecker.getIntersectingObjects(actor, cls);
+        }
+        finally {
+            profiler.endPhase(Phase.COLLIDE, start);
+        }
     }
 
     public <T extends Actor> List<T> getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls)
     {
-        prepareForCollision(actor, cls);
-        return collisionChecker.getNeighbours(actor, distance, diag, cls);
+        long start = profiler.beginPhase();
+        try {
+            prepareForCollision(actor, cls);
+            return collisionChecker.getNeighbours(actor, distance, diag, cls);
+        }
+        finally {
+            profiler.endPhase(Phase.COLLIDE, start);
+        }
     }
 
     @SuppressWarnings("unchecked")
@@ -149,10 +216,11 @@ public class ColManager implements CollisionChecker
     {
         List<T> result = collisionChecker.getObjects(cls);
 
-        Set<Entry<Class<? extends Actor>, LinkedList<Actor>>> entries = freeObjects.entrySet();
-        for (Entry<Class<? extends Actor>, LinkedList<Actor>> entry : entries) {
+        for (Entry<Class<? extends Actor>, ActorSet> entry : freeObjects.entrySet()) {
             if (cls == null || cls.isAssignableFrom(entry.getKey())) {
-                result.addAll((Collection<? extends T>) entry.getValue());
+                for (Actor actor : entry.getValue()) {
+                    result.add((T) actor);
+                }
             }
         }
         return result;
@@ -160,20 +228,38 @@ public class ColManager implements CollisionChecker
 
     public <T extends Actor> List<T> getObjectsAt(int x, int y, Class<T> cls)
     {
-        makeCollisionObjects(cls, true);
-        return collisionChecker.getObjectsAt(x, y, cls);
+        long start = profiler.beginPhase();
+        try {
+            makeCollisionObjects(cls, true);
+            return collisionChecker.getObjectsAt(x, y, cls);
+        }
+        finally {
+            profiler.endPhase(Phase.COLLIDE, start);
+        }
     }
 
     public <T extends Actor> List<T> getObjectsInDirection(int x, int y, int angle, int length, Class<T> cls)
     {
-        makeCollisionObjects(cls, true);
-        return collisionChecker.getObjectsInDirection(x, y, angle, length, cls);
+        long start = profiler.beginPhase();
+        try {
+            makeCollisionObjects(cls, true);
+            return collisionChecker.getObjectsInDirection(x, y, angle, length, cls);
+        }
+        finally {
+            profiler.endPhase(Phase.COLLIDE, start);
+        }
     }
 
     public <T extends Actor> List<T> getObjectsInRange(int x, int y, int r, Class<T> cls)
     {
-        makeCollisionObjects(cls, true);
-        return collisionChecker.getObjectsInRange(x, y, r, cls);
+        long start = profiler.beginPhase();
+        try {
+            makeCollisionObjects(cls, true);
+            return collisionChecker.getObjectsInRange(x, y, r, cls);
+        }
+        finally {
+            profiler.endPhase(Phase.COLLIDE, start);
+        }
     }
 
     public List<Actor> getObjectsList()
@@ -183,14 +269,26 @@ public class ColManager implements CollisionChecker
 
     public <T extends Actor> T getOneIntersectingObject(Actor object, Class<T> cls)
     {
-        prepareForCollision(object, cls);
-        return collisionChecker.getOneIntersectingObject(object, cls);
+        long start = profiler.beginPhase();
+        try {
+            prepareForCollision(object, cls);
+            return collisionChecker.getOneIntersectingObject(object, cls);
+        }
+        finally {
+            profiler.endPhase(Phase.COLLIDE, start);
+        }
     }
 
     public <T extends Actor> T getOneObjectAt(Actor object, int dx, int dy, Class<T> cls)
     {
-        prepareForCollision(object, cls);
-        return collisionChecker.getOneObjectAt(object, dx, dy, cls);
+        long start = profiler.beginPhase();
+        try {
+            prepareForCollision(object, cls);
+            return collisionChecker.getOneObjectAt(object, dx, dy, cls);
+        }
+        finally {
+            profiler.endPhase(Phase.COLLIDE, start);
+        }
     }
 
     public void initialize(int width, int height, int cellSize, boolean wrap)
@@ -205,7 +303,7 @@ public class ColManager implements CollisionChecker
 
     public void removeObject(Actor object)
     {
-        LinkedList<Actor> classSet = freeObjects.get(object.getClass());
+        ActorSet classSet = freeObjects.get(object.getClass());
         if (classSet != null) {
             classSet.remove(object);
         }
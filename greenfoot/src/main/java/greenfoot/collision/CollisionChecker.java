@@ -24,6 +24,7 @@ package greenfoot.collision;
 import greenfoot.Actor;
 
 import java.awt.Graphics;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -48,6 +49,14 @@ public interface CollisionChecker
      */
     public void addObject(Actor actor);
 
+    /**
+     * Called when several objects are to be added to the collision checker
+     * at once. This has the same effect as calling addObject for each of
+     * them, but allows the collision checker to build its structures in one
+     * go.
+     */
+    public void addObjects(Collection<? extends Actor> actors);
+
     /**
      * Called when an object is removed from the world
      */
@@ -0,0 +1,274 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A bitmask of the pixels of an image which are not completely transparent, used for
+ * pixel-accurate collision checks.
+ *
+ * <p>Each row of the mask is stored as a run of longs, with bit (x % 64) of word (x / 64)
+ * set if pixel x is solid. Two masks are checked against each other 64 pixels at a
+ * time, by ANDing words.
+ *
+ * <p>A mask has a position relative to the pixel at the centre of an actor's cell (the
+ * pixel at cellSize / 2 in each direction from the cell's corner), at which it covers the
+ * pixels the actor's image is drawn on. Masks of the image drawn at other rotations are
+ * made from it when first needed, and kept with it. Masks are immutable, and may be used
+ * from any thread.
+ */
+@OnThread(Tag.Any)
+public final class CollisionMask
+{
+    private static final int BITS = 64;
+
+    /** The image this mask was made from (null for rotated masks). */
+    private final BufferedImage source;
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+    private final long[] bits;
+    // The position of the top-left of the mask relative to the cell's centre pixel:
+    private final int offsetX;
+    private final int offsetY;
+
+    /** Masks of the source image at other rotations, keyed by rotation and cell-size parity. */
+    private final ConcurrentHashMap<Integer, CollisionMask> rotations;
+
+    private CollisionMask(BufferedImage source, int width, int height, long[] bits, int offsetX, int offsetY)
+    {
+        this.source = source;
+        this.width = width;
+        this.height = height;
+        this.wordsPerRow = (width + BITS - 1) / BITS;
+        this.bits = bits;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.rotations = source == null ? null : new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Make the mask of the given image, as drawn unrotated in a world with an even cell size.
+     */
+    public static CollisionMask fromImage(BufferedImage image)
+    {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int wordsPerRow = (width + BITS - 1) / BITS;
+        long[] bits = new long[wordsPerRow * height];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int rowStart = y * wordsPerRow;
+            for (int x = 0; x < width; x++) {
+                if ((row[x] >>> 24) != 0) {
+                    bits[rowStart + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return new CollisionMask(image, width, height, bits, originOffset(width, false), originOffset(height, false));
+    }
+
+    /**
+     * Get the position of the top-left of an unrotated image relative to the cell's
+     * centre pixel. This matches where the image is drawn.
+     */
+    private static int originOffset(int size, boolean oddCell)
+    {
+        return (int) Math.floor((oddCell ? 0.5 : 0) - size / 2.);
+    }
+
+    /**
+     * Get the image this mask was made from.
+     */
+    public BufferedImage getSource()
+    {
+        return source;
+    }
+
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public int getHeight()
+    {
+        return height;
+    }
+
+    /**
+     * Get the x position of the left of the mask, relative to the cell's centre pixel.
+     */
+    public int getOffsetX()
+    {
+        return offsetX;
+    }
+
+    /**
+     * Get the y position of the top of the mask, relative to the cell's centre pixel.
+     */
+    public int getOffsetY()
+    {
+        return offsetY;
+    }
+
+    /**
+     * Check whether the given pixel of the mask is set. Pixels outside the mask are not.
+     */
+    public boolean get(int x, int y)
+    {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return false;
+        }
+        return (bits[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+    }
+
+    /**
+     * Get the mask of the source image as drawn at the given rotation.  This may only be
+     * called on a mask made by {@link #fromImage(BufferedImage)}.
+     *
+     * @param rotation  The rotation, in degrees clockwise
+     * @param oddCell   Whether the world's cell size is odd, in which case the centre of
+     *                  rotation is in the middle of the cell's centre pixel
+     */
+    public CollisionMask getRotated(int rotation, boolean oddCell)
+    {
+        rotation = ((rotation % 360) + 360) % 360;
+        int ox = originOffset(width, oddCell);
+        int oy = originOffset(height, oddCell);
+        if (rotation == 0 && ox == offsetX && oy == offsetY) {
+            return this;
+        }
+        return rotations.computeIfAbsent(rotation * 2 + (oddCell ? 1 : 0), k -> {
+            if (k / 2 == 0) {
+                // Same data, in a different place:
+                return new CollisionMask(null, width, height, bits, ox, oy);
+            }
+            return rotate(k / 2, oddCell ? 0.5 : 0, ox, oy);
+        });
+    }
+
+    /**
+     * Make the mask of this mask's pixels rotated about the point (centre, centre) relative
+     * to the cell's centre pixel, with the top-left of this mask at (ox, oy).
+     */
+    private CollisionMask rotate(int rotation, double centre, int ox, int oy)
+    {
+        double cos;
+        double sin;
+        switch (rotation) {
+            // Use exact values for right angles, so that pixels map exactly onto pixels:
+            case 90: cos = 0; sin = 1; break;
+            case 180: cos = -1; sin = 0; break;
+            case 270: cos = 0; sin = -1; break;
+            default:
+                double radians = Math.toRadians(rotation);
+                cos = Math.cos(radians);
+                sin = Math.sin(radians);
+        }
+
+        // Find the area covered by the rotated image:
+        double minX = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (int corner = 0; corner < 4; corner++) {
+            double dx = ox + ((corner & 1) == 0 ? 0 : width) - centre;
+            double dy = oy + ((corner & 2) == 0 ? 0 : height) - centre;
+            double x = centre + cos * dx - sin * dy;
+            double y = centre + sin * dx + cos * dy;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+        int left = (int) Math.floor(minX + 1e-9);
+        int top = (int) Math.floor(minY + 1e-9);
+        int rotatedWidth = (int) Math.ceil(maxX - 1e-9) - left;
+        int rotatedHeight = (int) Math.ceil(maxY - 1e-9) - top;
+
+        // Set each pixel whose centre, rotated back, lies in a set pixel of this mask:
+        int rotatedWordsPerRow = (rotatedWidth + BITS - 1) / BITS;
+        long[] rotatedBits = new long[rotatedWordsPerRow * rotatedHeight];
+        for (int y = 0; y < rotatedHeight; y++) {
+            double dy = top + y + 0.5 - centre;
+            int rowStart = y * rotatedWordsPerRow;
+            for (int x = 0; x < rotatedWidth; x++) {
+                double dx = left + x + 0.5 - centre;
+                double sourceX = centre + cos * dx + sin * dy - ox;
+                double sourceY = centre - sin * dx + cos * dy - oy;
+                if (get((int) Math.floor(sourceX), (int) Math.floor(sourceY))) {
+                    rotatedBits[rowStart + (x >>> 6)] |= 1L << x;
+                }
+            }
+        }
+        return new CollisionMask(null, rotatedWidth, rotatedHeight, rotatedBits, left, top);
+    }
+
+    /**
+     * Check whether two masks have a set pixel in common, when their top-left corners are
+     * at the given positions.
+     */
+    public static boolean intersects(CollisionMask a, int ax, int ay, CollisionMask b, int bx, int by)
+    {
+        int left = Math.max(ax, bx);
+        int right = Math.min(ax + a.width, bx + b.width);
+        int top = Math.max(ay, by);
+        int bottom = Math.min(ay + a.height, by + b.height);
+        if (left >= right || top >= bottom) {
+            return false;
+        }
+
+        for (int y = top; y < bottom; y++) {
+            int aRow = (y - ay) * a.wordsPerRow;
+            int bRow = (y - by) * b.wordsPerRow;
+            for (int x = left; x < right; x += BITS) {
+                int n = right - x;
+                long overlap = n >= BITS ? -1L : (1L << n) - 1;
+                if ((a.getWord(aRow, x - ax) & b.getWord(bRow, x - bx) & overlap) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the 64 bits of a row starting at the given pixel (bits past the end of the row
+     * are clear).
+     */
+    private long getWord(int rowStart, int x)
+    {
+        int word = x >>> 6;
+        int shift = x & (BITS - 1);
+        long result = bits[rowStart + word] >>> shift;
+        if (shift != 0 && word + 1 < wordsPerRow) {
+            result |= bits[rowStart + word + 1] << (BITS - shift);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision.grid;
+
+/**
+ * A bucket of the spatial hash. Holds the entries of all actors whose bounds
+ * overlap one (or, due to hash collisions, several) grid cells.
+ * 
+ * <p>Entries are kept in a compact array; removal swaps the last entry into the
+ * vacated slot, so that both adding and removing are O(1). Each entry records
+ * the slot it occupies in every bucket it is part of.
+ */
+final class GridBucket
+{
+    private GridEntry[] entries = new GridEntry[4];
+    private int size;
+    
+    /**
+     * Add an entry to this bucket.
+     * 
+     * @return The slot the entry was stored in
+     */
+    int add(GridEntry entry)
+    {
+        if (size == entries.length) {
+            GridEntry[] newEntries = new GridEntry[size * 2];
+            System.arraycopy(entries, 0, newEntries, 0, size);
+            entries = newEntries;
+        }
+        entries[size] = entry;
+        return size++;
+    }
+    
+    /**
+     * Remove the entry at the given slot. The last entry in the bucket is moved
+     * into the slot, and its recorded slot index is updated.
+     */
+    void remove(int slot)
+    {
+        size--;
+        if (slot != size) {
+            GridEntry moved = entries[size];
+            entries[slot] = moved;
+            moved.slotMoved(this, slot);
+        }
+        entries[size] = null;
+    }
+    
+    /**
+     * Get the number of entries in this bucket.
+     */
+    int size()
+    {
+        return size;
+    }
+    
+    /**
+     * Get the entry at the given slot (0 &lt;= slot &lt; size()).
+     */
+    GridEntry get(int slot)
+    {
+        return entries[slot];
+    }
+}
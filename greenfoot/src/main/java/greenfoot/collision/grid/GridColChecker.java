@@ -0,0 +1,529 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision.grid;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.collision.CollisionChecker;
+import greenfoot.collision.CollisionQuery;
+import greenfoot.collision.GOCollisionQuery;
+import greenfoot.collision.InRangeQuery;
+import greenfoot.collision.NeighbourCollisionQuery;
+import greenfoot.collision.PointCollisionQuery;
+import greenfoot.collision.ibsp.Rect;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A collision checker using a uniform grid, stored as a spatial hash.
+ * 
+ * <p>Each actor is stored in the bucket of every grid cell that its bounding
+ * rectangle overlaps. The size of the grid cells is chosen when the first actor
+ * is added (to an empty checker): it is the smallest multiple of the world's cell
+ * size which covers that actor. In worlds where most actors have a similar size,
+ * an actor then spans at most four grid cells. Actors which span many grid cells
+ * are kept in a separate bucket that is examined by every query.
+ * 
+ * <p>Moving an actor only touches the buckets it leaves or enters, so updates are
+ * O(1) and, once the buckets have grown to their working size, do not allocate.
+ * This suits worlds with many similarly-sized, frequently moving actors, for which
+ * the {@link greenfoot.collision.ibsp.IBSPColChecker} spends much of its time
+ * restructuring its tree.
+ * 
+ * <p>Queries do not modify the checker, and each thread has its own query objects, so
+ * any number of threads may query at once without locking, as long as no actor is
+ * added, removed, moved or resized meanwhile. Actors acting in parallel (see
+ * {@link greenfoot.World#setParallelAct(Class...)}) rely on this: their changes are
+ * deferred until they have all acted.
+ */
+public class GridColChecker implements CollisionChecker
+{
+    /** Minimum size of a grid cell, in pixels */
+    private static final int MIN_GRID_SIZE = 16;
+    /** Actors spanning more grid cells than this are stored in the large-actor bucket */
+    private static final int MAX_SPAN = 16;
+    
+    private static final int MIN_TABLE_SIZE = 64;
+    private static final int MAX_TABLE_SIZE = 1 << 16;
+    
+    /**
+     * The query objects used by one thread.
+     */
+    private static class Queries
+    {
+        final GOCollisionQuery actorQuery = new GOCollisionQuery();
+        final NeighbourCollisionQuery neighbourQuery = new NeighbourCollisionQuery();
+        final PointCollisionQuery pointQuery = new PointCollisionQuery();
+        final InRangeQuery inRangeQuery = new InRangeQuery();
+    }
+    
+    private final ThreadLocal<Queries> queries = ThreadLocal.withInitial(Queries::new);
+    
+    /** World size, in cells */
+    private int width;
+    private int height;
+    private int cellSize;
+    
+    /** Size of a grid cell, in pixels. Zero while the checker is empty. */
+    private int gridSize;
+    
+    /** The hash table of buckets; the length is always a power of two */
+    private GridBucket[] table;
+    
+    /** Actors too large to be stored in individual grid cells */
+    private final GridBucket largeActors = new GridBucket();
+    
+    /** All entries, in no particular order */
+    private GridEntry[] entries = new GridEntry[16];
+    private int entryCount;
+    
+    /*
+     * @see greenfoot.collision.CollisionChecker#initialize(int, int, int, boolean)
+     */
+    public void initialize(int width, int height, int cellSize, boolean wrap)
+    {
+        this.width = width;
+        this.height = height;
+        this.cellSize = cellSize;
+    }
+    
+    /**
+     * Choose the grid size based on the bounds of an actor, and size the hash
+     * table so that the world area maps to it with few collisions.
+     */
+    private void configure(Rect bounds)
+    {
+        int extent = Math.max(Math.max(bounds.getWidth(), bounds.getHeight()), MIN_GRID_SIZE);
+        gridSize = ((extent + cellSize - 1) / cellSize) * cellSize;
+        
+        long gridCellsX = ((long) width * cellSize + gridSize - 1) / gridSize;
+        long gridCellsY = ((long) height * cellSize + gridSize - 1) / gridSize;
+        long wanted = gridCellsX * gridCellsY * 2;
+        int tableSize = MIN_TABLE_SIZE;
+        while (tableSize < wanted && tableSize < MAX_TABLE_SIZE) {
+            tableSize <<= 1;
+        }
+        
+        if (table == null || table.length != tableSize) {
+            table = new GridBucket[tableSize];
+        }
+    }
+    
+    private int hash(int gx, int gy)
+    {
+        return ((gx * 73856093) ^ (gy * 19349663)) & (table.length - 1);
+    }
+    
+    private int toGrid(int pixel)
+    {
+        return Math.floorDiv(pixel, gridSize);
+    }
+    
+    private static GridEntry getEntryForActor(Actor actor)
+    {
+        return (GridEntry) ActorVisitor.getData(actor);
+    }
+    
+    private static void setEntryForActor(Actor actor, GridEntry entry)
+    {
+        ActorVisitor.setData(actor, entry);
+    }
+    
+    /*
+     * @see greenfoot.collision.CollisionChecker#addObject(greenfoot.Actor)
+     */
+    public void addObject(Actor actor)
+    {
+        GridEntry entry = new GridEntry(actor);
+        setEntryForActor(actor, entry);
+        
+        if (entryCount == entries.length) {
+            GridEntry[] newEntries = new GridEntry[entryCount * 2];
+            System.arraycopy(entries, 0, newEntries, 0, entryCount);
+            entries = newEntries;
+        }
+        entry.index = entryCount;
+        entries[entryCount++] = entry;
+        
+        Rect bounds = ActorVisitor.getBoundingRect(actor);
+        if (gridSize == 0) {
+            configure(bounds);
+        }
+        insert(entry, bounds);
+    }
+    
+    /*
+     * @see greenfoot.collision.CollisionChecker#addObjects(java.util.Collection)
+     */
+    public void addObjects(Collection<? extends Actor> actors)
+    {
+        // Each insertion is already O(1); just make room for the entries up front.
+        int needed = entryCount + actors.size();
+        if (needed > entries.length) {
+            GridEntry[] newEntries = new GridEntry[Math.max(needed, entries.length * 2)];
+            System.arraycopy(entries, 0, newEntries, 0, entryCount);
+            entries = newEntries;
+        }
+        for (Actor actor : actors) {
+            addObject(actor);
+        }
+    }
+    
+    /**
+     * Store an entry in the buckets of all grid cells overlapped by the given bounds.
+     * The entry must not currently be in any bucket.
+     */
+    private void insert(GridEntry entry, Rect bounds)
+    {
+        entry.minX = toGrid(bounds.getX());
+        entry.minY = toGrid(bounds.getY());
+        entry.maxX = toGrid(bounds.getX() + Math.max(bounds.getWidth(), 1) - 1);
+        entry.maxY = toGrid(bounds.getY() + Math.max(bounds.getHeight(), 1) - 1);
+        
+        long span = (long) (entry.maxX - entry.minX + 1) * (entry.maxY - entry.minY + 1);
+        if (span > MAX_SPAN) {
+            entry.addTo(largeActors);
+            return;
+        }
+        
+        for (int gy = entry.minY; gy <= entry.maxY; gy++) {
+            for (int gx = entry.minX; gx <= entry.maxX; gx++) {
+                int h = hash(gx, gy);
+                GridBucket bucket = table[h];
+                if (bucket == null) {
+                    bucket = new GridBucket();
+                    table[h] = bucket;
+                }
+                // Two grid cells covered by the actor may hash to the same bucket:
+                if (! entry.isIn(bucket)) {
+                    entry.addTo(bucket);
+                }
+            }
+        }
+    }
+    
+    public void removeObject(Actor object)
+    {
+        GridEntry entry = getEntryForActor(object);
+        if (entry == null) {
+            return;
+        }
+        
+        entry.removeFromAll();
+        int index = entry.index;
+        entryCount--;
+        if (index != entryCount) {
+            GridEntry moved = entries[entryCount];
+            entries[index] = moved;
+            moved.index = index;
+        }
+        entries[entryCount] = null;
+        setEntryForActor(object, null);
+        
+        if (entryCount == 0) {
+            // Choose the grid size afresh when the next actor is added
+            gridSize = 0;
+        }
+    }
+    
+    /**
+     * An actor's position or size has changed - move it between buckets if
+     * it now covers a different range of grid cells.
+     */
+    private void updateObject(Actor object)
+    {
+        GridEntry entry = getEntryForActor(object);
+        if (entry == null) {
+            // Not (yet) added to this checker
+            return;
+        }
+        
+        Rect bounds = ActorVisitor.getBoundingRect(object);
+        int minX = toGrid(bounds.getX());
+        int minY = toGrid(bounds.getY());
+        int maxX = toGrid(bounds.getX() + Math.max(bounds.getWidth(), 1) - 1);
+        int maxY = toGrid(bounds.getY() + Math.max(bounds.getHeight(), 1) - 1);
+        if (minX == entry.minX && minY == entry.minY && maxX == entry.maxX && maxY == entry.maxY) {
+            return;
+        }
+        
+        entry.removeFromAll();
+        insert(entry, bounds);
+    }
+    
+    public void updateObjectLocation(Actor object, int oldX, int oldY)
+    {
+        updateObject(object);
+    }
+
+    public void updateObjectSize(Actor object)
+    {
+        updateObject(object);
+    }
+    
+    /**
+     * Find all actors stored in the grid cells overlapping the given pixel area
+     * which match the given query.
+     */
+    private List<Actor> getIntersectingObjects(int x, int y, int w, int h, CollisionQuery query)
+    {
+        List<Actor> result = new ArrayList<Actor>();
+        if (gridSize == 0) {
+            return result;
+        }
+        
+        int minX = toGrid(x);
+        int minY = toGrid(y);
+        int maxX = toGrid(x + Math.max(w, 1) - 1);
+        int maxY = toGrid(y + Math.max(h, 1) - 1);
+        
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) > table.length) {
+            // The area covers more grid cells than there are buckets; it is
+            // cheaper to check every actor.
+            for (int i = 0; i < entryCount; i++) {
+                Actor actor = entries[i].actor;
+                if (query.checkCollision(actor)) {
+                    result.add(actor);
+                }
+            }
+            return result;
+        }
+        
+        for (int gy = minY; gy <= maxY; gy++) {
+            for (int gx = minX; gx <= maxX; gx++) {
+                GridBucket bucket = table[hash(gx, gy)];
+                if (bucket != null) {
+                    collect(bucket, gx, gy, minX, minY, query, result);
+                }
+            }
+        }
+        for (int i = 0; i < largeActors.size(); i++) {
+            Actor actor = largeActors.get(i).actor;
+            if (query.checkCollision(actor)) {
+                result.add(actor);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Collect the matching actors from the bucket of grid cell (gx, gy), in a query of the
+     * area whose top-left grid cell is (minX, minY).  An actor covering several of the
+     * area's grid cells is in the bucket of each, so it is only considered at the first of
+     * them, the one nearest the top-left; actors in the bucket only because their grid
+     * cells hash to the same bucket are ignored.
+     */
+    private static void collect(GridBucket bucket, int gx, int gy, int minX, int minY, CollisionQuery query,
+            List<Actor> result)
+    {
+        for (int i = 0; i < bucket.size(); i++) {
+            GridEntry entry = bucket.get(i);
+            if (gx == Math.max(entry.minX, minX) && gy == Math.max(entry.minY, minY)
+                    && gx <= entry.maxX && gy <= entry.maxY) {
+                if (query.checkCollision(entry.actor)) {
+                    result.add(entry.actor);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Find one actor (other than the one to ignore) stored in the grid cells
+     * overlapping the given pixel area which matches the given query.
+     */
+    private Actor getOneIntersectingObject(int x, int y, int w, int h, CollisionQuery query, Actor ignore)
+    {
+        if (gridSize == 0) {
+            return null;
+        }
+        
+        int minX = toGrid(x);
+        int minY = toGrid(y);
+        int maxX = toGrid(x + Math.max(w, 1) - 1);
+        int maxY = toGrid(y + Math.max(h, 1) - 1);
+        
+        if ((long) (maxX - minX + 1) * (maxY - minY + 1) > table.length) {
+            for (int i = 0; i < entryCount; i++) {
+                Actor actor = entries[i].actor;
+                if (actor != ignore && query.checkCollision(actor)) {
+                    return actor;
+                }
+            }
+            return null;
+        }
+        
+        for (int gy = minY; gy <= maxY; gy++) {
+            for (int gx = minX; gx <= maxX; gx++) {
+                GridBucket bucket = table[hash(gx, gy)];
+                if (bucket != null) {
+                    Actor found = findOne(bucket, query, ignore);
+                    if (found != null) {
+                        return found;
+                    }
+                }
+            }
+        }
+        return findOne(largeActors, query, ignore);
+    }
+    
+    private static Actor findOne(GridBucket bucket, CollisionQuery query, Actor ignore)
+    {
+        for (int i = 0; i < bucket.size(); i++) {
+            Actor candidate = bucket.get(i).actor;
+            if (candidate != ignore && query.checkCollision(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> List<T> getObjectsAt(int x, int y, Class<T> cls)
+    {
+        PointCollisionQuery pointQuery = queries.get().pointQuery;
+        int px = x * cellSize + cellSize / 2;
+        int py = y * cellSize + cellSize / 2;
+        pointQuery.init(px, py, cls);
+        return (List<T>) getIntersectingObjects(px, py, 1, 1, pointQuery);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> List<T> getIntersectingObjects(Actor actor, Class<T> cls)
+    {
+        Rect r = ActorVisitor.getBoundingRect(actor);
+        GOCollisionQuery actorQuery = queries.get().actorQuery;
+        actorQuery.init(cls, actor);
+        return (List<T>) getIntersectingObjects(r.getX(), r.getY(), r.getWidth(), r.getHeight(), actorQuery);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> List<T> getObjectsInRange(int x, int y, int r, Class<T> cls)
+    {
+        int halfCell = cellSize / 2;
+        int px = x * cellSize + halfCell;
+        int py = y * cellSize + halfCell;
+        int pr = r * cellSize;
+        
+        // Actors are found by their location, which is at the centre of their
+        // bounds give or take a pixel; widen the area to be sure.
+        Queries q = queries.get();
+        q.actorQuery.init(cls, null);
+        List<T> result = (List<T>) getIntersectingObjects(px - pr - 1, py - pr - 1, 2 * pr + 3, 2 * pr + 3,
+                q.actorQuery);
+        
+        Iterator<T> i = result.iterator();
+        q.inRangeQuery.init(px, py, pr);
+        while (i.hasNext()) {
+            if (! q.inRangeQuery.checkCollision(i.next())) {
+                i.remove();
+            }
+        }
+        
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> List<T> getNeighbours(Actor actor, int distance, boolean diag, Class<T> cls)
+    {
+        int x = ActorVisitor.getX(actor);
+        int y = ActorVisitor.getY(actor);
+        int xPixel = (x - distance) * cellSize;
+        int yPixel = (y - distance) * cellSize;
+        int size = (distance * 2 + 1) * cellSize;
+        
+        NeighbourCollisionQuery neighbourQuery = queries.get().neighbourQuery;
+        neighbourQuery.init(x, y, distance, diag, cls);
+        return (List<T>) getIntersectingObjects(xPixel - 1, yPixel - 1, size + 2, size + 2, neighbourQuery);
+    }
+
+    public <T extends Actor> List<T> getObjectsInDirection(int x, int y, int angle, int length, Class<T> cls)
+    {
+        // non-functional, as for the other checkers
+        return new ArrayList<T>();
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> List<T> getObjects(Class<T> cls)
+    {
+        List<T> result = new ArrayList<T>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            Actor actor = entries[i].actor;
+            if (cls == null || cls.isInstance(actor)) {
+                result.add((T) actor);
+            }
+        }
+        return result;
+    }
+
+    public List<Actor> getObjectsList()
+    {
+        return getObjects(null);
+    }
+
+    public void startSequence()
+    {
+        // Nothing necessary.
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> T getOneObjectAt(Actor object, int dx, int dy, Class<T> cls)
+    {
+        PointCollisionQuery pointQuery = queries.get().pointQuery;
+        int px = dx * cellSize + cellSize / 2;
+        int py = dy * cellSize + cellSize / 2;
+        pointQuery.init(px, py, cls);
+        return (T) getOneIntersectingObject(px, py, 1, 1, pointQuery, object);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Actor> T getOneIntersectingObject(Actor actor, Class<T> cls)
+    {
+        Rect r = ActorVisitor.getBoundingRect(actor);
+        GOCollisionQuery actorQuery = queries.get().actorQuery;
+        actorQuery.init(cls, actor);
+        return (T) getOneIntersectingObject(r.getX(), r.getY(), r.getWidth(), r.getHeight(), actorQuery, actor);
+    }
+
+    public void paintDebug(Graphics g)
+    {
+        if (gridSize == 0) {
+            return;
+        }
+        
+        Color oldColor = g.getColor();
+        g.setColor(Color.RED);
+        int pixelWidth = width * cellSize;
+        int pixelHeight = height * cellSize;
+        for (int x = 0; x <= pixelWidth; x += gridSize) {
+            g.drawLine(x, 0, x, pixelHeight);
+        }
+        for (int y = 0; y <= pixelHeight; y += gridSize) {
+            g.drawLine(0, y, pixelWidth, y);
+        }
+        g.setColor(oldColor);
+    }
+}
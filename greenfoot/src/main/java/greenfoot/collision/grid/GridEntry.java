@@ -0,0 +1,110 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision.grid;
+
+import greenfoot.Actor;
+
+/**
+ * The spatial hash's record for a single actor. It holds the range of grid cells
+ * which the actor's bounds currently cover, and the buckets (and the slots within
+ * those buckets) the actor is stored in.
+ * 
+ * <p>The arrays are reused when the actor moves, so that repositioning an actor
+ * does not need to allocate once they have grown to the actor's usual extent.
+ */
+final class GridEntry
+{
+    final Actor actor;
+    
+    /** Range of grid cells covered (inclusive), as last inserted */
+    int minX, minY, maxX, maxY;
+    
+    /** The buckets this entry is currently stored in */
+    GridBucket[] buckets = new GridBucket[4];
+    /** The slot of this entry in each of the buckets */
+    int[] slots = new int[4];
+    int bucketCount;
+    
+    /** Index of this entry in the checker's list of all entries */
+    int index;
+    
+    GridEntry(Actor actor)
+    {
+        this.actor = actor;
+    }
+    
+    /**
+     * Check whether this entry is already stored in the given bucket.
+     */
+    boolean isIn(GridBucket bucket)
+    {
+        for (int i = 0; i < bucketCount; i++) {
+            if (buckets[i] == bucket) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Store this entry in the given bucket.
+     */
+    void addTo(GridBucket bucket)
+    {
+        if (bucketCount == buckets.length) {
+            GridBucket[] newBuckets = new GridBucket[bucketCount * 2];
+            System.arraycopy(buckets, 0, newBuckets, 0, bucketCount);
+            buckets = newBuckets;
+            int[] newSlots = new int[bucketCount * 2];
+            System.arraycopy(slots, 0, newSlots, 0, bucketCount);
+            slots = newSlots;
+        }
+        buckets[bucketCount] = bucket;
+        slots[bucketCount] = bucket.add(this);
+        bucketCount++;
+    }
+    
+    /**
+     * Remove this entry from all the buckets it is stored in.
+     */
+    void removeFromAll()
+    {
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i].remove(slots[i]);
+            buckets[i] = null;
+        }
+        bucketCount = 0;
+    }
+    
+    /**
+     * Notification from a bucket that this entry has been moved to a different slot.
+     */
+    void slotMoved(GridBucket bucket, int newSlot)
+    {
+        for (int i = 0; i < bucketCount; i++) {
+            if (buckets[i] == bucket) {
+                slots[i] = newSlot;
+                return;
+            }
+        }
+    }
+}
@@ -77,9 +77,12 @@ public final class BSPNode
         }
     }
     
+    /**
+     * Set the area of this node (the given rect is copied).
+     */
     public void setArea(Rect area)
     {
-        this.area = area;
+        this.area.copyFrom(area);
         areaRipple = true;
     }
     
@@ -110,22 +113,42 @@ public final class BSPNode
     }
 
     public Rect getLeftArea()
+    {
+        Rect leftArea = new Rect(0, 0, 0, 0);
+        getLeftArea(leftArea);
+        return leftArea;
+    }
+    
+    /**
+     * Set the given rect to the area of the left child.
+     */
+    public void getLeftArea(Rect leftArea)
     {
         if (splitAxis == IBSPColChecker.X_AXIS) {
-            return new Rect(area.getX(), area.getY(), splitPos - area.getX(), area.getHeight());
+            leftArea.set(area.getX(), area.getY(), splitPos - area.getX(), area.getHeight());
         }
         else {
-            return new Rect(area.getX(), area.getY(), area.getWidth(), splitPos - area.getY());
+            leftArea.set(area.getX(), area.getY(), area.getWidth(), splitPos - area.getY());
         }
     }
     
     public Rect getRightArea()
+    {
+        Rect rightArea = new Rect(0, 0, 0, 0);
+        getRightArea(rightArea);
+        return rightArea;
+    }
+    
+    /**
+     * Set the given rect to the area of the right child.
+     */
+    public void getRightArea(Rect rightArea)
     {
         if (splitAxis == IBSPColChecker.X_AXIS) {
-            return new Rect(splitPos, area.getY(), area.getRight() - splitPos, area.getHeight());
+            rightArea.set(splitPos, area.getY(), area.getRight() - splitPos, area.getHeight());
         }
         else {
-            return new Rect(area.getX(), splitPos, area.getWidth(), area.getTop() - splitPos);
+            rightArea.set(area.getX(), splitPos, area.getWidth(), area.getTop() - splitPos);
         }
     }
     
@@ -141,10 +164,12 @@ public final class BSPNode
     private void resizeChildren()
     {
         if (left != null) {
-            left.setArea(getLeftArea());
+            getLeftArea(left.area);
+            left.areaRipple = true;
         }
         if (right != null) {
-            right.setArea(getRightArea());
+            getRightArea(right.area);
+            right.areaRipple = true;
         }
     }
     
@@ -166,6 +191,29 @@ public final class BSPNode
         return right;
     }
     
+    /**
+     * Apply any pending area changes to this node's descendants. Until the area of a
+     * node in this subtree changes again, getLeft() and getRight() will then not modify
+     * the tree, so that it can be traversed by several threads at once.
+     */
+    public void rippleAreas()
+    {
+        LinkedList<BSPNode> nodeStack = new LinkedList<BSPNode>();
+        nodeStack.add(this);
+        
+        while (! nodeStack.isEmpty()) {
+            BSPNode node = nodeStack.removeLast();
+            BSPNode left = node.getLeft();
+            BSPNode right = node.getRight();
+            if (left != null) {
+                nodeStack.add(left);
+            }
+            if (right != null) {
+                nodeStack.add(right);
+            }
+        }
+    }
+    
     public BSPNode getParent()
     {
         return parent;
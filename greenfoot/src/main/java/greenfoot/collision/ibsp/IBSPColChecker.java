@@ -36,6 +36,13 @@ import java.util.*;
  * two non-overlapping child nodes which together cover the same area as their
  * parent.
  * 
+ * <p>Node areas are updated lazily: a change to the area of a node is applied to its
+ * children when they are next fetched, which may be during a query. After a call to
+ * {@link #rippleAreas()} queries do not modify the checker, and as each thread has its
+ * own query objects, any number of threads may then query at once without locking, as
+ * long as no actor is added, removed, moved or resized meanwhile. Actors acting in
+ * parallel (see {@link greenfoot.World#setParallelAct(Class...)}) rely on this.
+ * 
  * @author Davin McCall
  */
 public class IBSPColChecker implements CollisionChecker
@@ -49,15 +56,31 @@ public class IBSPColChecker implements CollisionChecker
     
     public static final int REBALANCE_THRESHOLD = 20;
     
-    private GOCollisionQuery actorQuery = new GOCollisionQuery();
-    private NeighbourCollisionQuery neighbourQuery = new NeighbourCollisionQuery();
-    private PointCollisionQuery pointQuery = new PointCollisionQuery();
-    private InRangeQuery inRangeQuery = new InRangeQuery();
+    /** Below this many actors, a bulk add just adds the actors one at a time */
+    private static final int BULK_THRESHOLD = 32;
+    /** Maximum number of actors in a leaf node of a tree built by a bulk add */
+    private static final int BULK_LEAF_SIZE = 4;
+    
+    /**
+     * The query objects used by one thread.
+     */
+    private static class Queries
+    {
+        final GOCollisionQuery actorQuery = new GOCollisionQuery();
+        final NeighbourCollisionQuery neighbourQuery = new NeighbourCollisionQuery();
+        final PointCollisionQuery pointQuery = new PointCollisionQuery();
+        final InRangeQuery inRangeQuery = new InRangeQuery();
+    }
+    
+    private final ThreadLocal<Queries> queries = ThreadLocal.withInitial(Queries::new);
     
     private int cellSize;
     
     private BSPNode bspTree;
     
+    /** Scratch space for the area of a child node, used while inserting actors. */
+    private final Rect childArea = new Rect(0, 0, 0, 0);
+    
     public static boolean debugging = false;
     
     /* (non-Javadoc)
@@ -151,11 +174,179 @@ public class IBSPColChecker implements CollisionChecker
                 }
             }
             
-            insertObject(actor, bounds, bounds, treeArea, bspTree);
+            insertObject(actor, bounds, bounds.getX(), bounds.getY(), bounds.getRight(), bounds.getTop(), bspTree);
+        }
+        // checkConsistency(true);
+    }
+    
+    /*
+     * @see greenfoot.collision.CollisionChecker#addObjects(java.util.Collection)
+     */
+    public void addObjects(Collection<? extends Actor> actors)
+    {
+        if (actors.size() < BULK_THRESHOLD) {
+            for (Actor actor : actors) {
+                addObject(actor);
+            }
+            return;
+        }
+        
+        // Build the whole tree afresh, including any actors already in it. If the
+        // existing tree is much larger than the number of actors being added,
+        // inserting them individually is cheaper.
+        List<Actor> allActors = getObjects(null);
+        if (actors.size() < allActors.size() / 2) {
+            for (Actor actor : actors) {
+                addObject(actor);
+            }
+            return;
+        }
+        
+        clearTree();
+        allActors.addAll(actors);
+        
+        int minX = Integer.MAX_VALUE;
+        int minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for (Actor actor : allActors) {
+            Rect bounds = getActorBounds(actor);
+            minX = Math.min(minX, bounds.getX());
+            minY = Math.min(minY, bounds.getY());
+            maxX = Math.max(maxX, bounds.getRight());
+            maxY = Math.max(maxY, bounds.getTop());
         }
+        Rect area = new Rect(minX, minY, Math.max(maxX - minX, 1), Math.max(maxY - minY, 1));
+        bspTree = buildTree(allActors, area);
         // checkConsistency(true);
     }
     
+    /**
+     * Remove all actors and nodes from the tree.
+     */
+    private void clearTree()
+    {
+        LinkedList<BSPNode> nodeStack = new LinkedList<BSPNode>();
+        if (bspTree != null) {
+            nodeStack.add(bspTree);
+        }
+        
+        while (! nodeStack.isEmpty()) {
+            BSPNode node = nodeStack.removeLast();
+            Iterator<Actor> i = node.getActorsIterator();
+            while (i.hasNext()) {
+                setNodeForActor(i.next(), null);
+            }
+            BSPNode left = node.getLeft();
+            BSPNode right = node.getRight();
+            if (left != null) {
+                nodeStack.add(left);
+            }
+            if (right != null) {
+                nodeStack.add(right);
+            }
+            node.setChild(PARENT_LEFT, null);
+            node.setChild(PARENT_RIGHT, null);
+            BSPNodeCache.returnNode(node);
+        }
+        bspTree = null;
+    }
+    
+    /**
+     * Build a balanced tree for the given actors, covering the given area (which
+     * must contain the bounds of all the actors). Each node is split at the median
+     * of the centres of its actors along the longer axis of its area. Actors which
+     * straddle the split are stored in the node itself; the others are passed down
+     * to the child on their side.
+     * 
+     * @return  The root node of the new tree
+     */
+    private BSPNode buildTree(List<Actor> actors, Rect area)
+    {
+        int splitAxis;
+        int start, end;
+        if (area.getWidth() > area.getHeight()) {
+            splitAxis = X_AXIS;
+            start = area.getX();
+            end = area.getRight();
+        }
+        else {
+            splitAxis = Y_AXIS;
+            start = area.getY();
+            end = area.getTop();
+        }
+        
+        int [] centres = new int[actors.size()];
+        for (int i = 0; i < centres.length; i++) {
+            Rect bounds = getActorBounds(actors.get(i));
+            centres[i] = (splitAxis == X_AXIS) ? bounds.getMiddleX() : bounds.getMiddleY();
+        }
+        Arrays.sort(centres);
+        int splitPos = centres[centres.length / 2];
+        if (splitPos <= start || splitPos >= end) {
+            splitPos = (start + end) / 2;
+        }
+        
+        BSPNode node = BSPNodeCache.getBSPNode();
+        node.setArea(area);
+        node.setSplitAxis(splitAxis);
+        node.setSplitPos(splitPos);
+        
+        if (actors.size() <= BULK_LEAF_SIZE || splitPos <= start) {
+            // Few actors, or an area too small to split
+            for (Actor actor : actors) {
+                node.addActor(actor);
+            }
+            return node;
+        }
+        
+        List<Actor> leftActors = new ArrayList<Actor>();
+        List<Actor> rightActors = new ArrayList<Actor>();
+        for (Actor actor : actors) {
+            Rect bounds = getActorBounds(actor);
+            int low, high;
+            if (splitAxis == X_AXIS) {
+                low = bounds.getX();
+                high = low + Math.max(bounds.getWidth(), 1);
+            }
+            else {
+                low = bounds.getY();
+                high = low + Math.max(bounds.getHeight(), 1);
+            }
+            
+            if (high <= splitPos) {
+                leftActors.add(actor);
+            }
+            else if (low >= splitPos) {
+                rightActors.add(actor);
+            }
+            else {
+                node.addActor(actor);
+            }
+        }
+        
+        if (! leftActors.isEmpty()) {
+            node.setChild(PARENT_LEFT, buildTree(leftActors, node.getLeftArea()));
+        }
+        if (! rightActors.isEmpty()) {
+            node.setChild(PARENT_RIGHT, buildTree(rightActors, node.getRightArea()));
+        }
+        
+        if (node.isEmpty() && (leftActors.isEmpty() || rightActors.isEmpty())) {
+            // Don't keep an empty node with a single child; let the child
+            // take over its area instead (as checkRemoveNode would).
+            int side = leftActors.isEmpty() ? PARENT_RIGHT : PARENT_LEFT;
+            BSPNode child = (side == PARENT_LEFT) ? node.getLeft() : node.getRight();
+            node.setChild(side, null);
+            BSPNodeCache.returnNode(node);
+            child.getArea().copyFrom(area);
+            child.areaChanged();
+            child.setParent(null);
+            return child;
+        }
+        return node;
+    }
+    
     /**
      * Check the consistency of the tree, useful for debugging.
      */
@@ -209,11 +400,11 @@ public class IBSPColChecker implements CollisionChecker
      * 
      * @param actor   The actor to insert
      * @param actorBounds  The total bounds of the actor
-     * @param bounds  The bounds of the actor (limited to the present area)
-     * @param area    The total area represented by the current search node
-     * @param node    The current search node (null, if the search has reached its end!)
+     * @param x, y, r, t   The bounds of the actor (limited to the area of the current search
+     *                     node): left, top, right and bottom
+     * @param node    The current search node
      */
-    private void insertObject(Actor actor, Rect actorBounds, Rect bounds, Rect area, BSPNode node)
+    private void insertObject(Actor actor, Rect actorBounds, int x, int y, int r, int t, BSPNode node)
     {
         // the current search node might already contain the
         // actor...
@@ -223,6 +414,7 @@ public class IBSPColChecker implements CollisionChecker
 
         // If there's no actor at all in the node yet, then we can stop here.
         // Also, if the area is sufficiently small, there's no point subdividing it.
+        Rect area = node.getArea();
         if (node.isEmpty() || (area.getWidth() <= actorBounds.getWidth()
                 && area.getHeight() <= actorBounds.getHeight())) {
             node.addActor(actor);
@@ -230,32 +422,42 @@ public class IBSPColChecker implements CollisionChecker
         }
 
         // The search continues...
-        Rect leftArea = node.getLeftArea();
-        Rect rightArea = node.getRightArea();
-
-        Rect leftIntersects = Rect.getIntersection(leftArea, bounds);
-        Rect rightIntersects = Rect.getIntersection(rightArea, bounds);
-
-        if (leftIntersects != null) {
-            if (node.getLeft() == null) {
-                BSPNode newLeft = createNewNode(leftArea);
-                newLeft.addActor(actor);
-                node.setChild(PARENT_LEFT, newLeft);
-            }
-            else {
-                insertObject(actor, actorBounds, leftIntersects, leftArea, node.getLeft());
-            }
+        insertIntoChild(actor, actorBounds, x, y, r, t, node, PARENT_LEFT);
+        insertIntoChild(actor, actorBounds, x, y, r, t, node, PARENT_RIGHT);
+    }
+    
+    /**
+     * Insert an actor into the child on one side of a node, if the actor's bounds (limited
+     * to the node's area) intersect the child's area. The child is created if necessary.
+     */
+    private void insertIntoChild(Actor actor, Rect actorBounds, int x, int y, int r, int t, BSPNode node, int side)
+    {
+        // childArea is overwritten by the recursive insertion, so use it before that:
+        BSPNode child;
+        if (side == PARENT_LEFT) {
+            node.getLeftArea(childArea);
+            child = node.getLeft();
         }
-
-        if (rightIntersects != null) {
-            if (node.getRight() == null) {
-                BSPNode newRight = createNewNode(rightArea);
-                newRight.addActor(actor);
-                node.setChild(PARENT_RIGHT, newRight);
-            }
-            else {
-                insertObject(actor, actorBounds, rightIntersects, rightArea, node.getRight());
-            }
+        else {
+            node.getRightArea(childArea);
+            child = node.getRight();
+        }
+        
+        int i_x = Math.max(x, childArea.getX());
+        int i_r = Math.min(r, childArea.getRight());
+        int i_y = Math.max(y, childArea.getY());
+        int i_t = Math.min(t, childArea.getTop());
+        if (i_x >= i_r || i_y >= i_t) {
+            return;
+        }
+        
+        if (child == null) {
+            BSPNode newChild = createNewNode(childArea);
+            newChild.addActor(actor);
+            node.setChild(side, newChild);
+        }
+        else {
+            insertObject(actor, actorBounds, i_x, i_y, i_r, i_t, child);
         }
     }
     
@@ -482,7 +684,6 @@ public class IBSPColChecker implements CollisionChecker
         // and do a re-insertion.
         node = getNodeForActor(object);
         BSPNode bspNode;
-        Rect bspArea;
         if (node != null) {
             bspNode = node.getBSPNode();
             while (bspNode != null && ! bspNode.getArea().contains(newBounds)) {
@@ -506,9 +707,8 @@ public class IBSPColChecker implements CollisionChecker
             bspNode = bspTree;
         }
                 
-        // Note, we can pass null as the parent because bspNode is guaranteed not to be null.
-        bspArea = bspNode.getArea();
-        insertObject(object, newBounds, newBounds, bspArea, bspNode);
+        insertObject(object, newBounds, newBounds.getX(), newBounds.getY(),
+                newBounds.getRight(), newBounds.getTop(), bspNode);
         
         // Finally, it's possible the object changed size and therefore has been stored
         // in higher nodes than previously. This means there are duplicate actor nodes.
@@ -698,12 +898,11 @@ public class IBSPColChecker implements CollisionChecker
     @SuppressWarnings("unchecked")
     public <T extends Actor> List<T> getObjectsAt(int x, int y, Class<T> cls)
     {
-        synchronized (pointQuery) {
-            int px = x * cellSize + cellSize / 2;
-            int py = y * cellSize + cellSize / 2;
-            pointQuery.init(px, py, cls);
-            return (List<T>) getIntersectingObjects(new Rect(px, py, 1, 1), pointQuery);
-        }
+        PointCollisionQuery pointQuery = queries.get().pointQuery;
+        int px = x * cellSize + cellSize / 2;
+        int py = y * cellSize + cellSize / 2;
+        pointQuery.init(px, py, cls);
+        return (List<T>) getIntersectingObjects(new Rect(px, py, 1, 1), pointQuery);
     }
 
     @SuppressWarnings("unchecked")
@@ -712,10 +911,9 @@ public class IBSPColChecker implements CollisionChecker
     {
         Rect r = getActorBounds(actor);
         
-        synchronized (actorQuery) {
-            actorQuery.init(cls, actor);
-            return (List<T>) getIntersectingObjects(r, actorQuery);
-        }
+        GOCollisionQuery actorQuery = queries.get().actorQuery;
+        actorQuery.init(cls, actor);
+        return (List<T>) getIntersectingObjects(r, actorQuery);
     }
 
     @SuppressWarnings("unchecked")
@@ -730,19 +928,15 @@ public class IBSPColChecker implements CollisionChecker
                 size,
                 size);
         
-        List<T> result;
-        synchronized (actorQuery) {
-            actorQuery.init(cls, null);
-            result = (List<T>) getIntersectingObjects(rect, actorQuery);
-        }
+        Queries q = queries.get();
+        q.actorQuery.init(cls, null);
+        List<T> result = (List<T>) getIntersectingObjects(rect, q.actorQuery);
         
         Iterator<T> i = result.iterator();
-        synchronized (inRangeQuery) {
-            inRangeQuery.init(x * cellSize + halfCell , y * cellSize + halfCell, r * cellSize);
-            while (i.hasNext()) {
-                if (! inRangeQuery.checkCollision(i.next())) {
-                    i.remove();
-                }
+        q.inRangeQuery.init(x * cellSize + halfCell , y * cellSize + halfCell, r * cellSize);
+        while (i.hasNext()) {
+            if (! q.inRangeQuery.checkCollision(i.next())) {
+                i.remove();
             }
         }
         
@@ -761,11 +955,10 @@ public class IBSPColChecker implements CollisionChecker
         
         Rect r = new Rect(xPixel - dPixel, yPixel - dPixel, dPixel * 2 + 1, dPixel * 2 + 1);
         
-        synchronized (neighbourQuery) {
-            neighbourQuery.init(x, y, distance, diag, cls);
-            List<T> res = (List<T>) getIntersectingObjects(r, neighbourQuery);
-            return res;
-        }
+        NeighbourCollisionQuery neighbourQuery = queries.get().neighbourQuery;
+        neighbourQuery.init(x, y, distance, diag, cls);
+        List<T> res = (List<T>) getIntersectingObjects(r, neighbourQuery);
+        return res;
     }
 
     public <T extends Actor> List<T> getObjectsInDirection(int x, int y,
@@ -813,6 +1006,17 @@ public class IBSPColChecker implements CollisionChecker
         return getObjects(null);
     }
 
+    /**
+     * Apply all pending changes to the areas of the tree's nodes, so that queries do
+     * not modify the tree until actors are next added, removed, moved or resized.
+     */
+    public void rippleAreas()
+    {
+        if (bspTree != null) {
+            bspTree.rippleAreas();
+        }
+    }
+
     public final void startSequence()
     {
         // Nothing necessary.
@@ -822,43 +1026,41 @@ public class IBSPColChecker implements CollisionChecker
     public <T extends Actor> T getOneObjectAt(Actor object, int dx, int dy,
             Class<T> cls)
     {
-        synchronized (pointQuery) {
-            int px = dx * cellSize + cellSize / 2;
-            int py = dy * cellSize + cellSize / 2;
-            pointQuery.init(px, py, cls);
-            CollisionQuery query = pointQuery;
-            if (cls != null) {
-                query = new ClassQuery(cls, pointQuery);
-            }
-            // Use of getOneIntersectingDown is ok, because the area is only 1x1 pixel
-            // in size - it will be contained by all nodes.
-            return (T) getOneIntersectingDown(new Rect(px, py, 1, 1), query, object);
+        PointCollisionQuery pointQuery = queries.get().pointQuery;
+        int px = dx * cellSize + cellSize / 2;
+        int py = dy * cellSize + cellSize / 2;
+        pointQuery.init(px, py, cls);
+        CollisionQuery query = pointQuery;
+        if (cls != null) {
+            query = new ClassQuery(cls, pointQuery);
         }
+        // Use of getOneIntersectingDown is ok, because the area is only 1x1 pixel
+        // in size - it will be contained by all nodes.
+        return (T) getOneIntersectingDown(new Rect(px, py, 1, 1), query, object);
     }
 
     @SuppressWarnings("unchecked")
     public <T extends Actor> T getOneIntersectingObject(Actor actor, Class<T> cls)
     {
         Rect r = getActorBounds(actor);
-        synchronized (actorQuery) {
-            actorQuery.init(cls, actor);
-            
-            ActorNode node = getNodeForActor(actor);
-            do {
-                BSPNode bspNode = node.getBSPNode();
-                T ret = (T) getOneObjectDownTree(actor, r, actorQuery, bspNode);
-                if (ret != null) {
-                    return ret;
-                }
-                ret = (T) getOneIntersectingUp(r, actorQuery, actor, bspNode.getParent());
-                if (ret != null) {
-                    return ret;
-                }
-                node = node.getNext();
+        GOCollisionQuery actorQuery = queries.get().actorQuery;
+        actorQuery.init(cls, actor);
+        
+        ActorNode node = getNodeForActor(actor);
+        do {
+            BSPNode bspNode = node.getBSPNode();
+            T ret = (T) getOneObjectDownTree(actor, r, actorQuery, bspNode);
+            if (ret != null) {
+                return ret;
             }
-            while (node != null);
-            return (T) getOneIntersectingDown(r, actorQuery, actor);
+            ret = (T) getOneIntersectingUp(r, actorQuery, actor, bspNode.getParent());
+            if (ret != null) {
+                return ret;
+            }
+            node = node.getNext();
         }
+        while (node != null);
+        return (T) getOneIntersectingDown(r, actorQuery, actor);
     }
 
     public void paintDebug(Graphics g)
@@ -41,6 +41,14 @@ final public class Rect
         this.height = other.height;
     }
     
+    public void set(int x, int y, int width, int height)
+    {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+    
     public String toString()
     {
         return ("rect (" + x + "," + y + ")-(" + (x + width) + "," + (y + height) + ")");
@@ -0,0 +1,152 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import greenfoot.sound.SoundFactory;
+import greenfoot.util.GreenfootUtil;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads image and sound files in the background, so that they are decoded and cached
+ * (in the {@link ImageCache} and the sound clip cache) before they are first used.
+ * Images are loaded by the image cache's preload thread; sounds are looked up on a
+ * thread of our own, and decoded by the clip cache.  The number of files requested and
+ * completed since a world was last constructed is sent to the IDE, which shows the
+ * progress while the world is constructed.
+ */
+@OnThread(Tag.Any)
+public class AssetPreloader
+{
+    private static final String[] SOUND_EXTENSIONS = { ".wav", ".aif", ".aiff", ".au", ".mp3", ".mid", ".midi" };
+    
+    private static final AssetPreloader instance = new AssetPreloader();
+    
+    private final ExecutorService soundWorker;
+    // The progress since the last reset, which increments the generation; files requested
+    // before then are not counted when they complete:
+    private int requested;
+    private int completed;
+    private int generation;
+    
+    private AssetPreloader()
+    {
+        soundWorker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Greenfoot sound preloader");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+    
+    /**
+     * Get the preloader instance.
+     */
+    public static AssetPreloader getInstance()
+    {
+        return instance;
+    }
+    
+    /**
+     * Start loading the given file in the background.  Sound files are recognised by their
+     * extension; any other file is loaded as an image.  Files which cannot be loaded are
+     * ignored (the problem is reported when they are used).
+     */
+    public void preload(String fileName)
+    {
+        int requestGeneration;
+        synchronized (this) {
+            requested++;
+            requestGeneration = generation;
+        }
+        if (isSoundFile(fileName)) {
+            // Counted once the sound is decoded, which the sound's cache does in the background:
+            soundWorker.execute(() -> SoundFactory.getInstance().preloadSound(fileName)
+                    .whenComplete((r, e) -> completed(requestGeneration)));
+        }
+        else {
+            ImageCache.getInstance().preload(fileName).thenRun(() -> completed(requestGeneration));
+        }
+    }
+    
+    private synchronized void completed(int requestGeneration)
+    {
+        if (requestGeneration == generation) {
+            completed++;
+        }
+    }
+    
+    /**
+     * Start loading all the files in the scenario's images and sounds directories.
+     */
+    public void preloadAll()
+    {
+        for (String fileName : GreenfootUtil.getImageFiles()) {
+            preload(fileName);
+        }
+        for (String fileName : GreenfootUtil.getSoundFiles()) {
+            preload(fileName);
+        }
+    }
+    
+    /**
+     * Start counting the progress again from nothing, as a new world is about to be
+     * constructed.  Files already requested are still loaded.
+     */
+    public synchronized void reset()
+    {
+        generation++;
+        requested = 0;
+        completed = 0;
+    }
+    
+    /**
+     * Get the number of files which have been requested to be loaded.
+     */
+    public synchronized int getRequested()
+    {
+        return requested;
+    }
+    
+    /**
+     * Get the number of requested files which have finished loading (or failed to load).
+     */
+    public synchronized int getCompleted()
+    {
+        return completed;
+    }
+    
+    private static boolean isSoundFile(String fileName)
+    {
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        for (String extension : SOUND_EXTENSIONS) {
+            if (lowerCaseName.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -24,6 +24,7 @@ package greenfoot.core;
 import bluej.BlueJPropStringSource;
 import greenfoot.platforms.ide.GreenfootUtilDelegateIDE;
 import greenfoot.util.GreenfootUtil;
+import greenfoot.vmcomm.VMCommsMain;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -56,7 +57,7 @@ public class GreenfootLauncherDebugVM
      * @param prjDir         The project directory
      * @param rmiServiceName  The name of the RMI service to connect to
      */
-    public GreenfootLauncherDebugVM(String prjDir, String libDirPath, String userPrefDirPath, String propsFilePath, String shmFilePath, String shmFileSize, String seqStart)
+    public GreenfootLauncherDebugVM(String prjDir, String libDirPath, String userPrefDirPath, String propsFilePath, String shmFilePath, String shmFileSize, String seqStart, String shmTransport)
     {
         instance = this;
         
@@ -92,7 +93,8 @@ public class GreenfootLauncherDebugVM
                 Debug.setDebugStream(new PrintWriter(System.err));
                 
                 GreenfootUtil.initialise(GreenfootUtilDelegateIDE.getInstance());
-                GreenfootMain.initialize(prjDir, shmFilePath, Integer.parseInt(shmFileSize), Integer.parseInt(seqStart));
+                GreenfootMain.initialize(prjDir, shmFilePath, Integer.parseInt(shmFileSize), Integer.parseInt(seqStart),
+                        VMCommsMain.Transport.valueOf(shmTransport));
             }
         }.start();
     }
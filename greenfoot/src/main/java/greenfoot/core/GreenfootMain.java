@@ -22,6 +22,7 @@
 package greenfoot.core;
 
 import greenfoot.event.SimulationListener;
+import greenfoot.vmcomm.VMCommsMain;
 import greenfoot.vmcomm.VMCommsSimulation;
 import greenfoot.platforms.ide.ActorDelegateIDE;
 import greenfoot.platforms.ide.WorldHandlerDelegateIDE;
@@ -84,13 +85,15 @@ public class GreenfootMain
      * 
      * @param projDir     The project directory
      * @param shmFilePath The path to the shared-memory file to be mmap-ed for communication
+     * @param shmTransport How the VMs signal each other through the shared-memory file
      */
     @OnThread(Tag.Any)
-    public static void initialize(String projDir, String shmFilePath, int shmFileSize, int seqStart)
+    public static void initialize(String projDir, String shmFilePath, int shmFileSize, int seqStart,
+            VMCommsMain.Transport shmTransport)
     {
         System.setProperty("apple.laf.useScreenMenuBar", "true");
         if (instance == null) {
-            instance = new GreenfootMain(projDir, shmFilePath, shmFileSize, seqStart);
+            instance = new GreenfootMain(projDir, shmFilePath, shmFileSize, seqStart, shmTransport);
         }
     }
 
@@ -108,7 +111,8 @@ public class GreenfootMain
      * Constructor is private. This class is initialised via the 'initialize'
      * method (above).
      */
-    private GreenfootMain(String projDir, String shmFilePath, int shmFileSize, int seqStart)
+    private GreenfootMain(String projDir, String shmFilePath, int shmFileSize, int seqStart,
+            VMCommsMain.Transport shmTransport)
     {
         instance = this;
         try {
@@ -125,7 +129,8 @@ public class GreenfootMain
                     Platform.setImplicitExit(false);
 
                     // Some first-time initializations
-                    VMCommsSimulation vmComms = new VMCommsSimulation(projectProperties, shmFilePath, shmFileSize, seqStart);
+                    VMCommsSimulation vmComms = new VMCommsSimulation(projectProperties, shmFilePath, shmFileSize, seqStart,
+                            shmTransport);
 
                     WorldHandlerDelegateIDE worldHandlerDelegate = new WorldHandlerDelegateIDE(vmComms);
                     WorldHandler.initialise(worldHandlerDelegate);
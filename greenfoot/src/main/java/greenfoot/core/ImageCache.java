@@ -1,58 +1,121 @@
 /*
- This file is part of the Greenfoot program. 
- Copyright (C) 2012  Poul Henriksen and Michael Kolling 
- 
- This program is free software; you can redistribute it and/or 
- modify it under the terms of the GNU General Public License 
- as published by the Free Software Foundation; either version 2 
- of the License, or (at your option) any later version. 
- 
- This program is distributed in the hope that it will be useful, 
- but WITHOUT ANY WARRANTY; without even the implied warranty of 
- MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
- GNU General Public License for more details. 
- 
- You should have received a copy of the GNU General Public License 
- along with this program; if not, write to the Free Software 
- Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
- 
- This file is subject to the Classpath exception as provided in the  
+ This file is part of the Greenfoot program.
+ Copyright (C) 2012,2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
  LICENSE.txt file that accompanied this code.
  */
 package greenfoot.core;
 
 import greenfoot.GreenfootImage;
+import greenfoot.util.GreenfootUtil;
+import threadchecker.OnThread;
+import threadchecker.Tag;
 
-import java.lang.ref.Reference;
-import java.lang.ref.ReferenceQueue;
-import java.lang.ref.SoftReference;
-import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * An image cache, which uses soft references to avoid holding images when heap space becomes exhausted.
- * 
+ * A cache of the images loaded from files, by file name.  The cache is bounded by the
+ * size of the decoded images (4 bytes per pixel); when it is full, the least recently
+ * used images are evicted.  Failures to load an image are also cached (as null).
+ *
+ * <p>Looking up an image does not lock; only adding images (when eviction may be needed)
+ * does.  The cache counts hits, misses and evictions, which are sent to the IDE with the
+ * simulation profile.
+ *
+ * <p>Images can be preloaded: loaded into the cache, in the order requested, on a background
+ * thread.  If preloading is enabled (see {@link #PRELOAD_PROPERTY}), all the images in the
+ * project's images directory are preloaded when a world is set, for as long as they fit.
+ *
  * @author Davin McCall
  */
+@OnThread(Tag.Any)
 public class ImageCache
 {
+    /**
+     * The project property which, if "true", makes all the project's images be loaded into
+     * the cache in the background when a world is set.
+     */
+    public static final String PRELOAD_PROPERTY = "images.preload";
+
+    /** The default maximum size of the cached images, in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
     private static ImageCache instance = new ImageCache();
-    
-    /** A soft reference to a cached image */
-    private class CachedImageRef extends SoftReference<GreenfootImage>
+
+    /** A cached image (which may be null), and when it was last used. */
+    private static class Entry
     {
-        String imgName;
-        
-        public CachedImageRef(String imgName, GreenfootImage image, ReferenceQueue<GreenfootImage> queue)
+        final GreenfootImage image;
+        final long bytes;
+        volatile long lastUsed;
+        // A copy of lastUsed which doesn't change while the entries are sorted for eviction:
+        long evictionOrder;
+
+        Entry(GreenfootImage image, long lastUsed)
         {
-            super(image, queue);
-            this.imgName = imgName;
+            this.image = image;
+            this.bytes = image == null ? 0 : 4L * image.getWidth() * image.getHeight();
+            this.lastUsed = lastUsed;
         }
     }
-    
-    private Map<String,CachedImageRef> imageCache = new HashMap<String,CachedImageRef>();
-    private ReferenceQueue<GreenfootImage> imgCacheRefQueue = new ReferenceQueue<GreenfootImage>();
-    
+
+    private final Map<String,Entry> imageCache = new ConcurrentHashMap<>();
+    // Incremented on each use, to order the entries by when they were last used:
+    private final AtomicLong useClock = new AtomicLong();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private volatile long maxBytes = DEFAULT_MAX_BYTES;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** An image to preload. */
+    private static class PreloadRequest
+    {
+        final String fileName;
+        // Whether to skip it if the cache is full:
+        final boolean ifRoom;
+        final CompletableFuture<Void> loaded = new CompletableFuture<>();
+
+        PreloadRequest(String fileName, boolean ifRoom)
+        {
+            this.fileName = fileName;
+            this.ifRoom = ifRoom;
+        }
+    }
+
+    private volatile boolean preloadEnabled = false;
+    // Incremented when the cache is cleared, which allows preloading on world set again:
+    private final AtomicInteger generation = new AtomicInteger();
+    private int preloadedGeneration = -1;
+    // Images waiting to be preloaded (synchronized on this):
+    private final ArrayDeque<PreloadRequest> preloadQueue = new ArrayDeque<>();
+    // The thread preloading images, if any; its lookups are not counted:
+    private volatile Thread preloadThread;
+
     /**
      * Retrieve the image cache instance.
      */
@@ -64,19 +127,21 @@ public class ImageCache
     /**
      * Requests that an image with associated name be added into the cache. The image may be null,
      * in which case the null response will be cached. Thread-safe.
-     * 
-     * @return  whether the image was cached.
+     *
+     * @return  whether the image was cached (it is not if it is bigger than the whole cache).
      */
-    public boolean addCachedImage(String fileName, GreenfootImage image) 
+    public boolean addCachedImage(String fileName, GreenfootImage image)
     {
-        synchronized (imageCache) {
-            if (image != null) {
-                CachedImageRef cr = new CachedImageRef(fileName, image, imgCacheRefQueue);
-                imageCache.put(fileName, cr);
-            }
-            else {
-                imageCache.put(fileName, null);
-            }
+        Entry entry = new Entry(image, useClock.incrementAndGet());
+        if (entry.bytes > maxBytes) {
+            removeCachedImage(fileName);
+            return false;
+        }
+
+        Entry old = imageCache.put(fileName, entry);
+        long total = totalBytes.addAndGet(entry.bytes - (old == null ? 0 : old.bytes));
+        if (total > maxBytes) {
+            evict();
         }
         return true;
     }
@@ -89,15 +154,20 @@ public class ImageCache
      *         is not cached.
      */
     public GreenfootImage getCachedImage(String fileName)
-    { 
-        synchronized (imageCache) {
-            flushImgCacheRefQueue();
-            CachedImageRef sr = imageCache.get(fileName);
-            if (sr != null) {
-                return sr.get();
+    {
+        Entry entry = imageCache.get(fileName);
+        boolean counted = Thread.currentThread() != preloadThread;
+        if (entry == null || entry.image == null) {
+            if (counted) {
+                misses.increment();
             }
             return null;
         }
+        entry.lastUsed = useClock.incrementAndGet();
+        if (counted) {
+            hits.increment();
+        }
+        return entry.image;
     }
 
     /**
@@ -106,52 +176,216 @@ public class ImageCache
      */
     public void removeCachedImage(String fileName)
     {
-        synchronized (imageCache) {
-            CachedImageRef cr = imageCache.remove(fileName);
-            if (cr != null) {
-                cr.clear();
-            }
+        Entry old = imageCache.remove(fileName);
+        if (old != null) {
+            totalBytes.addAndGet(-old.bytes);
         }
     }
 
     /**
-     * Returns true if the fileName exists in the map and the image is cached as being null; 
+     * Returns true if the fileName exists in the map and the image is cached as being null;
      * returns false if it exists and is not null or if it does not exist in the map
      */
     public boolean isNullCachedImage(String fileName)
     {
-        synchronized (imageCache) {
-            return imageCache.containsKey(fileName) && imageCache.get(fileName) == null;
-        }
+        Entry entry = imageCache.get(fileName);
+        return entry != null && entry.image == null;
     }
 
     /**
-     * Clear the image cache.
+     * Clear the image cache.  This stops any preloading, and allows it to start again
+     * when a world is next set.
      */
     public void clearImageCache()
     {
-        synchronized (imageCache) {
-            imageCache.clear();
-            imgCacheRefQueue = new ReferenceQueue<GreenfootImage>();
+        generation.incrementAndGet();
+        List<PreloadRequest> dropped;
+        synchronized (this) {
+            dropped = new ArrayList<>(preloadQueue);
+            preloadQueue.clear();
+        }
+        for (PreloadRequest request : dropped) {
+            request.loaded.complete(null);
+        }
+        for (String fileName : imageCache.keySet()) {
+            removeCachedImage(fileName);
         }
     }
 
     /**
-     * Flush the image cache reference queue.
-     * <p>
-     * Because the images are cached via soft references, the references may be cleared, but the
-     * key will still map to the (cleared) reference. Calling this method occasionally removes such
-     * dead keys.
+     * Set the maximum size of the cached images, in bytes (4 per pixel).  Images are
+     * evicted if necessary.
      */
-    private void flushImgCacheRefQueue()
+    public void setMaxBytes(long maxBytes)
     {
-        Reference<? extends GreenfootImage> ref = imgCacheRefQueue.poll();
-        while (ref != null) {
-            if (ref instanceof CachedImageRef) {
-                CachedImageRef cr = (CachedImageRef) ref;
-                imageCache.remove(cr.imgName);
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    /**
+     * Evict the least recently used images until the cache is within its size.
+     */
+    private void evict()
+    {
+        synchronized (this) {
+            if (totalBytes.get() <= maxBytes) {
+                return;
+            }
+            List<Map.Entry<String,Entry>> entries = new ArrayList<>(imageCache.entrySet());
+            for (Map.Entry<String,Entry> e : entries) {
+                e.getValue().evictionOrder = e.getValue().lastUsed;
+            }
+            entries.sort((a, b) -> Long.compare(a.getValue().evictionOrder, b.getValue().evictionOrder));
+            for (Map.Entry<String,Entry> e : entries) {
+                if (totalBytes.get() <= maxBytes) {
+                    break;
+                }
+                Entry entry = e.getValue();
+                // Failures take no space; keep them:
+                if (entry.image != null && imageCache.remove(e.getKey(), entry)) {
+                    totalBytes.addAndGet(-entry.bytes);
+                    evictions.increment();
+                }
             }
-            ref = imgCacheRefQueue.poll();
         }
     }
+
+    /**
+     * Set whether all the project's images are loaded into the cache when a world is set.
+     */
+    public void setPreloadEnabled(boolean preloadEnabled)
+    {
+        this.preloadEnabled = preloadEnabled;
+    }
+
+    /**
+     * A world has been set.  If preloading is enabled, and has not been done since the
+     * cache was last cleared, start preloading all the project's images.
+     */
+    public void worldSet()
+    {
+        if (!preloadEnabled) {
+            return;
+        }
+        synchronized (this) {
+            int currentGeneration = generation.get();
+            if (preloadedGeneration == currentGeneration) {
+                return;
+            }
+            preloadedGeneration = currentGeneration;
+        }
+        for (String fileName : GreenfootUtil.getImageFiles()) {
+            queuePreload(fileName, true);
+        }
+    }
+
+    /**
+     * Load the given image into the cache in the background, after any images already
+     * waiting to be preloaded.  Images which cannot be loaded are cached as failures.
+     *
+     * @return  A future which completes once the image is loaded (or has failed to load,
+     *          or the cache has been cleared).
+     */
+    public CompletableFuture<Void> preload(String fileName)
+    {
+        return queuePreload(fileName, false);
+    }
+
+    private synchronized CompletableFuture<Void> queuePreload(String fileName, boolean ifRoom)
+    {
+        PreloadRequest request = new PreloadRequest(fileName, ifRoom);
+        preloadQueue.add(request);
+        if (preloadThread == null) {
+            Thread thread = new Thread("Greenfoot image preloader") {
+                @Override
+                @OnThread(value = Tag.Simulation, ignoreParent = true)
+                public void run()
+                {
+                    runPreloads();
+                }
+            };
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            preloadThread = thread;
+            thread.start();
+        }
+        return request.loaded;
+    }
+
+    /**
+     * Load the queued images, until there are none left.  Runs on the preload thread.
+     */
+    @OnThread(Tag.Simulation)
+    private void runPreloads()
+    {
+        while (true) {
+            PreloadRequest request;
+            synchronized (this) {
+                request = preloadQueue.poll();
+                if (request == null) {
+                    preloadThread = null;
+                    return;
+                }
+            }
+            try {
+                if (!imageCache.containsKey(request.fileName)
+                        && (!request.ifRoom || totalBytes.get() < maxBytes)) {
+                    // Loading the image puts it in the cache:
+                    new GreenfootImage(request.fileName);
+                }
+            }
+            catch (IllegalArgumentException iae) {
+                // Not an image we can load; it is cached as a failure.
+            }
+            finally {
+                request.loaded.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Get the number of times an image was found in the cache.
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of times an image was looked for and not found in the cache.
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Get the number of images evicted to keep the cache within its size.
+     */
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of images cached (not counting failures to load).
+     */
+    public int getImageCount()
+    {
+        int count = 0;
+        for (Entry entry : imageCache.values()) {
+            if (entry.image != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the total size of the cached images, in bytes (4 per pixel).
+     */
+    public long getTotalBytes()
+    {
+        return totalBytes.get();
+    }
 }
@@ -0,0 +1,288 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.World;
+import greenfoot.WorldVisitor;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the act() methods of a run of actors (consecutive in act order) which have been
+ * marked as acting independently, using {@link World#setParallelAct(Class...)}, across
+ * a fork-join pool.
+ * 
+ * <p>While the actors are acting, changes they make to the world (moving, turning or
+ * changing the image of an actor, and adding or removing actors) are not applied, but are
+ * recorded by the thread making them. Once all the actors have acted, the recorded changes
+ * are applied on the simulation thread, in act order. So every actor in the run sees the
+ * world as it was at the start of the run, whichever thread it acts on and however many
+ * processors there are, and the collision checker is only ever modified by one thread.
+ */
+@OnThread(Tag.Simulation)
+public class ParallelActRunner
+{
+    /** The smallest number of actors to give to one task. */
+    private static final int MIN_CHUNK_SIZE = 16;
+    /** How many tasks to split a run into, per thread, to balance the load. */
+    private static final int CHUNKS_PER_THREAD = 4;
+    
+    /** Whether any actors are acting in parallel (and so may need to record changes). */
+    @OnThread(Tag.Any)
+    private static volatile boolean running;
+    /** The changes recorded by the actors acting on the current thread, if any. */
+    @OnThread(Tag.Any)
+    private static final ThreadLocal<List<Runnable>> recordedChanges = new ThreadLocal<>();
+    @OnThread(Tag.Any)
+    private static final SimulationProfiler profiler = SimulationProfiler.getInstance();
+    
+    private final int parallelism;
+    private ForkJoinPool pool;
+    
+    /** The chunks of the current run; re-used between runs. */
+    private final List<ActChunk> chunks = new ArrayList<>();
+    
+    /**
+     * Create a runner which will act actors on up to the given number of threads.  With a
+     * parallelism of 1, actors act on the calling thread (but changes are still deferred
+     * in the same way).
+     */
+    public ParallelActRunner(int parallelism)
+    {
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * Check whether changes to the world made by the current thread should be recorded,
+     * rather than applied immediately, because the thread is acting an actor in parallel.
+     */
+    @OnThread(Tag.Any)
+    public static boolean isDeferring()
+    {
+        return running && recordedChanges.get() != null;
+    }
+    
+    /**
+     * Record a change to the world, to be applied at the end of the current parallel run.
+     * Should only be called if {@link #isDeferring()} returns true.
+     */
+    @OnThread(Tag.Any)
+    public static void defer(Runnable change)
+    {
+        recordedChanges.get().add(change);
+    }
+    
+    /**
+     * Act the given actors, which must all belong to the given world.  Actors which
+     * are no longer in a world are skipped.
+     * 
+     * <p>If an actor's act() throws an exception (other than an ActInterruptedException),
+     * the changes recorded by the actors before it in act order are applied, and the
+     * exception is then re-thrown; changes from actors after it are discarded.
+     * 
+     * @param world   The world the actors are in
+     * @param actors  The actors, in act order
+     * @param from    The index of the first actor to act
+     * @param to      The index after the last actor to act
+     * @return  The first ActInterruptedException thrown by an actor, or null.
+     */
+    public ActInterruptedException act(World world, Actor[] actors, int from, int to)
+    {
+        int count = to - from;
+        if (count <= 0) {
+            return null;
+        }
+        
+        // Make sure that queries on the collision checker only read it:
+        WorldVisitor.prepareForParallelAct(world);
+        
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (count + parallelism * CHUNKS_PER_THREAD - 1)
+                / (parallelism * CHUNKS_PER_THREAD));
+        int numChunks = (count + chunkSize - 1) / chunkSize;
+        while (chunks.size() < numChunks) {
+            chunks.add(new ActChunk());
+        }
+        for (int i = 0; i < numChunks; i++) {
+            chunks.get(i).init(actors, from + i * chunkSize, Math.min(to, from + (i + 1) * chunkSize));
+        }
+        
+        running = true;
+        try {
+            if (parallelism <= 1 || numChunks == 1) {
+                for (int i = 0; i < numChunks; i++) {
+                    chunks.get(i).compute();
+                }
+            }
+            else {
+                getPool().invoke(new RecursiveAction() {
+                    @Override
+                    @OnThread(value = Tag.Simulation, ignoreParent = true)
+                    protected void compute()
+                    {
+                        invokeAll(chunks.subList(0, numChunks));
+                    }
+                });
+            }
+        }
+        finally {
+            running = false;
+        }
+        
+        // Apply the recorded changes, in act order:
+        ActInterruptedException interrupted = null;
+        try {
+            for (int i = 0; i < numChunks; i++) {
+                ActChunk chunk = chunks.get(i);
+                for (Runnable change : chunk.changes) {
+                    change.run();
+                }
+                if (interrupted == null) {
+                    interrupted = chunk.interrupted;
+                }
+                if (chunk.failure instanceof RuntimeException) {
+                    throw (RuntimeException) chunk.failure;
+                }
+                else if (chunk.failure instanceof Error) {
+                    throw (Error) chunk.failure;
+                }
+                else if (chunk.failure != null) {
+                    throw new RuntimeException(chunk.failure);
+                }
+            }
+        }
+        finally {
+            for (int i = 0; i < numChunks; i++) {
+                chunks.get(i).clear();
+            }
+        }
+        return interrupted;
+    }
+    
+    /**
+     * Get the pool to run the actors on, creating it if necessary.  The threads share the
+     * context class loader of the simulation thread, so that user code finds its resources.
+     */
+    private ForkJoinPool getPool()
+    {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism,
+                    new ActThreadFactory(Thread.currentThread().getContextClassLoader()), null, false);
+        }
+        return pool;
+    }
+    
+    /**
+     * Creates the threads for the pool, with a suitable name and context class loader.
+     */
+    private static class ActThreadFactory implements ForkJoinWorkerThreadFactory
+    {
+        private final ClassLoader loader;
+        
+        ActThreadFactory(ClassLoader loader)
+        {
+            this.loader = loader;
+        }
+        
+        @Override
+        @OnThread(value = Tag.Worker, ignoreParent = true)
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool)
+        {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Greenfoot parallel act " + thread.getPoolIndex());
+            thread.setContextClassLoader(loader);
+            return thread;
+        }
+    }
+    
+    /**
+     * A consecutive part of a run of actors, acted in order by one thread, with the
+     * changes those actors made to the world.
+     */
+    private static class ActChunk extends RecursiveAction
+    {
+        private Actor[] actors;
+        private int from;
+        private int to;
+        
+        private final List<Runnable> changes = new ArrayList<>();
+        private ActInterruptedException interrupted;
+        private Throwable failure;
+        
+        void init(Actor[] actors, int from, int to)
+        {
+            reinitialize();
+            this.actors = actors;
+            this.from = from;
+            this.to = to;
+        }
+        
+        void clear()
+        {
+            actors = null;
+            changes.clear();
+            interrupted = null;
+            failure = null;
+        }
+        
+        @Override
+        @OnThread(value = Tag.Simulation, ignoreParent = true)
+        protected void compute()
+        {
+            recordedChanges.set(changes);
+            try {
+                for (int i = from; i < to; i++) {
+                    Actor actor = actors[i];
+                    if (ActorVisitor.getWorld(actor) != null) {
+                        long start = profiler.beginAct(actor);
+                        try {
+                            Simulation.actActor(actor);
+                        }
+                        catch (ActInterruptedException e) {
+                            if (interrupted == null) {
+                                interrupted = e;
+                            }
+                        }
+                        finally {
+                            profiler.endAct(actor, start);
+                        }
+                    }
+                }
+            }
+            catch (Throwable t) {
+                // Reported on the simulation thread, once the changes before it are applied:
+                failure = t;
+            }
+            finally {
+                recordedChanges.remove();
+            }
+        }
+    }
+}
@@ -495,7 +495,8 @@ public class ProjectManager
                 Integer.toString(greenfootDebugHandler.getShmFileSize()),
                 // New VM starts at old last seq so that it's  after any final events we get from the dying VM:
                 // (especially since the seq will have had 1000 added when the last VM was terminated)
-                Integer.toString(greenfootDebugHandler.getLastSeq()) };
+                Integer.toString(greenfootDebugHandler.getLastSeq()),
+                greenfootDebugHandler.getShmTransport().name() };
 
         Package pkg = project.getPackage("");
         final Debugger debugger = pkg.getProject().getDebugger();
@@ -0,0 +1,82 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * Measures how often something happens (such as act rounds or paints), averaged over
+ * periods of about a second. Events are counted on one thread; the rate can be read
+ * from any thread.
+ */
+@OnThread(Tag.Simulation)
+public class RateCounter
+{
+    private static final long PERIOD_NANOS = 1_000_000_000L;
+    
+    private boolean started;
+    private long periodStart;
+    private int count;
+    @OnThread(Tag.Any)
+    private volatile double rate;
+    
+    /**
+     * Count an event which happened at the given time (from System.nanoTime()).
+     */
+    public void count(long now)
+    {
+        if (!started) {
+            // The first event only marks the start of the first period:
+            started = true;
+            periodStart = now;
+            return;
+        }
+        count++;
+        long elapsed = now - periodStart;
+        if (elapsed >= PERIOD_NANOS) {
+            rate = count * (double) PERIOD_NANOS / elapsed;
+            count = 0;
+            periodStart = now;
+        }
+    }
+    
+    /**
+     * Forget the events counted so far, for example because the simulation has been paused.
+     */
+    public void reset()
+    {
+        started = false;
+        count = 0;
+        rate = 0;
+    }
+    
+    /**
+     * Get the number of events per second over the most recently completed period, or 0
+     * if no period has been completed since the last reset.
+     */
+    @OnThread(Tag.Any)
+    public double getRate()
+    {
+        return rate;
+    }
+}
@@ -23,6 +23,7 @@ package greenfoot.core;
 
 import greenfoot.Actor;
 import greenfoot.ActorVisitor;
+import greenfoot.TreeActorSet;
 import greenfoot.World;
 import greenfoot.WorldVisitor;
 import greenfoot.event.SimulationListener;
@@ -37,7 +38,7 @@ import threadchecker.Tag;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
@@ -96,8 +97,71 @@ public class Simulation extends Thread
     @OnThread(value = Tag.Any, requireSynchronized = true)
     private int speed; // the simulation speed in range (1..100)
 
+    /**
+     * How the delay between act rounds is timed.
+     */
+    public static enum Scheduling
+    {
+        /**
+         * Each delay lasts from the end of the previous delay until the time for one round
+         * has passed. Any lateness (due to a long act round, or oversleeping) is lost, so
+         * the simulation tends to run slower than the speed setting.
+         */
+        DELAY,
+        /**
+         * Rounds are scheduled at a fixed rate from when the simulation started, so that
+         * lateness is made up for by later rounds; if the simulation falls behind, it skips
+         * paints (but not act rounds) to catch up.
+         */
+        FIXED_RATE;
+        
+        /**
+         * Get the scheduling for the given value of the {@link Simulation#SCHEDULING_PROPERTY}
+         * project property (which may be null).
+         */
+        @OnThread(Tag.Any)
+        public static Scheduling fromPropertyValue(String value)
+        {
+            return "fixed-rate".equals(value) ? FIXED_RATE : DELAY;
+        }
+    }
+    
+    /** The project property used to choose the scheduling ("fixed-rate" or "delay"). */
+    public static final String SCHEDULING_PROPERTY = "simulation.scheduling";
+    
+    /**
+     * The furthest that a fixed-rate simulation may fall behind schedule before giving up
+     * on catching up (so that, for example, it doesn't race after a long Greenfoot.delay()).
+     */
+    private static final long MAX_CATCH_UP_NANOS = 250_000_000L;
+    
+    /**
+     * The longest time for which paints may be skipped when a fixed-rate simulation is
+     * behind schedule, so that the world is still seen to change.
+     */
+    private static final long MAX_PAINT_SKIP_NANOS = 100_000_000L;
+
+    @OnThread(value = Tag.Any, requireSynchronized = true)
+    private Scheduling scheduling = Scheduling.DELAY;
+    
+    /**
+     * The time from which the next delay is measured. With DELAY scheduling this is the end
+     * of the previous delay; with FIXED_RATE scheduling it is when the current round was
+     * due to start.
+     */
     private long lastDelayTime;
     private long delay; // the speed translated into delay (nanoseconds)
+    
+    /** Measures how many act rounds are run each second. */
+    private final RateCounter actRate = new RateCounter();
+    
+    private final SimulationProfiler profiler = SimulationProfiler.getInstance();
+
+    /** Buffer holding the actors to act in the current act round; re-used between rounds. */
+    private Actor[] actBuffer = new Actor[0];
+    
+    /** Runs the actors which may act in parallel; created when first needed. */
+    private ParallelActRunner parallelActRunner;
 
     /**
      * Lock to synchronize access to the two fields: delaying and interruptDelay
@@ -396,6 +460,7 @@ public class Simulation extends Thread
     {
         isRunning = true;
         lastDelayTime = System.nanoTime();
+        actRate.reset();
         fireSimulationEventSync(SyncEvent.STARTED);
         World world = worldHandler.getWorld();
         if (world != null) {
@@ -500,6 +565,7 @@ public class Simulation extends Thread
         // when all the actors have acted.
         ActInterruptedException interruptedException = null;
 
+        long actStart = profiler.beginAct(world);
         try
         {
             actWorld(world);
@@ -513,45 +579,90 @@ public class Simulation extends Thread
         {
             interruptedException = e;
         }
+        finally
+        {
+            profiler.endAct(world, actStart);
+        }
         // We need to make a copy so that the original collection can be
-        // modified by the actors' act() methods.
-        // We decrement all actor's sleep counters and only include in the list
+        // modified by the actors' act() methods. The copy goes into a re-used
+        // buffer, to avoid allocating a new list (and iterators) every round.
+        // We decrement all actor's sleep counters and only keep in the buffer
         // those actors which should act this round.  That way, any changes to sleep
         // will not take effect until the end of the full act cycle.
-        Collection<Actor> allObjects = WorldVisitor.getObjectsListInActOrder(world);
-        List<Actor> awakeObjects = new ArrayList<>(allObjects.size());
-        // This is awkward with streams because it's a map and filter, and we can't just filter
-        // because filter is not meant to modify anything, so just use a classic loop:
-        for (Actor possiblySleepingActor : allObjects)
+        TreeActorSet allObjects = WorldVisitor.getObjectsListInActOrder(world);
+        int numObjects = allObjects.size();
+        Actor[] awakeObjects = allObjects.snapshot(actBuffer);
+        actBuffer = awakeObjects;
+        int numAwake = 0;
+        for (int i = 0; i < numObjects; i++)
         {
+            Actor possiblySleepingActor = awakeObjects[i];
+            awakeObjects[i] = null;
             if (ActorVisitor.decrementSleepForIfPositive(possiblySleepingActor))
-                awakeObjects.add(possiblySleepingActor);
+                awakeObjects[numAwake++] = possiblySleepingActor;
         }
-        for (Actor actor : awakeObjects)
+        try
         {
-            if (!enabled)
+            for (int i = 0; i < numAwake; i++)
             {
-                return;
-            }
-            if (ActorVisitor.getWorld(actor) != null)
-            {
-                try
+                if (!enabled)
+                {
+                    return;
+                }
+                Actor actor = awakeObjects[i];
+                if (WorldVisitor.isParallelAct(world, actor))
                 {
-                    actActor(actor);
+                    // Act this actor together with those following it which may also act in parallel:
+                    int end = i + 1;
+                    while (end < numAwake && WorldVisitor.isParallelAct(world, awakeObjects[end]))
+                    {
+                        end++;
+                    }
+                    if (parallelActRunner == null)
+                    {
+                        parallelActRunner = new ParallelActRunner(Runtime.getRuntime().availableProcessors());
+                    }
+                    ActInterruptedException e = parallelActRunner.act(world, awakeObjects, i, end);
+                    if (interruptedException == null)
+                    {
+                        interruptedException = e;
+                    }
+                    i = end - 1;
                     if (world != worldHandler.getWorld())
                     {
                         return; // New world was set
                     }
                 }
-                catch (ActInterruptedException e)
+                else if (ActorVisitor.getWorld(actor) != null)
                 {
-                    if (interruptedException == null)
+                    actStart = profiler.beginAct(actor);
+                    try
                     {
-                        interruptedException = e;
+                        actActor(actor);
+                        if (world != worldHandler.getWorld())
+                        {
+                            return; // New world was set
+                        }
+                    }
+                    catch (ActInterruptedException e)
+                    {
+                        if (interruptedException == null)
+                        {
+                            interruptedException = e;
+                        }
+                    }
+                    finally
+                    {
+                        profiler.endAct(actor, actStart);
                     }
                 }
             }
         }
+        finally
+        {
+            // Don't keep removed actors reachable from the buffer:
+            Arrays.fill(awakeObjects, 0, numAwake, null);
+        }
         
         worldHandler.getKeyboardManager().clearLatchedKeys();
 
@@ -560,9 +671,11 @@ public class Simulation extends Thread
             throw interruptedException;
         }
         
-        // printUpdateRate(System.nanoTime());
+        actRate.count(System.nanoTime());
 
         repaintIfNeeded();
+        
+        profiler.endRound();
 
         fireSimulationEventSync(SyncEvent.END_ACT_ROUND);
     }
@@ -572,7 +685,8 @@ public class Simulation extends Thread
     // are attempting to reach the next call to user code
     
     public static final String ACT_ACTOR = "actActor";
-    private static void actActor(Actor actor)
+    // Also used by ParallelActRunner, for actors acting in parallel
+    static void actActor(Actor actor)
     {
         actor.act();
     }
@@ -591,10 +705,25 @@ public class Simulation extends Thread
     }
     
     /**
-     * Repaints the world if needed to obtain the desired frame rate.
+     * Repaints the world if needed to obtain the desired frame rate.  When running at
+     * a fixed rate and already late for the next round, the paint is skipped (unless
+     * there has been no paint for a while), so that the time goes to acting instead.
      */
     private void repaintIfNeeded()
     {
+        boolean fixedRate;
+        synchronized (this)
+        {
+            fixedRate = scheduling == Scheduling.FIXED_RATE && !paused;
+        }
+        if (fixedRate)
+        {
+            long now = System.nanoTime();
+            if (delay > 0 && now - lastDelayTime >= delay && now - worldHandler.getLastPaintTime() < MAX_PAINT_SKIP_NANOS)
+            {
+                return;
+            }
+        }
         paintRemote(false);
     }
     
@@ -604,21 +733,24 @@ public class Simulation extends Thread
     }
 
     /**
-     * Debug output to print the rate at which updates are performed
-     * (acts/second).
+     * Get the number of act rounds run per second while the simulation is running,
+     * measured over about the last second (0 if not yet known).
      */
-    /*
-    private void printUpdateRate(long currentTime)
+    @OnThread(Tag.Any)
+    public double getActRate()
     {
-        //updates++;
+        return actRate.getRate();
+    }
 
-        long timeSinceUpdate = currentTime - lastUpdate;
-        if (timeSinceUpdate > 3000000000L) {
-            lastUpdate = currentTime;
-            //updates = 0;
-        }
+    /**
+     * Get the number of frames painted per second, measured over about the last second
+     * (0 if not yet known).
+     */
+    @OnThread(Tag.Any)
+    public double getPaintRate()
+    {
+        return worldHandler == null ? 0 : worldHandler.getPaintRate();
     }
-    */
 
     // Public methods etc.
 
@@ -751,9 +883,10 @@ public class Simulation extends Thread
     private void fireSimulationEventSync(SyncEvent event)
     {
         synchronized (listenerList) {
-            for (SimulationListener listener : listenerList)
+            // Indexed loop; this runs (at least) twice per act round, so avoid the iterator:
+            for (int i = 0; i < listenerList.size(); i++)
             {
-                listener.simulationChangedSync(event);
+                listenerList.get(i).simulationChangedSync(event);
             }
         }
     }
@@ -854,6 +987,24 @@ public class Simulation extends Thread
         return calcDelay;
     }
 
+    /**
+     * Set how the delay between act rounds is timed.
+     */
+    @OnThread(Tag.Any)
+    public synchronized void setScheduling(Scheduling scheduling)
+    {
+        this.scheduling = scheduling;
+    }
+
+    /**
+     * Get how the delay between act rounds is timed.
+     */
+    @OnThread(Tag.Any)
+    public synchronized Scheduling getScheduling()
+    {
+        return scheduling;
+    }
+
     /**
      * Get the current simulation speed.
      * 
@@ -931,6 +1082,14 @@ public class Simulation extends Thread
         }
         finally
         {
+            synchronized (this)
+            {
+                if (scheduling == Scheduling.FIXED_RATE)
+                {
+                    // The time spent here is deliberate; don't try to catch up with it:
+                    lastDelayTime = System.nanoTime();
+                }
+            }
             synchronized (interruptLock)
             {
                 Thread.interrupted(); // clear interrupt, in case we were interrupted just after the delay
@@ -944,7 +1103,8 @@ public class Simulation extends Thread
     /**
      * Cause a delay (wait) according to the current speed setting for this
      * simulation. It will take the time spend in this simulation loop into
-     * consideration and only pause the remaining time.
+     * consideration and only pause the remaining time. With fixed-rate scheduling
+     * it waits until the next round is due, which may mean not waiting at all.
      * 
      * <p>This method is used for controlling the speed of the animation.
      * 
@@ -956,9 +1116,11 @@ public class Simulation extends Thread
         long currentTime = System.nanoTime();
         long timeElapsed = currentTime - lastDelayTime;
         long actualDelay = Math.max(delay - timeElapsed, 0L);
+        boolean fixedRate;
         
         synchronized (this)
         {
+            fixedRate = scheduling == Scheduling.FIXED_RATE;
             synchronized (interruptLock)
             {
                 if(interruptDelay)
@@ -1002,7 +1164,15 @@ public class Simulation extends Thread
             actualDelay = delay - timeElapsed;
         }
 
-        lastDelayTime = currentTime;
+        if (fixedRate && currentTime - (lastDelayTime + delay) < MAX_CATCH_UP_NANOS)
+        {
+            // The next round is due at a fixed time after this one was, however late we are:
+            lastDelayTime += delay;
+        }
+        else
+        {
+            lastDelayTime = currentTime;
+        }
         synchronized (interruptLock)
         {
             Thread.interrupted(); // clear interrupt, in case we were interrupted just after the delay
@@ -0,0 +1,388 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Measures where the time goes in each act round of the simulation: how long each class
+ * of actor (or world) spends acting and making collision queries, and how long is spent
+ * in each phase (acting, collision checking, rendering the world and transmitting it to
+ * the server VM).
+ * 
+ * <p>Times are collected (on any thread) while profiling is enabled. At the end of each
+ * round, the simulation thread stores that round's figures as a record in a ring buffer,
+ * from which another thread (the communications thread) can copy recent rounds without
+ * locking. A round record is a sequence of ints:
+ * 
+ * <pre>
+ *   round number,
+ *   for each phase: nanoseconds (as two ints, high then low), count,
+ *   number of classes,
+ *   for each class which acted: class index, act nanoseconds (2 ints), act count,
+ *                               collision nanoseconds (2 ints), collision count
+ * </pre>
+ * 
+ * The class indexes refer to {@link #getClassName(int)}.  A class loaded again (when the
+ * project is recompiled) keeps the index of the class it replaces, so that the indexes of
+ * rounds already sent stay valid; beyond {@link #MAX_CLASSES} classes, the rest are
+ * counted together under the last index.
+ */
+@OnThread(Tag.Any)
+public class SimulationProfiler
+{
+    /**
+     * The phases of a round which are timed. Collision checking is done by actors while
+     * acting, so its time is included in the ACT time as well.
+     */
+    public static enum Phase { ACT, COLLIDE, RENDER, TRANSMIT }
+    
+    public static final int PHASE_COUNT = Phase.values().length;
+    /** The number of ints in a round record before the per-class entries */
+    public static final int ROUND_HEADER_SIZE = 1 + PHASE_COUNT * 3 + 1;
+    /** The number of ints in each per-class entry of a round record */
+    public static final int CLASS_ENTRY_SIZE = 7;
+    /**
+     * The most class indexes given out.  A round record with all of them must fit in the
+     * profile area the debug VM sends.
+     */
+    public static final int MAX_CLASSES = 256;
+    /** The name of the last class index, once there are more classes than indexes. */
+    private static final String OTHER_CLASSES = "(other classes)";
+    
+    /** The number of recent rounds kept */
+    private static final int RING_SIZE = 128;
+    
+    private static final SimulationProfiler instance = new SimulationProfiler();
+    
+    private volatile boolean enabled;
+    
+    // The totals for the round in progress:
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(PHASE_COUNT);
+    private final AtomicIntegerArray phaseCounts = new AtomicIntegerArray(PHASE_COUNT);
+    
+    /** The statistics for each class, found without locking. */
+    private final ClassValue<ClassStats> statsForClass = new ClassValue<ClassStats>() {
+        @Override
+        protected ClassStats computeValue(Class<?> cls)
+        {
+            return register(cls);
+        }
+    };
+    /** All classes seen, in index order; only added to (when synchronized). */
+    private volatile ClassStats[] allClasses = new ClassStats[0];
+    /** The statistics for each class name; accessed only when synchronized. */
+    private final Map<String, ClassStats> statsForName = new HashMap<>();
+    
+    /** The class currently acting on each thread, for attributing collision checks. */
+    private final ThreadLocal<ClassStats> acting = new ThreadLocal<>();
+    
+    // The ring buffer of round records, written only by the simulation thread:
+    private final int[][] ring = new int[RING_SIZE][];
+    private volatile long roundsWritten;
+    
+    /**
+     * Create a profiler of its own.  The simulation uses the one from {@link #getInstance()}.
+     */
+    SimulationProfiler()
+    {
+    }
+    
+    /**
+     * Get the profiler.
+     */
+    public static SimulationProfiler getInstance()
+    {
+        return instance;
+    }
+    
+    /**
+     * Check whether profiling is enabled.
+     */
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+    
+    /**
+     * Enable or disable profiling.  The figures for the round in progress when profiling is
+     * enabled are discarded, since they may be incomplete.
+     */
+    public void setEnabled(boolean enabled)
+    {
+        if (enabled && !this.enabled) {
+            for (int i = 0; i < PHASE_COUNT; i++) {
+                phaseNanos.set(i, 0);
+                phaseCounts.set(i, 0);
+            }
+            for (ClassStats stats : allClasses) {
+                stats.reset();
+            }
+        }
+        this.enabled = enabled;
+    }
+    
+    /**
+     * Get the time at which a timed phase begins, to pass to {@link #endPhase}; 0 if
+     * profiling is not enabled.
+     */
+    public long beginPhase()
+    {
+        return enabled ? System.nanoTime() : 0L;
+    }
+    
+    /**
+     * A timed phase has ended.  Collision checks are also attributed to the class acting
+     * on the current thread, if any.
+     * 
+     * @param start  The value returned by {@link #beginPhase()}
+     */
+    public void endPhase(Phase phase, long start)
+    {
+        if (start != 0L) {
+            long nanos = System.nanoTime() - start;
+            phaseNanos.addAndGet(phase.ordinal(), nanos);
+            phaseCounts.incrementAndGet(phase.ordinal());
+            if (phase == Phase.COLLIDE) {
+                ClassStats stats = acting.get();
+                if (stats != null) {
+                    stats.collideNanos.addAndGet(nanos);
+                    stats.collideCount.incrementAndGet();
+                }
+            }
+        }
+    }
+    
+    /**
+     * An actor or world is about to act.
+     * 
+     * @return  The time to pass to {@link #endAct}, or 0 if profiling is not enabled.
+     */
+    public long beginAct(Object actor)
+    {
+        if (!enabled) {
+            return 0L;
+        }
+        acting.set(statsForClass.get(actor.getClass()));
+        return System.nanoTime();
+    }
+    
+    /**
+     * An actor or world has finished acting (normally or not).
+     * 
+     * @param start  The value returned by {@link #beginAct}
+     */
+    public void endAct(Object actor, long start)
+    {
+        if (start != 0L) {
+            long nanos = System.nanoTime() - start;
+            ClassStats stats = statsForClass.get(actor.getClass());
+            stats.actNanos.addAndGet(nanos);
+            stats.actCount.incrementAndGet();
+            phaseNanos.addAndGet(Phase.ACT.ordinal(), nanos);
+            phaseCounts.incrementAndGet(Phase.ACT.ordinal());
+            acting.remove();
+        }
+    }
+    
+    /**
+     * An act round has finished; store its figures as a round record.  Should be called
+     * only by the simulation thread.
+     */
+    @OnThread(Tag.Simulation)
+    public void endRound()
+    {
+        if (!enabled) {
+            return;
+        }
+        ClassStats[] classes = allClasses;
+        long round = roundsWritten;
+        int slot = (int) (round % RING_SIZE);
+        int[] record = ring[slot];
+        int maxSize = ROUND_HEADER_SIZE + classes.length * CLASS_ENTRY_SIZE;
+        if (record == null || record.length < maxSize + 1) {
+            record = new int[maxSize + 1 + maxSize / 2];
+        }
+        
+        // Readers check that the round count has not moved past their record after reading
+        // it; make sure that doesn't see our writes to the record before the count changes:
+        VarHandle.storeStoreFence();
+        
+        // The first element is the length of the record:
+        int pos = 1;
+        record[pos++] = (int) round;
+        for (int i = 0; i < PHASE_COUNT; i++) {
+            pos = putLong(record, pos, phaseNanos.getAndSet(i, 0));
+            record[pos++] = phaseCounts.getAndSet(i, 0);
+        }
+        int classCountPos = pos++;
+        int classCount = 0;
+        for (ClassStats stats : classes) {
+            int actCount = stats.actCount.getAndSet(0);
+            int collideCount = stats.collideCount.getAndSet(0);
+            if (actCount != 0 || collideCount != 0) {
+                record[pos++] = stats.index;
+                pos = putLong(record, pos, stats.actNanos.getAndSet(0));
+                record[pos++] = actCount;
+                pos = putLong(record, pos, stats.collideNanos.getAndSet(0));
+                record[pos++] = collideCount;
+                classCount++;
+            }
+        }
+        record[classCountPos] = classCount;
+        record[0] = pos - 1;
+        ring[slot] = record;
+        roundsWritten = round + 1;
+    }
+    
+    /**
+     * Get the number of round records written so far.  The record for round r (counting
+     * from zero) is available if r is less than this, unless it has been overwritten.
+     */
+    public long getRoundsWritten()
+    {
+        return roundsWritten;
+    }
+    
+    /**
+     * Copy the record for the given round into the given array, starting at the given
+     * position.
+     * 
+     * @return  The length of the record, or -1 if the record is no longer available (or
+     *          the destination does not have room for it).
+     */
+    public int copyRound(long round, int[] dest, int destPos)
+    {
+        if (round >= roundsWritten || round < roundsWritten - RING_SIZE + 1) {
+            return -1;
+        }
+        int[] record = ring[(int) (round % RING_SIZE)];
+        int length = record[0];
+        if (length < 0 || length > dest.length - destPos) {
+            return -1;
+        }
+        System.arraycopy(record, 1, dest, destPos, length);
+        // If the writer has started writing over this record, what we copied may be wrong:
+        VarHandle.loadLoadFence();
+        if (roundsWritten >= round + RING_SIZE) {
+            return -1;
+        }
+        return length;
+    }
+    
+    /**
+     * Get the number of classes which have been seen by the profiler.
+     */
+    public int getClassCount()
+    {
+        return allClasses.length;
+    }
+    
+    /**
+     * Get the name of the class with the given index.
+     */
+    public String getClassName(int index)
+    {
+        return allClasses[index].name;
+    }
+    
+    /**
+     * Give a newly seen class the index of an earlier class with the same name, or else
+     * the next index, if there is one left.
+     */
+    private synchronized ClassStats register(Class<?> cls)
+    {
+        ClassStats stats = statsForName.get(cls.getName());
+        if (stats != null) {
+            return stats;
+        }
+        ClassStats[] classes = allClasses;
+        if (classes.length == MAX_CLASSES) {
+            return classes[MAX_CLASSES - 1];
+        }
+        if (classes.length == MAX_CLASSES - 1) {
+            stats = new ClassStats(classes.length, OTHER_CLASSES);
+        }
+        else {
+            stats = new ClassStats(classes.length, cls.getName());
+            statsForName.put(cls.getName(), stats);
+        }
+        ClassStats[] newClasses = new ClassStats[classes.length + 1];
+        System.arraycopy(classes, 0, newClasses, 0, classes.length);
+        newClasses[classes.length] = stats;
+        allClasses = newClasses;
+        return stats;
+    }
+    
+    private static int putLong(int[] dest, int pos, long value)
+    {
+        dest[pos] = (int) (value >>> 32);
+        dest[pos + 1] = (int) value;
+        return pos + 2;
+    }
+    
+    /**
+     * Read a long value stored as two ints (high, then low) by a round record.
+     */
+    public static long getLong(int[] src, int pos)
+    {
+        return ((long) src[pos] << 32) | (src[pos + 1] & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * The totals for one class in the round in progress.
+     */
+    private static class ClassStats
+    {
+        private final int index;
+        private final String name;
+        private final AtomicLong actNanos = new AtomicLong();
+        private final AtomicInteger actCount = new AtomicInteger();
+        private final AtomicLong collideNanos = new AtomicLong();
+        private final AtomicInteger collideCount = new AtomicInteger();
+        
+        ClassStats(int index, String name)
+        {
+            this.index = index;
+            this.name = name;
+        }
+        
+        void reset()
+        {
+            actNanos.set(0);
+            actCount.set(0);
+            collideNanos.set(0);
+            collideCount.set(0);
+        }
+    }
+}
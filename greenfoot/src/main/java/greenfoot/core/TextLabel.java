@@ -21,24 +21,28 @@
  */
 package greenfoot.core;
 
-import greenfoot.util.GraphicsUtilities;
+import greenfoot.util.TextImageCache;
 
 import java.awt.Color;
-import java.awt.Font;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 
 /**
- * Representation for text labels appearing on the world.
+ * Representation for text labels appearing on the world.  The rendered text is kept
+ * in the {@link TextImageCache}, so labels showing the same text share it.
  * 
  * @author Davin McCall
  */
 public class TextLabel
 {
+    // The space around the rendered text for the outline and antialiasing:
+    private static final int MARGIN = 2;
+    
     private final int xpos;
     private final int ypos;
     private final String text;
-    private final String[] lines;
-    private GraphicsUtilities.MultiLineStringDimensions dimensions;
+    private BufferedImage image;
     
     /**
      * Construct a TextLabel with the given text and position.
@@ -46,7 +50,6 @@ public class TextLabel
     public TextLabel(String s, int xpos, int ypos)
     {
         text = s;
-        lines = GraphicsUtilities.splitLines(text);
         this.xpos = xpos;
         this.ypos = ypos;
     }
@@ -58,20 +61,33 @@ public class TextLabel
      */
     public void draw(Graphics2D g, int cellsize)
     {
-        if (dimensions == null) {
-            dimensions = GraphicsUtilities.getMultiLineStringDimensions(lines, Font.BOLD, 25.0);
+        Rectangle bounds = getBounds(cellsize);
+        g.drawImage(getImage(), bounds.x, bounds.y, null);
+    }
+    
+    /**
+     * Get the area (in pixels) which may be drawn on by {@link #draw(Graphics2D, int)}.
+     * This allows for the outline, and for antialiasing.
+     */
+    public Rectangle getBounds(int cellsize)
+    {
+        BufferedImage image = getImage();
+        int width = image.getWidth() - 2 * MARGIN;
+        int height = image.getHeight() - 2 * MARGIN;
+        int ydraw = ypos * cellsize - height / 2 + cellsize / 2;
+        int xdraw = xpos * cellsize - width / 2 + cellsize / 2;
+        return new Rectangle(xdraw - MARGIN, ydraw - MARGIN, image.getWidth(), image.getHeight());
+    }
+    
+    /**
+     * Get the rendered text, with a margin of MARGIN around it.
+     */
+    private BufferedImage getImage()
+    {
+        if (image == null) {
+            image = TextImageCache.getInstance().getTextImage(text, 25, Color.WHITE, null, Color.BLACK, MARGIN);
         }
-        
-        // Position of base line:
-        int ydraw = ypos * cellsize - dimensions.getHeight() / 2 + cellsize / 2;
-        
-        int xdraw = xpos * cellsize - dimensions.getWidth() / 2 + cellsize / 2;
-        
-        g.translate(xdraw, ydraw);
-        
-        GraphicsUtilities.drawOutlinedText(g, dimensions, Color.WHITE, Color.BLACK);
-        
-        g.translate(-xdraw, -ydraw);
+        return image;
     }
     
     /**
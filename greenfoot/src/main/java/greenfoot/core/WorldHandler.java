@@ -79,6 +79,10 @@ public class WorldHandler
     @OnThread(Tag.Any)
     private final MousePollingManager mousePollingManager;
 
+    // When the world was last painted (from System.nanoTime), and how often it is being painted:
+    private long lastPaintNanos;
+    private final RateCounter paintRate = new RateCounter();
+
     // Offset from the middle of the actor when initiating a drag on an actor.
     private int dragOffsetX;
     private int dragOffsetY;
@@ -155,9 +159,9 @@ public class WorldHandler
             }
 
             @Override
-            public void paint(World drawWorld, boolean forcePaint)
+            public boolean paint(World drawWorld, boolean forcePaint)
             {
-                
+                return false;
             }
 
             @Override
@@ -412,6 +416,10 @@ public class WorldHandler
         Simulation.getInstance().runLater(() -> {
             fireWorldCreatedEvent(world);
         });
+        
+        if (world != null) {
+            ImageCache.getInstance().worldSet();
+        }
 
         worldChanged(byUserCode);
     }
@@ -750,7 +758,29 @@ public class WorldHandler
      */
     public void paint(boolean forcePaint)
     {
-        handlerDelegate.paint(world, forcePaint);
+        if (handlerDelegate.paint(world, forcePaint))
+        {
+            lastPaintNanos = System.nanoTime();
+            paintRate.count(lastPaintNanos);
+        }
+    }
+
+    /**
+     * Get the time (from System.nanoTime) at which the world was last painted.
+     */
+    public long getLastPaintTime()
+    {
+        return lastPaintNanos;
+    }
+
+    /**
+     * Get the number of frames painted per second, measured over about the last second
+     * (0 if not yet known).
+     */
+    @OnThread(Tag.Any)
+    public double getPaintRate()
+    {
+        return paintRate.getRate();
     }
 
     /**
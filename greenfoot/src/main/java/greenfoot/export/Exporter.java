@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2012,2013,2015,2018,2022,2023  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2009,2010,2011,2012,2013,2015,2018,2022,2023,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -114,6 +114,10 @@ public class Exporter implements PublishListener
     private File tmpZipFile;
     private MyGameClient webPublisher;
 
+    /** The jar last published, and the project it was for, to reuse unchanged entries from. */
+    private File previousJarFile;
+    private File previousJarProjectDir;
+
     private Project project;
     private ExportInfo scenarioInfo;
     private String worldName;
@@ -191,6 +195,9 @@ public class Exporter implements PublishListener
         
         JarCreator jarCreator = new JarCreator(project, exportDir, jarName, worldName,
                 lockScenario);
+        if (previousJarFile != null && project.getProjectDir().equals(previousJarProjectDir)) {
+            jarCreator.setPreviousJar(previousJarFile);
+        }
         
         // do not include source
         jarCreator.includeSource(false);
@@ -378,7 +385,12 @@ public class Exporter implements PublishListener
     private void deleteTmpFiles()
     {
         if (tmpJarFile != null) {
-            tmpJarFile.delete();
+            // Kept (until exit) so that publishing again can reuse its entries:
+            if (previousJarFile != null) {
+                previousJarFile.delete();
+            }
+            previousJarFile = tmpJarFile;
+            previousJarProjectDir = project.getProjectDir();
             tmpJarFile = null;
         }
         if (tmpImgFile != null) {
@@ -22,23 +22,28 @@
 package greenfoot.export;
 
 import bluej.Config;
+import bluej.utility.Debug;
 import bluej.utility.javafx.JavaFXUtil;
 import bluej.utility.javafx.UnfocusableScrollPane;
 import greenfoot.World;
 import greenfoot.core.ExportedProjectProperties;
+import greenfoot.core.ImageCache;
 import greenfoot.core.Simulation;
 import greenfoot.core.WorldHandler;
 import greenfoot.event.SimulationListener;
+import greenfoot.gui.WorldRenderer;
 import greenfoot.guifx.ControlPanel;
 import greenfoot.guifx.ControlPanel.ControlPanelListener;
 import greenfoot.guifx.GreenfootStage.State;
 import greenfoot.guifx.WorldDisplay;
 import greenfoot.platforms.standalone.ActorDelegateStandAlone;
 import greenfoot.platforms.standalone.GreenfootUtilDelegateStandAlone;
+import greenfoot.platforms.standalone.LocalStorageServer;
 import greenfoot.platforms.standalone.WorldHandlerDelegateStandAlone;
 import greenfoot.sound.SoundFactory;
 import greenfoot.util.GreenfootUtil;
 import greenfoot.util.StandalonePropStringManager;
+import greenfoot.util.UserInfoStore;
 import javafx.application.Platform;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.image.Image;
@@ -53,6 +58,7 @@ import threadchecker.Tag;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferInt;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -108,6 +114,25 @@ public class GreenfootScenarioViewer extends BorderPane implements ControlPanelL
     }
 
 
+    /**
+     * Create the delegate for GreenfootUtil.  If the scenario keeps its user data locally,
+     * this starts a local storage server for it; otherwise, storage is not supported.
+     */
+    @OnThread(Tag.Any)
+    private static GreenfootUtilDelegateStandAlone createUtilDelegate()
+    {
+        if (Config.getPropBoolean(LocalStorageServer.LOCAL_STORAGE_PROPERTY, false)) {
+            try {
+                LocalStorageServer server = new LocalStorageServer(new UserInfoStore(new File("storage.csv")));
+                return server.createDelegate(1, Config.getPropString("storage.userName", "Player1"));
+            }
+            catch (IOException e) {
+                Debug.reportError("Could not start local storage server", e);
+            }
+        }
+        return new GreenfootUtilDelegateStandAlone();
+    }
+
     private void buildGUI(boolean hideControls)
     {
         ScrollPane worldViewScroll = new UnfocusableScrollPane(new StackPane(worldDisplay));
@@ -134,7 +159,7 @@ public class GreenfootScenarioViewer extends BorderPane implements ControlPanelL
         final boolean hideControls = Config.getPropBoolean("scenario.hideControls", false);
 
         try {
-            GreenfootUtil.initialise(new GreenfootUtilDelegateStandAlone());
+            GreenfootUtil.initialise(createUtilDelegate());
             properties = new ExportedProjectProperties();
 
             ActorDelegateStandAlone.setupAsActorDelegate();
@@ -223,7 +248,9 @@ public class GreenfootScenarioViewer extends BorderPane implements ControlPanelL
      */
     private void guiSetup(boolean lockScenario, String worldClassName)
     {
-        WorldHandler.initialise(new WorldHandlerDelegateStandAlone(this, lockScenario));
+        WorldHandlerDelegateStandAlone delegate = new WorldHandlerDelegateStandAlone(this, lockScenario);
+        delegate.setTiledRendering(Boolean.parseBoolean(properties.getString(WorldRenderer.TILED_RENDERING_PROPERTY, null)));
+        WorldHandler.initialise(delegate);
         WorldHandler worldHandler = WorldHandler.getInstance();
         sim = Simulation.getInstance();
         sim.attachWorldHandler(worldHandler);
@@ -233,6 +260,8 @@ public class GreenfootScenarioViewer extends BorderPane implements ControlPanelL
             controls.lockControls();
         }
 
+        // Set before the sounds are preloaded, so that they are preloaded for the mixer:
+        SoundFactory.setMixerEnabled(Boolean.parseBoolean(properties.getString(SoundFactory.MIXER_PROPERTY, null)));
         // Make sure the SoundCollection is initialized and listens for events
         sim.addSimulationListener(SoundFactory.getInstance().getSoundCollection());
         sim.addSimulationListener(this);
@@ -243,6 +272,10 @@ public class GreenfootScenarioViewer extends BorderPane implements ControlPanelL
         } catch (NumberFormatException nfe) {
             // If there is no speed info in the properties we don't care...
         }
+        sim.setScheduling(Simulation.Scheduling.fromPropertyValue(
+                properties.getString(Simulation.SCHEDULING_PROPERTY, null)));
+        ImageCache.getInstance().setPreloadEnabled(
+                Boolean.parseBoolean(properties.getString(ImageCache.PRELOAD_PROPERTY, null)));
     }
     
     /**
@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2005-2009,2010,2011,2013,2014,2015,2018,2019,2023  Poul Henriksen and Michael Kolling
+ Copyright (C) 2005-2009,2010,2011,2013,2014,2015,2018,2019,2023,2026  Poul Henriksen and Michael Kolling
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,31 +21,26 @@
  */
 package greenfoot.export;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 import java.util.jar.Attributes;
-import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
+import java.util.jar.JarFile;
 import java.util.jar.Manifest;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipException;
-import java.util.zip.ZipOutputStream;
 
 import bluej.Boot;
 import bluej.Config;
@@ -105,6 +100,9 @@ public class JarCreator
  
     private boolean isZip = false;
 
+    /** An earlier export to reuse entries from, or null to use the file being replaced. */
+    private File previousJar;
+
     /**
      * Prepares a new jar creator. Once everything is set up, call create()
      * 
@@ -255,56 +253,78 @@ public class JarCreator
     
     /**
      * Creates the jar file with the current settings.
+     * 
+     * <p>Entries whose contents are unchanged are copied from the previous jar (if
+     * set), or else from the existing file being replaced, rather than compressed again.
      */
     public void create()
     {        
         File jarFile = new File(exportDir, jarName);
         File propertiesFile = null;
         File soundFile = null;
-        OutputStream oStream = null;
-        ZipOutputStream jStream = null;
+        File imageFile = null;
 
-        try {
-            oStream = new BufferedOutputStream(new FileOutputStream(jarFile));
+        try (JarWriter writer = new JarWriter(jarFile, previousJar != null ? previousJar : jarFile)) {
             String pathPrefix = ""; // Put everything in top level of jar
             if (! isZip) {
                 // It is a jar file so we write the manifest and the properties.
                 writeManifest();
+                ByteArrayOutputStream manifestBytes = new ByteArrayOutputStream();
+                manifest.write(manifestBytes);
+                writer.addEntry(JarFile.MANIFEST_NAME, manifestBytes.toByteArray());
                 propertiesFile = new File(projectDir, "standalone.properties");
                 writePropertiesFile(propertiesFile);
                 soundFile = new File(projectDir, "soundindex.list");
                 writeSoundFilesList(soundFile);
-                jStream = new JarOutputStream(oStream, manifest);
+                imageFile = new File(projectDir, "imageindex.list");
+                writeFilesList(imageFile, "images");
             }
             else {
                 // It is a zip, so we want a dir with the project name inside the zip
                 pathPrefix = projectDir.getName() + "/";
-                jStream = new ZipOutputStream(oStream);
             }
-            // Write contents of directories added
+            // Add contents of directories added
             for(File dir : dirs) {
-                writeFileToJar(dir, pathPrefix, jStream, jarFile.getCanonicalFile(), true);
+                writeFileToJar(dir, pathPrefix, writer, jarFile.getCanonicalFile(), true);
             }
             for(PrefixedFile dir : prefixDirs) {
-                writeFileToJar(dir.getFile(), pathPrefix + dir.getPrefix(), jStream, jarFile.getCanonicalFile(), true);
+                writeFileToJar(dir.getFile(), pathPrefix + dir.getPrefix(), writer, jarFile.getCanonicalFile(), true);
             }
             for(File jar : extraJarsInJar) {
-                writeJarToJar(jar, jStream);
+                writeJarToJar(jar, writer);
             }
+            writer.finish();
             copyLibsToDir(extraJars, exportDir);            
         }
         catch (IOException exc) {
             Debug.reportError("problem writing jar file: " + exc);
         }
         finally {
-            try {
-                if (jStream != null)
-                    jStream.close();
-            }
-            catch (IOException e) {}
             if(propertiesFile != null) {
                 propertiesFile.delete();
             }
+            if(imageFile != null) {
+                imageFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes a list of the files in a directory of the project to the given file, one
+     * per line (nothing, if there is no such directory).
+     */
+    private void writeFilesList(File file, String dirName)
+    {
+        String[] names = new File(projectDir, dirName).list();
+        try (BufferedWriter os = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file)))) {
+            if (names != null) {
+                for (String name : names) {
+                    os.write(name + "\n");
+                }
+            }
+        }
+        catch (IOException e) {
+            Debug.reportError("Error writing list of " + dirName + ": ", e);
         }
     }
 
@@ -490,6 +510,16 @@ public class JarCreator
     {
         prefixDirs.add(new PrefixedFile(prefix, file));
     }
+
+    /**
+     * Sets an earlier export of the same project, whose unchanged entries can be copied
+     * rather than compressed again.  By default, the existing file being replaced (if
+     * any) is used.
+     */
+    public void setPreviousJar(File previousJar)
+    {
+        this.previousJar = previousJar;
+    }
     
     /**
      * All dirs that end with the specified string will be skipped.
@@ -511,20 +541,22 @@ public class JarCreator
     }
 
     /**
-     * Write the contents of a directory to a jar stream. Recursively called for
+     * Write the contents of a directory to a jar. Recursively called for
      * subdirectories. outputFile should be the canonical file representation of
      * the Jar file we are creating (to prevent including itself in the Jar
-     * file)
+     * file). The files are written in order of name, so that the jar is the
+     * same each time.
      */
-    private void writeDirToJar(File sourceDir, String pathPrefix, ZipOutputStream stream, File outputFile)
+    private void writeDirToJar(File sourceDir, String pathPrefix, JarWriter writer, File outputFile)
         throws IOException
     {
         if (!skipDir(sourceDir))
         {
             File[] dir = sourceDir.listFiles();
+            Arrays.sort(dir);
             for (File sourceFile : dir)
             {
-                writeFileToJar(sourceFile, pathPrefix, stream, outputFile, false);
+                writeFileToJar(sourceFile, pathPrefix, writer, outputFile, false);
             }
         }
     }
@@ -539,7 +571,7 @@ public class JarCreator
      * @param onlyDirContents If sourceFile is a dir, this parameter indicates that
      *           the contents of the dir should be added, not the dir itself.
      */
-    private void writeFileToJar(File sourceFile, String pathPrefix, ZipOutputStream stream, File outputFile, boolean onlyDirContents)
+    private void writeFileToJar(File sourceFile, String pathPrefix, JarWriter writer, File outputFile, boolean onlyDirContents)
         throws IOException
     {
         if(!sourceFile.exists()) {
@@ -551,7 +583,7 @@ public class JarCreator
             if(!onlyDirContents) {
                 pathPrefix += sourceFile.getName()  + "/";
             }
-            writeDirToJar(sourceFile, pathPrefix, stream, outputFile);
+            writeDirToJar(sourceFile, pathPrefix, writer, outputFile);
         }
         else {
             // check against a list of files we don't want to export and also
@@ -559,16 +591,19 @@ public class JarCreator
             // (hangs the machine)
             if (!skipFile(sourceFile.getName(), !includeSource)
                     && !outputFile.equals(sourceFile.getCanonicalFile())) {
-                writeJarEntry(sourceFile, stream, pathPrefix + sourceFile.getName());
+                // Note: entry names should always be paths with / seperators
+                // (NOT the platform dependant File.seperator)
+                writer.addFile(pathPrefix + sourceFile.getName(), sourceFile);
             }
         }
     }
     
     /**
-     * Write the contents of a jar into another jar stream. If the source file does not exist,
-     * this method will just return without doing anything.
+     * Write the contents of a jar into another jar. If the source file does not exist,
+     * this method will just return without doing anything. Entries which are already
+     * in the jar being written are skipped.
      */
-    private void writeJarToJar(File inputJar, ZipOutputStream outputStream)
+    private void writeJarToJar(File inputJar, JarWriter writer)
         throws IOException
     {
         if(!inputJar.exists()) {
@@ -576,18 +611,7 @@ public class JarCreator
             return;
         }
         
-        JarInputStream inputStream = new JarInputStream(
-                new BufferedInputStream(new FileInputStream(inputJar)));
-        
-        ZipEntry inputEntry = inputStream.getNextJarEntry();
-        while(inputEntry != null) {
-            //TODO: What if we have duplicate files????
-            outputStream.putNextEntry(inputEntry);
-            FileUtility.copyStream(inputStream, outputStream);
-            inputStream.closeEntry();
-            inputEntry = inputStream.getNextJarEntry();
-        }        
-        inputStream.close();
+        writer.addJarContents(inputJar);
     }
 
     /**
@@ -648,29 +672,6 @@ public class JarCreator
         return false;
     }
 
-    /**
-     * Write a jar file entry to the jar output stream. Note: entryName should
-     * always be a path with / seperators (NOT the platform dependant
-     * File.seperator)
-     */
-    private void writeJarEntry(File file, ZipOutputStream stream, String entryName)
-        throws IOException
-    {
-        InputStream in = null;
-        try {
-            in = new BufferedInputStream(new FileInputStream(file));
-            stream.putNextEntry(new ZipEntry(entryName));
-            FileUtility.copyStream(in, stream);
-        }
-        catch (ZipException exc) {
-            Debug.message("warning: " + exc);
-        }
-        finally {
-            if (in != null)
-                in.close();
-        }
-    }
-    
     public void generateHTMLSkeleton(File outputFile, String title, int width, int height)
     {
         Hashtable<String,String> translations = new Hashtable<>();
@@ -0,0 +1,594 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.export;
+
+import bluej.utility.Debug;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Writes a jar (or zip) file, preparing the entries in parallel.
+ *
+ * <p>Entries are added first, and then written by {@link #finish()}, in the order they
+ * were added.  The contents of each entry are read whole, and compressed if need be, on a
+ * pool of worker threads.  Entries are only prepared ahead of the one being written while
+ * their total size is within {@link #MAX_BYTES_IN_FLIGHT}, so that memory use does not
+ * depend on the size of the project (other than that of its biggest file, which is always
+ * prepared on its own if need be).  Files which are already compressed (images, sounds
+ * and archives) are stored rather than compressed again, as are any other files which
+ * compression does not make smaller.
+ *
+ * <p>If a previous version of the file is given, each entry whose name, contents and
+ * storage method are unchanged is copied, still compressed, from the previous file rather
+ * than being compressed again.  Only entries with the same CRC-32 and length are
+ * compared; their contents are then compared in full, as different contents can have the
+ * same CRC-32 (decompressing to compare is still much faster than compressing).  The new file is
+ * written alongside the old one, and only replaces it once it is complete, so the
+ * previous file can be the one being replaced.
+ */
+class JarWriter implements Closeable
+{
+    /** The total size of the entries read, or being read, ahead of the one being written. */
+    private static final long MAX_BYTES_IN_FLIGHT = 32L * 1024 * 1024;
+
+    private static final String[] COMPRESSED_SUFFIXES = {".png", ".jpg", ".jpeg", ".gif",
+            ".mp3", ".ogg", ".jar", ".zip", ".gz"};
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_HEADER_SIZE = 22;
+    private static final short VERSION = 20;
+    // The names are in UTF-8:
+    private static final short FLAGS = 0x0800;
+
+    /** Where the contents of an entry come from. */
+    private interface Source
+    {
+        byte[] read() throws IOException;
+    }
+
+    /** An entry waiting to be prepared, and the size of its contents (if known; else 0). */
+    private static class PendingEntry
+    {
+        final String name;
+        final long time;
+        final long size;
+        final Source source;
+
+        PendingEntry(String name, long time, long size, Source source)
+        {
+            this.name = name;
+            this.time = time;
+            this.size = size;
+            this.source = source;
+        }
+    }
+
+    /** An entry ready to be written, or one in the previous file. */
+    private static class PreparedEntry
+    {
+        byte[] name;
+        int dosTime;
+        short method;
+        int crc;
+        long size;
+        long compressedSize;
+        // The stored data (for a prepared entry), or the offset of the local header (for an
+        // entry in the previous file):
+        byte[] data;
+        long offset;
+    }
+
+    private final File outputFile;
+    private final File tempFile;
+    private final List<PendingEntry> entries = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private final List<ZipFile> sourceJars = new ArrayList<>();
+    private final ExecutorService workers;
+    private final int threads;
+
+    private FileChannel previous;
+    private Map<String, PreparedEntry> previousEntries = Collections.emptyMap();
+    private int reusedCount;
+
+    /**
+     * Prepare to write the given file.
+     *
+     * @param outputFile   The file to write.
+     * @param previousFile A previous version of the file, whose entries can be reused, or null.
+     *                     It may be the output file.  If it is not a readable zip file, it is ignored.
+     */
+    JarWriter(File outputFile, File previousFile)
+    {
+        this.outputFile = outputFile;
+        this.tempFile = new File(outputFile.getPath() + ".tmp");
+        threads = Runtime.getRuntime().availableProcessors();
+        workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "Greenfoot export");
+            t.setDaemon(true);
+            return t;
+        });
+        if (previousFile != null && previousFile.length() > 0) {
+            try {
+                previous = FileChannel.open(previousFile.toPath(), StandardOpenOption.READ);
+                previousEntries = readCentralDirectory(previous);
+            }
+            catch (IOException e) {
+                Debug.message("Not reusing entries from " + previousFile + ": " + e);
+                closePrevious();
+            }
+        }
+    }
+
+    /**
+     * Add an entry with the given contents.  Note: names should always be paths with /
+     * separators (NOT the platform dependent File.separator).
+     */
+    public void addEntry(String name, byte[] contents)
+    {
+        add(new PendingEntry(name, System.currentTimeMillis(), contents.length, () -> contents));
+    }
+
+    /**
+     * Add an entry with the contents of the given file.
+     */
+    public void addFile(String name, File file)
+    {
+        add(new PendingEntry(name, file.lastModified(), file.length(), () -> Files.readAllBytes(file.toPath())));
+    }
+
+    /**
+     * Add all the entries of the given jar file, other than its manifest.
+     */
+    public void addJarContents(File jar) throws IOException
+    {
+        ZipFile zip = new ZipFile(jar);
+        sourceJars.add(zip);
+        for (ZipEntry entry : Collections.list(zip.entries())) {
+            // The export has its own manifest:
+            if (entry.getName().equalsIgnoreCase(JarFile.MANIFEST_NAME)
+                    || entry.getName().equalsIgnoreCase("META-INF/")) {
+                continue;
+            }
+            add(new PendingEntry(entry.getName(), entry.getTime(), Math.max(0, entry.getSize()), () -> {
+                try (InputStream in = zip.getInputStream(entry)) {
+                    return in.readAllBytes();
+                }
+            }));
+        }
+    }
+
+    private void add(PendingEntry entry)
+    {
+        if (names.add(entry.name)) {
+            entries.add(entry);
+        }
+        else {
+            Debug.message("warning: duplicate entry in export: " + entry.name);
+        }
+    }
+
+    /**
+     * The number of entries which were copied from the previous file, once finished.
+     */
+    int getReusedCount()
+    {
+        return reusedCount;
+    }
+
+    /**
+     * Write all the entries added, and replace the output file with the result.
+     */
+    public void finish() throws IOException
+    {
+        List<PreparedEntry> written = new ArrayList<>(entries.size());
+        long offset = 0;
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile), 65536)) {
+            ArrayDeque<Future<PreparedEntry>> window = new ArrayDeque<>();
+            long bytesInFlight = 0;
+            int next = 0;
+            while (next < entries.size() || ! window.isEmpty()) {
+                // Keep the workers busy, without getting too far ahead of the writing:
+                while (next < entries.size() && window.size() < threads * 4 && (window.isEmpty()
+                        || bytesInFlight + entries.get(next).size <= MAX_BYTES_IN_FLIGHT)) {
+                    PendingEntry pending = entries.get(next++);
+                    bytesInFlight += pending.size;
+                    window.add(workers.submit(() -> prepare(pending)));
+                }
+                bytesInFlight -= entries.get(next - window.size()).size;
+                PreparedEntry entry = getPrepared(window.poll());
+                if (offset > 0xFFFFFFFFL) {
+                    throw new IOException("Export is too large");
+                }
+                entry.offset = offset;
+                ByteBuffer header = littleEndian(LOCAL_HEADER_SIZE + entry.name.length);
+                header.putInt(LOCAL_HEADER);
+                header.putShort(VERSION);
+                putEntryFields(header, entry);
+                header.putShort((short) 0);
+                header.put(entry.name);
+                out.write(header.array());
+                out.write(entry.data);
+                offset += header.capacity() + entry.data.length;
+                // Only the headers are needed from here on:
+                entry.data = null;
+                written.add(entry);
+            }
+
+            long directoryOffset = offset;
+            for (PreparedEntry entry : written) {
+                ByteBuffer header = littleEndian(CENTRAL_HEADER_SIZE + entry.name.length);
+                header.putInt(CENTRAL_HEADER);
+                header.putShort(VERSION);
+                header.putShort(VERSION);
+                putEntryFields(header, entry);
+                header.putShort((short) 0); // extra field length
+                header.putShort((short) 0); // comment length
+                header.putShort((short) 0); // disk number
+                header.putShort((short) 0); // internal attributes
+                header.putInt(0); // external attributes
+                header.putInt((int) entry.offset);
+                header.put(entry.name);
+                out.write(header.array());
+                offset += header.capacity();
+            }
+
+            if (written.size() > 0xFFFF || offset > 0xFFFFFFFFL) {
+                throw new IOException("Export is too large");
+            }
+            ByteBuffer end = littleEndian(END_HEADER_SIZE);
+            end.putInt(END_HEADER);
+            end.putShort((short) 0);
+            end.putShort((short) 0);
+            end.putShort((short) written.size());
+            end.putShort((short) written.size());
+            end.putInt((int) (offset - directoryOffset));
+            end.putInt((int) directoryOffset);
+            end.putShort((short) 0);
+            out.write(end.array());
+        }
+        // The previous file may be the one we are replacing:
+        closePrevious();
+        Files.move(tempFile.toPath(), outputFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Stop the workers and close the files being read.  If the output has not been
+     * finished, it is discarded (and the output file left as it was).
+     */
+    @Override
+    public void close()
+    {
+        workers.shutdownNow();
+        closePrevious();
+        for (ZipFile zip : sourceJars) {
+            try {
+                zip.close();
+            }
+            catch (IOException e) {
+                // Only reading it
+            }
+        }
+        tempFile.delete();
+    }
+
+    private void closePrevious()
+    {
+        if (previous != null) {
+            try {
+                previous.close();
+            }
+            catch (IOException e) {
+                // Only reading it
+            }
+            previous = null;
+        }
+    }
+
+    private static PreparedEntry getPrepared(Future<PreparedEntry> future) throws IOException
+    {
+        try {
+            return future.get();
+        }
+        catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Read and (if need be) compress an entry.  Called on a worker thread.
+     */
+    private PreparedEntry prepare(PendingEntry pending) throws IOException
+    {
+        byte[] contents = pending.source.read();
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+
+        PreparedEntry entry = new PreparedEntry();
+        entry.name = pending.name.getBytes(StandardCharsets.UTF_8);
+        entry.dosTime = dosTime(pending.time);
+        entry.crc = (int) crc.getValue();
+        entry.size = contents.length;
+
+        boolean store = contents.length == 0 || isCompressed(pending.name);
+        PreparedEntry old = previousEntries.get(pending.name);
+        if (old != null && old.crc == entry.crc && old.size == entry.size
+                && (old.method == ZipEntry.STORED || ! store)) {
+            byte[] data = readPrevious(old);
+            if (data != null && hasContents(old.method, data, contents)) {
+                entry.method = old.method;
+                entry.compressedSize = data.length;
+                entry.data = data;
+                synchronized (this) {
+                    reusedCount++;
+                }
+                return entry;
+            }
+        }
+
+        if (! store) {
+            byte[] compressed = deflate(contents);
+            // Some files can't be made smaller:
+            if (compressed.length < contents.length) {
+                entry.method = ZipEntry.DEFLATED;
+                entry.compressedSize = compressed.length;
+                entry.data = compressed;
+                return entry;
+            }
+        }
+        entry.method = ZipEntry.STORED;
+        entry.compressedSize = contents.length;
+        entry.data = contents;
+        return entry;
+    }
+
+    private static boolean isCompressed(String name)
+    {
+        String lowerName = name.toLowerCase();
+        for (String suffix : COMPRESSED_SUFFIXES) {
+            if (lowerName.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte[] deflate(byte[] contents)
+    {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(contents);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(contents.length / 2 + 64);
+            byte[] buf = new byte[8192];
+            while (! deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Check whether the stored data of an entry (stored or deflated by the given method)
+     * is the given contents.
+     */
+    private static boolean hasContents(short method, byte[] data, byte[] contents)
+    {
+        if (method == ZipEntry.STORED) {
+            return Arrays.equals(data, contents);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            // One byte more than expected, to catch data which inflates to more:
+            byte[] inflated = new byte[contents.length + 1];
+            int length = 0;
+            while (length < inflated.length && ! inflater.finished()) {
+                int n = inflater.inflate(inflated, length, inflated.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            return length == contents.length && Arrays.equals(inflated, 0, length, contents, 0, length);
+        }
+        catch (DataFormatException e) {
+            return false;
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Read the stored data of an entry in the previous file, or return null if it
+     * cannot be read.
+     */
+    private byte[] readPrevious(PreparedEntry old)
+    {
+        try {
+            FileChannel channel = previous;
+            ByteBuffer header = littleEndian(LOCAL_HEADER_SIZE);
+            readFully(channel, header, old.offset);
+            if (header.getInt(0) != LOCAL_HEADER) {
+                return null;
+            }
+            long dataOffset = old.offset + LOCAL_HEADER_SIZE
+                    + (header.getShort(26) & 0xFFFF) + (header.getShort(28) & 0xFFFF);
+            ByteBuffer data = ByteBuffer.allocate((int) old.compressedSize);
+            readFully(channel, data, dataOffset);
+            return data.array();
+        }
+        catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Read the list of entries in a zip file, from its central directory.
+     */
+    private static Map<String, PreparedEntry> readCentralDirectory(FileChannel channel)
+        throws IOException
+    {
+        // The end record is followed by a comment of up to 64K:
+        long size = channel.size();
+        int tailSize = (int) Math.min(size, END_HEADER_SIZE + 0xFFFF);
+        ByteBuffer tail = littleEndian(tailSize);
+        readFully(channel, tail, size - tailSize);
+        int end = tailSize - END_HEADER_SIZE;
+        while (end >= 0 && tail.getInt(end) != END_HEADER) {
+            end--;
+        }
+        if (end < 0) {
+            throw new IOException("Not a zip file");
+        }
+        int count = tail.getShort(end + 10) & 0xFFFF;
+        long directorySize = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        if (directoryOffset + directorySize > size) {
+            throw new IOException("Bad central directory");
+        }
+
+        ByteBuffer directory = littleEndian((int) directorySize);
+        readFully(channel, directory, directoryOffset);
+        Map<String, PreparedEntry> entries = new HashMap<>();
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            if (directory.getInt(pos) != CENTRAL_HEADER) {
+                throw new IOException("Bad central directory");
+            }
+            PreparedEntry entry = new PreparedEntry();
+            entry.method = directory.getShort(pos + 10);
+            entry.crc = directory.getInt(pos + 16);
+            entry.compressedSize = directory.getInt(pos + 20) & 0xFFFFFFFFL;
+            entry.size = directory.getInt(pos + 24) & 0xFFFFFFFFL;
+            int nameLength = directory.getShort(pos + 28) & 0xFFFF;
+            int extraLength = directory.getShort(pos + 30) & 0xFFFF;
+            int commentLength = directory.getShort(pos + 32) & 0xFFFF;
+            entry.offset = directory.getInt(pos + 42) & 0xFFFFFFFFL;
+            byte[] name = new byte[nameLength];
+            directory.get(pos + CENTRAL_HEADER_SIZE, name);
+            // Encrypted entries and those with unknown methods can't be reused:
+            if ((directory.getShort(pos + 8) & 1) == 0
+                    && (entry.method == ZipEntry.STORED || entry.method == ZipEntry.DEFLATED)) {
+                entries.put(new String(name, StandardCharsets.UTF_8), entry);
+            }
+            pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return entries;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long position)
+        throws IOException
+    {
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+        }
+    }
+
+    /**
+     * Put the fields common to the local and central headers, from the flags to the
+     * name length.
+     */
+    private static void putEntryFields(ByteBuffer header, PreparedEntry entry)
+    {
+        header.putShort(FLAGS);
+        header.putShort(entry.method);
+        header.putInt(entry.dosTime);
+        header.putInt(entry.crc);
+        header.putInt((int) entry.compressedSize);
+        header.putInt((int) entry.size);
+        header.putShort((short) entry.name.length);
+    }
+
+    private static ByteBuffer littleEndian(int size)
+    {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Convert a time to the MS-DOS format used in zip files: the time in the low 16 bits,
+     * and the date in the high 16 bits.
+     */
+    private static int dosTime(long time)
+    {
+        LocalDateTime t = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        if (t.getYear() < 1980) {
+            // The earliest time which can be represented:
+            return (1 << 21) | (1 << 16);
+        }
+        return (t.getYear() - 1980) << 25 | t.getMonthValue() << 21 | t.getDayOfMonth() << 16
+                | t.getHour() << 11 | t.getMinute() << 5 | t.getSecond() >> 1;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.GreenfootImage;
+import greenfoot.ImageVisitor;
+import greenfoot.util.GraphicsUtilities;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of actor images which have been rotated and had their transparency applied,
+ * ready to be drawn without a transform or composite (which is much faster for Java2D).
+ * Entries are keyed by the image data, the rotation, the transparency and the parity of
+ * the world cell size (which affects where the centre of rotation falls).  An entry is
+ * re-rendered if its image has been modified since, and the least recently used entries
+ * are evicted once the cache holds too many pixels.
+ * 
+ * <p>Images whose data has been given out by GreenfootImage.getAwtImage() can be modified
+ * behind our back, so they are not cached.
+ */
+@OnThread(Tag.Simulation)
+public class RotatedImageCache
+{
+    /** The most pixels held in the cache (at 4 bytes each). */
+    private static final int MAX_PIXELS = 4 * 1024 * 1024;
+    /** The largest image which will be cached, in pixels. */
+    private static final int MAX_IMAGE_PIXELS = 256 * 1024;
+    
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private int totalPixels;
+    // Re-used to look up entries without allocating:
+    private final Key probe = new Key();
+    
+    @OnThread(Tag.Any)
+    public RotatedImageCache()
+    {
+    }
+    
+    /**
+     * Draw an image rotated about the centre of a cell.  The result is the same as drawing
+     * the image centred on the cell (rounding its position down to a whole pixel), with
+     * the graphics rotated about the cell centre, and with the image's transparency.
+     * 
+     * @param g         The graphics to draw on
+     * @param image     The image to draw
+     * @param rotation  The rotation in degrees (0 to 359)
+     * @param xCenter   The x coordinate of the cell centre
+     * @param yCenter   The y coordinate of the cell centre
+     * @param cellSize  The world cell size
+     * @return  false if the image should not be drawn from the cache (in which case nothing
+     *          is drawn), true if it has been drawn.
+     */
+    public boolean drawImage(Graphics2D g, GreenfootImage image, int rotation, double xCenter, double yCenter, int cellSize)
+    {
+        Entry entry = get(image, rotation, cellSize);
+        if (entry == null) {
+            return false;
+        }
+        g.drawImage(entry.image, entry.getX(xCenter), entry.getY(yCenter), null);
+        return true;
+    }
+    
+    /**
+     * Get the cache entry for an image drawn at the given rotation (and its own transparency)
+     * about the centre of a cell, rendering it if necessary.
+     * 
+     * @return  The entry, or null if the image should not be drawn from the cache.
+     */
+    public Entry get(GreenfootImage image, int rotation, int cellSize)
+    {
+        if (ImageVisitor.isAwtImageExposed(image)) {
+            return null;
+        }
+        BufferedImage data = ImageVisitor.getImageForDrawing(image);
+        if (data.getWidth() * data.getHeight() > MAX_IMAGE_PIXELS) {
+            return null;
+        }
+        
+        probe.set(data, rotation, image.getTransparency(), (cellSize & 1) != 0);
+        Entry entry = entries.get(probe);
+        int modificationCount = ImageVisitor.getModificationCount(image);
+        if (entry == null || entry.modificationCount != modificationCount) {
+            if (entry != null) {
+                totalPixels -= entry.pixels();
+            }
+            Key key = new Key();
+            key.set(data, rotation, probe.transparency, probe.oddCellSize);
+            entry = render(key, modificationCount);
+            entries.put(key, entry);
+            totalPixels += entry.pixels();
+            evict();
+        }
+        return entry;
+    }
+    
+    /**
+     * Remove all entries.
+     */
+    public void clear()
+    {
+        entries.clear();
+        totalPixels = 0;
+    }
+    
+    /**
+     * Get the number of images currently cached.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+    
+    /**
+     * Render the image for a new entry.
+     */
+    private Entry render(Key key, int modificationCount)
+    {
+        BufferedImage src = key.image;
+        int width = src.getWidth();
+        int height = src.getHeight();
+        // The cell centre is either on a pixel boundary, or in the middle of a pixel:
+        double centerFraction = key.oddCellSize ? 0.5 : 0;
+        // Where the cell centre falls in the unrotated image:
+        double pivotX = centerFraction - Math.floor(centerFraction - width / 2.);
+        double pivotY = centerFraction - Math.floor(centerFraction - height / 2.);
+        
+        // The bounds of the rotated image, relative to the cell centre:
+        double theta = Math.toRadians(key.rotation);
+        double cos = Math.cos(theta);
+        double sin = Math.sin(theta);
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (int corner = 0; corner < 4; corner++) {
+            double x = ((corner & 1) == 0 ? 0 : width) - pivotX;
+            double y = ((corner & 2) == 0 ? 0 : height) - pivotY;
+            double rx = x * cos - y * sin;
+            double ry = x * sin + y * cos;
+            minX = Math.min(minX, rx);
+            maxX = Math.max(maxX, rx);
+            minY = Math.min(minY, ry);
+            maxY = Math.max(maxY, ry);
+        }
+        // Align the result to the pixel grid of the world:
+        double left = Math.floor(centerFraction + minX);
+        double top = Math.floor(centerFraction + minY);
+        int resultWidth = Math.max(1, (int) (Math.ceil(centerFraction + maxX) - left));
+        int resultHeight = Math.max(1, (int) (Math.ceil(centerFraction + maxY) - top));
+        double offsetX = left - centerFraction;
+        double offsetY = top - centerFraction;
+        
+        BufferedImage result = GraphicsUtilities.createCompatibleTranslucentImage(resultWidth, resultHeight);
+        Graphics2D g = result.createGraphics();
+        g.translate(-offsetX, -offsetY);
+        if (key.rotation != 0) {
+            g.rotate(theta);
+        }
+        if (key.transparency < 255) {
+            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, key.transparency / 255f));
+        }
+        // (The translations together are whole pixels, though each may not be.)
+        g.translate(-pivotX, -pivotY);
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+        
+        return new Entry(result, offsetX, offsetY, modificationCount);
+    }
+    
+    /**
+     * Remove the least recently used entries until the cache is within its bounds.
+     */
+    private void evict()
+    {
+        for (Iterator<Entry> it = entries.values().iterator(); totalPixels > MAX_PIXELS && it.hasNext(); ) {
+            totalPixels -= it.next().pixels();
+            it.remove();
+        }
+    }
+    
+    @OnThread(Tag.Any)
+    private static class Key
+    {
+        private BufferedImage image;
+        private int rotation;
+        private int transparency;
+        private boolean oddCellSize;
+        
+        void set(BufferedImage image, int rotation, int transparency, boolean oddCellSize)
+        {
+            this.image = image;
+            this.rotation = rotation;
+            this.transparency = transparency;
+            this.oddCellSize = oddCellSize;
+        }
+        
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return image == other.image && rotation == other.rotation
+                    && transparency == other.transparency && oddCellSize == other.oddCellSize;
+        }
+        
+        @Override
+        public int hashCode()
+        {
+            return ((System.identityHashCode(image) * 31 + rotation) * 31 + transparency) * 2 + (oddCellSize ? 1 : 0);
+        }
+    }
+    
+    /**
+     * An image drawn at a rotation and transparency.  The image remains valid after the
+     * entry has been evicted from the cache.
+     */
+    @OnThread(Tag.Any)
+    public static class Entry
+    {
+        private final BufferedImage image;
+        // The position of the image relative to the cell centre:
+        private final double offsetX;
+        private final double offsetY;
+        // The modification count of the source image when this was rendered:
+        private final int modificationCount;
+        
+        Entry(BufferedImage image, double offsetX, double offsetY, int modificationCount)
+        {
+            this.image = image;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.modificationCount = modificationCount;
+        }
+        
+        int pixels()
+        {
+            return image.getWidth() * image.getHeight();
+        }
+        
+        public BufferedImage getImage()
+        {
+            return image;
+        }
+        
+        /**
+         * Get the x coordinate at which to draw the image, for the given cell centre.
+         */
+        public int getX(double xCenter)
+        {
+            // Both the centre and the offset are whole, or both have a half pixel:
+            return (int) Math.round(xCenter + offsetX);
+        }
+        
+        /**
+         * Get the y coordinate at which to draw the image, for the given cell centre.
+         */
+        public int getY(double yCenter)
+        {
+            return (int) Math.round(yCenter + offsetY);
+        }
+    }
+}
@@ -0,0 +1,574 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.GreenfootImage;
+import greenfoot.ImageVisitor;
+import greenfoot.World;
+import greenfoot.WorldVisitor;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders the world background and actors by splitting the world image into square
+ * tiles, which are drawn independently (each clipped to its own area), in parallel if
+ * there is more than one processor.
+ * 
+ * <p>The actors are first collected in paint order, along with what exactly will be
+ * drawn for each and where (using the rotated image cache), and binned into the tiles
+ * they overlap; each tile then draws its actors in paint order.  A record of what each
+ * tile contains (the background, and each actor's image, with the image's modification
+ * count and transparency, and the actor's position and rotation) is kept for the last few
+ * images rendered into, and a tile is only drawn if its contents differ from those it had
+ * when the same image was last rendered.  The images are compared by reference, so the
+ * records keep the images drawn reachable until the world image is rendered again (or
+ * forgotten).  Tiles which something else is drawn on top of afterwards (text, for
+ * instance) are always drawn again next time.
+ */
+@OnThread(Tag.Simulation)
+public class TileRenderer
+{
+    /** The width and height of the tiles, in pixels. */
+    public static final int TILE_SIZE = 64;
+    
+    private static final Color BACKGROUND = Color.WHITE;
+    /** How many images to remember the tile contents for. */
+    private static final int IMAGES_TRACKED = 4;
+    /** The number of tasks to split the tiles into, per thread. */
+    private static final int TASKS_PER_THREAD = 4;
+    
+    private final RotatedImageCache rotatedImages;
+    private final int parallelism;
+    private ForkJoinPool pool;
+    
+    // The actors to draw in the current frame, in paint order; re-used between frames:
+    private Item[] items = new Item[0];
+    private int itemCount;
+    
+    // For the current frame:
+    private int columns;
+    private int rows;
+    private int[][] tileItems = new int[0][];
+    private int[] tileItemCounts = new int[0];
+    private int[] dirtyTiles = new int[0];
+    private int dirtyCount;
+    private BufferedImage worldImage;
+    private GreenfootImage background;
+    private int cellSize;
+    
+    /** The tile contents of recently rendered images, the most recently used last. */
+    private final LinkedHashMap<BufferedImage, Contents> renderedContents = new LinkedHashMap<BufferedImage, Contents>(8, 0.75f, true) {
+        @Override
+        @OnThread(value = Tag.Simulation, ignoreParent = true)
+        protected boolean removeEldestEntry(Map.Entry<BufferedImage, Contents> eldest)
+        {
+            return size() > IMAGES_TRACKED;
+        }
+    };
+    
+    /**
+     * Create a tile renderer which draws rotated images from the given cache, using up to
+     * the given number of threads.
+     */
+    @OnThread(Tag.Any)
+    public TileRenderer(RotatedImageCache rotatedImages, int parallelism)
+    {
+        this.rotatedImages = rotatedImages;
+        this.parallelism = parallelism;
+    }
+    
+    /**
+     * Draw the world background and actors into the given image, which is the size of the
+     * world.
+     * 
+     * @param drawWorld   The world to draw
+     * @param worldImage  The image to draw into
+     * @param overlays    The areas which will be drawn on top of the result (by the caller)
+     * @return  The number of tiles which were drawn (the others were already up to date).
+     */
+    public int render(World drawWorld, BufferedImage worldImage, List<Rectangle> overlays)
+    {
+        int width = worldImage.getWidth();
+        int height = worldImage.getHeight();
+        this.worldImage = worldImage;
+        this.cellSize = WorldVisitor.getCellSize(drawWorld);
+        background = WorldVisitor.getBackgroundImage(drawWorld);
+        setupTiles(width, height);
+        
+        collectItems(drawWorld);
+        
+        // Find the tiles which need drawing:
+        Contents previous = renderedContents.get(worldImage);
+        if (previous != null && previous.tileItems.length != tileItems.length) {
+            previous = null;
+        }
+        boolean sameBackground = previous != null && previous.hasBackground(background);
+        dirtyCount = 0;
+        for (int tile = 0; tile < tileItems.length; tile++) {
+            if (! sameBackground || ! previous.hasItems(tile, items, tileItems[tile], tileItemCounts[tile])) {
+                dirtyTiles[dirtyCount++] = tile;
+            }
+        }
+        
+        int tasks = Math.min(dirtyCount, parallelism * TASKS_PER_THREAD);
+        if (parallelism <= 1 || tasks <= 1) {
+            renderTiles(0, dirtyCount);
+        }
+        else {
+            List<TileTask> tileTasks = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                tileTasks.add(new TileTask(this, dirtyCount * i / tasks, dirtyCount * (i + 1) / tasks));
+            }
+            getPool().invoke(new RecursiveAction() {
+                @Override
+                @OnThread(value = Tag.Simulation, ignoreParent = true)
+                protected void compute()
+                {
+                    invokeAll(tileTasks);
+                }
+            });
+        }
+        
+        // Remember what is now in the image.  The overlays will change it:
+        Contents rendered = previous != null ? previous : new Contents();
+        rendered.set(background, items, itemCount, tileItems, tileItemCounts);
+        for (Rectangle overlay : overlays) {
+            forEachTile(overlay.x, overlay.y, overlay.x + overlay.width, overlay.y + overlay.height,
+                    tile -> rendered.tileKnown[tile] = false);
+        }
+        renderedContents.put(worldImage, rendered);
+        
+        // Don't keep the frame's actors and images reachable:
+        for (int i = 0; i < itemCount; i++) {
+            items[i].clear();
+        }
+        this.worldImage = null;
+        background = null;
+        return dirtyCount;
+    }
+    
+    /**
+     * Forget what has been rendered into the given image, because it has been (or will be)
+     * drawn on by other means.
+     */
+    public void forget(BufferedImage image)
+    {
+        renderedContents.remove(image);
+    }
+    
+    /**
+     * Forget what has been rendered into all images.
+     */
+    public void forgetAll()
+    {
+        renderedContents.clear();
+    }
+    
+    private void setupTiles(int width, int height)
+    {
+        columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        int tiles = columns * rows;
+        if (tileItems.length != tiles) {
+            tileItems = new int[tiles][];
+            for (int i = 0; i < tiles; i++) {
+                tileItems[i] = new int[16];
+            }
+            tileItemCounts = new int[tiles];
+            dirtyTiles = new int[tiles];
+        }
+        Arrays.fill(tileItemCounts, 0);
+    }
+    
+    /**
+     * Collect the actors to be drawn, in paint order, work out what will be drawn for each,
+     * and put them in the tiles they overlap.
+     */
+    private void collectItems(World drawWorld)
+    {
+        itemCount = 0;
+        int paintSeq = 0;
+        for (Actor actor : WorldVisitor.getObjectsListInPaintOrder(drawWorld)) {
+            GreenfootImage image = ActorVisitor.getDisplayImage(actor);
+            if (image == null) {
+                continue;
+            }
+            ActorVisitor.setLastPaintSeqNum(actor, paintSeq++);
+            
+            int ax;
+            int ay;
+            try {
+                ax = ActorVisitor.getX(actor);
+                ay = ActorVisitor.getY(actor);
+            }
+            catch (IllegalStateException e) {
+                // The actor has been removed from the world (see WorldRenderer.paintObjects)
+                continue;
+            }
+            
+            if (itemCount == items.length) {
+                items = Arrays.copyOf(items, Math.max(16, itemCount * 2));
+                for (int i = itemCount; i < items.length; i++) {
+                    items[i] = new Item();
+                }
+            }
+            int index = itemCount++;
+            Item item = items[index];
+            item.set(actor, image, ax, ay, cellSize, rotatedImages);
+            forEachTile(item.left, item.top, item.right, item.bottom, tile -> addToTile(tile, index));
+        }
+    }
+    
+    private void addToTile(int tile, int item)
+    {
+        int count = tileItemCounts[tile];
+        if (count == tileItems[tile].length) {
+            tileItems[tile] = Arrays.copyOf(tileItems[tile], count * 2);
+        }
+        tileItems[tile][count] = item;
+        tileItemCounts[tile] = count + 1;
+    }
+    
+    /**
+     * Draw the dirty tiles from the given index (inclusive) to the given index (exclusive).
+     */
+    private void renderTiles(int from, int to)
+    {
+        for (int i = from; i < to; i++) {
+            renderTile(dirtyTiles[i]);
+        }
+    }
+    
+    private void renderTile(int tile)
+    {
+        int x = (tile % columns) * TILE_SIZE;
+        int y = (tile / columns) * TILE_SIZE;
+        Graphics2D g = worldImage.createGraphics();
+        g.clipRect(x, y, TILE_SIZE, TILE_SIZE);
+        
+        if (background != null) {
+            ImageVisitor.drawImage(background, g, 0, 0, null, true);
+        }
+        else {
+            g.setColor(BACKGROUND);
+            g.fillRect(x, y, TILE_SIZE, TILE_SIZE);
+        }
+        
+        int[] tileContents = tileItems[tile];
+        for (int i = 0; i < tileItemCounts[tile]; i++) {
+            items[tileContents[i]].draw(g);
+        }
+        g.dispose();
+    }
+    
+    /**
+     * Perform an action for each tile overlapping the given area.
+     */
+    private void forEachTile(int left, int top, int right, int bottom, TileAction action)
+    {
+        int firstColumn = Math.max(0, left / TILE_SIZE);
+        int lastColumn = Math.min(columns - 1, (right - 1) / TILE_SIZE);
+        int firstRow = Math.max(0, top / TILE_SIZE);
+        int lastRow = Math.min(rows - 1, (bottom - 1) / TILE_SIZE);
+        if (right <= 0 || bottom <= 0) {
+            return;
+        }
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                action.apply(row * columns + column);
+            }
+        }
+    }
+    
+    private ForkJoinPool getPool()
+    {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+    
+    @FunctionalInterface
+    private static interface TileAction
+    {
+        @OnThread(Tag.Simulation)
+        void apply(int tile);
+    }
+    
+    /**
+     * What to draw for one actor: either an image at a position (the actor's image, or a
+     * rotated version of it from the cache), or the actor's image through a rotation.
+     */
+    @OnThread(Tag.Simulation)
+    private static class Item
+    {
+        private GreenfootImage image;
+        private BufferedImage rotated;
+        private int x;
+        private int y;
+        private int rotation;
+        private double xCenter;
+        private double yCenter;
+        // The area drawn on, in pixels (right and bottom exclusive):
+        private int left;
+        private int top;
+        private int right;
+        private int bottom;
+        // The image data drawn from (null if it may be changed behind our back), with the
+        // image's modification count and transparency when the item was set:
+        private BufferedImage drawnImage;
+        private int modificationCount;
+        private int transparency;
+        
+        @OnThread(Tag.Any)
+        Item()
+        {
+        }
+        
+        void set(Actor actor, GreenfootImage image, int ax, int ay, int cellSize, RotatedImageCache rotatedImages)
+        {
+            this.image = image;
+            int width = image.getWidth();
+            int height = image.getHeight();
+            rotation = ActorVisitor.getRotation(actor);
+            xCenter = ax * cellSize + cellSize / 2.;
+            yCenter = ay * cellSize + cellSize / 2.;
+            x = (int) Math.floor(xCenter - width / 2.);
+            y = (int) Math.floor(yCenter - height / 2.);
+            
+            RotatedImageCache.Entry entry = null;
+            if (rotation != 0 || image.getTransparency() != 255) {
+                entry = rotatedImages.get(image, rotation, cellSize);
+            }
+            if (entry != null) {
+                rotated = entry.getImage();
+                x = entry.getX(xCenter);
+                y = entry.getY(yCenter);
+                width = rotated.getWidth();
+                height = rotated.getHeight();
+            }
+            else {
+                rotated = null;
+            }
+            
+            if (rotated == null && rotation != 0) {
+                // Drawn through a rotation; allow for the furthest a corner can reach, plus rounding:
+                int reach = (int) Math.ceil(Math.hypot(width, height) / 2) + 2;
+                left = (int) xCenter - reach;
+                top = (int) yCenter - reach;
+                right = (int) xCenter + reach + 1;
+                bottom = (int) yCenter + reach + 1;
+            }
+            else {
+                left = x;
+                top = y;
+                right = x + width;
+                bottom = y + height;
+            }
+            
+            drawnImage = ImageVisitor.isAwtImageExposed(image) ? null : ImageVisitor.getImageForDrawing(image);
+            modificationCount = ImageVisitor.getModificationCount(image);
+            transparency = image.getTransparency();
+        }
+        
+        void draw(Graphics2D g)
+        {
+            if (rotated != null) {
+                g.drawImage(rotated, x, y, null);
+            }
+            else if (rotation == 0) {
+                ImageVisitor.drawImage(image, g, x, y, null, true);
+            }
+            else {
+                AffineTransform oldTx = g.getTransform();
+                g.rotate(Math.toRadians(rotation), xCenter, yCenter);
+                ImageVisitor.drawImage(image, g, x, y, null, true);
+                g.setTransform(oldTx);
+            }
+        }
+        
+        void clear()
+        {
+            image = null;
+            rotated = null;
+            drawnImage = null;
+        }
+    }
+    
+    /**
+     * What was drawn into each tile of an image: the background, and the actors in each
+     * tile, in paint order.  Each actor is recorded by the values of its Item which decide
+     * what is drawn.
+     */
+    @OnThread(Tag.Simulation)
+    private static class Contents
+    {
+        private static final int VALUES_PER_ITEM = 5;
+        
+        // The background image data (null if none, or if not known), its modification
+        // count and transparency, and whether there was a background:
+        private BufferedImage background;
+        private int backgroundModificationCount;
+        private int backgroundTransparency;
+        private boolean hadBackground;
+        // For each actor: the image data drawn from (null if not known), and the image's
+        // modification count and transparency, the rotation and the position:
+        private BufferedImage[] images = new BufferedImage[0];
+        private int[] values = new int[0];
+        // The actors in each tile, as indexes into the above, and whether what is in the
+        // tile is known:
+        private int[][] tileItems = new int[0][];
+        private int[] tileItemCounts = new int[0];
+        private boolean[] tileKnown = new boolean[0];
+        
+        @OnThread(Tag.Any)
+        Contents()
+        {
+        }
+        
+        /**
+         * Record what has been drawn.
+         */
+        void set(GreenfootImage background, Item[] items, int itemCount, int[][] tileItems, int[] tileItemCounts)
+        {
+            hadBackground = background != null;
+            if (background != null && ! ImageVisitor.isAwtImageExposed(background)) {
+                this.background = ImageVisitor.getImageForDrawing(background);
+                backgroundModificationCount = ImageVisitor.getModificationCount(background);
+                backgroundTransparency = background.getTransparency();
+            }
+            else {
+                this.background = null;
+            }
+            
+            if (images.length < itemCount) {
+                images = new BufferedImage[itemCount];
+                values = new int[itemCount * VALUES_PER_ITEM];
+            }
+            for (int i = 0; i < itemCount; i++) {
+                Item item = items[i];
+                images[i] = item.drawnImage;
+                int v = i * VALUES_PER_ITEM;
+                values[v] = item.modificationCount;
+                values[v + 1] = item.transparency;
+                values[v + 2] = item.rotation;
+                values[v + 3] = item.x;
+                values[v + 4] = item.y;
+            }
+            // Don't keep images no longer drawn reachable:
+            Arrays.fill(images, itemCount, images.length, null);
+            
+            if (this.tileItems.length != tileItems.length) {
+                this.tileItems = new int[tileItems.length][];
+                this.tileItemCounts = new int[tileItems.length];
+                tileKnown = new boolean[tileItems.length];
+            }
+            for (int tile = 0; tile < tileItems.length; tile++) {
+                int count = tileItemCounts[tile];
+                if (this.tileItems[tile] == null || this.tileItems[tile].length < count) {
+                    this.tileItems[tile] = new int[tileItems[tile].length];
+                }
+                System.arraycopy(tileItems[tile], 0, this.tileItems[tile], 0, count);
+                this.tileItemCounts[tile] = count;
+                tileKnown[tile] = true;
+            }
+        }
+        
+        /**
+         * Check whether the given background (which may be null) is known to be the one
+         * which was drawn.
+         */
+        boolean hasBackground(GreenfootImage image)
+        {
+            if (image == null) {
+                return ! hadBackground;
+            }
+            return background != null && ! ImageVisitor.isAwtImageExposed(image)
+                    && ImageVisitor.getImageForDrawing(image) == background
+                    && ImageVisitor.getModificationCount(image) == backgroundModificationCount
+                    && image.getTransparency() == backgroundTransparency;
+        }
+        
+        /**
+         * Check whether a tile is known to hold the given items (and nothing else), drawn
+         * in the same way.
+         */
+        boolean hasItems(int tile, Item[] items, int[] tileContents, int count)
+        {
+            if (! tileKnown[tile] || tileItemCounts[tile] != count) {
+                return false;
+            }
+            int[] previousContents = tileItems[tile];
+            for (int i = 0; i < count; i++) {
+                Item item = items[tileContents[i]];
+                int previous = previousContents[i];
+                int v = previous * VALUES_PER_ITEM;
+                if (item.drawnImage == null || images[previous] != item.drawnImage
+                        || values[v] != item.modificationCount || values[v + 1] != item.transparency
+                        || values[v + 2] != item.rotation || values[v + 3] != item.x || values[v + 4] != item.y) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Draws a range of the dirty tiles.
+     */
+    private static class TileTask extends RecursiveAction
+    {
+        private final TileRenderer renderer;
+        private final int from;
+        private final int to;
+        
+        @OnThread(Tag.Any)
+        TileTask(TileRenderer renderer, int from, int to)
+        {
+            this.renderer = renderer;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        @OnThread(value = Tag.Simulation, ignoreParent = true)
+        protected void compute()
+        {
+            renderer.renderTiles(from, to);
+        }
+    }
+}
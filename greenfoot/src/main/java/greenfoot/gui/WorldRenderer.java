@@ -27,6 +27,8 @@ import greenfoot.GreenfootImage;
 import greenfoot.ImageVisitor;
 import greenfoot.World;
 import greenfoot.WorldVisitor;
+import greenfoot.core.SimulationProfiler;
+import greenfoot.core.SimulationProfiler.Phase;
 import greenfoot.core.TextLabel;
 import greenfoot.util.GreenfootUtil;
 import threadchecker.OnThread;
@@ -35,6 +37,7 @@ import threadchecker.Tag;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -54,12 +57,39 @@ public class WorldRenderer
     private Point dragLocation;
     /** Image used when dragging new actors on the world. Includes the drop shadow.*/
     private BufferedImage dragImage;
+    
+    /** Actor images ready-drawn at their rotation and transparency. */
+    private final RotatedImageCache rotatedImages = new RotatedImageCache();
+    
+    private final SimulationProfiler profiler = SimulationProfiler.getInstance();
+    
+    /**
+     * The project property which, if "true", makes the world be rendered in tiles (see
+     * {@link TileRenderer}).
+     */
+    @OnThread(Tag.Any)
+    public static final String TILED_RENDERING_PROPERTY = "world.tiledRendering";
+    
+    @OnThread(Tag.Any)
+    private volatile boolean tiled = false;
+    /** Renders the world in tiles, when tiled; created when first needed. */
+    private TileRenderer tileRenderer;
 
     @OnThread(Tag.Any)
     public WorldRenderer()
     {
     }
     
+    /**
+     * Set whether the background and actors are rendered in tiles, in parallel, re-drawing
+     * only the tiles which have changed.
+     */
+    @OnThread(Tag.Any)
+    public void setTiled(boolean tiled)
+    {
+        this.tiled = tiled;
+    }
+    
     /**
      * Render the currently held world into the given image.  It is assumed
      * that the image size matches the current world size.
@@ -71,6 +101,8 @@ public class WorldRenderer
      */
     public void renderWorld(World drawWorld, BufferedImage worldImage)
     {
+        long start = profiler.beginPhase();
+        boolean tiled = this.tiled;
         Graphics2D g2 = (Graphics2D)worldImage.getGraphics();
         
         if (drawWorld == null)
@@ -80,12 +112,47 @@ public class WorldRenderer
         }
         else
         {
-            paintBackground(g2, drawWorld, worldImage.getWidth(), worldImage.getHeight());
-            paintObjects(g2, drawWorld);
+            if (tiled)
+            {
+                if (tileRenderer == null)
+                {
+                    tileRenderer = new TileRenderer(rotatedImages, Runtime.getRuntime().availableProcessors());
+                }
+                tileRenderer.render(drawWorld, worldImage, getOverlays(drawWorld));
+            }
+            else
+            {
+                paintBackground(g2, drawWorld, worldImage.getWidth(), worldImage.getHeight());
+                paintObjects(g2, drawWorld);
+            }
             paintDraggedObject(g2, drawWorld);
             WorldVisitor.paintDebug(drawWorld, g2);
             paintWorldText(g2, drawWorld);
         }
+        
+        if (tileRenderer != null && (drawWorld == null || !tiled))
+        {
+            // The tile renderer no longer knows what is in the image:
+            tileRenderer.forget(worldImage);
+        }
+        profiler.endPhase(Phase.RENDER, start);
+    }
+
+    /**
+     * Get the areas which are drawn on after the actors: the dragged object and the text
+     * labels.  (The world's debug painting draws nothing.)
+     */
+    private List<Rectangle> getOverlays(World drawWorld)
+    {
+        List<Rectangle> overlays = new ArrayList<>();
+        if (dragImage != null) {
+            overlays.add(getDragImageBounds(drawWorld));
+        }
+        int cellSize = WorldVisitor.getCellSize(drawWorld);
+        for (TextLabel label : WorldVisitor.getTextLabels(drawWorld)) {
+            overlays.add(label.getBounds(cellSize));
+        }
+        return overlays;
     }
 
     /**
@@ -122,14 +189,17 @@ public class WorldRenderer
                     int paintY = (int) Math.floor(yCenter - halfHeight);
 
                     int rotation = ActorVisitor.getRotation(thing);
-                    if (rotation != 0) {
-                        // don't bother transforming if it is not rotated at
-                        // all.
-                        oldTx = g.getTransform();
-                        g.rotate(Math.toRadians(rotation), xCenter, yCenter);
+                    if (rotation == 0 && image.getTransparency() == 255) {
+                        // Nothing to gain from the cache
+                        ImageVisitor.drawImage(image, g, paintX, paintY, null, true);
+                    }
+                    else if (!rotatedImages.drawImage(g, image, rotation, xCenter, yCenter, cellSize)) {
+                        if (rotation != 0) {
+                            oldTx = g.getTransform();
+                            g.rotate(Math.toRadians(rotation), xCenter, yCenter);
+                        }
+                        ImageVisitor.drawImage(image, g, paintX, paintY, null, true);
                     }
-
-                    ImageVisitor.drawImage(image, g, paintX, paintY, null, true);
                 }
                 catch (IllegalStateException e) {
                     // We get this if the object has been removed from the
@@ -173,26 +243,12 @@ public class WorldRenderer
      */
     private void paintWorldText(Graphics2D g, World drawWorld)
     {
-        List<TextLabel> labels = WorldVisitor.getTextLabels(drawWorld);
-
-        if (labels.isEmpty()) {
-            return;
-        }
-
-        // Set up rendering context:
-        Font origFont = g.getFont();
-        Color orig = g.getColor();
-        Object origAntiAliasing = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
-
+        // The labels draw their text from cached images, so the graphics context's
+        // font and colour are not changed:
         int cellsize = WorldVisitor.getCellSize(drawWorld);
-        for (TextLabel label : labels) {
+        for (TextLabel label : WorldVisitor.getTextLabels(drawWorld)) {
             label.draw(g, cellsize);
         }
-
-        // Restore graphics context state:
-        g.setFont(origFont);
-        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, origAntiAliasing);
-        g.setColor(orig);
     }    
     
     /**
@@ -201,15 +257,23 @@ public class WorldRenderer
     private void paintDraggedObject(Graphics g, World drawWorld)
     {
         if(dragImage != null) {
-            int x = (int) dragLocation.getX();
-            int y = (int) dragLocation.getY();
-            int xCell =  WorldVisitor.toCellFloor(drawWorld, x);
-            int yCell =  WorldVisitor.toCellFloor(drawWorld, y);
-            int cellSize = WorldVisitor.getCellSize(drawWorld);
-            x = (int) ((xCell + 0.5) * cellSize - dragImage.getWidth()/2);
-            y = (int) ((yCell + 0.5) * cellSize - dragImage.getHeight()/2);
-
-            g.drawImage(dragImage, x, y, null);
+            Rectangle bounds = getDragImageBounds(drawWorld);
+            g.drawImage(dragImage, bounds.x, bounds.y, null);
         }
     }
+    
+    /**
+     * Get the area where the dragged object is painted (if there is one).
+     */
+    private Rectangle getDragImageBounds(World drawWorld)
+    {
+        int x = (int) dragLocation.getX();
+        int y = (int) dragLocation.getY();
+        int xCell =  WorldVisitor.toCellFloor(drawWorld, x);
+        int yCell =  WorldVisitor.toCellFloor(drawWorld, y);
+        int cellSize = WorldVisitor.getCellSize(drawWorld);
+        x = (int) ((xCell + 0.5) * cellSize - dragImage.getWidth()/2);
+        y = (int) ((yCell + 0.5) * cellSize - dragImage.getHeight()/2);
+        return new Rectangle(x, y, dragImage.getWidth(), dragImage.getHeight());
+    }
 }
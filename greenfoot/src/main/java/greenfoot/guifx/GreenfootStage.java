@@ -117,6 +117,7 @@ import javafx.scene.effect.DropShadow;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.KeyCodeCombination;
@@ -143,7 +144,6 @@ import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
@@ -204,6 +204,9 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
     private DebuggerObject draggedActor;
     private AnimationTimer vmCommsHandler;
     private boolean constructingWorld = false;
+    // The number of files loaded in the background by the debug VM, and requested:
+    private int preloadCompleted;
+    private int preloadRequested;
 
     public static enum State
     {
@@ -239,6 +242,7 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
 
     private GreenfootRecorder saveTheWorldRecorder;
     private final SoundRecorderControls soundRecorder;
+    private final ProfilerWindow profilerWindow;
     private GreenfootDebugHandler debugHandler;
     private final Menu recentProjectsMenu = new Menu(Config.getString("menu.openRecent"));
     private final SimpleBooleanProperty showingDebugger = new SimpleBooleanProperty(false);
@@ -251,6 +255,8 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
     // World image
     private final WritableImage[] worldImg = new WritableImage[2];
     private int nextWorldImgToWrite = 0;
+    // The regions changed by the last world image received (null if it was a full image):
+    private int[] lastWorldImgRegions;
 
     // The scenario information that usually shipped with it when uploading
     // to the gallery. We should maintain a reference to it and make sure
@@ -355,6 +361,7 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         stages.add(this);
 
         soundRecorder = new SoundRecorderControls(project);
+        profilerWindow = new ProfilerWindow();
 
         executionTwirler = new ExecutionTwirler(project, greenfootDebugHandler);
         controlPanel = new ControlPanel(this, executionTwirler);
@@ -494,6 +501,7 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         
         classDiagram.setProject(project);
         soundRecorder.setProject(project);
+        profilerWindow.setVmComms(greenfootDebugHandler.getVmComms());
         executionTwirler.setProject(project, greenfootDebugHandler);
 
         vmCommsHandler = new AnimationTimer()
@@ -583,6 +591,14 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
             {
                 message = Config.getString("centrePanel.message.error1") + " " + Config.getString("centrePanel.message.error2");
             }
+            else if (constructingWorld && preloadCompleted < preloadRequested)
+            {
+                Properties props = new Properties();
+                props.put("completed", Integer.toString(preloadCompleted));
+                props.put("requested", Integer.toString(preloadRequested));
+                message = Config.getString("centrePanel.message.initialising") + " "
+                        + Config.getString("centrePanel.message.loadingFiles", null, props, false);
+            }
             else if (constructingWorld)
             {
                 message = Config.getString("centrePanel.message.initialising");
@@ -1198,6 +1214,10 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
                         soundRecorder.getShowingProperty(),
                         new KeyCodeCombination(KeyCode.U, KeyCombination.SHORTCUT_DOWN),
                         this::toggleSoundRecorder),
+                JavaFXUtil.makeCheckMenuItem(Config.getString("menu.profiler"),
+                        profilerWindow.getShowingProperty(),
+                        null,
+                        this::toggleProfiler),
                 JavaFXUtil.makeCheckMenuItem(Config.getString("menu.debugger"),
                         showingDebugger,
                         new KeyCodeCombination(KeyCode.B, KeyCombination.SHORTCUT_DOWN)),
@@ -1271,6 +1291,23 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         }
     }
 
+    /**
+     * Show/hide the simulation profiler.
+     *
+     * @param showing if true show the profiler, hide for false.
+     */
+    private void toggleProfiler(Boolean showing)
+    {
+        if (showing)
+        {
+            profilerWindow.show();
+        }
+        else
+        {
+            profilerWindow.close();
+        }
+    }
+
     /**
      * Generates the Documentation for the current scenario
      */
@@ -1675,19 +1712,25 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
      * 
      * @param width   The image width
      * @param height  The image height
-     * @param buffer  The buffer containing the pixel data
+     * @param pixels  The complete world image pixel data
+     * @param changedRegions  The regions of the image which have changed since the last
+     *                        image received, as (x, y, width, height) quads, or null if
+     *                        the whole image may have changed
      */
-    public void receivedWorldImage(int width, int height, IntBuffer buffer)
+    public void receivedWorldImage(int width, int height, int[] pixels, int[] changedRegions)
     {
         // If we are closing a project but receive an image late on, ignore it:
         if (project == null)
         {
+            lastWorldImgRegions = null;
             return;
         }
         
+        boolean fullImage = changedRegions == null || lastWorldImgRegions == null;
         if (worldImg[nextWorldImgToWrite] == null || worldImg[nextWorldImgToWrite].getWidth() != width || worldImg[nextWorldImgToWrite].getHeight() != height)
         {
             worldImg[nextWorldImgToWrite] = new WritableImage(width == 0 ? 1 : width, height == 0 ? 1 : height);
+            fullImage = true;
 
             if (worldViewScroll.getWidth() < worldImg[nextWorldImgToWrite].getWidth() ||
                     worldViewScroll.getHeight() < worldImg[nextWorldImgToWrite].getHeight())
@@ -1700,8 +1743,19 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         }
         try
         {
-            worldImg[nextWorldImgToWrite].getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(),
-                    buffer, width);
+            PixelWriter pixelWriter = worldImg[nextWorldImgToWrite].getPixelWriter();
+            if (fullImage)
+            {
+                pixelWriter.setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+            }
+            else
+            {
+                // The image we're writing to was last written two images ago (we alternate
+                // between two), so it needs the previous image's changes as well as these:
+                writeWorldImageRegions(pixelWriter, width, pixels, lastWorldImgRegions);
+                writeWorldImageRegions(pixelWriter, width, pixels, changedRegions);
+            }
+            lastWorldImgRegions = changedRegions;
             worldDisplay.setImage(worldImg[nextWorldImgToWrite]);
             nextWorldImgToWrite = (nextWorldImgToWrite + 1) % worldImg.length;
             worldInstantiationError = false;
@@ -1710,6 +1764,7 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         catch (IndexOutOfBoundsException ex)
         {
             Debug.reportError("Error receiving world (world image probably too large)");
+            lastWorldImgRegions = null;
             worldInstantiationError = true;
             worldVisible.set(false);
         }
@@ -1720,6 +1775,22 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         }
     }
     
+    /**
+     * Write the given regions of the world image pixel data into a world image.
+     * 
+     * @param regions  The regions, as (x, y, width, height) quads
+     */
+    private static void writeWorldImageRegions(PixelWriter pixelWriter, int imageWidth, int[] pixels, int[] regions)
+    {
+        for (int i = 0; i < regions.length; i += 4)
+        {
+            int x = regions[i];
+            int y = regions[i + 1];
+            pixelWriter.setPixels(x, y, regions[i + 2], regions[i + 3], PixelFormat.getIntArgbInstance(),
+                    pixels, y * imageWidth + x, imageWidth);
+        }
+    }
+    
     /**
      * When processing messages from the remote VM, we discovered the world has changed.
      * 
@@ -2911,6 +2982,23 @@ public class GreenfootStage extends Stage implements FXCompileObserver,
         }
     }
 
+    /**
+     * Called with the progress of loading files in the background (see Greenfoot.preload).
+     * While the world is being constructed, this is shown in place of the world.
+     */
+    public void setPreloadProgress(int completed, int requested)
+    {
+        if (completed != preloadCompleted || requested != preloadRequested)
+        {
+            preloadCompleted = completed;
+            preloadRequested = requested;
+            if (constructingWorld)
+            {
+                updateBackgroundMessage();
+            }
+        }
+    }
+
     /**
      * Called with the latest simulation speed
      * @param simSpeed The simulation speed we received from the debug VM:
@@ -0,0 +1,264 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.guifx;
+
+import bluej.BlueJTheme;
+import bluej.Config;
+import bluej.utility.Debug;
+import bluej.utility.DialogManager;
+import greenfoot.core.SimulationProfiler.Phase;
+import greenfoot.vmcomm.LatencyStats;
+import greenfoot.vmcomm.ProfileData;
+import greenfoot.vmcomm.ProfileData.ClassSummary;
+import greenfoot.vmcomm.VMCommsMain;
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.image.Image;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.stage.FileChooser.ExtensionFilter;
+import javafx.stage.Stage;
+import javafx.util.Duration;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A window showing a live profile of the simulation: the average time per act round spent
+ * in each phase (acting, collision checking, rendering and transmitting the world image),
+ * and in each class's act() method, along with the achieved act and paint rates, the
+ * latency of commands and world images between the VMs, and the image cache statistics.  The simulation
+ * is profiled while the window is showing.
+ * The full profile can be exported as a CSV file.
+ */
+@OnThread(Tag.FXPlatform)
+public class ProfilerWindow extends Stage
+{
+    /** How many of the most recent rounds are averaged for the display. */
+    private static final int ROUNDS_SHOWN = 100;
+    
+    private final SimpleBooleanProperty showingProperty = new SimpleBooleanProperty(false);
+    private final Map<Phase, Label> phaseLabels = new EnumMap<>(Phase.class);
+    private final Label roundsLabel = new Label();
+    private final Label ratesLabel = new Label();
+    private final Label latencyLabel = new Label();
+    private final Label imageCacheLabel = new Label();
+    private final TableView<ClassSummary> classTable = new TableView<>();
+    private final Timeline refresher;
+    private VMCommsMain vmComms;
+    // The rounds in the summary being shown; used to convert totals to averages per round:
+    private int roundsShown;
+
+    public ProfilerWindow()
+    {
+        setTitle(Config.getString("profiler.title"));
+        Image icon = BlueJTheme.getApplicationFxIcon("greenfoot", false);
+        if (icon != null)
+        {
+            getIcons().add(icon);
+        }
+        
+        refresher = new Timeline(new KeyFrame(Duration.millis(500), e -> refresh()));
+        refresher.setCycleCount(Animation.INDEFINITE);
+
+        setOnShown(e -> {
+            showingProperty.set(true);
+            if (vmComms != null)
+            {
+                vmComms.setProfiling(true);
+            }
+            refresher.play();
+        });
+        setOnHidden(e -> {
+            showingProperty.set(false);
+            refresher.stop();
+            if (vmComms != null)
+            {
+                vmComms.setProfiling(false);
+            }
+        });
+        buildUI();
+    }
+    
+    private void buildUI()
+    {
+        HBox phases = new HBox(12);
+        for (Phase phase : Phase.values())
+        {
+            Label label = new Label();
+            phaseLabels.put(phase, label);
+            phases.getChildren().add(label);
+        }
+        
+        TableColumn<ClassSummary, String> nameColumn = new TableColumn<>(Config.getString("profiler.class"));
+        nameColumn.setCellValueFactory(c -> new ReadOnlyStringWrapper(c.getValue().getClassName()));
+        nameColumn.setPrefWidth(200);
+        classTable.getColumns().add(nameColumn);
+        addColumn("profiler.acts", c -> perRound(c.getActCount()));
+        addColumn("profiler.actTime", c -> millisPerRound(c.getActNanos()));
+        addColumn("profiler.collisions", c -> perRound(c.getCollideCount()));
+        addColumn("profiler.collideTime", c -> millisPerRound(c.getCollideNanos()));
+        classTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+        
+        Button clear = new Button(Config.getString("profiler.clear"));
+        clear.setOnAction(e -> {
+            if (vmComms != null)
+            {
+                vmComms.getProfileData().clear();
+            }
+            refresh();
+        });
+        Button export = new Button(Config.getString("profiler.export"));
+        export.setOnAction(e -> exportCsv());
+        HBox buttons = new HBox(12, roundsLabel, clear, export);
+        buttons.setAlignment(Pos.CENTER_RIGHT);
+        
+        VBox top = new VBox(6, phases, ratesLabel, latencyLabel, imageCacheLabel);
+        BorderPane content = new BorderPane(classTable, top, null, buttons, null);
+        content.setPadding(new Insets(12));
+        BorderPane.setMargin(classTable, new Insets(12, 0, 12, 0));
+        setScene(new Scene(content, 600, 400));
+        refresh();
+    }
+    
+    private void addColumn(String labelKey, Function<ClassSummary, String> valueGetter)
+    {
+        TableColumn<ClassSummary, String> column = new TableColumn<>(Config.getString(labelKey));
+        column.setCellValueFactory(c -> new ReadOnlyObjectWrapper<>(valueGetter.apply(c.getValue())));
+        column.setStyle("-fx-alignment: CENTER-RIGHT;");
+        classTable.getColumns().add(column);
+    }
+    
+    /**
+     * Set the communications channel with the debug VM, which provides the profile.
+     */
+    public void setVmComms(VMCommsMain vmComms)
+    {
+        this.vmComms = vmComms;
+        if (isShowing())
+        {
+            vmComms.setProfiling(true);
+        }
+    }
+    
+    public SimpleBooleanProperty getShowingProperty()
+    {
+        return showingProperty;
+    }
+    
+    /**
+     * Update the display from the latest profile.
+     */
+    private void refresh()
+    {
+        if (vmComms == null)
+        {
+            return;
+        }
+        ProfileData.Summary summary = vmComms.getProfileData().summarize(ROUNDS_SHOWN);
+        roundsShown = summary.getRounds();
+        for (Phase phase : Phase.values())
+        {
+            phaseLabels.get(phase).setText(Config.getString("profiler.phase." + phase.name().toLowerCase())
+                    + ": " + millisPerRound(summary.getNanos(phase)) + " ms");
+        }
+        roundsLabel.setText(Config.getString("profiler.rounds") + " " + vmComms.getProfileData().getRoundCount());
+        ProfileData profile = vmComms.getProfileData();
+        ratesLabel.setText(Config.getString("profiler.rates.acts") + " "
+                + String.format("%.1f", profile.getActRate()) + ", "
+                + Config.getString("profiler.rates.paints") + " "
+                + String.format("%.1f", profile.getPaintRate()));
+        LatencyStats commandLatency = vmComms.getCommandLatency();
+        latencyLabel.setText(Config.getString("profiler.latency") + " "
+                + Config.getString("profiler.latency.commands") + " "
+                + String.format("%.0f/%.0f", commandLatency.getMeanMicros(), commandLatency.getMaxMicros()) + " us, "
+                + Config.getString("profiler.latency.frames") + " "
+                + profile.getFrameLatencyMeanMicros() + "/" + profile.getFrameLatencyMaxMicros() + " us");
+        imageCacheLabel.setText(Config.getString("profiler.imageCache") + " "
+                + profile.getImageCacheCount() + " " + Config.getString("profiler.imageCache.images")
+                + " (" + profile.getImageCacheKilobytes() + " KB), "
+                + profile.getImageCacheHits() + " " + Config.getString("profiler.imageCache.hits") + ", "
+                + profile.getImageCacheMisses() + " " + Config.getString("profiler.imageCache.misses") + ", "
+                + profile.getImageCacheEvictions() + " " + Config.getString("profiler.imageCache.evictions"));
+        classTable.getItems().setAll(summary.getClasses());
+    }
+    
+    private String perRound(long total)
+    {
+        return roundsShown == 0 ? "" : String.format("%.1f", (double) total / roundsShown);
+    }
+    
+    private String millisPerRound(long totalNanos)
+    {
+        return roundsShown == 0 ? "" : String.format("%.3f", totalNanos / 1000000.0 / roundsShown);
+    }
+    
+    /**
+     * Ask for a file, and write the whole profile to it.
+     */
+    private void exportCsv()
+    {
+        if (vmComms == null)
+        {
+            return;
+        }
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(Config.getString("profiler.export"));
+        chooser.getExtensionFilters().add(new ExtensionFilter("CSV", "*.csv"));
+        chooser.setInitialFileName("profile.csv");
+        File file = chooser.showSaveDialog(this);
+        if (file == null)
+        {
+            return;
+        }
+        try (Writer writer = new BufferedWriter(new FileWriter(file)))
+        {
+            vmComms.getProfileData().writeCsv(writer);
+        }
+        catch (IOException ioe)
+        {
+            Debug.reportError("Could not write profile", ioe);
+            DialogManager.showErrorFX(this, "profiler-export-failed");
+        }
+    }
+}
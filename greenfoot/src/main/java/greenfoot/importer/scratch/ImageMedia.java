@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2010  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2010,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,7 +21,9 @@
  */
 package greenfoot.importer.scratch;
 
+import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -45,6 +47,11 @@ public class ImageMedia extends ScratchMedia
 {
     // If non-null, the File that the image has been saved into
     private File imageFile;
+    // Once decoded, the contents of the image file, and its extension and size:
+    private byte[] fileBytes;
+    private String extension;
+    private int width;
+    private int height;
 
     public ImageMedia(int version, List<ScratchObject> scratchObjects)
     {
@@ -85,38 +92,61 @@ public class ImageMedia extends ScratchMedia
     
     public int getWidth()
     {
-        byte[] jpegBytes = getJpegBytes();
-        if (jpegBytes != null) {
-            try {
-                return ImageIO.read(new ByteArrayInputStream(jpegBytes)).getWidth();
-            } catch (IOException e) {
-                return -1;
-            }
-        } else {
+        if (getJpegBytes() == null) {
             return getImage().getWidth();
-        }        
+        }
+        try {
+            decode();
+            return width;
+        } catch (IOException e) {
+            return -1;
+        }
     }
     
     public int getHeight()
     {
+        if (getJpegBytes() == null) {
+            return getImage().getHeight();
+        }
+        try {
+            decode();
+            return height;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    @Override public synchronized void decode() throws IOException
+    {
+        if (extension != null) {
+            return;
+        }
+        
         byte[] jpegBytes = getJpegBytes();
         if (jpegBytes != null) {
+            // The size is only needed for the offsets; the file is saved even if unreadable:
+            BufferedImage img = null;
             try {
-                return ImageIO.read(new ByteArrayInputStream(jpegBytes)).getHeight();
+                img = ImageIO.read(new ByteArrayInputStream(jpegBytes));
             } catch (IOException e) {
-                return -1;
+                // Size unknown
             }
+            fileBytes = jpegBytes;
+            width = img == null ? -1 : img.getWidth();
+            height = img == null ? -1 : img.getHeight();
+            extension = "jpg";
         } else {
-            return getImage().getHeight();
-        }        
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            ImageIO.write(getImage().getBufferedImage(), "png", png);
+            fileBytes = png.toByteArray();
+            extension = "png";
+        }
     }
 
     @Override public File saveInto(File destDir, Properties props, String prefix) throws IOException
     {       
         if (imageFile == null) {
-            byte[] jpegBytes = getJpegBytes();
-            
-            String extension = jpegBytes == null ? "png" : "jpg";
+            decode();
             
             File imageDir = new File(destDir, "images");
             imageDir.mkdirs();
@@ -127,13 +157,11 @@ public class ImageMedia extends ScratchMedia
                     break;
             }
             
-            if (jpegBytes != null) {
-                FileOutputStream fos = new FileOutputStream(imageFile);
-                fos.write(jpegBytes);
-                fos.close();
-            } else {
-                ImageIO.write(getImage().getBufferedImage(), "png", imageFile);
-            }
+            FileOutputStream fos = new FileOutputStream(imageFile);
+            fos.write(fileBytes);
+            fos.close();
+            // Not needed once saved:
+            fileBytes = null;
         }
         
         return imageFile;
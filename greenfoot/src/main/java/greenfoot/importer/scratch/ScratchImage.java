@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2010  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2010,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -35,14 +35,16 @@ import java.util.ArrayList;
 public class ScratchImage extends ScratchObject
 {
     // The ScratchObject representing the bits.  Almost certainly an object reference
-    // When it is resolved, the actual image will be stored in the "img" field
+    // When it is decoded, the actual image will be stored in the "img" field
     private ScratchObject bitsRef;
     private int w;
     private int h;
     private int d;
     private int offset;
-    // The image, only valid after resolve is called
+    // The image, only valid after getBufferedImage is called
     private BufferedImage img;
+    // The image's pixels, while it is being decoded
+    private int[] pixels;
     // The ScratchObject representing the palette.  Almost certainly an object reference
     // When it is resolved, the actual image will be stored in the "palette" field
     private ScratchObject paletteRef;
@@ -70,7 +72,8 @@ public class ScratchImage extends ScratchObject
     }
 
     /**
-     * Resolves the references for bits and palette, and decodes the image
+     * Resolves the references for bits and palette.  The image is decoded when it is
+     * first needed.
      */
     public ScratchObject resolve(ArrayList<ScratchObject> objects) {
         if (isResolved) return this;
@@ -85,12 +88,24 @@ public class ScratchImage extends ScratchObject
             }
         }
         
+        bitsRef = bitsRef.resolve(objects);
+        
+        isResolved = true;
+
+        return this;
+    }
+    
+    /**
+     * Decodes the image from the resolved bits and palette.
+     */
+    private void decode()
+    {
         // The compression scheme is documented in the 
         // Graphics-Primitives.Bitmap.compress:toByteArray: method
         
-        img = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        pixels = new int[w * h];
                
-        ScratchObject resolved = bitsRef.resolve(objects);
+        ScratchObject resolved = bitsRef;
         
         if (resolved.getValue() instanceof int[]) {
             // Uncompressed:
@@ -155,9 +170,10 @@ public class ScratchImage extends ScratchObject
             }
         }
         
-        isResolved = true;
-
-        return this;
+        BufferedImage decoded = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+        decoded.setRGB(0, 0, w, h, pixels, 0, w);
+        pixels = null;
+        img = decoded;
     }
     
     private void setBitmapEntry(int pos, int val)
@@ -178,7 +194,7 @@ public class ScratchImage extends ScratchObject
             // Some bits can be beyond the image due to aligning the images to nice 2^n sizes:
             if (x < w && y < h) {
                 if (palette != null) {
-                    img.setRGB(x, y, palette[index].getRGB());
+                    pixels[y * w + x] = palette[index].getRGB();
                 } else {
                     // If the alpha is zero but the other channels are not,
                     // set alpha to 255.  I can't find any part of the Scratch code
@@ -187,7 +203,7 @@ public class ScratchImage extends ScratchObject
                     if (index >> 24 == 0 && (index & 0xFFFFFF) != 0) {
                         index |= 0xFF000000;
                     }
-                    img.setRGB(x, y, index);
+                    pixels[y * w + x] = index;
                 }
             }
             
@@ -233,8 +249,15 @@ public class ScratchImage extends ScratchObject
         return h;
     }
 
-    public BufferedImage getBufferedImage()
+    /**
+     * Gets the image, decoding it if this has not been done already.  Only valid
+     * after resolve is called.
+     */
+    public synchronized BufferedImage getBufferedImage()
     {
+        if (img == null) {
+            decode();
+        }
         return img;
     }
     
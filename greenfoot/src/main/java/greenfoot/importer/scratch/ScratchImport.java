@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2010,2018  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2010,2018,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -26,11 +26,13 @@ import greenfoot.core.GreenfootMain;
 
 import java.awt.Color;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -38,6 +40,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import bluej.pkgmgr.PackageFile;
 import bluej.pkgmgr.PackageFileFactory;
@@ -48,27 +54,27 @@ public class ScratchImport
     /**
      * Reads a fixed number of bytes, treats them as ASCII, and returns them as a String
      */
-    private static String readFixedASCII(FileInputStream input, int num) throws IOException
+    private static String readFixedASCII(ByteBuffer input, int num) throws IOException
     {
         byte[] b = new byte[num];
-        input.read(b);
+        input.get(b);
         return new String(b, Charset.forName("US-ASCII"));
     }
     
     /**
      * Reads a fixed number of bytes, treats them as UTF8, and returns them as a String
      */
-    private static String readUTF8(FileInputStream input, int num) throws IOException
+    private static String readUTF8(ByteBuffer input, int num) throws IOException
     {
         byte[] b = new byte[num];
-        input.read(b);
+        input.get(b);
         return new String(b, Charset.forName("UTF-8"));
     }
     
     /**
      * Reads the version string from the file
      */
-    private static void readVersion(FileInputStream input) throws IOException 
+    private static void readVersion(ByteBuffer input) throws IOException 
     {
         String ver = readFixedASCII(input, 10);
         if ("ScratchV01".equals(ver)) {
@@ -85,13 +91,13 @@ public class ScratchImport
      * 
      * The Scratch format has all sorts of integer sizes, including 3 bytes.
      */
-    private static long readInt(FileInputStream input, int bytes) throws IOException
+    private static long readInt(ByteBuffer input, int bytes) throws IOException
     {
         long x = 0;
         for (int i = 0; i < bytes; i++)
         {
             x <<= 8;
-            x |= input.read();
+            x |= input.get() & 0xFF;
         }
         
         // Fix negative numbers when less than 8-bytes:
@@ -106,18 +112,18 @@ public class ScratchImport
     /**
      * Reads the header from a Scratch file (the version, and the info block, which is skipped)
      */
-    private static void readHeader(FileInputStream input) throws IOException
+    private static void readHeader(ByteBuffer input) throws IOException
     {
         readVersion(input);
         int infoSize = (int)readInt(input, 4);
-        input.skip(infoSize);
+        input.position(input.position() + infoSize);
     }
     
-    private static ScratchObject readObject(FileInputStream input) throws IOException
+    private static ScratchObject readObject(ByteBuffer input) throws IOException
     {
-        int id = input.read();
-        if (id == -1)
+        if (!input.hasRemaining())
             return null;
+        int id = input.get() & 0xFF;
         
         if (id >= 100) {
             //User Object
@@ -129,10 +135,10 @@ public class ScratchImport
     }
     
     // See Scratch Object IO.ObjStream.readObjectRecord
-    private static ScratchUserObject readUserObject(int id, FileInputStream input) throws IOException
+    private static ScratchUserObject readUserObject(int id, ByteBuffer input) throws IOException
     {
-        int version = input.read();
-        int fieldAmount = input.read();
+        int version = input.get() & 0xFF;
+        int fieldAmount = input.get() & 0xFF;
         
         List<ScratchObject> scratchObjects = Arrays.asList(readFields(input, fieldAmount));
         
@@ -150,14 +156,14 @@ public class ScratchImport
         }
     }
     
-    private static ScratchObject readPrimitiveOrReference(FileInputStream input) throws IOException
+    private static ScratchObject readPrimitiveOrReference(ByteBuffer input) throws IOException
     {
-        int id = input.read();
+        int id = input.get() & 0xFF;
         return readPrimitiveOrReferenceWithGivenId(id, input);
     }
     
     // See Scratch Object IO.ObjStream.readField and Scratch Object IO.ObjStream.<class>  
-    private static ScratchObject readPrimitiveOrReferenceWithGivenId(int id, FileInputStream input) throws IOException
+    private static ScratchObject readPrimitiveOrReferenceWithGivenId(int id, ByteBuffer input) throws IOException
     {
         switch (id)
         {
@@ -182,19 +188,18 @@ public class ScratchImport
         } case 11: { // ByteArray
             int size = (int)readInt(input, 4);
             byte[] b = new byte[size];
-            input.read(b);
+            input.get(b);
             return new ScratchPrimitive(b);
         } case 12: { // SoundBuf -- TODO read this properly as int16s
             int size = (int)readInt(input, 4);
             byte[] b = new byte[size * 2];
-            input.read(b);
+            input.get(b);
             return new ScratchPrimitive(b);
         } case 13: { //Bitmap, oddly this is effectively int[] and nothing more
             int size = (int)readInt(input, 4);
             int[] arr = new int[size];
-            for (int i = 0; i < size; i++) {
-                arr[i] = (int)readInt(input, 4);
-            }
+            input.asIntBuffer().get(arr);
+            input.position(input.position() + size * 4);
             return new ScratchPrimitive(arr);
         } case 14: { // UTF8
             int size = (int)readInt(input, 4);
@@ -251,7 +256,7 @@ public class ScratchImport
         }
     }
 
-    private static ScratchObject[] readFields(FileInputStream input,
+    private static ScratchObject[] readFields(ByteBuffer input,
             int size) throws IOException
     {
         List<ScratchObject> scratchObjects = new ArrayList<ScratchObject>();
@@ -263,7 +268,7 @@ public class ScratchImport
 
 
 
-    private static List<ScratchObject> readObjectStore(FileInputStream input) throws IOException
+    private static List<ScratchObject> readObjectStore(ByteBuffer input) throws IOException
     {
         String header = readFixedASCII(input, 10);
         if (!"ObjS\001Stch\001".equals(header)) {
@@ -296,18 +301,75 @@ public class ScratchImport
         return objects;
     }
 
-    private static void importScratch(File src, File dest)
+    /**
+     * Reads the objects from a Scratch file, and resolves the references between them.
+     * The whole file is read into memory at once rather than a byte at a time.  (It is
+     * not mapped, as a mapped file cannot be deleted on Windows until the mapping is
+     * garbage collected.)
+     */
+    static List<ScratchObject> readProject(File src) throws IOException
     {
-        try {
-            FileInputStream input = new FileInputStream(src);
+        ByteBuffer input = ByteBuffer.wrap(Files.readAllBytes(src.toPath()));
         
+        try {
             readHeader(input);
-            List<ScratchObject> objects = readObjectStore(input);
+            return readObjectStore(input);
+        }
+        catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Scratch file is truncated or corrupt", e);
+        }
+    }
+
+    /**
+     * Decodes all the images and sounds in the objects, in parallel, ready to be saved.
+     */
+    static void decodeMedia(List<ScratchObject> objects) throws IOException
+    {
+        ExecutorService decoders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Future<?>> decoded = new ArrayList<Future<?>>();
+            for (ScratchObject o : objects) {
+                if (o instanceof ScratchMedia) {
+                    ScratchMedia media = (ScratchMedia) o;
+                    decoded.add(decoders.submit(() -> {
+                        media.decode();
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> f : decoded) {
+                f.get();
+            }
+        }
+        catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        finally {
+            decoders.shutdown();
+        }
+    }
+
+    private static void importScratch(File src, File dest)
+    {
+        try {
+            List<ScratchObject> objects = readProject(src);
+            if (objects == null) {
+                return;
+            }
+            decodeMedia(objects);
             
             Properties props = new Properties();
             props.setProperty("version", GreenfootMain.getAPIVersion().toString());
             for (ScratchObject o : objects) {
-                o.saveInto(dest, props, null);
+                if (o != null) {
+                    o.saveInto(dest, props, null);
+                }
             }
             
             File javaFile = new File(dest, "Bubble.java");
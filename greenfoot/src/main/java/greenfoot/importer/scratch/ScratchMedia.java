@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2010  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2010,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -21,6 +21,7 @@
  */
 package greenfoot.importer.scratch;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -51,4 +52,13 @@ public class ScratchMedia extends ScratchUserObject
     {
         return (String)scratchObjects.get(0).getValue();
     }
+
+    /**
+     * Decodes the media into the form it will be saved in, if not already done.
+     * Once the objects have been resolved, this may be called on any thread, so that
+     * all the media can be decoded in parallel before they are saved.
+     */
+    public void decode() throws IOException
+    {
+    }
 }
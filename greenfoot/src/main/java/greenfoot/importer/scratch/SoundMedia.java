@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2010  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2010,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -22,7 +22,9 @@
 package greenfoot.importer.scratch;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.List;
@@ -70,6 +72,9 @@ public class SoundMedia extends ScratchMedia
         -1, -1, -1, -1, -1, -1, -1, -1, 1, 2, 4, 6, 8, 10, 13, 16}
     };
     private File destFile;
+    // Once decoded, the contents of the WAV file (null if there is no sound, or it could not be converted):
+    private byte[] wavBytes;
+    private boolean decoded;
         
     public SoundMedia(int version, List<ScratchObject> scratchObjects)
     {
@@ -90,7 +95,30 @@ public class SoundMedia extends ScratchMedia
     {
         if (destFile != null) return destFile;
         
-        String name = getMediaName();
+        decode();
+        if (getCompressedSamples() == null)
+            return null; // TODO must be uncompressed?
+        
+        File soundsDir = new File(destDir, "sounds");
+        soundsDir.mkdirs();
+        destFile = new File(soundsDir, prefix + getMediaName() + ".wav");
+        
+        if (wavBytes != null) {
+            FileOutputStream fos = new FileOutputStream(destFile);
+            fos.write(wavBytes);
+            fos.close();
+            // Not needed once saved:
+            wavBytes = null;
+        }
+        
+        return destFile;
+    }
+
+    @Override
+    public synchronized void decode() throws IOException
+    {
+        if (decoded) return;
+        decoded = true;
         
         // The code for this method is cobbled together from the Scratch/SmallTalk code
         // and this page: http://wiki.multimedia.cx/index.php?title=IMA_ADPCM
@@ -101,7 +129,7 @@ public class SoundMedia extends ScratchMedia
         byte[] compressed = getCompressedSamples();
         
         if (compressed == null)
-            return null; // TODO must be uncompressed?
+            return;
         
         int uncompressedSamples = (compressed.length * 8) / bitsPerSample; // Length in samples
         byte[] uncompressed = new byte[uncompressedSamples * 2]; // * 2 because we use 16-bits (2 bytes) per sample
@@ -154,24 +182,20 @@ public class SoundMedia extends ScratchMedia
         }
         
         
-        File soundsDir = new File(destDir, "sounds");
-        soundsDir.mkdirs();
-        destFile = new File(soundsDir, prefix + name + ".wav");
-        
         ByteArrayInputStream baiStream = new ByteArrayInputStream(uncompressed);
         AudioFormat format = new AudioFormat(sampleRate, 16, 1, true, true);
-        AudioInputStream aiStream = new AudioInputStream(baiStream,format,uncompressed.length);
+        // The length is in sample frames, of two bytes each:
+        AudioInputStream aiStream = new AudioInputStream(baiStream,format,uncompressed.length / 2);
         try {
-            
-            AudioSystem.write(aiStream,AudioFileFormat.Type.WAVE,destFile);
+            ByteArrayOutputStream wav = new ByteArrayOutputStream(uncompressed.length + 64);
+            AudioSystem.write(aiStream,AudioFileFormat.Type.WAVE,wav);
             aiStream.close();
             baiStream.close();
+            wavBytes = wav.toByteArray();
         }
         catch (IOException e) {
             Debug.reportError("Problem writing converted sound to WAV file", e);
         }
-        
-        return destFile;
     }
 
     private byte[] getCompressedSamples()
@@ -80,8 +80,9 @@ public interface WorldHandlerDelegate
      * Repaint the world.
      * @param drawWorld The world to be painted
      * @param forcePaint Force paint (ignore any optimisations to not paint frames too often, etc)
+     * @return Whether a frame was actually painted
      */
-    void paint(World drawWorld, boolean forcePaint);
+    boolean paint(World drawWorld, boolean forcePaint);
 
     /**
      * The simulation had some user code which threw an exception
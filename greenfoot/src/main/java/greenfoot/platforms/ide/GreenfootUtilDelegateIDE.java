@@ -27,23 +27,15 @@ import greenfoot.UserInfoVisitor;
 import greenfoot.core.GreenfootMain;
 import greenfoot.platforms.GreenfootUtilDelegate;
 
+import greenfoot.util.UserInfoStore;
+
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
-import java.io.InputStreamReader;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 
-import au.com.bytecode.opencsv.CSVReader;
-import au.com.bytecode.opencsv.CSVWriter;
 import bluej.Config;
 import bluej.runtime.ExecServer;
 import bluej.utility.Debug;
@@ -73,6 +65,9 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         return instance;
     }
     
+    /** The user info storage, in the project directory (the current directory). */
+    private final UserInfoStore storage = new UserInfoStore(new File("storage.csv"));
+    
     private GreenfootUtilDelegateIDE()
     {
         // Nothing to do.
@@ -88,11 +83,27 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
     @Override
     @OnThread(Tag.Any)
     public Iterable<String> getSoundFiles()
+    {
+        return listProjectDir("sounds");
+    }
+    
+    @Override
+    @OnThread(Tag.Any)
+    public Iterable<String> getImageFiles()
+    {
+        return listProjectDir("images");
+    }
+    
+    /**
+     * List the files in a directory of the project.
+     */
+    @OnThread(Tag.Any)
+    private List<String> listProjectDir(String dir)
     {
         ArrayList<String> files = new ArrayList<>();
         try
         {
-            URL url = getResource("sounds");
+            URL url = getResource(dir);
             if (url != null && "file".equals(url.getProtocol()))
             {
                 for (String file : new File(url.toURI()).list())
@@ -137,18 +148,19 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         if (getUserName() == null || getUserName().isEmpty())
             return null;
         
-        ArrayList<UserInfo> all = getAllDataSorted(true);
-        
-        if (all == null)
-            return null; // Error reading file
-        
-        for (int i = 0; i < all.size(); i++)
+        try
         {
-            if (getUserName().equals(all.get(i).getUserName()))
+            String[] line = storage.get(getUserName());
+            if (line != null)
             {
-                return all.get(i);
+                return makeStorage(line, storage.getRank(getUserName()), true);
             }
         }
+        catch (IOException e)
+        {
+            Debug.message("Error reading user data: " + e.getMessage());
+            return null;
+        }
         
         // Couldn't find them anywhere, return blank:
         return UserInfoVisitor.allocate(getUserName(), -1, getUserName());
@@ -212,92 +224,44 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         if (getUserName() == null || getUserName().isEmpty())
             return false;
         
-        List<String[]> all;
+        // The store keeps the data in memory, and writes it to the file in the background:
         try
         {
-            CSVReader csv = new CSVReader(new InputStreamReader(new FileInputStream("storage.csv"), "UTF-8"));
-            all = csv.readAll();
-            csv.close();
-        }
-        catch (FileNotFoundException e)
-        {
-            // No previous storage, make a new blank one:
-            all = new ArrayList<>();
-        }
-        catch (IOException e)
-        {
-            Debug.message("Error reading user data: " + e.getMessage());
-            return false;
-        }
-        
-        // First, remove any existing line:
-        Iterator<String[]> lineIt = all.iterator();
-        while (lineIt.hasNext())
-        {
-            String[] line = lineIt.next();
-            if (line.length > 1 && getUserName().equals(line[0]))
+            if (data != null)
             {
-                lineIt.remove();
-                break;
+                storage.put(makeLine(getUserName(), data));
+            }
+            else
+            {
+                storage.remove(getUserName());
             }
-        }
-        
-        // Then add a line on to the end:
-        if (data != null)
-        {
-            // No line for that user, add a new one:
-            all.add(makeLine(getUserName(), data));
-        }
-        
-        try
-        {
-            CSVWriter csvOut = new CSVWriter(new OutputStreamWriter(new FileOutputStream("storage.csv"), "UTF-8"));
-            csvOut.writeAll(all);
-            csvOut.close();
-            
             return true;
         }
         catch (IOException e)
         {
-            Debug.message("Error storing user data: " + e.getMessage());
+            Debug.message("Error reading user data: " + e.getMessage());
             return false;
         }
     }
     
-    private ArrayList<UserInfo> getAllDataSorted(boolean useSingleton)
+    /**
+     * Get the user info of the users ranked from (from + 1) to (to), in order of rank.
+     * Returns null if there was an error reading the data.
+     */
+    private List<UserInfo> getRankedUserInfo(int from, int to)
     {
         try
         {
-            ArrayList<UserInfo> ret = new ArrayList<>();
-            
-            CSVReader csv = new CSVReader(new InputStreamReader(new FileInputStream("storage.csv"), "UTF-8"));
-            
-            List<String[]> all = csv.readAll();
-            
-            Collections.sort(all, new Comparator<String[]>() {
-                @Override
-                public int compare(String[] o1, String[] o2)
-                {
-                    // Sort in reverse order:
-                    return -(Integer.parseInt(o1[1]) - Integer.parseInt(o2[1]));
-                }
-            });
-            
-            int rank = 1;
-            for (String[] line : all)
+            List<String[]> lines = storage.getRows(from, to);
+            List<UserInfo> ret = new ArrayList<>(lines.size());
+            int rank = from + 1;
+            for (String[] line : lines)
             {
-                ret.add(makeStorage(line, rank, useSingleton));
+                ret.add(makeStorage(line, rank, false));
                 rank++;
             }
-            
-            csv.close();
             return ret;
         }
-        catch (FileNotFoundException e)
-        {
-            // No previous storage, return the blank list:
-            return new ArrayList<>();
-        }
         catch (IOException e)
         {
             Debug.message("Error reading user data: " + e.getMessage());
@@ -308,13 +272,7 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
     @Override
     public List<UserInfo> getTopUserInfo(int limit)
     {
-        ArrayList<UserInfo> ret = getAllDataSorted(false);
-        if (ret == null)
-            return null;
-        else if (ret.size() <= limit || limit <= 0)
-            return ret;
-        else
-            return ret.subList(0, limit);
+        return getRankedUserInfo(0, limit <= 0 ? Integer.MAX_VALUE : limit);
     }
 
     @Override
@@ -330,27 +288,24 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         if (getUserName() == null || getUserName().isEmpty())
             return null;
         
-        ArrayList<UserInfo> all = getAllDataSorted(false);
-        
-        if (all == null)
-            return null;
-        
-        int index = -1;
-        
-        for (int i = 0; i < all.size();i++)
+        int index;
+        int size;
+        try
         {
-            if (getUserName() != null && getUserName().equals(all.get(i).getUserName()))
-            {
-                index = i;
-                break;
-            }
+            index = storage.getRank(getUserName()) - 1;
+            size = storage.size();
+        }
+        catch (IOException e)
+        {
+            Debug.message("Error reading user data: " + e.getMessage());
+            return null;
         }
         
         if (index == -1 || maxAmount == 0)
             return new ArrayList<>();
         
         int availableBefore = index;
-        int availableAfter = all.size() - 1 - index;
+        int availableAfter = size - 1 - index;
         
         int desiredBefore = maxAmount / 2;
         int desiredAfter = Math.max(0, maxAmount - 1) / 2;
@@ -367,22 +322,22 @@ public class GreenfootUtilDelegateIDE implements GreenfootUtilDelegate
         if (availableAfter + availableBefore + 1 <= maxAmount)
         {
             //Less overall that we want, use everything:
-            return all;
+            return getRankedUserInfo(0, size);
         }
         else if (availableBefore <= desiredBefore)
         {
             // Not enough available before-hand, but must be enough in total:
-            return all.subList(index - availableBefore, index - availableBefore + maxAmount + 1);
+            return getRankedUserInfo(index - availableBefore, index - availableBefore + maxAmount + 1);
         }
         else if (availableAfter <= desiredAfter)
         {
             // Not enough available after, but must be enough in total:
-            return all.subList(index + availableAfter - maxAmount, index + availableAfter + 1);
+            return getRankedUserInfo(index + availableAfter - maxAmount, index + availableAfter + 1);
         }
         else
         {
             // Must have enough available before and after:
-            return all.subList(index - desiredBefore, index + desiredAfter + 1);
+            return getRankedUserInfo(index - desiredBefore, index + desiredAfter + 1);
         }
     }    
 }
@@ -24,6 +24,7 @@ package greenfoot.platforms.ide;
 import bluej.runtime.ExecServer;
 import greenfoot.Actor;
 import greenfoot.World;
+import greenfoot.core.AssetPreloader;
 import greenfoot.core.ImageCache;
 import greenfoot.core.Simulation;
 import greenfoot.core.WorldHandler;
@@ -99,9 +100,9 @@ public class WorldHandlerDelegateIDE
 
     @Override
     @OnThread(Tag.Simulation)
-    public void paint(World drawWorld, boolean forcePaint)
+    public boolean paint(World drawWorld, boolean forcePaint)
     {
-        vmCommsSimulation.paintRemote(forcePaint ? PaintWhen.FORCE : PaintWhen.IF_DUE);
+        return vmCommsSimulation.paintRemote(forcePaint ? PaintWhen.FORCE : PaintWhen.IF_DUE);
     }
 
     @Override
@@ -137,6 +138,8 @@ public class WorldHandlerDelegateIDE
             try {
                 Constructor<?> cons = icls.getConstructor(new Class<?>[0]);
                 WorldHandler.getInstance().clearWorldSet();
+                // Show the progress of files preloaded by this world's constructor:
+                AssetPreloader.getInstance().reset();
                 World newWorld = (World) Simulation.newInstance(cons);
                 if (! WorldHandler.getInstance().checkWorldSet()) {
                     ImageCache.getInstance().clearImageCache();
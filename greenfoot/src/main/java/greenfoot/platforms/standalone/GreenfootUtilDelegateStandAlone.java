@@ -21,6 +21,7 @@
  */
 package greenfoot.platforms.standalone;
 
+import bluej.utility.Debug;
 import greenfoot.GreenfootImage;
 import greenfoot.UserInfoVisitor;
 import greenfoot.UserInfo;
@@ -34,6 +35,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.URL;
 import java.nio.BufferUnderflowException;
@@ -42,14 +44,26 @@ import java.nio.channels.SocketChannel;
 import java.security.AccessControlException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Implementation of GreenfootUtilDelegate for standalone applications.
+ * 
+ * <p>Requests to the storage server go through a StorageConnection, which can have many
+ * requests in flight, so requests made by different threads are not sent one at a time.
+ * Storing the user's data does not wait for the server's answer: the answer is checked
+ * when the next request is sent, which the server answers after it, so storing and then
+ * (say) getting the top users takes one round trip rather than two.  If the server did
+ * not store the data, that next request fails.
  */
 @OnThread(Tag.Simulation)
 public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
 {
-    private SocketChannel socket;
+    private StorageConnection connection;
+    // The response to the last store request, until it has been checked:
+    private final AtomicReference<CompletableFuture<ByteBuffer>> uncheckedStore = new AtomicReference<>();
     private boolean failedLastConnection;
     private boolean firstStorageException = true;
     private boolean storageStandalone;
@@ -117,7 +131,23 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
     @OnThread(Tag.Any)
     public Iterable<String> getSoundFiles()
     {
-        InputStream is = this.getClass().getClassLoader().getResourceAsStream("soundindex.list");
+        return readIndex("soundindex.list");
+    }
+    
+    @Override
+    @OnThread(Tag.Any)
+    public Iterable<String> getImageFiles()
+    {
+        return readIndex("imageindex.list");
+    }
+    
+    /**
+     * Read a list of files, one per line, included in the JAR.
+     */
+    @OnThread(Tag.Any)
+    private List<String> readIndex(String indexName)
+    {
+        InputStream is = this.getClass().getClassLoader().getResourceAsStream(indexName);
         ArrayList<String> r = new ArrayList<String>();
         
         if (is != null)
@@ -157,8 +187,13 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
      */
     private void closeConnection(Exception e)
     {
-        e.printStackTrace();
-        socket = null;
+        Debug.reportError("Error communicating with storage server", e);
+        if (connection != null)
+        {
+            connection.close();
+        }
+        connection = null;
+        uncheckedStore.set(null);
         failedLastConnection = false;
     }
 
@@ -195,10 +230,10 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
      */
     private void ensureStorageConnected() throws GreenfootStorageException
     {
-        if (socket != null && socket.isConnected())
+        if (connection != null && connection.isOpen())
             return; //Already connected
         
-        if ((socket == null || !socket.isConnected()) && failedLastConnection)
+        if (failedLastConnection)
             throw new GreenfootStorageException("Already failed to connect to storage server on last attempt");
             // We don't continually try to reconnect -- probably a firewall blocked us
         
@@ -220,10 +255,10 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
             throw new GreenfootStorageException("Invalid user ID");
         }
         
-        short port;
+        int port;
         try
         {
-            port = Short.parseShort(storagePort); 
+            port = Integer.parseInt(storagePort); 
         }
         catch (NumberFormatException e)
         {
@@ -237,10 +272,9 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
             
             failedLastConnection = true; // True unless we reach the end
             
-            socket = SocketChannel.open();
+            SocketChannel socket = SocketChannel.open();
             if (!socket.connect(new InetSocketAddress(storageHost, port)))
             {
-                socket = null;
                 throw new GreenfootStorageException("Could not connect to storage server");
             }
             
@@ -258,17 +292,21 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
             }
             catch (NumberFormatException e)
             {
-                socket = null;
+                socket.close();
                 throw new GreenfootStorageException("Invalid scenario ID: " + e.getMessage());
             }
             buffer.flip();
-            socket.write(buffer);
+            while (buffer.hasRemaining())
+            {
+                socket.write(buffer);
+            }
             
+            connection = new StorageConnection(socket);
             failedLastConnection = false; // We succeeded, so didn't fail!
         }
         catch (IOException e)
         {
-            socket = null;
+            connection = null;
             throw new GreenfootStorageException("Error connecting to storage server: " + e.getMessage());
         }
     }
@@ -281,28 +319,49 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
         return buf;
     }
     
-    private void readFullBuffer(ByteBuffer buf, int amount) throws IOException
+    /**
+     * Send a request (made by makeRequest and filled in) and wait for the response.
+     * 
+     * @throws GreenfootStorageException if an earlier store request failed
+     */
+    private ByteBuffer sendRequest(ByteBuffer request) throws IOException, GreenfootStorageException
     {
-        int totalBytes = 0;
-        while (totalBytes < amount)
-        {
-            int bytesRead = socket.read(buf);
-            if (bytesRead > 0)
-                totalBytes += bytesRead;
-            else
-                throw new IOException("Connection unexpectedly closed by remote end");
+        request.flip();
+        CompletableFuture<ByteBuffer> response = connection.send(request);
+        // The server answers any store sent before this request first, so this doesn't
+        // add a round trip:
+        CompletableFuture<ByteBuffer> store = uncheckedStore.getAndSet(null);
+        if (store != null)
+        {
+            ByteBuffer stored = waitForResponse(store);
+            // An empty response means the server aborted the store:
+            byte code = stored.hasRemaining() ? stored.get() : -1;
+            if (code != 0)
+            {
+                // Connection will be closed by the caller:
+                throw new GreenfootStorageException("Error storing data, code: " + Byte.toString(code));
+            }
         }
-        buf.flip();
+        return waitForResponse(response);
     }
     
-    private ByteBuffer readResponse() throws IOException
+    /**
+     * Wait for the response to a request.
+     */
+    private static ByteBuffer waitForResponse(CompletableFuture<ByteBuffer> response) throws IOException
     {
-        ByteBuffer buf = ByteBuffer.allocate(4);
-        readFullBuffer(buf, 4);
-        int size = buf.getInt();
-        buf = ByteBuffer.allocate(size);
-        readFullBuffer(buf, size);
-        return buf;
+        try
+        {
+            return response.get();
+        }
+        catch (InterruptedException e)
+        {
+            throw new InterruptedIOException();
+        }
+        catch (ExecutionException e)
+        {
+            throw new IOException("Error communicating with server", e.getCause());
+        }
     }
 
     @Override
@@ -313,10 +372,7 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
             ensureStorageConnected();
             ByteBuffer buf = makeRequest(1);
             buf.put((byte) 1);
-            buf.flip();
-            socket.write(buf);
-            
-            buf = readResponse();
+            buf = sendRequest(buf);
             if (1 != buf.getInt()) // Should be exactly one user
                 return null; // Error, or we're not logged in
             return readLines(buf, 1, true)[0];
@@ -422,30 +478,12 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
             for (int i = 0; i < UserInfo.NUM_STRINGS; i++)
                 putString(buf, data.getString(i));
             buf.flip();
-            socket.write(buf);
-            
-            buf = readResponse();
-            byte code = buf.get();
-            if (code != 0)
-            {
-                // Connection will be closed in catch block beneath:
-                throw new GreenfootStorageException("Error storing data, code: " + Byte.toString(code));
-            }
             
+            // A store from another thread which is not yet sent is replaced by this one.
+            // The response is checked by the next request:
+            uncheckedStore.set(connection.store(buf));
             return true;
         }
-        catch (IOException e)
-        {
-            closeConnection(e);
-            //throw new GreenfootStorageException("Error communicating with server: " + e.getMessage());
-            return false;
-        }
-        catch (BufferUnderflowException e)
-        {
-            closeConnection(e);
-            //throw new GreenfootStorageException("Server sent aborted message");
-            return false;
-        }
         catch (GreenfootStorageException e)
         {
             closeConnection(e);
@@ -470,10 +508,7 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
             ByteBuffer buf = makeRequest(1 + 4);
             buf.put((byte) 3);
             buf.putInt(limit);
-            buf.flip();
-            socket.write(buf);
-            
-            buf = readResponse();
+            buf = sendRequest(buf);
             int numUsers = buf.getInt();
             UserInfo[] storage = readLines(buf, numUsers, false);
             
@@ -512,10 +547,7 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
             ByteBuffer buf = makeRequest(1 + 4);
             buf.put((byte) 5);
             buf.putInt(limit);
-            buf.flip();
-            socket.write(buf);
-            
-            buf = readResponse();
+            buf = sendRequest(buf);
             int numUsers = buf.getInt();
             if (numUsers < 0)
                 return null; // Error, or we're not logged in
@@ -560,10 +592,7 @@ public class GreenfootUtilDelegateStandAlone implements GreenfootUtilDelegate
             ByteBuffer buf = makeRequest(1 + 2 + (2*userName.length()));
             buf.put((byte) 4);
             putString(buf, userName);
-            buf.flip();
-            socket.write(buf);
-            
-            buf = readResponse();
+            buf = sendRequest(buf);
             int numBytes = buf.getInt();
             byte[] fileData = new byte[numBytes];
             buf.get(fileData);
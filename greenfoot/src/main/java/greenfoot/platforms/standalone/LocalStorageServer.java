@@ -0,0 +1,366 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.platforms.standalone;
+
+import greenfoot.UserInfo;
+import greenfoot.util.UserInfoStore;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A storage server which runs in the same process, on the loopback interface, keeping the
+ * user data in a local UserInfoStore.  It speaks the same protocol as the Gallery's storage
+ * server, so that standalone scenarios can use storage when offline, and the standalone
+ * storage code can be tested.
+ *
+ * <p>Each connection is handled by its own thread, which answers the requests in the
+ * order they arrive.  Users are identified by the user ID sent when connecting; their
+ * names are registered with {@link #createDelegate(int, String)}.
+ */
+@OnThread(Tag.Any)
+public class LocalStorageServer
+{
+    /**
+     * The property (in standalone.properties) which, if "true", makes an exported scenario
+     * keep its user data locally, using this server.
+     */
+    public static final String LOCAL_STORAGE_PROPERTY = "storage.local";
+
+    private final UserInfoStore store;
+    private final ServerSocketChannel serverSocket;
+    private final byte[] passcode = new byte[16];
+    private final Map<Integer, String> userNames = new ConcurrentHashMap<>();
+    private volatile int responseDelay = 0;
+
+    /**
+     * Start a server keeping its data in the given store.
+     */
+    public LocalStorageServer(UserInfoStore store) throws IOException
+    {
+        this.store = store;
+        new SecureRandom().nextBytes(passcode);
+        serverSocket = ServerSocketChannel.open();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread acceptor = new Thread(this::acceptConnections, "Greenfoot local storage server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Register a user, and create a delegate which stores that user's data on this server.
+     */
+    public GreenfootUtilDelegateStandAlone createDelegate(int userId, String userName)
+    {
+        userNames.put(userId, userName);
+        StringBuilder hex = new StringBuilder();
+        for (byte b : passcode) {
+            hex.append(String.format("%02x", b));
+        }
+        return new GreenfootUtilDelegateStandAlone(true, InetAddress.getLoopbackAddress().getHostAddress(),
+                Integer.toString(serverSocket.socket().getLocalPort()), hex.toString(), "0",
+                Integer.toString(userId), userName);
+    }
+
+    /**
+     * Set a delay before each response, in milliseconds, to simulate a remote server.
+     */
+    public void setResponseDelay(int responseDelay)
+    {
+        this.responseDelay = responseDelay;
+    }
+
+    /**
+     * Stop accepting connections.  Existing connections are closed when their clients
+     * close them.
+     */
+    public void close() throws IOException
+    {
+        serverSocket.close();
+    }
+
+    private void acceptConnections()
+    {
+        try {
+            while (true) {
+                SocketChannel socket = serverSocket.accept();
+                socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                Thread handler = new Thread(() -> handleConnection(socket), "Greenfoot local storage connection");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        }
+        catch (IOException e) {
+            // Closed
+        }
+    }
+
+    private void handleConnection(SocketChannel socket)
+    {
+        // Responses are delayed (if at all) on another thread, so that requests are still
+        // read and handled as they arrive, as they would be by a remote server:
+        ScheduledExecutorService delayedWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Greenfoot local storage responses");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            ByteBuffer handshake = readMessage(socket);
+            byte[] clientPasscode = new byte[handshake.remaining() - 8];
+            handshake.get(clientPasscode);
+            handshake.getInt(); // scenario ID
+            int userId = handshake.getInt();
+            String userName = userNames.get(userId);
+            if (! Arrays.equals(passcode, clientPasscode) || userName == null) {
+                throw new IOException("Bad passcode or user");
+            }
+
+            while (true) {
+                ByteBuffer request = readMessage(socket);
+                ByteBuffer response = handleRequest(request, userName);
+                response.flip();
+                // Tasks with the same delay run in the order they were scheduled:
+                delayedWriter.schedule(() -> writeResponse(socket, response), responseDelay, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (IOException | BufferUnderflowException e) {
+            // Closed, or a bad request; drop the connection once the responses are written
+        }
+        delayedWriter.schedule(() -> close(socket), responseDelay, TimeUnit.MILLISECONDS);
+        delayedWriter.shutdown();
+    }
+
+    private static void writeResponse(SocketChannel socket, ByteBuffer response)
+    {
+        try {
+            while (response.hasRemaining()) {
+                socket.write(response);
+            }
+        }
+        catch (IOException e) {
+            close(socket);
+        }
+    }
+
+    private static void close(SocketChannel socket)
+    {
+        try {
+            socket.close();
+        }
+        catch (IOException e) {
+            // Nothing more to do
+        }
+    }
+
+    /**
+     * Read a message (preceded by its length) from the socket.
+     */
+    private static ByteBuffer readMessage(SocketChannel socket) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate(4);
+        readFully(socket, buf);
+        buf = ByteBuffer.allocate(buf.getInt());
+        readFully(socket, buf);
+        return buf;
+    }
+
+    private static void readFully(SocketChannel socket, ByteBuffer buf) throws IOException
+    {
+        while (buf.hasRemaining()) {
+            if (socket.read(buf) < 0) {
+                throw new IOException("Connection closed");
+            }
+        }
+        buf.flip();
+    }
+
+    /**
+     * Handle a request, returning the response (including its length).
+     */
+    private ByteBuffer handleRequest(ByteBuffer request, String userName) throws IOException
+    {
+        byte command = request.get();
+        switch (command) {
+            case 1: {
+                // The current user's data:
+                String[] row = store.get(userName);
+                if (row == null) {
+                    // No data yet, so blank data:
+                    row = new String[] {userName, "0"};
+                    return makeResponse(Arrays.<String[]>asList(row), -1);
+                }
+                return makeResponse(Arrays.<String[]>asList(row), store.getRank(userName));
+            }
+            case 2: {
+                // Store the current user's data:
+                int score = request.getInt();
+                int numInts = request.getInt();
+                int numStrings = request.getInt();
+                String[] row = new String[2 + numInts + numStrings];
+                row[0] = userName;
+                row[1] = Integer.toString(score);
+                for (int i = 0; i < numInts; i++) {
+                    row[2 + i] = Integer.toString(request.getInt());
+                }
+                for (int i = 0; i < numStrings; i++) {
+                    row[2 + numInts + i] = getString(request);
+                }
+                store.put(row);
+                ByteBuffer response = ByteBuffer.allocate(4 + 1);
+                response.putInt(1);
+                response.put((byte) 0);
+                return response;
+            }
+            case 3: {
+                // The top users:
+                int limit = request.getInt();
+                return makeResponse(store.getRows(0, limit <= 0 ? Integer.MAX_VALUE : limit), 1);
+            }
+            case 4: {
+                // A user's image; there are none, so the client makes a default one:
+                ByteBuffer response = ByteBuffer.allocate(4 + 4);
+                response.putInt(4);
+                response.putInt(0);
+                return response;
+            }
+            case 5: {
+                // The users ranked around the current user:
+                int limit = request.getInt();
+                int index = store.getRank(userName) - 1;
+                if (index < 0) {
+                    ByteBuffer response = ByteBuffer.allocate(4 + 4);
+                    response.putInt(4);
+                    response.putInt(-1);
+                    return response;
+                }
+                int size = store.size();
+                int from = Math.max(0, Math.min(index - limit / 2, size - limit));
+                return makeResponse(store.getRows(from, from + limit), from + 1);
+            }
+            default:
+                throw new IOException("Unknown request: " + command);
+        }
+    }
+
+    /**
+     * Make a response listing the given rows, with ranks starting from the given one.
+     */
+    private static ByteBuffer makeResponse(List<String[]> rows, int firstRank)
+    {
+        List<byte[]> encoded = new ArrayList<>();
+        int size = 4 + 4 + 4;
+        for (int i = 0; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            ByteBuffer line = ByteBuffer.allocate(lineSize(row));
+            putString(line, row[0]);
+            line.putInt(parseInt(row, 1));
+            line.putInt(firstRank + i);
+            for (int j = 0; j < UserInfo.NUM_INTS; j++) {
+                line.putInt(parseInt(row, 2 + j));
+            }
+            for (int j = 0; j < UserInfo.NUM_STRINGS; j++) {
+                int column = 2 + UserInfo.NUM_INTS + j;
+                putString(line, column < row.length ? row[column] : null);
+            }
+            encoded.add(line.array());
+            size += line.capacity();
+        }
+
+        ByteBuffer response = ByteBuffer.allocate(4 + size);
+        response.putInt(size);
+        response.putInt(rows.size());
+        response.putInt(UserInfo.NUM_INTS);
+        response.putInt(UserInfo.NUM_STRINGS);
+        for (byte[] line : encoded) {
+            response.put(line);
+        }
+        return response;
+    }
+
+    private static int lineSize(String[] row)
+    {
+        int size = stringSize(row[0]) + 4 + 4 + 4 * UserInfo.NUM_INTS;
+        for (int j = 0; j < UserInfo.NUM_STRINGS; j++) {
+            int column = 2 + UserInfo.NUM_INTS + j;
+            size += stringSize(column < row.length ? row[column] : null);
+        }
+        return size;
+    }
+
+    private static int parseInt(String[] row, int column)
+    {
+        try {
+            return column < row.length ? Integer.parseInt(row[column]) : 0;
+        }
+        catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int stringSize(String string)
+    {
+        return string == null ? 2 : 2 + 2 * string.length();
+    }
+
+    private static String getString(ByteBuffer buf)
+    {
+        int len = buf.getShort();
+        if (len == -1) {
+            return null;
+        }
+        char[] cs = new char[len];
+        for (int i = 0; i < len; i++) {
+            cs[i] = buf.getChar();
+        }
+        return new String(cs);
+    }
+
+    private static void putString(ByteBuffer buf, String value)
+    {
+        if (value == null) {
+            buf.putShort((short) -1);
+        }
+        else {
+            buf.putShort((short) value.length());
+            for (int i = 0; i < value.length(); i++) {
+                buf.putChar(value.charAt(i));
+            }
+        }
+    }
+}
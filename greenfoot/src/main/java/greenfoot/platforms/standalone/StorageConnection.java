@@ -0,0 +1,246 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.platforms.standalone;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A connection to the storage server (after the initial handshake), which can have many
+ * requests in flight at once.
+ *
+ * <p>Requests are queued, and written by a sender thread; all the requests queued while it
+ * was writing are written together.  The server answers requests in order, so a reader
+ * thread matches each response to the oldest request not yet answered, and completes
+ * the request's future with it.  A request to store the user's data replaces any such
+ * request which has not been written yet (as it would be overwritten anyway); both
+ * are completed with the response to the one that is written, each with its own view
+ * of the response buffer.
+ *
+ * <p>If there is an error reading or writing, the connection is closed, and all the
+ * requests not yet answered fail with the exception.
+ */
+@OnThread(Tag.Any)
+class StorageConnection
+{
+    /** A request and its response. */
+    private static class Request
+    {
+        ByteBuffer data;
+        final CompletableFuture<ByteBuffer> response = new CompletableFuture<>();
+
+        Request(ByteBuffer data)
+        {
+            this.data = data;
+        }
+    }
+
+    private final SocketChannel socket;
+    // Requests not yet written, and those written but not yet answered:
+    private final ArrayDeque<Request> outgoing = new ArrayDeque<>();
+    private final ArrayDeque<Request> inFlight = new ArrayDeque<>();
+    // The store request in outgoing, if any:
+    private Request queuedStore;
+    private IOException failure;
+
+    /**
+     * Start sending requests and receiving responses on the given connected socket.
+     */
+    StorageConnection(SocketChannel socket) throws IOException
+    {
+        this.socket = socket;
+        // Requests are small, and we don't want them held back waiting for acknowledgements:
+        socket.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        Thread sender = new Thread(this::sendRequests, "Greenfoot storage sender");
+        sender.setDaemon(true);
+        sender.start();
+        Thread reader = new Thread(this::readResponses, "Greenfoot storage reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Send a request (ready to be written, including its length) and return the future
+     * response (not including its length).
+     */
+    public CompletableFuture<ByteBuffer> send(ByteBuffer request)
+    {
+        Request r = new Request(request);
+        synchronized (this) {
+            if (failure != null) {
+                r.response.completeExceptionally(failure);
+                return r.response;
+            }
+            outgoing.add(r);
+            notifyAll();
+        }
+        return r.response;
+    }
+
+    /**
+     * Send a request to store the user's data, replacing any such request not yet written.
+     */
+    public CompletableFuture<ByteBuffer> store(ByteBuffer request)
+    {
+        CompletableFuture<ByteBuffer> response;
+        synchronized (this) {
+            if (queuedStore != null) {
+                queuedStore.data = request;
+                response = queuedStore.response;
+            }
+            else {
+                response = send(request);
+                if (failure == null) {
+                    queuedStore = outgoing.peekLast();
+                }
+            }
+        }
+        // The response may be shared with other stores, so each reads its own view of it:
+        return response.thenApply(ByteBuffer::duplicate);
+    }
+
+    /**
+     * Check whether the connection is still usable.
+     */
+    public synchronized boolean isOpen()
+    {
+        return failure == null;
+    }
+
+    /**
+     * Close the connection.  Requests not yet answered fail.
+     */
+    public void close()
+    {
+        fail(new IOException("Connection closed"));
+    }
+
+    private void sendRequests()
+    {
+        try {
+            while (true) {
+                ByteBuffer[] buffers;
+                synchronized (this) {
+                    while (outgoing.isEmpty() && failure == null) {
+                        wait();
+                    }
+                    if (failure != null) {
+                        return;
+                    }
+                    buffers = new ByteBuffer[outgoing.size()];
+                    int i = 0;
+                    for (Request r : outgoing) {
+                        buffers[i++] = r.data;
+                    }
+                    // Move them to inFlight before writing, as the responses may come quickly:
+                    inFlight.addAll(outgoing);
+                    outgoing.clear();
+                    queuedStore = null;
+                }
+                long remaining = 0;
+                for (ByteBuffer b : buffers) {
+                    remaining += b.remaining();
+                }
+                while (remaining > 0) {
+                    remaining -= socket.write(buffers);
+                }
+            }
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+        catch (InterruptedException e) {
+            fail(new IOException(e));
+        }
+    }
+
+    private void readResponses()
+    {
+        try {
+            while (true) {
+                ByteBuffer buf = ByteBuffer.allocate(4);
+                readFullBuffer(buf);
+                buf = ByteBuffer.allocate(buf.getInt());
+                readFullBuffer(buf);
+                Request r;
+                synchronized (this) {
+                    r = inFlight.poll();
+                }
+                if (r == null) {
+                    throw new IOException("Unexpected response from storage server");
+                }
+                r.response.complete(buf);
+            }
+        }
+        catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void readFullBuffer(ByteBuffer buf) throws IOException
+    {
+        while (buf.hasRemaining()) {
+            if (socket.read(buf) < 0) {
+                throw new IOException("Connection unexpectedly closed by remote end");
+            }
+        }
+        buf.flip();
+    }
+
+    /**
+     * Close the connection (if not already closed) because of the given exception, which
+     * all the unanswered requests fail with.
+     */
+    private void fail(IOException e)
+    {
+        ArrayDeque<Request> unanswered = new ArrayDeque<>();
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            // No more requests are added once failure is set:
+            failure = e;
+            unanswered.addAll(inFlight);
+            unanswered.addAll(outgoing);
+            inFlight.clear();
+            outgoing.clear();
+            queuedStore = null;
+            notifyAll();
+        }
+        try {
+            socket.close();
+        }
+        catch (IOException ioe) {
+            // We're closing anyway
+        }
+        for (Request r : unanswered) {
+            r.response.completeExceptionally(e);
+        }
+    }
+}
@@ -147,15 +147,15 @@ public class WorldHandlerDelegateStandAlone implements WorldHandlerDelegate
     }
 
     @Override
-    public void paint(World world, boolean forcePaint)
+    public boolean paint(World world, boolean forcePaint)
     {
         if (world == null)
-            return;
+            return false;
         
         long now = System.nanoTime();
         // Don't try to go above 100 FPS:
         if (now - lastFramePaint < 10_000_000L)
-            return;
+            return false;
         lastFramePaint = now;
         
         int imageWidth = WorldVisitor.getWidthInPixels(world);
@@ -178,6 +178,16 @@ public class WorldHandlerDelegateStandAlone implements WorldHandlerDelegate
         {
             oldImages.add(oldImage);
         }
+        return true;
+    }
+
+    /**
+     * Set whether the world is rendered in tiles (see {@link WorldRenderer#setTiled(boolean)}).
+     */
+    @OnThread(Tag.Any)
+    public void setTiledRendering(boolean tiled)
+    {
+        worldRenderer.setTiled(tiled);
     }
 
     @Override
@@ -0,0 +1,408 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.DataLine;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Mixes any number of sounds into a single output line, so that playing a sound
+ * does not need a line of its own.  Each playing sound is a {@link Voice}, with its own
+ * volume and pan; sounds are decoded beforehand into 16-bit stereo samples at the
+ * mixer's rate (see {@link ClipData#getStereoSamples(float)}).
+ * 
+ * <p>The number of voices is limited; when a sound is played with all voices in use,
+ * the oldest voice (preferring ones which are not looping) is stopped to make room.
+ * 
+ * <p>The mixer returned by {@link #getInstance()} writes to a line which is opened once
+ * and kept open, from a single audio thread.  Other mixers have no output, and are
+ * mixed by calling {@link #mix(byte[], int)} directly.
+ */
+public class AudioMixer
+{
+    /** The sample rate of the mixed sound. */
+    public static final float SAMPLE_RATE = 44100;
+    /** The format of the mixed sound: 16-bit signed little-endian stereo. */
+    public static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, 2, true, false);
+    
+    /** The default maximum number of sounds played at once. */
+    public static final int DEFAULT_MAX_VOICES = 32;
+    
+    /** The number of frames mixed at a time by the output thread (about 12ms). */
+    private static final int BUFFER_FRAMES = 512;
+    
+    /** The change in gain for each step of the volume level (0-100), in decibels. */
+    private static final double DB_PER_LEVEL = 0.8;
+    
+    private static AudioMixer instance;
+    
+    private final int maxVoices;
+    
+    /** Voices waiting to be added to the active voices by the mixing thread. */
+    private final ConcurrentLinkedQueue<Voice> added = new ConcurrentLinkedQueue<Voice>();
+    /** Voices being mixed, oldest first.  Only used by the mixing thread. */
+    private final List<Voice> active = new ArrayList<Voice>();
+    /** Accumulated left and right samples for each frame being mixed. */
+    private float[] accumulator = new float[0];
+    
+    private Thread outputThread;
+    
+    /**
+     * A sound being played by the mixer.  The methods may be called from any thread,
+     * and take effect from the next buffer mixed.
+     */
+    public static class Voice
+    {
+        private final short[] samples;
+        private final Runnable finishedListener;
+        private volatile float gain;
+        private volatile float pan;
+        private volatile boolean looping;
+        private volatile boolean paused;
+        private volatile boolean stopped;
+        /** Position, in frames.  Only used by the mixing thread. */
+        private int position;
+        
+        private Voice(short[] samples, float gain, float pan, boolean looping, Runnable finishedListener)
+        {
+            this.samples = samples;
+            this.gain = gain;
+            this.pan = pan;
+            this.looping = looping;
+            this.finishedListener = finishedListener;
+        }
+        
+        /**
+         * Set the gain (amplitude multiplier) of this voice.
+         */
+        public void setGain(float gain)
+        {
+            this.gain = gain;
+        }
+        
+        /**
+         * Set the position of this voice between the speakers, from -1 (left) through 0
+         * (both equally) to 1 (right).
+         */
+        public void setPan(float pan)
+        {
+            this.pan = Math.max(-1, Math.min(1, pan));
+        }
+        
+        /**
+         * Set whether this voice starts again from the beginning when it reaches the end.
+         */
+        public void setLooping(boolean looping)
+        {
+            this.looping = looping;
+        }
+        
+        /**
+         * Set whether this voice is paused.  A paused voice keeps its place in the mixer.
+         */
+        public void setPaused(boolean paused)
+        {
+            this.paused = paused;
+        }
+        
+        /**
+         * Stop this voice.  Its listener is not notified.
+         */
+        public void stop()
+        {
+            stopped = true;
+        }
+        
+        /**
+         * Check whether this voice has finished, been stopped, or been made to make room
+         * for another voice.
+         */
+        public boolean isFinished()
+        {
+            return stopped;
+        }
+        
+        /**
+         * This voice has ended without being stopped: notify the listener.
+         */
+        private void finished()
+        {
+            stopped = true;
+            if (finishedListener != null) {
+                finishedListener.run();
+            }
+        }
+    }
+    
+    /**
+     * Create a mixer with no output, which is mixed by calling {@link #mix(byte[], int)}.
+     * 
+     * @param maxVoices  The maximum number of sounds played at once
+     */
+    public AudioMixer(int maxVoices)
+    {
+        this.maxVoices = maxVoices;
+    }
+    
+    /**
+     * Get the mixer which plays to the sound output, starting it if necessary.
+     */
+    public static synchronized AudioMixer getInstance()
+    {
+        if (instance == null) {
+            instance = new AudioMixer(DEFAULT_MAX_VOICES);
+        }
+        instance.startOutput();
+        return instance;
+    }
+    
+    /**
+     * Convert a volume level, between 0 and 100, to a gain.  The levels are spaced
+     * evenly in decibels, as for clips, with 100 being the sound's own volume.
+     */
+    public static float volumeToGain(int level)
+    {
+        if (level <= 0) {
+            return 0;
+        }
+        return (float) Math.pow(10, (Math.min(level, 100) - 100) * DB_PER_LEVEL / 20);
+    }
+    
+    /**
+     * Start playing the given samples.
+     * 
+     * @param samples  16-bit stereo samples at the mixer's rate, left and right interleaved.
+     *                 The array must not be modified while it is played.
+     * @param gain     The amplitude multiplier
+     * @param pan      The position between the speakers, from -1 (left) to 1 (right)
+     * @param looping  Whether to start again from the beginning when the end is reached
+     * @param finishedListener  Run (on the mixing thread) when the voice ends, other than by
+     *                 {@link Voice#stop()}; may be null
+     * @return  The voice playing the samples.
+     */
+    public Voice play(short[] samples, float gain, float pan, boolean looping, Runnable finishedListener)
+    {
+        Voice voice = new Voice(samples, gain, 0, looping, finishedListener);
+        voice.setPan(pan);
+        added.add(voice);
+        synchronized (this) {
+            notifyAll();
+        }
+        return voice;
+    }
+    
+    /**
+     * Mix the next frames of all the playing voices.  This must only be called by one
+     * thread (for the mixer from {@link #getInstance()}, its output thread).
+     * 
+     * @param buffer  The buffer for the mixed frames, in {@link #FORMAT}
+     * @param frames  The number of frames to mix
+     */
+    public void mix(byte[] buffer, int frames)
+    {
+        addVoices();
+        
+        if (accumulator.length < frames * 2) {
+            accumulator = new float[frames * 2];
+        }
+        float[] acc = accumulator;
+        Arrays.fill(acc, 0, frames * 2, 0f);
+        
+        List<Voice> ended = null;
+        for (int v = 0; v < active.size(); v++) {
+            Voice voice = active.get(v);
+            if (voice.stopped) {
+                active.remove(v--);
+                continue;
+            }
+            if (voice.paused) {
+                continue;
+            }
+            
+            float gain = voice.gain;
+            float pan = voice.pan;
+            float left = gain * Math.min(1, 1 - pan);
+            float right = gain * Math.min(1, 1 + pan);
+            short[] samples = voice.samples;
+            int length = samples.length / 2;
+            int position = voice.position;
+            boolean done = length == 0;
+            int f = 0;
+            while (f < frames && !done) {
+                int n = Math.min(frames - f, length - position);
+                for (int i = 0; i < n; i++) {
+                    int s = (position + i) * 2;
+                    int a = (f + i) * 2;
+                    acc[a] += samples[s] * left;
+                    acc[a + 1] += samples[s + 1] * right;
+                }
+                f += n;
+                position += n;
+                if (position >= length) {
+                    position = 0;
+                    done = !voice.looping;
+                }
+            }
+            voice.position = position;
+            
+            if (done) {
+                active.remove(v--);
+                if (ended == null) {
+                    ended = new ArrayList<Voice>();
+                }
+                ended.add(voice);
+            }
+        }
+        
+        for (int i = 0; i < frames * 2; i++) {
+            int sample = Math.round(acc[i]);
+            if (sample > Short.MAX_VALUE) {
+                sample = Short.MAX_VALUE;
+            }
+            else if (sample < Short.MIN_VALUE) {
+                sample = Short.MIN_VALUE;
+            }
+            buffer[i * 2] = (byte) sample;
+            buffer[i * 2 + 1] = (byte) (sample >> 8);
+        }
+        
+        // Notify after mixing, so the listeners may play sounds again:
+        if (ended != null) {
+            for (Voice voice : ended) {
+                if (!voice.stopped) {
+                    voice.finished();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Add the newly played voices to the active voices, making room if necessary.
+     */
+    private void addVoices()
+    {
+        Voice voice;
+        while ((voice = added.poll()) != null) {
+            if (voice.stopped) {
+                continue;
+            }
+            if (active.size() >= maxVoices) {
+                int oldest = 0;
+                for (int i = 0; i < active.size(); i++) {
+                    if (!active.get(i).looping) {
+                        oldest = i;
+                        break;
+                    }
+                }
+                active.remove(oldest).finished();
+            }
+            active.add(voice);
+        }
+    }
+    
+    /**
+     * Get the number of voices being mixed (including paused ones).  Voices played since
+     * the last call to {@link #mix(byte[], int)} are not counted.
+     */
+    public int getActiveVoiceCount()
+    {
+        return active.size();
+    }
+    
+    /**
+     * Start the thread which mixes sound to the output line, if it is not running.
+     */
+    private synchronized void startOutput()
+    {
+        // When running online, threads can be terminated willy-nilly, but
+        // static state is kept. We need to check for this:
+        if (outputThread != null && outputThread.isAlive()) {
+            return;
+        }
+        outputThread = new Thread("Greenfoot audio mixer") {
+            @Override
+            public void run()
+            {
+                runOutput();
+            }
+        };
+        outputThread.setDaemon(true);
+        outputThread.setPriority(Thread.MAX_PRIORITY);
+        outputThread.start();
+    }
+    
+    /**
+     * Mix to the output line, for as long as the program runs.  The line is opened once
+     * and kept open.  If no line is available, the voices are still played through in
+     * real time (silently), so that sounds finish as they would otherwise.
+     */
+    private void runOutput()
+    {
+        SourceDataLine line = null;
+        try {
+            Mixer mixer = SoundUtils.loadMixer(false);
+            DataLine.Info info = new DataLine.Info(SourceDataLine.class, FORMAT);
+            // Use the specific mixer from the preferences if it is available (i.e. non-null):
+            line = (SourceDataLine) (mixer == null ? AudioSystem.getLine(info) : mixer.getLine(info));
+            line.open(FORMAT, BUFFER_FRAMES * FORMAT.getFrameSize() * 4);
+            line.start();
+        }
+        catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            SoundExceptionHandler.handleLineUnavailableException(e);
+            line = null;
+        }
+        
+        byte[] buffer = new byte[BUFFER_FRAMES * FORMAT.getFrameSize()];
+        long bufferNanos = (long) (BUFFER_FRAMES * 1e9 / SAMPLE_RATE);
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (active.isEmpty() && added.isEmpty()) {
+                        wait();
+                    }
+                }
+                mix(buffer, BUFFER_FRAMES);
+                if (line != null) {
+                    line.write(buffer, 0, buffer.length);
+                }
+                else {
+                    Thread.sleep(bufferNanos / 1000000, (int) (bufferNanos % 1000000));
+                }
+            }
+        }
+        catch (InterruptedException ie) { }
+        finally {
+            if (line != null) {
+                line.close();
+            }
+        }
+    }
+}
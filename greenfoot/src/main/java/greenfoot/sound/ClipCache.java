@@ -1,6 +1,6 @@
 /*
  This file is part of the Greenfoot program. 
- Copyright (C) 2012  Poul Henriksen and Michael Kolling 
+ Copyright (C) 2012,2026  Poul Henriksen and Michael Kolling 
  
  This program is free software; you can redistribute it and/or 
  modify it under the terms of the GNU General Public License 
@@ -27,6 +27,10 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -36,77 +40,220 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 /**
  * A cache for soundclip data.
  * 
+ * <p>The cache is bounded by the memory used by the decoded sound: when it is over
+ * budget, the least recently used clips which are not in use are removed.  Sounds
+ * whose decoded data would be larger than {@link #MAX_CLIP_BYTES} are not cached at all,
+ * but streamed (see {@link SoundFactory}).
+ * 
+ * <p>Clips are decoded on background threads, so that waiting for them can be avoided
+ * by using {@link #getCachedClipAsync(URL)}.
+ * 
  * @author Davin McCall
  */
 public class ClipCache
 {
-    /** Data for clips that aren't currently in use */
-    private LinkedHashMap<String,ClipData> freeClips = new LinkedHashMap<String,ClipData>();
-    private int numberFreeClips = 0;
+    /** The largest decoded sound, in bytes, which is played from memory rather than streamed. */
+    public static final int MAX_CLIP_BYTES = 4 * 1024 * 1024;
     
-    private static int MAX_CACHED_CLIPS = 20;
+    /** The default maximum size of the cached data, in bytes. */
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    
+    private static final ClipCache instance = new ClipCache();
+    
+    /** Data for clips that aren't currently in use, least recently used first */
+    private LinkedHashMap<String,ClipData> freeClips = new LinkedHashMap<String,ClipData>();
     
     /** Data for clips that are in use */
     private Map<String,ClipData> cachedClips = new HashMap<String,ClipData>();
     
-    public synchronized ClipData getCachedClip(URL url)
+    /** Clips being decoded */
+    private Map<String,CompletableFuture<ClipData>> loadingClips = new HashMap<String,CompletableFuture<ClipData>>();
+    
+    private long maxBytes = DEFAULT_MAX_BYTES;
+    
+    // Several threads, so that preloaded sounds are decoded in parallel:
+    private final ExecutorService loader = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)), r -> {
+        Thread thread = new Thread(r, "Greenfoot sound loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    /**
+     * Get the cache shared by all sounds.
+     */
+    public static ClipCache getInstance()
+    {
+        return instance;
+    }
+    
+    /**
+     * Get the data for a clip, decoding it if it is not cached, and waiting for it if
+     * necessary.  The data must be released with {@link #releaseClipData(ClipData)}
+     * when no longer needed.
+     */
+    public ClipData getCachedClip(URL url)
         throws IOException, UnsupportedAudioFileException
     {
-        String urlStr = url.toString();
-        ClipData data = cachedClips.get(urlStr);
-        if (data == null) {
-            // Maybe we have a free clip
-            data = freeClips.remove(urlStr);
-            if (data != null) {
-                numberFreeClips --;
-                cachedClips.put(urlStr, data);
+        try {
+            return getCachedClipAsync(url).join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof UnsupportedAudioFileException) {
+                throw (UnsupportedAudioFileException) e.getCause();
             }
+            throw e;
         }
-        if (data == null) {
-            // We need to create a new clip
-            AudioInputStream ais = AudioSystem.getAudioInputStream(url);
+    }
+    
+    /**
+     * Get the data for a clip, which completes once it is decoded (which is done in the
+     * background, if it is not cached).  The data must be released with
+     * {@link #releaseClipData(ClipData)} when no longer needed.
+     */
+    public synchronized CompletableFuture<ClipData> getCachedClipAsync(URL url)
+    {
+        String urlStr = url.toString();
+        ClipData data = acquire(urlStr);
+        if (data != null) {
+            return CompletableFuture.completedFuture(data);
+        }
+        
+        CompletableFuture<ClipData> loading = loadingClips.get(urlStr);
+        if (loading == null) {
+            loading = new CompletableFuture<ClipData>();
+            loadingClips.put(urlStr, loading);
+            CompletableFuture<ClipData> future = loading;
+            loader.execute(() -> {
+                try {
+                    ClipData loaded = load(url);
+                    synchronized (this) {
+                        loadingClips.remove(urlStr);
+                        // Not yet in use; keep it until it is acquired:
+                        freeClips.put(urlStr, loaded);
+                    }
+                    future.complete(loaded);
+                }
+                catch (IOException | UnsupportedAudioFileException | RuntimeException e) {
+                    synchronized (this) {
+                        loadingClips.remove(urlStr);
+                    }
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+        return loading.thenApply(loaded -> {
+            synchronized (this) {
+                ClipData cached = acquire(urlStr);
+                if (cached == null) {
+                    // It was removed from the cache before we got it; cache it again:
+                    cached = loaded;
+                    cached.addUser();
+                    cachedClips.put(urlStr, cached);
+                }
+                trim();
+                return cached;
+            }
+        });
+    }
+    
+    /**
+     * Decode a clip and wrap it in fresh ClipData. 
+     */
+    private static ClipData load(URL url)
+        throws IOException, UnsupportedAudioFileException
+    {
+        try (AudioInputStream ais = AudioSystem.getAudioInputStream(url)) {
             AudioFormat af = ais.getFormat();
             long frameLength = ais.getFrameLength();
             
-            int total = (int)(af.getFrameSize() * frameLength);
-            byte[] allBytes = new byte[(int)(af.getFrameSize() * frameLength)];
-            int pos = 0;
             
-            try {
-                while (pos < total) {
-                    int r = ais.read(allBytes, pos, total - pos);
-                    if (r == -1) {
-                        break;
-                    }
-                    pos += r;
-                }
-            }
-            finally {
-                ais.close();
+            // Sounds too long to cache should be streamed instead, but make sure:
+            int total = MAX_CLIP_BYTES;
+            if (frameLength != AudioSystem.NOT_SPECIFIED) {
+                total = (int) Math.min(af.getFrameSize() * frameLength, MAX_CLIP_BYTES);
             }
+            byte[] allBytes = ais.readNBytes(total);
             
-            data = new ClipData(urlStr, allBytes, af, (int) frameLength);
+            return new ClipData(url.toString(), allBytes, af, allBytes.length / af.getFrameSize());
+        }
+    }
+    
+    /**
+     * Find the data for a clip if it is cached, and add a user to it.
+     */
+    private ClipData acquire(String urlStr)
+    {
+        ClipData data = cachedClips.get(urlStr);
+        if (data == null) {
+            // Maybe we have a free clip
+            data = freeClips.remove(urlStr);
+            if (data != null) {
+                cachedClips.put(urlStr, data);
+            }
         }
-        else {
+        if (data != null) {
             data.addUser();
         }
-        
         return data;
     }
     
+    /**
+     * Release the data for a clip, which was got from the cache by one of the other methods.
+     */
     public synchronized void releaseClipData(ClipData data)
     {
-        if (data.release()) {
-            cachedClips.remove(data.getUrl());
+        if (data.release() && cachedClips.remove(data.getUrl(), data)) {
             freeClips.put(data.getUrl(), data);
-            numberFreeClips++;
-            if (numberFreeClips > MAX_CACHED_CLIPS) {
-                // remove least recently used free clip
-                Iterator<ClipData> it = freeClips.values().iterator();
-                it.next();
-                it.remove();
-                numberFreeClips = MAX_CACHED_CLIPS;
-            }
+            trim();
+        }
+    }
+    
+    /**
+     * Set the maximum size of the cached data, in bytes.  Clips which are in use are kept
+     * even if they exceed it.
+     */
+    public synchronized void setMaxBytes(long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        trim();
+    }
+    
+    /**
+     * Get the memory used by the cached clips, in bytes.
+     */
+    public synchronized long getTotalBytes()
+    {
+        long total = 0;
+        for (ClipData data : cachedClips.values()) {
+            total += data.getMemorySize();
+        }
+        for (ClipData data : freeClips.values()) {
+            total += data.getMemorySize();
+        }
+        return total;
+    }
+    
+    /**
+     * Get the number of clips cached, including those in use.
+     */
+    public synchronized int getClipCount()
+    {
+        return cachedClips.size() + freeClips.size();
+    }
+    
+    /**
+     * Remove least recently used free clips until the cache is within its size.
+     */
+    private void trim()
+    {
+        long total = getTotalBytes();
+        for (Iterator<ClipData> it = freeClips.values().iterator(); it.hasNext() && total > maxBytes; ) {
+            total -= it.next().getMemorySize();
+            it.remove();
         }
     }
 }
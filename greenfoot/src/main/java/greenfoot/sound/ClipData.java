@@ -21,6 +21,8 @@
  */
 package greenfoot.sound;
 
+import java.io.IOException;
+
 import javax.sound.sampled.AudioFormat;
 
 /**
@@ -35,9 +37,12 @@ public class ClipData
     private AudioFormat format;
     private int activeUsers;
     private int length; // length in sample frames
+    // The data converted for the mixer, once needed:
+    private short[] stereoSamples;
+    private float stereoSampleRate;
     
     /**
-     * Construct a ClipData with a single active user.
+     * Construct a ClipData with no active users.
      */
     public ClipData(String url, byte[] buffer, AudioFormat format, int length)
     {
@@ -45,7 +50,7 @@ public class ClipData
         this.buffer = buffer;
         this.format = format;
         this.length = length;
-        this.activeUsers = 1;
+        this.activeUsers = 0;
     }
     
     public void addUser()
@@ -77,4 +82,26 @@ public class ClipData
     {
         return length;
     }
+    
+    /**
+     * Get the memory used by the data, in bytes, including any converted for the mixer.
+     */
+    public synchronized long getMemorySize()
+    {
+        return buffer.length + (stereoSamples == null ? 0 : 2L * stereoSamples.length);
+    }
+    
+    /**
+     * Get the clip as 16-bit stereo samples at the given rate (see
+     * {@link SoundUtils#toStereoSamples}).  The conversion is done once, and kept with the
+     * cached data.  The returned array must not be modified.
+     */
+    public synchronized short[] getStereoSamples(float sampleRate) throws IOException
+    {
+        if (stereoSamples == null || stereoSampleRate != sampleRate) {
+            stereoSamples = SoundUtils.toStereoSamples(buffer, format, length, sampleRate);
+            stereoSampleRate = sampleRate;
+        }
+        return stereoSamples;
+    }
 }
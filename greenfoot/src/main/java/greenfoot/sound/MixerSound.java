@@ -0,0 +1,376 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Plays sound from a URL through the {@link AudioMixer}, rather than through a line of
+ * its own. The sound is loaded into memory, and converted for the mixer, the first time
+ * it is played (or when preloaded); the converted data is kept in the {@link ClipCache}.
+ * Loading is done in the background: playing a sound which is not loaded returns at
+ * once, and the sound starts when it has loaded.
+ */
+public class MixerSound implements Sound
+{
+    /** URL of the sound data. */
+    private final URL url;
+    
+    /** Data for the clip (used for caching); null until loaded, and once closed (a closed
+     *  sound may be played again, loading the data again). */
+    private ClipData clipData;
+    
+    /** The sound converted for the mixer. */
+    private short[] samples;
+    
+    /** Whether the sound data is being loaded. */
+    private boolean loading;
+    
+    /** The voice playing the sound, if it is playing or paused. */
+    private AudioMixer.Voice voice;
+    
+    /** The states a sound can be in. */
+    private enum State
+    {
+        STOPPED, PLAYING, LOOPING, PAUSED_PLAYING, PAUSED_LOOPING, CLOSED
+    };
+    
+    private State state = State.STOPPED;
+    
+    /** The master volume of the sound, 0-100. */
+    private int masterVolume = 100;
+    
+    /** Listener for state changes. */
+    private final SoundPlaybackListener playbackListener;
+    
+    /** The mixer the sound plays through, and the cache its data is kept in. */
+    private final AudioMixer mixer;
+    private final ClipCache cache;
+    
+    /**
+     * Creates a new mixer sound.
+     */
+    public MixerSound(URL url, SoundPlaybackListener listener)
+    {
+        this(url, listener, null, ClipCache.getInstance());
+    }
+    
+    /**
+     * Creates a new mixer sound, playing through the given mixer (or, if null, the
+     * mixer which plays to the sound output) and cached in the given cache.
+     */
+    MixerSound(URL url, SoundPlaybackListener listener, AudioMixer mixer, ClipCache cache)
+    {
+        this.url = url;
+        playbackListener = listener;
+        this.mixer = mixer;
+        this.cache = cache;
+    }
+    
+    /**
+     * Start loading and converting the sound data in the background, if it is not
+     * already loading.  Once loaded, the sound starts according to its state then.
+     * If the data is already cached, it is loaded (and the sound started) before
+     * this returns, so the state must be set before calling this.
+     */
+    private void startLoading()
+    {
+        if (loading) {
+            return;
+        }
+        loading = true;
+        cache.getCachedClipAsync(url).thenApply(data -> {
+            // Convert it on the loading thread too:
+            try {
+                data.getStereoSamples(AudioMixer.SAMPLE_RATE);
+                return data;
+            }
+            catch (IOException e) {
+                cache.releaseClipData(data);
+                throw new CompletionException(e);
+            }
+        }).whenComplete(this::loaded);
+    }
+    
+    /**
+     * The sound data has been loaded (or failed to load).
+     */
+    private synchronized void loaded(ClipData data, Throwable failure)
+    {
+        loading = false;
+        if (failure == null && state == State.CLOSED) {
+            cache.releaseClipData(data);
+            return;
+        }
+        
+        try {
+            if (failure != null) {
+                throw failure instanceof CompletionException ? failure.getCause() : failure;
+            }
+            clipData = data;
+            samples = data.getStereoSamples(AudioMixer.SAMPLE_RATE);
+        }
+        catch (Throwable t) {
+            if (state != State.CLOSED) {
+                setState(State.STOPPED);
+            }
+            reportFailure(t);
+            return;
+        }
+        
+        // If paused meanwhile, the voice is started when the sound is resumed:
+        if (state == State.PLAYING) {
+            startVoice(false);
+        }
+        else if (state == State.LOOPING) {
+            startVoice(true);
+        }
+    }
+    
+    /**
+     * Report a failure to load the sound.  This happens in the background, so the
+     * exceptions which the handler would throw are printed instead.
+     */
+    private void reportFailure(Throwable t)
+    {
+        try {
+            if (t instanceof SecurityException) {
+                SoundExceptionHandler.handleSecurityException((SecurityException) t, url.toString());
+            }
+            else if (t instanceof IllegalArgumentException) {
+                SoundExceptionHandler.handleIllegalArgumentException((IllegalArgumentException) t, url.toString());
+            }
+            else if (t instanceof FileNotFoundException) {
+                SoundExceptionHandler.handleFileNotFoundException((FileNotFoundException) t, url.toString());
+            }
+            else if (t instanceof IOException) {
+                SoundExceptionHandler.handleIOException((IOException) t, url.toString());
+            }
+            else if (t instanceof UnsupportedAudioFileException) {
+                SoundExceptionHandler.handleUnsupportedAudioFileException((UnsupportedAudioFileException) t, url.toString());
+            }
+            else {
+                t.printStackTrace();
+            }
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+    
+    /**
+     * Preloads the sound in the background, so that it is converted for the mixer and cached.
+     * 
+     * @return  A future which completes once the sound is loaded (or has failed to load).
+     */
+    public CompletableFuture<Void> preLoad()
+    {
+        //Ignore all exceptions when pre-loading
+        return cache.getCachedClipAsync(url).thenAccept(data -> {
+            try {
+                data.getStereoSamples(AudioMixer.SAMPLE_RATE);
+            }
+            catch (IOException e) {
+                
+            }
+            finally {
+                cache.releaseClipData(data);
+            }
+        });
+    }
+    
+    /**
+     * Start a voice playing the loaded sound from the beginning.
+     */
+    private void startVoice(boolean looping)
+    {
+        AudioMixer output = mixer != null ? mixer : AudioMixer.getInstance();
+        voice = output.play(samples, AudioMixer.volumeToGain(masterVolume), 0, looping, this::voiceFinished);
+    }
+    
+    /**
+     * Called (on the mixer's thread) when a voice reaches its end, or is stopped to make
+     * room for other sounds.
+     */
+    private synchronized void voiceFinished()
+    {
+        if (voice != null && voice.isFinished()) {
+            voice = null;
+            if (state != State.CLOSED) {
+                setState(State.STOPPED);
+            }
+        }
+    }
+    
+    @Override
+    public synchronized void play()
+    {
+        if (state == State.PLAYING) {
+            return;
+        }
+        setState(State.PLAYING);
+        if (voice != null) {
+            // Resume if paused, and play out the current loop if looping:
+            voice.setLooping(false);
+            voice.setPaused(false);
+        }
+        else if (samples != null) {
+            startVoice(false);
+        }
+        else {
+            startLoading();
+        }
+    }
+    
+    @Override
+    public synchronized void loop()
+    {
+        if (state == State.LOOPING) {
+            return;
+        }
+        setState(State.LOOPING);
+        if (voice != null) {
+            voice.setLooping(true);
+            voice.setPaused(false);
+        }
+        else if (samples != null) {
+            startVoice(true);
+        }
+        else {
+            startLoading();
+        }
+    }
+    
+    @Override
+    public synchronized void pause()
+    {
+        if (voice == null && !loading) {
+            return;
+        }
+        if (voice != null) {
+            voice.setPaused(true);
+        }
+        if (state == State.PLAYING) {
+            setState(State.PAUSED_PLAYING);
+        }
+        else if (state == State.LOOPING) {
+            setState(State.PAUSED_LOOPING);
+        }
+    }
+    
+    @Override
+    public synchronized void stop()
+    {
+        if (isStopped()) {
+            return;
+        }
+        if (voice != null) {
+            voice.stop();
+            voice = null;
+        }
+        setState(State.STOPPED);
+    }
+    
+    @Override
+    public synchronized void close()
+    {
+        if (state != State.CLOSED) {
+            if (voice != null) {
+                voice.stop();
+                voice = null;
+            }
+            if (clipData != null) {
+                cache.releaseClipData(clipData);
+                clipData = null;
+                samples = null;
+            }
+            setState(State.CLOSED);
+        }
+    }
+    
+    private void setState(State newState)
+    {
+        if (state != newState) {
+            state = newState;
+            switch (state) {
+                case PLAYING:
+                case LOOPING:
+                    playbackListener.playbackStarted(this);
+                    break;
+                case STOPPED:
+                    playbackListener.playbackStopped(this);
+                    break;
+                case PAUSED_PLAYING:
+                case PAUSED_LOOPING:
+                    playbackListener.playbackPaused(this);
+                    break;
+                case CLOSED:
+                    playbackListener.soundClosed(this);
+            }
+        }
+    }
+    
+    @Override
+    public synchronized boolean isPlaying()
+    {
+        return state == State.PLAYING || state == State.LOOPING;
+    }
+    
+    @Override
+    public synchronized boolean isPaused()
+    {
+        return state == State.PAUSED_PLAYING || state == State.PAUSED_LOOPING;
+    }
+    
+    @Override
+    public synchronized boolean isStopped()
+    {
+        return state == State.STOPPED || state == State.CLOSED;
+    }
+    
+    @Override
+    public synchronized void setVolume(int level)
+    {
+        masterVolume = level;
+        if (voice != null) {
+            voice.setGain(AudioMixer.volumeToGain(level));
+        }
+    }
+    
+    @Override
+    public synchronized int getVolume()
+    {
+        return masterVolume;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return url + " " + super.toString();
+    }
+}
@@ -26,6 +26,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -50,7 +51,7 @@ import javax.sound.sampled.UnsupportedAudioFileException;
  */
 public class SoundClip implements Sound, LineListener
 {
-    private static ClipCache clipCache = new ClipCache();
+    private static ClipCache clipCache = ClipCache.getInstance();
     private static ClipProcessThread processThread = new ClipProcessThread();
     private static ClipCloserThread closerThread = new ClipCloserThread();
 
@@ -135,7 +136,10 @@ public class SoundClip implements Sound, LineListener
     private void load() throws UnsupportedAudioFileException, IOException,
             LineUnavailableException
     {
-        clipData = clipCache.getCachedClip(url);
+        if (clipData == null) {
+            // We keep the data until closed, even if the clip is released when it stops:
+            clipData = clipCache.getCachedClip(url);
+        }
         InputStream is = new ByteArrayInputStream(clipData.getBuffer());
         AudioFormat format = clipData.getFormat();
         AudioInputStream stream = new AudioInputStream(is, format, clipData.getLength());
@@ -153,22 +157,14 @@ public class SoundClip implements Sound, LineListener
     }
     
     /**
-     * Preloads the clip, by opening it.
+     * Preloads the clip data into the cache, in the background.
+     * 
+     * @return  A future which completes once the data is loaded (or has failed to load).
      */
-    public synchronized void preLoad()
+    public CompletableFuture<Void> preLoad()
     {
         //Ignore all exceptions when pre-loading
-        try
-        {
-            clipData = clipCache.getCachedClip(url);
-            clipCache.releaseClipData(clipData);
-        }
-        catch (IOException e) {
-            
-        }
-        catch (UnsupportedAudioFileException e) {
-            
-        }
+        return clipCache.getCachedClipAsync(url).thenAccept(clipCache::releaseClipData);
     }
 
     /*
@@ -403,10 +399,13 @@ public class SoundClip implements Sound, LineListener
         if (clipState != ClipState.CLOSED) {
             if (soundClip != null) {
                 setVolume(0);
-                clipCache.releaseClipData(clipData);
                 closerThread.addClip(soundClip);
                 soundClip = null;
             }
+            if (clipData != null) {
+                clipCache.releaseClipData(clipData);
+                clipData = null;
+            }
             setState(ClipState.CLOSED);
         }
     }
@@ -25,7 +25,12 @@ import greenfoot.util.GreenfootUtil;
 
 import java.io.IOException;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
 
 /**
@@ -51,6 +56,17 @@ public class SoundFactory
      * clips don't work so well. What about applets?
      */
     private static final int maxClipSize = 500 * 1000;
+    
+    /**
+     * The project property which, if "true", makes sounds small enough to be clips play
+     * through the {@link AudioMixer} instead of each opening a line of its own.
+     */
+    public static final String MIXER_PROPERTY = "sound.mixer";
+    
+    private static volatile boolean mixerEnabled = false;
+    
+    /** Whether each sound file (by URL) which is small enough to be a clip is streamed. */
+    private final Map<String,Boolean> streamDecisions = new ConcurrentHashMap<String,Boolean>();
 
     private SoundFactory()
     {
@@ -58,14 +74,16 @@ public class SoundFactory
         
         for (String soundFile : GreenfootUtil.getSoundFiles())
         {
-            // This loads the file, and if it's a SoundClip, puts it in
-            // the sound cache.  It also happens to make objects for
+            // This loads the file in the background, and if it's a SoundClip, puts it in
+            // the sound cache (within its size).  It also happens to make objects for
             // non-SoundClip items, but since they are all streams,
             // that shouldn't cause a big slowdown or waste of resources.
             Sound s = createSound(soundFile, true);
             
             if (s instanceof SoundClip)
                 ((SoundClip)s).preLoad();
+            else if (s instanceof MixerSound)
+                ((MixerSound)s).preLoad();
             
             // if (!soundCache.hasFreeSpace())
             //    return; // No point continuing
@@ -80,6 +98,33 @@ public class SoundFactory
         return instance;
     }
     
+    /**
+     * Set whether sounds small enough to be clips are played through the mixer.  This
+     * affects sounds created afterwards.
+     */
+    public static void setMixerEnabled(boolean enabled)
+    {
+        mixerEnabled = enabled;
+    }
+    
+    /**
+     * Load a sound file into the sound cache in the background, if it is small enough to be
+     * cached (otherwise it is streamed when played, and there is nothing to load).
+     * 
+     * @return  A future which completes once the sound is loaded (or has failed to load).
+     */
+    public CompletableFuture<Void> preloadSound(String file)
+    {
+        Sound s = createSound(file, true);
+        if (s instanceof SoundClip) {
+            return ((SoundClip)s).preLoad();
+        }
+        else if (s instanceof MixerSound) {
+            return ((MixerSound)s).preLoad();
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+    
     public SoundCollection getSoundCollection()
     {
         return soundCollection;
@@ -108,11 +153,14 @@ public class SoundFactory
             else if(isMp3(url)) {
                 return new SoundStream(new Mp3AudioInputStream(url), soundCollection);
             }            
-            else if (isJavaAudioStream(size)) {
+            else if (isJavaAudioStream(url, size)) {
                 return new SoundStream(new JavaAudioInputStream(url), soundCollection);
             } 
             else {
                 // The sound is small enough to be loaded into memory as a clip.
+                if (mixerEnabled) {
+                    return new MixerSound(url, soundCollection);
+                }
                 return new SoundClip(url, soundCollection);
             }
         } catch (IOException e) {
@@ -127,11 +175,27 @@ public class SoundFactory
         return null;
     }
     
-    private boolean isJavaAudioStream(int size)
+    private boolean isJavaAudioStream(URL url, int size)
     {
         // If we can not get the size, or if it is a big file we stream
         // it in a thread.
-        return size == -1 || size > maxClipSize;
+        if (size == -1 || size > maxClipSize) {
+            return true;
+        }
+        // Also if it would take too much memory once decoded (or we can't tell how much):
+        return streamDecisions.computeIfAbsent(url.toString(), u -> {
+            try {
+                AudioFileFormat format = AudioSystem.getAudioFileFormat(url);
+                long frames = format.getFrameLength();
+                int frameSize = format.getFormat().getFrameSize();
+                return frames == AudioSystem.NOT_SPECIFIED || frameSize == AudioSystem.NOT_SPECIFIED
+                        || frames * frameSize > ClipCache.MAX_CLIP_BYTES;
+            }
+            catch (IOException | UnsupportedAudioFileException e) {
+                // Leave it to the clip to report the problem when played:
+                return false;
+            }
+        });
     }    
 
     private boolean isMidi(URL url)
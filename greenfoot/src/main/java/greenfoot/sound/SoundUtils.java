@@ -27,8 +27,11 @@ import threadchecker.OnThread;
 import threadchecker.Tag;
 
 import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.Mixer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -140,4 +143,88 @@ public class SoundUtils
         }
         return null;
     }
+
+    /**
+     * Convert sound data to 16-bit stereo samples at the given sample rate, as used by the
+     * {@link AudioMixer}.  Mono sound is played on both channels, and channels after the
+     * first two are dropped.  The sound is resampled (by linear interpolation) if its rate
+     * differs.
+     * 
+     * @param data    The sound data
+     * @param format  The format of the data
+     * @param frames  The number of sample frames in the data, or -1 if unknown
+     * @param sampleRate  The sample rate wanted
+     * @return  The samples, with left and right interleaved.
+     * @throws IOException  if the data could not be converted
+     * @throws IllegalArgumentException  if the format cannot be converted to PCM
+     */
+    public static short[] toStereoSamples(byte[] data, AudioFormat format, int frames, float sampleRate)
+        throws IOException
+    {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+        if (!(encoding.equals(AudioFormat.Encoding.PCM_SIGNED) || encoding.equals(AudioFormat.Encoding.PCM_UNSIGNED))
+                || (bits != 8 && bits != 16)) {
+            // Let Java Sound convert it (from u-law, floating point etc.) to 16-bit PCM first:
+            AudioFormat pcm = new AudioFormat(format.getSampleRate(), 16, format.getChannels(), true, false);
+            AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(data), format,
+                    frames < 0 ? AudioSystem.NOT_SPECIFIED : frames);
+            try (AudioInputStream converted = AudioSystem.getAudioInputStream(pcm, stream)) {
+                data = converted.readAllBytes();
+            }
+            format = pcm;
+            bits = 16;
+            frames = -1;
+        }
+
+        int frameSize = format.getFrameSize();
+        int bytes = bits / 8;
+        int channels = format.getChannels();
+        boolean signed = format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED);
+        boolean bigEndian = format.isBigEndian();
+        int available = data.length / frameSize;
+        frames = frames < 0 ? available : Math.min(frames, available);
+
+        short[] samples = new short[frames * 2];
+        for (int f = 0; f < frames; f++) {
+            int offset = f * frameSize;
+            samples[f * 2] = readSample(data, offset, bytes, signed, bigEndian);
+            samples[f * 2 + 1] = channels > 1 ? readSample(data, offset + bytes, bytes, signed, bigEndian) : samples[f * 2];
+        }
+
+        float sourceRate = format.getSampleRate();
+        if (sourceRate == AudioSystem.NOT_SPECIFIED || sourceRate == sampleRate || frames == 0) {
+            return samples;
+        }
+        int resampledFrames = (int) ((long) frames * (long) sampleRate / (long) sourceRate);
+        short[] resampled = new short[resampledFrames * 2];
+        double step = sourceRate / sampleRate;
+        for (int f = 0; f < resampledFrames; f++) {
+            double pos = f * step;
+            int i = (int) pos;
+            int next = Math.min(i + 1, frames - 1);
+            double frac = pos - i;
+            for (int c = 0; c < 2; c++) {
+                int a = samples[i * 2 + c];
+                int b = samples[next * 2 + c];
+                resampled[f * 2 + c] = (short) Math.round(a + (b - a) * frac);
+            }
+        }
+        return resampled;
+    }
+
+    /**
+     * Read an 8- or 16-bit PCM sample, as a 16-bit signed sample.
+     */
+    private static short readSample(byte[] data, int offset, int bytes, boolean signed, boolean bigEndian)
+    {
+        if (bytes == 1) {
+            int value = signed ? data[offset] : (data[offset] & 0xff) - 128;
+            return (short) (value << 8);
+        }
+        int high = bigEndian ? data[offset] : data[offset + 1];
+        int low = bigEndian ? data[offset + 1] : data[offset];
+        int value = (high & 0xff) << 8 | (low & 0xff);
+        return (short) (signed ? value : value - 32768);
+    }
 }
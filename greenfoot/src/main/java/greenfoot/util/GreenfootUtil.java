@@ -122,6 +122,16 @@ public class GreenfootUtil
     {
         return delegate.getSoundFiles();
     }
+    
+    /**
+     * Gets a list of the image files in this scenario
+     * @return A list of files in the images subdirectory, without the path prefix (e.g. "foo.png")
+     */
+    @OnThread(Tag.Any)
+    public static Iterable<String> getImageFiles()
+    {
+        return delegate.getImageFiles();
+    }
 
     /**
      * Tries to find the specified file using the classloader. It first searches in
@@ -0,0 +1,199 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.util;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A cache of rendered text, so that text which is drawn repeatedly (such as the
+ * world's text labels, or images made from the same string) is laid out and
+ * rasterised only once.  Images are kept by their text, size and colours, and the least
+ * recently used ones are discarded when the cache grows beyond its size.
+ *
+ * <p>The images returned are shared, and must not be modified.
+ */
+@OnThread(Tag.Any)
+public class TextImageCache
+{
+    /** The maximum size of the cached images, in bytes (4 per pixel). */
+    private static final long MAX_BYTES = 8L * 1024 * 1024;
+
+    private static final TextImageCache instance = new TextImageCache();
+
+    /** The text and how it is drawn, which together determine a rendered image. */
+    private static class Key
+    {
+        private final String text;
+        private final int size;
+        private final Color foreground;
+        private final Color background;
+        private final Color outline;
+        private final int margin;
+
+        Key(String text, int size, Color foreground, Color background, Color outline, int margin)
+        {
+            this.text = text;
+            this.size = size;
+            this.foreground = foreground;
+            this.background = background;
+            this.outline = outline;
+            this.margin = margin;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return size == k.size && margin == k.margin && text.equals(k.text)
+                    && Objects.equals(foreground, k.foreground) && Objects.equals(background, k.background)
+                    && Objects.equals(outline, k.outline);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(text, size, foreground, background, outline, margin);
+        }
+    }
+
+    // In order of use, least recent first:
+    private final LinkedHashMap<Key,BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+    private int hits;
+    private int misses;
+
+    /**
+     * Get the text image cache instance.
+     */
+    public static TextImageCache getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Get an image of the given text, drawn in bold with each line horizontally centred (as
+     * by {@link GraphicsUtilities#drawOutlinedText}).  The image is the size of the text
+     * plus the given margin on each side.  The returned image must not be modified.
+     *
+     * @param text        The text, which may contain newlines
+     * @param size        The height in pixels of each line of text
+     * @param foreground  The colour of the text (black if null)
+     * @param background  The colour of the image behind the text (transparent if null)
+     * @param outline     The colour of the outline drawn around the text (none if null)
+     * @param margin      The space around the text, for the outline and antialiasing
+     */
+    public BufferedImage getTextImage(String text, int size, Color foreground, Color background, Color outline, int margin)
+    {
+        Key key = new Key(text, size, foreground, background, outline, margin);
+        synchronized (this) {
+            BufferedImage image = images.get(key);
+            if (image != null) {
+                hits++;
+                return image;
+            }
+            misses++;
+        }
+
+        // Render without holding the lock; if another thread renders the same text at the
+        // same time, one of the images is simply replaced.
+        BufferedImage image = render(text, size, foreground, background, outline, margin);
+        long bytes = bytes(image);
+        if (bytes <= MAX_BYTES) {
+            synchronized (this) {
+                BufferedImage old = images.put(key, image);
+                totalBytes += bytes - (old == null ? 0 : bytes(old));
+                for (Iterator<BufferedImage> i = images.values().iterator(); totalBytes > MAX_BYTES; ) {
+                    totalBytes -= bytes(i.next());
+                    i.remove();
+                }
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage render(String text, int size, Color foreground, Color background, Color outline, int margin)
+    {
+        String[] lines = GraphicsUtilities.splitLines(text);
+        GraphicsUtilities.MultiLineStringDimensions d = GraphicsUtilities.getMultiLineStringDimensions(lines, Font.BOLD, size);
+        BufferedImage image = GraphicsUtilities.createCompatibleTranslucentImage(d.getWidth() + 2 * margin, d.getHeight() + 2 * margin);
+        Graphics2D g = image.createGraphics();
+        if (background != null) {
+            g.setColor(background);
+            g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        }
+        g.translate(margin, margin);
+        GraphicsUtilities.drawOutlinedText(g, d, foreground, outline);
+        g.dispose();
+        return image;
+    }
+
+    private static long bytes(BufferedImage image)
+    {
+        return 4L * image.getWidth() * image.getHeight();
+    }
+
+    /**
+     * Get the number of times a text image was found in the cache.
+     */
+    public synchronized int getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * Get the number of times a text image had to be rendered.
+     */
+    public synchronized int getMisses()
+    {
+        return misses;
+    }
+
+    /**
+     * Get the number of text images cached.
+     */
+    public synchronized int getImageCount()
+    {
+        return images.size();
+    }
+
+    /**
+     * Remove all the cached text images.
+     */
+    public synchronized void clear()
+    {
+        images.clear();
+        totalBytes = 0;
+    }
+}
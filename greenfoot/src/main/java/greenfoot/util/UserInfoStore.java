@@ -0,0 +1,483 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.util;
+
+import au.com.bytecode.opencsv.CSVReader;
+import au.com.bytecode.opencsv.CSVWriter;
+import bluej.utility.Debug;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The local storage of user info (as used by UserInfo when running in the IDE): one row
+ * per user, each an array of strings whose first element is the user name and second is
+ * the score.
+ *
+ * <p>All the rows are held in memory, in a list sorted by score (highest first; equal
+ * scores in the order they were stored), so that finding the top users, or the users
+ * near a given one, does not read the file.  The rows are kept in a CSV file (one row per
+ * line, as written by earlier versions), and changes are appended to a journal file next
+ * to it, by a background thread.  When the journal grows bigger than the number of rows,
+ * it is compacted: once the latest changes are in the journal, and synced to disk, the
+ * rows are written to a temporary file, which then replaces the CSV file (atomically,
+ * where the file system allows), and the journal is emptied.  If the program stops
+ * part-way through this, the journal still holds all the changes, and is applied again
+ * when the rows are next loaded; applying changes already in the CSV file again leaves
+ * the rows as they were.
+ *
+ * <p>Each journal line is a row followed by an end marker, or (to remove a user) just the
+ * user name and the marker; lines without the marker were not completely written, and
+ * are ignored.  Such a line is followed by nothing else, unless the store appended to it,
+ * so when the rows are loaded from a journal with one, the journal is compacted before
+ * anything is appended to it.
+ */
+@OnThread(Tag.Any)
+public class UserInfoStore
+{
+    private static final String END_MARKER = "#";
+    /** The journal is compacted when it has more lines than this, and more than the rows. */
+    private static final int MIN_COMPACT_LINES = 1000;
+
+    /** A row, with its place in the ordering. */
+    private static class Entry
+    {
+        final String[] row;
+        final int score;
+        final long sequence;
+
+        Entry(String[] row, int score, long sequence)
+        {
+            this.row = row;
+            this.score = score;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = (a, b) -> {
+        if (a.score != b.score) {
+            // Highest first:
+            return a.score > b.score ? -1 : 1;
+        }
+        return Long.compare(a.sequence, b.sequence);
+    };
+
+    private final File file;
+    private final File journalFile;
+    private final File tempFile;
+
+    private boolean loaded = false;
+    private final Map<String, Entry> byUser = new HashMap<>();
+    private final ArrayList<Entry> sorted = new ArrayList<>();
+    private long nextSequence = 0;
+
+    // Journal lines not yet written, and the number in the journal file:
+    private List<String[]> pending = new ArrayList<>();
+    private int journalLines = 0;
+    private boolean writeQueued = false;
+    private final ExecutorService writer;
+    // Only used on the writer thread:
+    private FileOutputStream journalStream;
+    private CSVWriter journalOut;
+    private final Thread shutdownHook;
+
+    /**
+     * Create a store kept in the given CSV file (and a journal file next to it).  Nothing is
+     * read until the store is first used.
+     */
+    public UserInfoStore(File file)
+    {
+        this.file = file;
+        this.journalFile = new File(file.getPath() + ".journal");
+        this.tempFile = new File(file.getPath() + ".tmp");
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Greenfoot storage writer");
+            t.setDaemon(true);
+            return t;
+        });
+        // Write any pending changes if the VM exits normally:
+        shutdownHook = new Thread(this::flush, "Greenfoot storage flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Get the row for the given user, or null if there is none.
+     */
+    public synchronized String[] get(String userName) throws IOException
+    {
+        ensureLoaded();
+        Entry entry = byUser.get(userName);
+        return entry == null ? null : entry.row.clone();
+    }
+
+    /**
+     * Get the rank of the given user (1 for the highest score), or -1 if the user has no row.
+     */
+    public synchronized int getRank(String userName) throws IOException
+    {
+        ensureLoaded();
+        Entry entry = byUser.get(userName);
+        return entry == null ? -1 : Collections.binarySearch(sorted, entry, ORDER) + 1;
+    }
+
+    /**
+     * Get the number of rows.
+     */
+    public synchronized int size() throws IOException
+    {
+        ensureLoaded();
+        return sorted.size();
+    }
+
+    /**
+     * Get the rows ranked from (from + 1) to (to), in order of rank.
+     */
+    public synchronized List<String[]> getRows(int from, int to) throws IOException
+    {
+        ensureLoaded();
+        from = Math.max(0, from);
+        to = Math.min(to, sorted.size());
+        List<String[]> rows = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            rows.add(sorted.get(i).row.clone());
+        }
+        return rows;
+    }
+
+    /**
+     * Set the row of a user (row[0]), replacing any existing one.  The user is ranked
+     * after any others with the same score.  The change is written in the background.
+     *
+     * @throws NumberFormatException  if row[1] is not a valid score
+     */
+    public synchronized void put(String[] row) throws IOException
+    {
+        ensureLoaded();
+        row = row.clone();
+        int score = Integer.parseInt(row[1]);
+        putEntry(row, score);
+        String[] line = Arrays.copyOf(row, row.length + 1);
+        line[row.length] = END_MARKER;
+        queueWrite(line);
+    }
+
+    /**
+     * Remove the row of a user, if any.  The change is written in the background.
+     */
+    public synchronized void remove(String userName) throws IOException
+    {
+        ensureLoaded();
+        if (removeEntry(userName)) {
+            queueWrite(new String[] {userName, END_MARKER});
+        }
+    }
+
+    /**
+     * Wait until all the changes so far have been written.
+     */
+    public void flush()
+    {
+        if (writer.isShutdown()) {
+            return;
+        }
+        try {
+            writer.submit(() -> {}).get();
+        }
+        catch (Exception e) {
+            Debug.reportError("Waiting for user data to be written", e);
+        }
+    }
+
+    /**
+     * Write all the changes so far, and stop the background writer.  The store should not
+     * be changed afterwards.
+     */
+    public void close()
+    {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        }
+        catch (IllegalStateException e) {
+            // Already shutting down
+        }
+        flush();
+        writer.execute(this::closeJournal);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void putEntry(String[] row, int score)
+    {
+        removeEntry(row[0]);
+        Entry entry = new Entry(row, score, nextSequence++);
+        // Not found, so binarySearch returns (-(insertion point) - 1):
+        int index = -Collections.binarySearch(sorted, entry, ORDER) - 1;
+        sorted.add(index, entry);
+        byUser.put(row[0], entry);
+    }
+
+    private boolean removeEntry(String userName)
+    {
+        Entry old = byUser.remove(userName);
+        if (old == null) {
+            return false;
+        }
+        sorted.remove(Collections.binarySearch(sorted, old, ORDER));
+        return true;
+    }
+
+    /**
+     * Read the CSV file and apply the journal, if not done already.
+     */
+    private void ensureLoaded() throws IOException
+    {
+        if (loaded) {
+            return;
+        }
+
+        List<String[]> rows = new ArrayList<>();
+        readAll(file, rows);
+        for (String[] row : rows) {
+            if (row.length > 1) {
+                try {
+                    putEntry(row, Integer.parseInt(row[1]));
+                }
+                catch (NumberFormatException e) {
+                    // Skip the bad row
+                }
+            }
+        }
+
+        // The journal may end with a line which was not completely written;
+        // readAll stops when it finds one.
+        List<String[]> journal = new ArrayList<>();
+        boolean complete = readAll(journalFile, journal);
+        int applied = 0;
+        for (String[] line : journal) {
+            if (line.length < 2 || ! END_MARKER.equals(line[line.length - 1])) {
+                break;
+            }
+            applied++;
+            if (line.length == 2) {
+                removeEntry(line[0]);
+            }
+            else {
+                try {
+                    putEntry(Arrays.copyOf(line, line.length - 1), Integer.parseInt(line[1]));
+                }
+                catch (NumberFormatException e) {
+                    // Skip the bad row
+                }
+            }
+        }
+        loaded = true;
+
+        if (complete && applied == journal.size()) {
+            journalLines = applied;
+        }
+        else {
+            // The next line appended would be joined onto the incomplete one, so write
+            // the rows out and empty the journal first:
+            List<String[]> loadedRows = getAllRows();
+            writer.execute(() -> {
+                try {
+                    compact(loadedRows);
+                }
+                catch (IOException e) {
+                    Debug.message("Error storing user data: " + e.getMessage());
+                    closeJournal();
+                }
+            });
+        }
+    }
+
+    /**
+     * Read all the lines of a CSV file into the given list, stopping at any line which
+     * cannot be read.  Reads nothing if the file does not exist.
+     *
+     * @return  false if a line could not be read
+     */
+    private static boolean readAll(File file, List<String[]> lines) throws IOException
+    {
+        CSVReader csv;
+        try {
+            csv = new CSVReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        }
+        catch (FileNotFoundException e) {
+            return true;
+        }
+        try {
+            String[] line;
+            while ((line = csv.readNext()) != null) {
+                lines.add(line);
+            }
+            return true;
+        }
+        catch (IOException e) {
+            // An unterminated line at the end; keep what we have
+            return false;
+        }
+        finally {
+            csv.close();
+        }
+    }
+
+    /**
+     * Get all the rows, in order of rank (sharing the row arrays, which are not modified).
+     */
+    private List<String[]> getAllRows()
+    {
+        List<String[]> rows = new ArrayList<>(sorted.size());
+        for (Entry entry : sorted) {
+            rows.add(entry.row);
+        }
+        return rows;
+    }
+
+    private void queueWrite(String[] line)
+    {
+        pending.add(line);
+        if (! writeQueued) {
+            writeQueued = true;
+            writer.execute(this::writePending);
+        }
+    }
+
+    /**
+     * Append the pending lines to the journal, and then, if the journal has become too big,
+     * write all the rows to the CSV file.  Runs on the writer thread.
+     */
+    private void writePending()
+    {
+        List<String[]> lines;
+        List<String[]> rows = null;
+        synchronized (this) {
+            lines = pending;
+            pending = new ArrayList<>();
+            writeQueued = false;
+            journalLines += lines.size();
+            if (journalLines > MIN_COMPACT_LINES && journalLines > sorted.size()) {
+                rows = getAllRows();
+                journalLines = 0;
+            }
+        }
+
+        try {
+            if (journalOut == null) {
+                openJournal(true);
+            }
+            for (String[] line : lines) {
+                journalOut.writeNext(line);
+            }
+            journalOut.flush();
+            // CSVWriter doesn't throw on errors:
+            if (journalOut.checkError()) {
+                throw new IOException("Could not write to " + journalFile);
+            }
+            if (rows != null) {
+                // If we stop after replacing the CSV file but before emptying the journal,
+                // the journal is applied again, so it must have the latest changes too:
+                journalStream.getFD().sync();
+                compact(rows);
+            }
+        }
+        catch (IOException e) {
+            Debug.message("Error storing user data: " + e.getMessage());
+            closeJournal();
+        }
+    }
+
+    /**
+     * Replace the CSV file with the given rows, and empty the journal (whose changes the
+     * rows include).  Runs on the writer thread.
+     */
+    private void compact(List<String[]> rows) throws IOException
+    {
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try (CSVWriter csv = new CSVWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (String[] row : rows) {
+                csv.writeNext(row);
+            }
+            csv.flush();
+            if (csv.checkError()) {
+                throw new IOException("Could not write to " + tempFile);
+            }
+            out.getFD().sync();
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        closeJournal();
+        openJournal(false);
+    }
+
+    private void openJournal(boolean append) throws IOException
+    {
+        journalStream = new FileOutputStream(journalFile, append);
+        journalOut = new CSVWriter(new OutputStreamWriter(journalStream, StandardCharsets.UTF_8));
+    }
+
+    private void closeJournal()
+    {
+        if (journalOut != null) {
+            try {
+                journalOut.close();
+            }
+            catch (IOException e) {
+                // Nothing more we can do
+            }
+            journalOut = null;
+            journalStream = null;
+        }
+    }
+}
@@ -72,6 +72,8 @@ public class Command
     // Discard the world, but don't make a new one
     public static final int COMMAND_DISCARD_WORLD = 29;
     public static final int COMMAND_SET_SPEED = 30;
+    // Followed by 1 to start profiling the simulation, or 0 to stop:
+    public static final int COMMAND_SET_PROFILING = 31;
 
     public static final int COMMAND_WORLD_FOCUS_GAINED = 40;
     public static final int COMMAND_WORLD_FOCUS_LOST = 41;
@@ -83,6 +85,8 @@ public class Command
     public final int commandSequence;
     public final int commandType;
     public final int[] extraInfo;
+    // When the command was issued (System.nanoTime()), for latency measurement:
+    public final long createdNanos = System.nanoTime();
 
     /**
      * Construct a command of the given type, and with any number of additional parameters.
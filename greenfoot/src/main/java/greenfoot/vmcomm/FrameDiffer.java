@@ -0,0 +1,159 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.util.Arrays;
+
+/**
+ * Works out which parts of a world image have changed since the previously sent
+ * frame, so that only those parts need to be transmitted to the server VM.
+ * 
+ * The image is divided into square tiles; a horizontal run of changed tiles on one
+ * tile row is reported as a single region. If no previous frame is known, or a large
+ * part of the image has changed, the whole frame should be sent instead.
+ */
+class FrameDiffer
+{
+    /** The width and height of the tiles which are compared, in pixels. */
+    static final int TILE_SIZE = 32;
+    
+    /** The pixels of the previously sent frame, or null if none is known. */
+    private int[] lastPixels;
+    private int lastWidth;
+    private int lastHeight;
+    
+    /** The changed regions found by the last call to findChangedRegions, as (x, y, w, h) quads. */
+    private int[] regions = new int[64];
+    
+    /**
+     * Find the regions of the given frame that have changed since the last frame
+     * which was recorded as sent. The regions are available via {@link #getRegions()}.
+     * 
+     * @return  The number of changed regions, or -1 if the whole frame should be sent.
+     */
+    int findChangedRegions(int[] pixels, int width, int height)
+    {
+        if (lastPixels == null || width != lastWidth || height != lastHeight) {
+            return -1;
+        }
+        
+        int count = 0;
+        long changedArea = 0;
+        long maxChangedArea = (long) width * height / 2;
+        for (int tileY = 0; tileY < height; tileY += TILE_SIZE) {
+            int tileHeight = Math.min(TILE_SIZE, height - tileY);
+            int runStart = -1;
+            for (int tileX = 0; tileX < width; tileX += TILE_SIZE) {
+                if (tileChanged(pixels, width, tileX, tileY, Math.min(TILE_SIZE, width - tileX), tileHeight)) {
+                    if (runStart == -1) {
+                        runStart = tileX;
+                    }
+                }
+                else if (runStart != -1) {
+                    addRegion(count++, runStart, tileY, tileX - runStart, tileHeight);
+                    changedArea += (tileX - runStart) * tileHeight;
+                    runStart = -1;
+                }
+            }
+            if (runStart != -1) {
+                addRegion(count++, runStart, tileY, width - runStart, tileHeight);
+                changedArea += (width - runStart) * tileHeight;
+            }
+            if (changedArea > maxChangedArea) {
+                return -1;
+            }
+        }
+        return count;
+    }
+    
+    private void addRegion(int index, int x, int y, int w, int h)
+    {
+        if (index * 4 == regions.length) {
+            regions = Arrays.copyOf(regions, regions.length * 2);
+        }
+        regions[index * 4] = x;
+        regions[index * 4 + 1] = y;
+        regions[index * 4 + 2] = w;
+        regions[index * 4 + 3] = h;
+    }
+    
+    /**
+     * Check whether any pixel in the given tile differs from the last frame.
+     */
+    private boolean tileChanged(int[] pixels, int width, int x, int y, int w, int h)
+    {
+        for (int row = y; row < y + h; row++) {
+            int from = row * width + x;
+            if (! Arrays.equals(pixels, from, from + w, lastPixels, from, from + w)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Get the regions found by the last call to {@link #findChangedRegions}: the
+     * array holds x, y, width and height for each region in turn.
+     */
+    int[] getRegions()
+    {
+        return regions;
+    }
+    
+    /**
+     * Record that the given frame has been sent in full.
+     */
+    void frameSent(int[] pixels, int width, int height)
+    {
+        if (lastPixels == null || lastPixels.length != pixels.length) {
+            lastPixels = new int[pixels.length];
+        }
+        System.arraycopy(pixels, 0, lastPixels, 0, pixels.length);
+        lastWidth = width;
+        lastHeight = height;
+    }
+    
+    /**
+     * Record that the given number of regions (as found by the last call to
+     * {@link #findChangedRegions}) of the given frame have been sent.
+     */
+    void regionsSent(int[] pixels, int regionCount)
+    {
+        for (int i = 0; i < regionCount; i++) {
+            int x = regions[i * 4];
+            int y = regions[i * 4 + 1];
+            int w = regions[i * 4 + 2];
+            int h = regions[i * 4 + 3];
+            for (int row = y; row < y + h; row++) {
+                System.arraycopy(pixels, row * lastWidth + x, lastPixels, row * lastWidth + x, w);
+            }
+        }
+    }
+    
+    /**
+     * Forget the last sent frame, so that the next frame will be sent in full.
+     */
+    void reset()
+    {
+        lastPixels = null;
+    }
+}
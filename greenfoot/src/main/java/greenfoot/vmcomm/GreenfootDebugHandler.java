@@ -220,6 +220,15 @@ public class GreenfootDebugHandler implements DebuggerListener, ObjectBenchInter
         return vmComms.getSharedFileSize();
     }    
 
+    /**
+     * Get the transport used to signal between the VMs through the shared memory file.
+     */
+    @OnThread(Tag.FXPlatform)
+    public VMCommsMain.Transport getShmTransport()
+    {
+        return vmComms.getTransport();
+    }
+
     /**
      * Gets the last sequence identifier that we've received from the user VM
      */
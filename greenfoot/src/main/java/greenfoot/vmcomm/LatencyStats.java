@@ -0,0 +1,84 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * Simple statistics for the latency of inter-VM communications: the count, mean and
+ * maximum of the recorded times.
+ */
+@OnThread(Tag.Any)
+public class LatencyStats
+{
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+    
+    /**
+     * Record one latency measurement.
+     */
+    public synchronized void record(long nanos)
+    {
+        count++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+    
+    public synchronized long getCount()
+    {
+        return count;
+    }
+    
+    /**
+     * Get the mean of the recorded times, in microseconds (0 if none recorded).
+     */
+    public synchronized double getMeanMicros()
+    {
+        return count == 0 ? 0 : totalNanos / 1000.0 / count;
+    }
+
+    /**
+     * Get the maximum of the recorded times, in microseconds.
+     */
+    public synchronized double getMaxMicros()
+    {
+        return maxNanos / 1000.0;
+    }
+    
+    /**
+     * Discard all recorded times.
+     */
+    public synchronized void reset()
+    {
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+    
+    @Override
+    public synchronized String toString()
+    {
+        return String.format("%d samples, mean %.1f us, max %.1f us", count, getMeanMicros(), getMaxMicros());
+    }
+}
@@ -0,0 +1,422 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import greenfoot.core.ImageCache;
+import greenfoot.core.SimulationProfiler;
+import greenfoot.core.SimulationProfiler.Phase;
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The simulation profile received from the debug VM: the records of recent act rounds
+ * (see {@link SimulationProfiler}), the names of the classes they refer to, the latest
+ * statistics of the debug VM's image cache, the act and paint rates it is achieving, and
+ * the latency of the world images it sends.
+ * 
+ * <p>The debug VM sends the profile in a block at the end of its status area:
+ * 
+ * <pre>
+ *   1 if profiling, or 0 (in which case nothing follows),
+ *   image cache hits, misses, evictions, images cached, kilobytes cached (see {@link ImageCache}),
+ *   acts per second and paints per second, both in hundredths,
+ *   mean and maximum frame latency since profiling started, in microseconds,
+ *   index of the first class name sent (N), count of class names sent (C),
+ *   C times: count of codepoints (L), L codepoints making up the name of class N, N+1, ...
+ *   count of round records (R),
+ *   R times: record length (L), L ints making up the record
+ * </pre>
+ * 
+ * The records are the most recent rounds, newest first, and are sent again in subsequent
+ * frames if there is room; rounds which we already have are ignored.  The class names are
+ * sent a few at a time, so a class may be shown by its index until its name arrives.  If
+ * rounds are run faster than frames are sent, some rounds will be missing from the profile.
+ */
+@OnThread(Tag.Any)
+public class ProfileData
+{
+    /** The maximum number of rounds kept; older rounds are discarded. */
+    public static final int MAX_ROUNDS = 10000;
+    /** The number of image cache statistics sent. */
+    private static final int IMAGE_CACHE_STATS = 5;
+    
+    private final List<String> classNames = new ArrayList<>();
+    private final ArrayDeque<int[]> rounds = new ArrayDeque<>();
+    // The number of the newest round we have:
+    private int lastRound = -1;
+    // The latest image cache statistics, in the order they are sent:
+    private final int[] imageCacheStats = new int[IMAGE_CACHE_STATS];
+    // The latest act and paint rates, in hundredths per second:
+    private int actRate;
+    private int paintRate;
+    // The latency from sending world images until they are consumed, in microseconds:
+    private int frameLatencyMean;
+    private int frameLatencyMax;
+    
+    /**
+     * Read the profile block from the given buffer.
+     * 
+     * @param buffer  The buffer holding the debug VM's status area
+     * @param pos     The position of the profile block in the buffer
+     */
+    public synchronized void receive(IntBuffer buffer, int pos)
+    {
+        buffer.position(pos);
+        if (buffer.get() == 0)
+        {
+            return;
+        }
+        
+        buffer.get(imageCacheStats);
+        actRate = buffer.get();
+        paintRate = buffer.get();
+        frameLatencyMean = buffer.get();
+        frameLatencyMax = buffer.get();
+        
+        int nameStart = buffer.get();
+        int nameCount = buffer.get();
+        for (int i = 0; i < nameCount; i++)
+        {
+            int[] codepoints = new int[buffer.get()];
+            buffer.get(codepoints);
+            while (classNames.size() <= nameStart + i)
+            {
+                classNames.add(null);
+            }
+            classNames.set(nameStart + i, new String(codepoints, 0, codepoints.length));
+        }
+        
+        int roundCount = buffer.get();
+        List<int[]> newRounds = new ArrayList<>();
+        for (int i = 0; i < roundCount; i++)
+        {
+            int length = buffer.get();
+            // The first int of the record is the round number:
+            if (buffer.get(buffer.position()) > lastRound)
+            {
+                int[] record = new int[length];
+                buffer.get(record);
+                newRounds.add(record);
+            }
+            else
+            {
+                buffer.position(buffer.position() + length);
+            }
+        }
+        
+        // Add them oldest first:
+        for (int i = newRounds.size() - 1; i >= 0; i--)
+        {
+            rounds.addLast(newRounds.get(i));
+            if (rounds.size() > MAX_ROUNDS)
+            {
+                rounds.removeFirst();
+            }
+        }
+        if (!newRounds.isEmpty())
+        {
+            lastRound = newRounds.get(0)[0];
+        }
+    }
+    
+    /**
+     * Discard the profile.
+     */
+    public synchronized void clear()
+    {
+        classNames.clear();
+        rounds.clear();
+        lastRound = -1;
+        Arrays.fill(imageCacheStats, 0);
+        actRate = 0;
+        paintRate = 0;
+        frameLatencyMean = 0;
+        frameLatencyMax = 0;
+    }
+    
+    /**
+     * Get the number of images found in the debug VM's image cache.
+     */
+    public synchronized int getImageCacheHits()
+    {
+        return imageCacheStats[0];
+    }
+    
+    /**
+     * Get the number of images looked for and not found in the debug VM's image cache.
+     */
+    public synchronized int getImageCacheMisses()
+    {
+        return imageCacheStats[1];
+    }
+    
+    /**
+     * Get the number of images evicted from the debug VM's image cache.
+     */
+    public synchronized int getImageCacheEvictions()
+    {
+        return imageCacheStats[2];
+    }
+    
+    /**
+     * Get the number of images in the debug VM's image cache.
+     */
+    public synchronized int getImageCacheCount()
+    {
+        return imageCacheStats[3];
+    }
+    
+    /**
+     * Get the size of the images in the debug VM's image cache, in kilobytes.
+     */
+    public synchronized int getImageCacheKilobytes()
+    {
+        return imageCacheStats[4];
+    }
+    
+    /**
+     * Get the number of act rounds the debug VM's simulation is running per second.
+     */
+    public synchronized double getActRate()
+    {
+        return actRate / 100.0;
+    }
+    
+    /**
+     * Get the number of frames the debug VM is painting per second.
+     */
+    public synchronized double getPaintRate()
+    {
+        return paintRate / 100.0;
+    }
+    
+    /**
+     * Get the mean time from the debug VM sending a world image until it is consumed, in
+     * microseconds.
+     */
+    public synchronized int getFrameLatencyMeanMicros()
+    {
+        return frameLatencyMean;
+    }
+    
+    /**
+     * Get the maximum time from the debug VM sending a world image until it is consumed, in
+     * microseconds.
+     */
+    public synchronized int getFrameLatencyMaxMicros()
+    {
+        return frameLatencyMax;
+    }
+
+    /**
+     * Get the number of rounds held.
+     */
+    public synchronized int getRoundCount()
+    {
+        return rounds.size();
+    }
+    
+    /**
+     * Total up the most recent rounds.
+     * 
+     * @param recentRounds  The maximum number of rounds to include
+     */
+    public synchronized Summary summarize(int recentRounds)
+    {
+        Summary summary = new Summary();
+        List<ClassSummary> classes = new ArrayList<>();
+        for (Iterator<int[]> it = rounds.descendingIterator(); it.hasNext() && summary.rounds < recentRounds; )
+        {
+            int[] record = it.next();
+            summary.rounds++;
+            int pos = 1;
+            for (int i = 0; i < SimulationProfiler.PHASE_COUNT; i++)
+            {
+                summary.phaseNanos[i] += SimulationProfiler.getLong(record, pos);
+                summary.phaseCounts[i] += record[pos + 2];
+                pos += 3;
+            }
+            int classCount = record[pos++];
+            for (int i = 0; i < classCount; i++)
+            {
+                int index = record[pos];
+                while (classes.size() <= index)
+                {
+                    classes.add(null);
+                }
+                ClassSummary cs = classes.get(index);
+                if (cs == null)
+                {
+                    cs = new ClassSummary(getClassName(index));
+                    classes.set(index, cs);
+                }
+                cs.actNanos += SimulationProfiler.getLong(record, pos + 1);
+                cs.actCount += record[pos + 3];
+                cs.collideNanos += SimulationProfiler.getLong(record, pos + 4);
+                cs.collideCount += record[pos + 6];
+                pos += SimulationProfiler.CLASS_ENTRY_SIZE;
+            }
+        }
+        for (ClassSummary cs : classes)
+        {
+            if (cs != null)
+            {
+                summary.classes.add(cs);
+            }
+        }
+        summary.classes.sort(Comparator.comparingLong(ClassSummary::getActNanos).reversed());
+        return summary;
+    }
+    
+    /**
+     * Write all the rounds held as comma-separated values, one line per phase and per
+     * class in each round, with columns: round, class, phase, nanoseconds, count.  The
+     * class column is empty for the totals of each phase.
+     */
+    public synchronized void writeCsv(Writer writer) throws IOException
+    {
+        writer.write("round,class,phase,nanos,count\n");
+        Phase[] phases = Phase.values();
+        for (int[] record : rounds)
+        {
+            int round = record[0];
+            int pos = 1;
+            for (Phase phase : phases)
+            {
+                writeCsvLine(writer, round, "", phase, SimulationProfiler.getLong(record, pos), record[pos + 2]);
+                pos += 3;
+            }
+            int classCount = record[pos++];
+            for (int i = 0; i < classCount; i++)
+            {
+                String name = getClassName(record[pos]);
+                writeCsvLine(writer, round, name, Phase.ACT, SimulationProfiler.getLong(record, pos + 1), record[pos + 3]);
+                writeCsvLine(writer, round, name, Phase.COLLIDE, SimulationProfiler.getLong(record, pos + 4), record[pos + 6]);
+                pos += SimulationProfiler.CLASS_ENTRY_SIZE;
+            }
+        }
+    }
+    
+    private static void writeCsvLine(Writer writer, int round, String className, Phase phase, long nanos, int count)
+        throws IOException
+    {
+        writer.write(round + "," + className + "," + phase.name().toLowerCase(Locale.ROOT) + "," + nanos + "," + count + "\n");
+    }
+
+    private String getClassName(int index)
+    {
+        String name = index < classNames.size() ? classNames.get(index) : null;
+        return name != null ? name : "#" + index;
+    }
+    
+    /**
+     * The totals of a number of rounds.
+     */
+    @OnThread(Tag.Any)
+    public static class Summary
+    {
+        private int rounds;
+        private final long[] phaseNanos = new long[SimulationProfiler.PHASE_COUNT];
+        private final int[] phaseCounts = new int[SimulationProfiler.PHASE_COUNT];
+        private final List<ClassSummary> classes = new ArrayList<>();
+        
+        /**
+         * Get the number of rounds totalled.
+         */
+        public int getRounds()
+        {
+            return rounds;
+        }
+        
+        public long getNanos(Phase phase)
+        {
+            return phaseNanos[phase.ordinal()];
+        }
+        
+        public int getCount(Phase phase)
+        {
+            return phaseCounts[phase.ordinal()];
+        }
+
+        /**
+         * Get the totals for each class, the class which spent longest acting first.
+         */
+        public List<ClassSummary> getClasses()
+        {
+            return classes;
+        }
+    }
+    
+    /**
+     * The totals for one class over a number of rounds.
+     */
+    @OnThread(Tag.Any)
+    public static class ClassSummary
+    {
+        private final String className;
+        private long actNanos;
+        private int actCount;
+        private long collideNanos;
+        private int collideCount;
+        
+        private ClassSummary(String className)
+        {
+            this.className = className;
+        }
+
+        public String getClassName()
+        {
+            return className;
+        }
+
+        public long getActNanos()
+        {
+            return actNanos;
+        }
+
+        public int getActCount()
+        {
+            return actCount;
+        }
+
+        public long getCollideNanos()
+        {
+            return collideNanos;
+        }
+
+        public int getCollideCount()
+        {
+            return collideCount;
+        }
+    }
+}
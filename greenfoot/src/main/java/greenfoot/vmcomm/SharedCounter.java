@@ -0,0 +1,134 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import threadchecker.OnThread;
+import threadchecker.Tag;
+
+/**
+ * A sequence counter in the shared memory, used by the counters transport (see
+ * {@link VMCommsMain}) to publish an area of the shared memory which only one VM writes
+ * to, without file locks.
+ * 
+ * The counter works as a "seqlock": the writing VM makes the counter odd while it writes
+ * the area, and even again (and larger than before) when it has finished. The reading VM
+ * copies the area, and then checks that the counter was even and unchanged throughout;
+ * if not, it must try again later.
+ */
+@OnThread(Tag.Any)
+class SharedCounter
+{
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    
+    // How long to spin, and the shortest and longest times to park for, when waiting:
+    private static final long SPIN_NANOS = 20_000L;
+    private static final long MIN_PARK_NANOS = 50_000L;
+    private static final long MAX_PARK_NANOS = 500_000L;
+    
+    private final ByteBuffer buffer;
+    private final int bytePos;
+    
+    /**
+     * Construct a SharedCounter for the integer at the given position (in integers) of the
+     * given buffer.
+     */
+    SharedCounter(ByteBuffer buffer, int intPos)
+    {
+        this.buffer = buffer;
+        this.bytePos = intPos * 4;
+    }
+    
+    /**
+     * Get the current value of the counter.
+     */
+    int get()
+    {
+        return (int) INTS.getAcquire(buffer, bytePos);
+    }
+    
+    /**
+     * Mark the start of writing the area. Must be followed by a call to {@link #endWrite()}.
+     */
+    void beginWrite()
+    {
+        INTS.setVolatile(buffer, bytePos, get() + 1);
+        VarHandle.storeStoreFence();
+    }
+    
+    /**
+     * Mark the end of writing the area, publishing it to the other VM.
+     */
+    void endWrite()
+    {
+        INTS.setRelease(buffer, bytePos, get() + 1);
+    }
+    
+    /**
+     * Check whether a read of the area, which began when the counter had the given value
+     * (as returned by {@link #get()}), saw a complete and unchanging area.
+     */
+    boolean readValid(int startValue)
+    {
+        VarHandle.loadLoadFence();
+        return (startValue & 1) == 0 && startValue == get();
+    }
+    
+    /**
+     * Wait for the counter to differ from the given value, or until the timeout expires,
+     * or the given local condition becomes true (callers should unpark the waiting thread
+     * when making it true). The wait starts by spinning briefly, and then parks for
+     * progressively longer periods up to half a millisecond, so that a change is noticed
+     * in well under a millisecond while using little processor time.
+     * 
+     * @return  The value of the counter at the end of the wait.
+     */
+    int awaitChange(int lastValue, long timeoutNanos, BooleanSupplier localCondition)
+    {
+        long start = System.nanoTime();
+        long parkNanos = MIN_PARK_NANOS;
+        while (true)
+        {
+            int value = get();
+            long waited = System.nanoTime() - start;
+            if (value != lastValue || waited >= timeoutNanos || localCondition.getAsBoolean())
+            {
+                return value;
+            }
+            if (waited < SPIN_NANOS)
+            {
+                Thread.yield();
+            }
+            else
+            {
+                LockSupport.parkNanos(this, Math.min(parkNanos, timeoutNanos - waited));
+                parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+            }
+        }
+    }
+}
@@ -25,14 +25,17 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
 import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import bluej.pkgmgr.Project;
@@ -79,10 +82,26 @@ public class VMCommsMain implements Closeable
     // The acquisition order is B-->A, A-->C, and C-->B. This ensures that there can never
     // be deadlock. No process holds all three locks at once and each process always holds at
     // least one lock.
+    //
+    // Alternatively (the "counters" transport, selected with the shm.transport=counters project
+    // property), no file locks are used. Each VM publishes its area whenever it has something new,
+    // using a sequence counter (see SharedCounter) at the end of the server area; the other VM
+    // waits for the counter to change and then copies the area, retrying if it was being written.
+    // Commands stay in the server area until acknowledged, so the debug VM ignores those it has
+    // already seen.
+
+    /** The ways of communicating with the debug VM. */
+    public static enum Transport { LOCKS, COUNTERS }
 
     public static final int DEFAULT_MAPPED_SIZE = 20_000_000;
     public static final int USER_AREA_OFFSET = 0x1000; // offset in 4-byte chunks; 16KB worth.
     public static final int USER_AREA_OFFSET_BYTES = USER_AREA_OFFSET * 4;
+    // Size of the status part of the user area, before the world image slots (in 4-byte chunks):
+    public static final int STATUS_AREA_SIZE = 0x1000;
+    // Size of the simulation profile block, at the end of the status area (in 4-byte chunks):
+    public static final int PROFILE_AREA_SIZE = 0xC00;
+    // The most of the profile block which may be used for class names:
+    public static final int PROFILE_NAMES_SIZE = 0x200;
 
     public static final int SERVER_AREA_OFFSET_BYTES = 4;
     public static final int SERVER_AREA_SIZE_BYTES = USER_AREA_OFFSET_BYTES - SERVER_AREA_OFFSET_BYTES;
@@ -90,7 +109,16 @@ public class VMCommsMain implements Closeable
     public static final int SYNC_AREA_OFFSET_BYTES = 0;
     public static final int SYNC_AREA_SIZE_BYTES = 4;
     
+    // Positions of the sequence counters for the server and debug VM areas, used by the
+    // counters transport (in 4-byte chunks):
+    public static final int SERVER_COUNTER_POS = USER_AREA_OFFSET - 2;
+    public static final int USER_COUNTER_POS = USER_AREA_OFFSET - 1;
+    // How long the worker waits for the debug VM, using the counters transport, before checking
+    // whether we have been closed:
+    private static final long COUNTERS_WAIT_NANOS = 100_000_000L;
+    
     private final int fileSize;
+    private final Transport transport;
     private File shmFile;
     private FileChannel fc;
     private MappedByteBuffer sharedMemoryByte;
@@ -108,6 +136,19 @@ public class VMCommsMain implements Closeable
     private boolean checkingIO = false;
     
     private boolean haveUpdatedImage = false;
+    // The image slot holding the latest image:
+    private int lastPaintSlot;
+    private final WorldImageSlots imageSlots;
+    // The current world image, kept so that changed regions can be applied to it:
+    @OnThread(Tag.FXPlatform)
+    private int[] worldPixels;
+    @OnThread(Tag.FXPlatform)
+    private int worldPixelsWidth;
+    @OnThread(Tag.FXPlatform)
+    private int worldPixelsHeight;
+    // The paint sequence of the image in worldPixels:
+    @OnThread(Tag.FXPlatform)
+    private int worldPixelsSeq = -1;
     private boolean haveUpdatedErrorCount = false;
     private long lastExecStartTime;
     private int updatedSimulationSpeed = -1;
@@ -134,8 +175,32 @@ public class VMCommsMain implements Closeable
 
     private boolean delayLoop;
     private boolean vmReadyForInvocations = false;
+    // The number of files loaded in the background by the debug VM, and requested:
+    private int preloadCompleted;
+    private int preloadRequested;
     private int askId = -1;
     private boolean workerWaiting = false;
+    
+    // For the counters transport:
+    private final SharedCounter serverCounter;
+    private final SharedCounter userCounter;
+    // The debug VM counter value when we last read its area:
+    private int lastUserCounter = 0;
+    // A copy of the status part of the debug VM area:
+    private final int[] userStatusCopy = new int[STATUS_AREA_SIZE];
+    // Set (and the worker unparked) when there's something new for the worker to send:
+    private volatile boolean workerWakeRequested = false;
+    // What we last published in the server area:
+    private int publishedConsumedImg = -1;
+    private int publishedCommandSeq = -1;
+    private int publishedLastSeq = 0;
+    
+    // The time from issuing each command to it being acknowledged by the debug VM:
+    private final LatencyStats commandLatency = new LatencyStats();
+    
+    // Whether the simulation should be profiled, and the profile received so far:
+    private boolean profiling = false;
+    private final ProfileData profileData = new ProfileData();
 
     /**
      * Constructor for VMCommsMain. Creates a temporary file and maps it into memory.
@@ -146,23 +211,41 @@ public class VMCommsMain implements Closeable
     public VMCommsMain(Project project) throws IOException
     {
         fileSize = Integer.parseInt(project.getUnnamedPackage().getLastSavedProperties().getProperty("shm.size", Integer.toString(DEFAULT_MAPPED_SIZE)));
+        String transportProp = project.getUnnamedPackage().getLastSavedProperties().getProperty("shm.transport", "locks");
+        transport = transportProp.equalsIgnoreCase("counters") ? Transport.COUNTERS : Transport.LOCKS;
         
         shmFile = File.createTempFile("greenfoot", "shm");
         shmFile.deleteOnExit();
         fc = new RandomAccessFile(shmFile, "rw").getChannel();
         sharedMemoryByte = fc.map(MapMode.READ_WRITE, 0, fileSize);
-        sharedMemory = sharedMemoryByte.asIntBuffer();
+        // Both VMs are on the same machine, so use native order, which makes bulk copies cheaper:
+        sharedMemory = sharedMemoryByte.order(ByteOrder.nativeOrder()).asIntBuffer();
+        imageSlots = new WorldImageSlots(sharedMemory, USER_AREA_OFFSET + STATUS_AREA_SIZE, fileSize / 4);
+        serverCounter = new SharedCounter(sharedMemoryByte, SERVER_COUNTER_POS);
+        userCounter = new SharedCounter(sharedMemoryByte, USER_COUNTER_POS);
         
-        // Obtain the put-area lock right from the start:
-        putLock = fc.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false);
-        syncLock = fc.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false);
+        if (transport == Transport.LOCKS)
+        {
+            // Obtain the put-area lock right from the start:
+            putLock = fc.lock(SERVER_AREA_OFFSET_BYTES, SERVER_AREA_SIZE_BYTES, false);
+            syncLock = fc.lock(SYNC_AREA_OFFSET_BYTES, SYNC_AREA_SIZE_BYTES, false);
+        }
         
         ioThread = new Thread("VMCommsMain") {
             @OnThread(Tag.Worker)
             public void run()
             {
-                while (checkIO())
+                if (transport == Transport.LOCKS)
                 {
+                    while (checkIO())
+                    {
+                    }
+                }
+                else
+                {
+                    while (checkIOCounters())
+                    {
+                    }
                 }
             }
         };
@@ -217,6 +300,33 @@ public class VMCommsMain implements Closeable
         return shmFile;
     }
 
+    /**
+     * Get the transport used for this communication channel.
+     */
+    public Transport getTransport()
+    {
+        return transport;
+    }
+    
+    /**
+     * Get the statistics for the time from issuing a command to the debug VM until it is
+     * acknowledged.
+     */
+    @OnThread(Tag.Any)
+    public LatencyStats getCommandLatency()
+    {
+        return commandLatency;
+    }
+
+    /**
+     * Get the simulation profile received from the debug VM.
+     */
+    @OnThread(Tag.Any)
+    public ProfileData getProfileData()
+    {
+        return profileData;
+    }
+
     /**
      * Get the size of the file used for this communication channel.
      */
@@ -225,6 +335,23 @@ public class VMCommsMain implements Closeable
         return fileSize;
     }
 
+    /**
+     * Write the server area: our acknowledgements, and the pending commands.
+     */
+    private synchronized void writeServerArea()
+    {
+        sharedMemory.position(1);
+        sharedMemory.put(-lastSeq.get());
+        sharedMemory.put(lastConsumedImg);
+        writeCommands(pendingCommands);
+        publishedConsumedImg = lastConsumedImg;
+        publishedLastSeq = lastSeq.get();
+        if (!pendingCommands.isEmpty())
+        {
+            publishedCommandSeq = pendingCommands.get(pendingCommands.size() - 1).commandSequence;
+        }
+    }
+
     /**
      * Write commands into the shared memory buffer.
      */
@@ -239,7 +366,7 @@ public class VMCommsMain implements Closeable
         {
             // sequence, type, extra info:
             int totalLength = pendingCommand.extraInfo.length + 2;
-            if (sharedMemory.position() + totalLength > USER_AREA_OFFSET)
+            if (sharedMemory.position() + totalLength > SERVER_COUNTER_POS)
             {
                 // We can't write all commands in the available buffer:
                 sharedMemory.put(pendingCountPos, numIssued);
@@ -297,12 +424,11 @@ public class VMCommsMain implements Closeable
         
         if (haveUpdatedImage && shouldDraw)
         {
-            // skip: sequence number, last paint sequence, then:
-            IntBuffer copy = sharedMemory.asReadOnlyBuffer();
-            copy.position(USER_AREA_OFFSET + 2);
-            int width = copy.get();
-            int height = copy.get();
-            stage.receivedWorldImage(width, height, copy);
+            int[] changedRegions = readWorldImages();
+            if (worldPixels != null)
+            {
+                stage.receivedWorldImage(worldPixelsWidth, worldPixelsHeight, worldPixels, changedRegions);
+            }
             haveUpdatedImage = false;
             lastConsumedImg = lastPaintSeq;
         }
@@ -330,13 +456,185 @@ public class VMCommsMain implements Closeable
         }
 
         stage.setLastUserExecutionStartTime(lastExecStartTime, delayLoop);
+        stage.setPreloadProgress(preloadCompleted, preloadRequested);
             
         checkingIO = false;
         
         notifyAll(); // wake IO thread
+        wakeWorker();
         return vmReadyForInvocations;
     }
 
+    /**
+     * Read the world images that we haven't yet consumed from the image slots, in order,
+     * into worldPixels, which holds the complete current world image.
+     * 
+     * @return  The regions which have changed, as (x, y, width, height) quads, or null
+     *          if the whole image may have changed.
+     */
+    @OnThread(Tag.FXPlatform)
+    private int[] readWorldImages()
+    {
+        int[] changedRegions = new int[0];
+        boolean wholeImage = false;
+        int readUpTo = lastConsumedImg;
+        if (imageSlots.getPaintSeq(lastPaintSlot) == lastPaintSeq && imageSlots.getBasePaintSeq(lastPaintSlot) == -1)
+        {
+            // The latest image is a full image, so there's no need to read any older ones:
+            readUpTo = Math.max(readUpTo, lastPaintSeq - 1);
+        }
+        while (true)
+        {
+            // Find the oldest image we haven't read, up to the latest one that's been announced:
+            int slot = -1;
+            for (int i = 0; i < WorldImageSlots.SLOT_COUNT; i++)
+            {
+                int paintSeq = imageSlots.getPaintSeq(i);
+                if (paintSeq > readUpTo && paintSeq <= lastPaintSeq
+                        && (slot == -1 || paintSeq < imageSlots.getPaintSeq(slot)))
+                {
+                    slot = i;
+                }
+            }
+            if (slot == -1)
+            {
+                break;
+            }
+            readUpTo = imageSlots.getPaintSeq(slot);
+            
+            int width = imageSlots.getWidth(slot);
+            int height = imageSlots.getHeight(slot);
+            if (imageSlots.getBasePaintSeq(slot) == -1)
+            {
+                if (worldPixels == null || worldPixels.length != width * height)
+                {
+                    worldPixels = new int[width * height];
+                }
+                imageSlots.getImage(slot, worldPixels);
+                wholeImage = true;
+            }
+            else if (imageSlots.getBasePaintSeq(slot) == worldPixelsSeq && width == worldPixelsWidth
+                    && height == worldPixelsHeight)
+            {
+                int[] regions = imageSlots.getRegions(slot, worldPixels);
+                int oldLength = changedRegions.length;
+                changedRegions = Arrays.copyOf(changedRegions, oldLength + regions.length);
+                System.arraycopy(regions, 0, changedRegions, oldLength, regions.length);
+            }
+            else
+            {
+                // Shouldn't happen: the regions are relative to an image we don't have.
+                Debug.reportError("Received world image regions without base image");
+                continue;
+            }
+            worldPixelsSeq = readUpTo;
+            worldPixelsWidth = width;
+            worldPixelsHeight = height;
+        }
+        return wholeImage ? null : changedRegions;
+    }
+
+    /**
+     * Read the status information from the debug VM area, if it has been updated.
+     * 
+     * @param buffer  The buffer holding the debug VM area
+     * @param base    The position of the start of the debug VM area in the buffer
+     */
+    @OnThread(Tag.Worker)
+    private void readUserArea(IntBuffer buffer, int base)
+    {
+        int seq = buffer.get(base);
+        if (seq > lastSeq.get())
+        {
+            // The client VM has painted a new frame for us:
+            lastSeq.set(seq);
+
+            synchronized (this)
+            {
+                buffer.position(base + 1);
+                int paintSeq = buffer.get();
+                lastPaintSlot = buffer.get();
+                if (paintSeq != 0 && paintSeq != lastPaintSeq)
+                {
+                    lastPaintSeq = paintSeq;
+                    haveUpdatedImage = true;
+                }
+
+                // Get rid of all commands that the client has confirmed it has seen:
+                int lastAckCommand = buffer.get();
+                if (lastAckCommand != -1)
+                {
+                    for (Iterator<Command> iterator = pendingCommands.iterator(); iterator.hasNext(); )
+                    {
+                        Command pendingCommand = iterator.next();
+                        if (pendingCommand.commandSequence <= lastAckCommand)
+                        {
+                            commandLatency.record(System.nanoTime() - pendingCommand.createdNanos);
+                            if(pendingCommand.commandType == COMMAND_SET_SPEED)
+                            {
+                                setSpeedCommandCount = setSpeedCommandCount - 1;
+                            }
+                            iterator.remove();
+                        }
+                    }
+                }
+                
+                // If there's a new error, show the terminal at the front so that the user sees it: 
+                int latestStoppedWithErrorCount = buffer.get();
+                if (latestStoppedWithErrorCount != previousStoppedWithErrorCount)
+                {
+                    //stage.bringTerminalToFront();
+                    previousStoppedWithErrorCount = latestStoppedWithErrorCount;
+                    haveUpdatedErrorCount = true;
+                }
+                
+                int highTime = buffer.get();
+                int lowTime = buffer.get();
+                lastExecStartTime = (((long)highTime) << 32) | ((long)lowTime & 0xFFFFFFFFL);
+
+                int simSpeed = buffer.get();
+                // Only send the new speed value if the pendingCommands does not include setSpeed commands
+                if (setSpeedCommandCount == 0)
+                {
+                    updatedSimulationSpeed = simSpeed;
+                }
+
+                int worldCounter = buffer.get();
+                // If the new counter is different (zero/non-zero change, or incremented),
+                // store that into our fields:
+                if (worldCounter != prevWorldCounter)
+                {
+                    worldChanged = true;
+                    worldPresentAfterChange = worldCounter != 0;
+                    prevWorldCounter = worldCounter;
+                }
+                
+                worldCellSize = buffer.get();
+                
+                int askId = buffer.get();
+                if (askId > 0)
+                {
+                    if (askId > lastAnswer)
+                        this.askId = askId;
+                    // Length followed by codepoints for the prompt string:
+                    int askLength = buffer.get();
+                    promptCodepoints = new int[askLength];
+                    buffer.get(promptCodepoints);
+                }
+
+                int delayLoopStatus = buffer.get();
+                delayLoop = delayLoopStatus == 1;
+                int vmReadyStatus = buffer.get();
+                vmReadyForInvocations = vmReadyStatus == 1;
+                
+                preloadCompleted = buffer.get();
+                preloadRequested = buffer.get();
+                
+                profileData.receive(buffer, base + STATUS_AREA_SIZE - PROFILE_AREA_SIZE);
+            }
+        }
+    }
+
     /**
      * Check for input / send output
      * @return true If we should continue processing, false if not.
@@ -347,10 +645,7 @@ public class VMCommsMain implements Closeable
         FileChannel sharedMemoryLock = this.fc;
 
         // We are holding the lock for the main put area:
-        sharedMemory.position(1);
-        sharedMemory.put(-lastSeq.get());
-        sharedMemory.put(lastConsumedImg);
-        writeCommands(pendingCommands);
+        writeServerArea();
         
         FileLock fileLock = null;
         
@@ -360,92 +655,7 @@ public class VMCommsMain implements Closeable
             fileLock = sharedMemoryLock.lock(USER_AREA_OFFSET_BYTES, fileSize - USER_AREA_OFFSET_BYTES, false);
             syncLock.release();
 
-            int seq = sharedMemory.get(USER_AREA_OFFSET);
-            if (seq > lastSeq.get())
-            {
-                // The client VM has painted a new frame for us:
-                lastSeq.set(seq);
-
-                synchronized (this)
-                {
-                    sharedMemory.position(USER_AREA_OFFSET + 1);
-                    int paintSeq = sharedMemory.get();
-                    int width = sharedMemory.get();
-                    int height = sharedMemory.get();
-                    if (width != 0 && height != 0 && paintSeq != lastPaintSeq)
-                    {
-                        lastPaintSeq = paintSeq;
-                        haveUpdatedImage = true;
-                    }
-                    sharedMemory.position(sharedMemory.position() + width * height);
-    
-                    // Get rid of all commands that the client has confirmed it has seen:
-                    int lastAckCommand = sharedMemory.get();
-                    if (lastAckCommand != -1)
-                    {
-                        for (Iterator<Command> iterator = pendingCommands.iterator(); iterator.hasNext(); )
-                        {
-                            Command pendingCommand = iterator.next();
-                            if (pendingCommand.commandSequence <= lastAckCommand)
-                            {
-                                if(pendingCommand.commandType == COMMAND_SET_SPEED)
-                                {
-                                    setSpeedCommandCount = setSpeedCommandCount - 1;
-                                }
-                                iterator.remove();
-                            }
-                        }
-                    }
-                    
-                    // If there's a new error, show the terminal at the front so that the user sees it: 
-                    int latestStoppedWithErrorCount = sharedMemory.get();
-                    if (latestStoppedWithErrorCount != previousStoppedWithErrorCount)
-                    {
-                        //stage.bringTerminalToFront();
-                        previousStoppedWithErrorCount = latestStoppedWithErrorCount;
-                        haveUpdatedErrorCount = true;
-                    }
-                    
-                    int highTime = sharedMemory.get();
-                    int lowTime = sharedMemory.get();
-                    lastExecStartTime = (((long)highTime) << 32) | ((long)lowTime & 0xFFFFFFFFL);
-    
-                    int simSpeed = sharedMemory.get();
-                    // Only send the new speed value if the pendingCommands does not include setSpeed commands
-                    if (setSpeedCommandCount == 0)
-                    {
-                        updatedSimulationSpeed = simSpeed;
-                    }
-    
-                    int worldCounter = sharedMemory.get();
-                    // If the new counter is different (zero/non-zero change, or incremented),
-                    // store that into our fields:
-                    if (worldCounter != prevWorldCounter)
-                    {
-                        worldChanged = true;
-                        worldPresentAfterChange = worldCounter != 0;
-                        prevWorldCounter = worldCounter;
-                    }
-                    
-                    worldCellSize = sharedMemory.get();
-                    
-                    int askId = sharedMemory.get();
-                    if (askId > 0)
-                    {
-                        if (askId > lastAnswer)
-                            this.askId = askId;
-                        // Length followed by codepoints for the prompt string:
-                        int askLength = sharedMemory.get();
-                        promptCodepoints = new int[askLength];
-                        sharedMemory.get(promptCodepoints);
-                    }
-
-                    int delayLoopStatus = sharedMemory.get();
-                    delayLoop = delayLoopStatus == 1;
-                    int vmReadyStatus = sharedMemory.get();
-                    vmReadyForInvocations = vmReadyStatus == 1;
-                }
-            }
+            readUserArea(sharedMemory, USER_AREA_OFFSET);
         }
         catch (IOException ex)
         {
@@ -493,12 +703,87 @@ public class VMCommsMain implements Closeable
         }
     }
     
+    /**
+     * Check for input / send output, using the counters transport.
+     * @return true If we should continue processing, false if not.
+     */
+    @OnThread(Tag.Worker)
+    private boolean checkIOCounters()
+    {
+        synchronized (this)
+        {
+            if (shmFile == null)
+            {
+                return false;
+            }
+            // Only publish if there's something new for the debug VM, otherwise we would wake it
+            // for nothing (and it would reply, and so on):
+            boolean haveNewCommand = !pendingCommands.isEmpty()
+                    && pendingCommands.get(pendingCommands.size() - 1).commandSequence != publishedCommandSeq;
+            // (Also publish when we first know the debug VM is there, so it sees our acknowledgement.)
+            if (haveNewCommand || lastConsumedImg != publishedConsumedImg || serverCounter.get() == 0
+                    || (publishedLastSeq == 0 && lastSeq.get() != 0))
+            {
+                serverCounter.beginWrite();
+                writeServerArea();
+                serverCounter.endWrite();
+            }
+            workerWaiting = true;
+            notifyAll();
+        }
+        
+        int counter = userCounter.awaitChange(lastUserCounter, COUNTERS_WAIT_NANOS, () -> workerWakeRequested);
+        workerWakeRequested = false;
+        
+        synchronized (this)
+        {
+            workerWaiting = false;
+            if (shmFile == null)
+            {
+                return false;
+            }
+            if (counter != lastUserCounter)
+            {
+                sharedMemory.get(USER_AREA_OFFSET, userStatusCopy);
+                if (userCounter.readValid(counter))
+                {
+                    lastUserCounter = counter;
+                    readUserArea(IntBuffer.wrap(userStatusCopy), 0);
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Add a command to be sent to the debug VM.
+     */
+    private synchronized void addCommand(Command command)
+    {
+        pendingCommands.add(command);
+        wakeWorker();
+    }
+    
+    /**
+     * Wake the worker thread when using the counters transport, so that it sends any updates
+     * immediately. (With the locks transport, the worker runs once per animation frame.)
+     */
+    @OnThread(Tag.Any)
+    private void wakeWorker()
+    {
+        if (transport == Transport.COUNTERS)
+        {
+            workerWakeRequested = true;
+            LockSupport.unpark(ioThread);
+        }
+    }
+
     /**
      * Send an "instantiate world" command.
      */
     public synchronized void instantiateWorld(String className)
     {
-        pendingCommands.add(new Command(COMMAND_INSTANTIATE_WORLD, className.codePoints().toArray()));
+        addCommand(new Command(COMMAND_INSTANTIATE_WORLD, className.codePoints().toArray()));
     }
     
     /**
@@ -506,7 +791,7 @@ public class VMCommsMain implements Closeable
      */
     public synchronized void discardWorld()
     {
-        pendingCommands.add(new Command(COMMAND_DISCARD_WORLD));
+        addCommand(new Command(COMMAND_DISCARD_WORLD));
     }
     
     /**
@@ -515,7 +800,7 @@ public class VMCommsMain implements Closeable
     public synchronized void sendAnswer(int askIdBeingAnswered, String answer)
     {
         Command answerCommand = new Command(COMMAND_ANSWERED, answer.codePoints().toArray());
-        pendingCommands.add(answerCommand);
+        addCommand(answerCommand);
         // Remember that we've now answered:
         lastAnswer = askIdBeingAnswered;
     }
@@ -534,7 +819,7 @@ public class VMCommsMain implements Closeable
         System.arraycopy(keyCodepoints, 0, combined, 1, keyCodepoints.length);
         combined[1 + keyCodepoints.length] = value == null ? -1 : valueCodepoints.length;
         System.arraycopy(valueCodepoints, 0, combined, 2 + keyCodepoints.length, valueCodepoints.length);
-        pendingCommands.add(new Command(COMMAND_PROPERTY_CHANGED, combined));
+        addCommand(new Command(COMMAND_PROPERTY_CHANGED, combined));
     }
     
     /**
@@ -542,7 +827,7 @@ public class VMCommsMain implements Closeable
      */
     public synchronized void act()
     {
-        pendingCommands.add(new Command(COMMAND_ACT));
+        addCommand(new Command(COMMAND_ACT));
     }
     
     /**
@@ -550,7 +835,7 @@ public class VMCommsMain implements Closeable
      */
     public synchronized void runSimulation()
     {
-        pendingCommands.add(new Command(COMMAND_RUN));
+        addCommand(new Command(COMMAND_RUN));
     }
 
     /**
@@ -558,7 +843,7 @@ public class VMCommsMain implements Closeable
      */
     public synchronized void pauseSimulation()
     {
-        pendingCommands.add(new Command(COMMAND_PAUSE));
+        addCommand(new Command(COMMAND_PAUSE));
     }
     
     /**
@@ -569,7 +854,7 @@ public class VMCommsMain implements Closeable
      */
     public synchronized void continueDrag(int dragId, int x, int y)
     {
-        pendingCommands.add(new Command(COMMAND_CONTINUE_DRAG, dragId, x, y));
+        addCommand(new Command(COMMAND_CONTINUE_DRAG, dragId, x, y));
     }
     
     /**
@@ -577,7 +862,7 @@ public class VMCommsMain implements Closeable
      */
     public synchronized void endDrag(int dragId, int cellX, int cellY)
     {
-        pendingCommands.add(new Command(COMMAND_END_DRAG, dragId, cellX, cellY));
+        addCommand(new Command(COMMAND_END_DRAG, dragId, cellX, cellY));
     }
     
     /**
@@ -596,7 +881,7 @@ public class VMCommsMain implements Closeable
         data[0] = keyCode.ordinal();
         System.arraycopy(textCodePoints, 0, data, 1, textCodePoints.length);
         
-        pendingCommands.add(new Command(eventType, data));
+        addCommand(new Command(eventType, data));
     }
     
     /**
@@ -610,7 +895,7 @@ public class VMCommsMain implements Closeable
      */
     public synchronized void sendMouseEvent(int eventType, int x, int y, int button, int clickCount)
     {
-        pendingCommands.add(new Command(eventType, x, y, button, clickCount));
+        addCommand(new Command(eventType, x, y, button, clickCount));
     }
 
     /**
@@ -620,12 +905,27 @@ public class VMCommsMain implements Closeable
      */
     public synchronized void setSimulationSpeed(int speed)
     {
-        pendingCommands.add(new Command(COMMAND_SET_SPEED, speed));
+        addCommand(new Command(COMMAND_SET_SPEED, speed));
         // Keeps track of how many setSpeed commands exist in the pendingCommand list.
         // This is useful to avoid speedSlider jittering movement.
         setSpeedCommandCount = setSpeedCommandCount + 1;
     }
 
+    /**
+     * Start or stop profiling the simulation.  The profile is available from
+     * {@link #getProfileData()}.  The command latency statistics are restarted when
+     * profiling starts.
+     */
+    public synchronized void setProfiling(boolean profiling)
+    {
+        if (profiling && !this.profiling)
+        {
+            commandLatency.reset();
+        }
+        this.profiling = profiling;
+        addCommand(new Command(COMMAND_SET_PROFILING, profiling ? 1 : 0));
+    }
+
     /**
      * The debug VM has terminated.  We re-use the same shared memory file,
      * so we must reset our state ready for a new debug VM.
@@ -645,11 +945,21 @@ public class VMCommsMain implements Closeable
             }
         }
         lastSeq.addAndGet(1000);
+        lastUserCounter = 0;
+        publishedConsumedImg = -1;
+        publishedCommandSeq = -1;
+        publishedLastSeq = 0;
         pendingCommands.clear();        
         setSpeedCommandCount = 0;
         lastAnswer = -1;
         previousStoppedWithErrorCount = 0;
         prevWorldCounter = 0;
+        // The class indexes in the profile are only meaningful to the old VM:
+        profileData.clear();
+        if (profiling)
+        {
+            addCommand(new Command(COMMAND_SET_PROFILING, 1));
+        }
         
         // Zero the buffer:
         sharedMemoryByte.position(0);
@@ -663,7 +973,7 @@ public class VMCommsMain implements Closeable
      */
     public synchronized void worldFocusChanged(boolean focused)
     {
-        pendingCommands.add(new Command(focused ? COMMAND_WORLD_FOCUS_GAINED : COMMAND_WORLD_FOCUS_LOST));
+        addCommand(new Command(focused ? COMMAND_WORLD_FOCUS_GAINED : COMMAND_WORLD_FOCUS_LOST));
     }
 
     /**
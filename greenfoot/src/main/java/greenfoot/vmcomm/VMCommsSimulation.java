@@ -24,12 +24,17 @@ package greenfoot.vmcomm;
 import bluej.utility.Debug;
 import greenfoot.World;
 import greenfoot.WorldVisitor;
+import greenfoot.core.AssetPreloader;
+import greenfoot.core.ImageCache;
 import greenfoot.core.ShadowProjectProperties;
 import greenfoot.core.Simulation;
+import greenfoot.core.SimulationProfiler;
+import greenfoot.core.SimulationProfiler.Phase;
 import greenfoot.core.WorldHandler;
 import greenfoot.gui.WorldRenderer;
 import greenfoot.gui.input.KeyboardManager;
 import greenfoot.gui.input.mouse.MousePollingManager;
+import greenfoot.sound.SoundFactory;
 import javafx.scene.input.KeyCode;
 import javafx.scene.input.MouseButton;
 import threadchecker.OnThread;
@@ -40,14 +45,17 @@ import java.awt.image.DataBufferInt;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.BufferOverflowException;
+import java.nio.ByteOrder;
 import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
+import java.util.Arrays;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Lives on the Simulation VM (aka debug VM), and handles communications with the server
@@ -109,25 +117,33 @@ public class VMCommsSimulation
      *
      * Debug VM area (10M - 16kb): [Positions relative to beginning]
      * 
-     * Pos 0: Sequence index when the current (included) image was painted (the image is included
-     *        unchanged in subsequent frames).
-     * Pos 1: Width of world image in pixels (W)
-     * Pos 2: Height of world image in pixels (H)
-     * Pos 3 incl to 3+(W*H) excl, if W and H are both greater than zero:
-     *        W * H pixels one row at a time with no gaps, each pixel is one
-     *        integer, in BGRA form, i.e. blue is highest 8 bits, alpha is lowest.
-     * Pos 3+(W*H): Sequence ID of most recently processed command, or -1 if N/A.
-     * Pos 4+(W*H): Stopped-with-error count.  (If this goes up, server VM will bring terminal to front)
-     * Pos 5+(W*H) and 6+(W*H): Two ints (highest bits first) with value of System.currentTimeMillis()
-     *                          at the point when some execution that may contain user code last started on
-     *                          the simulation thread, or 0L if user code is not currently running.
-     * Pos 7+(W*H): The current simulation speed (1 to 100)
-     * Pos 8+(W*H): world counter if a world is currently installed, or 0 if there is no world.
-     * Pos 9+(W*H): The world cell size in pixels
-     * Pos 10+(W*H): -1 if not currently awaiting a Greenfoot.ask() answer.
-     *              If awaiting, it is count (P) of following codepoints which make up prompt.
-     * Pos 11+(W*H) to 11+(W*H)+P excl: codepoints making up ask prompt.
-     * Pos 11+(W*H)+P: 1 if the the delay loop is currently running, or 0 otherwise.
+     * Pos 0: Sequence index of this frame of data
+     * Pos 1: Paint sequence of the most recent world image (0 if none); the image itself is in
+     *        an image slot, and stays there unchanged in subsequent frames.
+     * Pos 2: Index of the image slot holding the most recent world image
+     * Pos 3: Sequence ID of most recently processed command, or -1 if N/A.
+     * Pos 4: Stopped-with-error count.  (If this goes up, server VM will bring terminal to front)
+     * Pos 5 and 6: Two ints (highest bits first) with value of System.currentTimeMillis()
+     *              at the point when some execution that may contain user code last started on
+     *              the simulation thread, or 0L if user code is not currently running.
+     * Pos 7: The current simulation speed (1 to 100)
+     * Pos 8: world counter if a world is currently installed, or 0 if there is no world.
+     * Pos 9: The world cell size in pixels
+     * Pos 10: -1 if not currently awaiting a Greenfoot.ask() answer.
+     *         If awaiting, it is the ask ID, followed by the count (P) of codepoints which
+     *         make up the prompt.
+     * Pos 12 to 12+P excl: codepoints making up ask prompt.
+     * Pos 12+P (or 11 if not asking): 1 if the the delay loop is currently running, or 0 otherwise.
+     * Pos 13+P (or 12 if not asking): 1 if the VM is ready for invocations, or 0 otherwise.
+     * Pos 14+P (or 13 if not asking): The number of files preloaded (see Greenfoot.preload) since
+     *        a world was last constructed.
+     * Pos 15+P (or 14 if not asking): The number of files requested to be preloaded in that time.
+     * 
+     * Pos 16kb - PROFILE_AREA_SIZE: the simulation profile, as described in {@link ProfileData}.
+     * The ask prompt is truncated if needed so that it does not extend into the profile.
+     * 
+     * Pos 16kb (STATUS_AREA_SIZE) to the end: the world image slots, as described in
+     * {@link WorldImageSlots}.
      */
     private final IntBuffer sharedMemory;
     private int seq = 1;
@@ -136,7 +152,18 @@ public class VMCommsSimulation
     private long lastPaintNanos = System.nanoTime();
     private int lastAckCommand = -1;
     private int lastPaintSeq = -1; // last paint sequence
-    private int lastPaintSize; // number of ints last transmitted as image
+    private int lastPaintSlot = 0; // image slot holding the last painted image
+    private final WorldImageSlots imageSlots;
+    // The paint sequence of the image we last put in each slot (-1 if none):
+    private final int[] slotPaintSeqs = new int[WorldImageSlots.SLOT_COUNT];
+    // Keeps the last transmitted image, to work out which regions of the next have changed:
+    private final FrameDiffer frameDiffer = new FrameDiffer();
+    
+    private final SimulationProfiler profiler = SimulationProfiler.getInstance();
+    // A profile round record being sent:
+    private final int[] profileRecord = new int[VMCommsMain.PROFILE_AREA_SIZE];
+    // The index of the next class name to send:
+    private int nextProfileName = 0;
     
     // How many times have we stopped with an error?  We continuously send the count to the
     // server VM, so that the server VM can observe changes in the count (only ever increases).
@@ -149,39 +176,82 @@ public class VMCommsSimulation
     // Size of the shared memory file
     private final int fileSize;
     private final AtomicBoolean userVMReadyForInvocations = new AtomicBoolean(false);
+    
+    private final VMCommsMain.Transport transport;
+    // What we know from the server VM area (updated each time we read it):
+    private boolean serverAcknowledging = false; // whether the server VM has seen our data
+    private int serverConsumedImg = -1;
+    // For the counters transport:
+    private SharedCounter serverCounter;
+    private SharedCounter userCounter;
+    private int lastServerCounter = 0;
+    private final int[] serverAreaCopy = new int[VMCommsMain.USER_AREA_OFFSET];
+    private Thread commsThread;
+    // Set (and the comms thread unparked) when there's something new to send:
+    private volatile boolean commsWakeRequested = false;
+    // How long to wait for the server VM, with the counters transport, before sending anyway:
+    private static final long COUNTERS_WAIT_NANOS = 16_000_000L;
+    
+    // When we sent the image in each slot (System.nanoTime()), or 0 once it's consumed:
+    private final long[] slotSentNanos = new long[WorldImageSlots.SLOT_COUNT];
+    // The time from sending each world image until the server VM reports it consumed:
+    private final LatencyStats frameLatency = new LatencyStats();
 
     /**
      * Construct a VMCommsSimulation.
      * 
      * @param world The world which we are the canvas for.
      * @param shmFilePath The path to the shared-memory file to be mmap-ed for communication
+     * @param transport The way to communicate with the server VM (see {@link VMCommsMain})
      */
     @SuppressWarnings("resource")
     @OnThread(Tag.Any)
-    public VMCommsSimulation(ShadowProjectProperties projectProperties, String shmFilePath, int fileSize, int seqStart)
+    public VMCommsSimulation(ShadowProjectProperties projectProperties, String shmFilePath, int fileSize, int seqStart,
+            VMCommsMain.Transport transport)
     {
         this.projectProperties = projectProperties;
         this.seq = seqStart;
+        this.transport = transport;
         worldRenderer = new WorldRenderer();
         try
         {
             shmFileChannel = new RandomAccessFile(shmFilePath, "rw").getChannel();
             this.fileSize = fileSize;
             MappedByteBuffer mbb = shmFileChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
-            sharedMemory = mbb.asIntBuffer();
-            putLock = shmFileChannel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES,
-                    fileSize - VMCommsMain.USER_AREA_OFFSET_BYTES, false);
+            // Both VMs are on the same machine, so use native order, which makes bulk copies cheaper:
+            sharedMemory = mbb.order(ByteOrder.nativeOrder()).asIntBuffer();
+            Arrays.fill(slotPaintSeqs, -1);
+            imageSlots = new WorldImageSlots(sharedMemory, VMCommsMain.USER_AREA_OFFSET + VMCommsMain.STATUS_AREA_SIZE,
+                    fileSize / 4);
+            if (transport == VMCommsMain.Transport.LOCKS)
+            {
+                putLock = shmFileChannel.lock(VMCommsMain.USER_AREA_OFFSET_BYTES,
+                        fileSize - VMCommsMain.USER_AREA_OFFSET_BYTES, false);
+            }
+            else
+            {
+                serverCounter = new SharedCounter(mbb, VMCommsMain.SERVER_COUNTER_POS);
+                userCounter = new SharedCounter(mbb, VMCommsMain.USER_COUNTER_POS);
+            }
             
-            new Thread("VMCommsSimulation") {
+            commsThread = new Thread("VMCommsSimulation") {
                 @OnThread(value = Tag.Worker,ignoreParent = true)
                 public void run()
                 {
                     while (true)
                     {
-                        doInterVMComms();
+                        if (transport == VMCommsMain.Transport.LOCKS)
+                        {
+                            doInterVMComms();
+                        }
+                        else
+                        {
+                            doInterVMCommsCounters();
+                        }
                     }
                 }
-            }.start();
+            };
+            commsThread.start();
         }
         catch (IOException e)
         {
@@ -200,12 +270,14 @@ public class VMCommsSimulation
         {
             this.worldCounter += 1;
             this.world = world;
+            wakeComms();
         }
     }
 
     public void markVMReady()
     {
         userVMReadyForInvocations.set(true);
+        wakeComms();
     }
 
     public static enum PaintWhen { FORCE, IF_DUE }
@@ -217,14 +289,15 @@ public class VMCommsSimulation
      * @param paintWhen  If IF_DUE, painting may be skipped if it's close to a recent paint.
      *                   FORCE always paints, NO_PAINT indicates that an actual image update
      *                   is not required but other information in the frame should be sent.
+     * @return  Whether the world was painted.
      */
     @OnThread(Tag.Simulation)
-    public void paintRemote(PaintWhen paintWhen)
+    public boolean paintRemote(PaintWhen paintWhen)
     {
         long now = System.nanoTime();
         if (paintWhen == PaintWhen.IF_DUE && now - lastPaintNanos <= 8_333_333L)
         {
-            return; // No need to draw frame if less than 1/120th of sec between them,
+            return false; // No need to draw frame if less than 1/120th of sec between them,
                          // but we must schedule a paint for the next sequence we send.
         }
 
@@ -251,7 +324,10 @@ public class VMCommsSimulation
                 worldImagesForPainting.offer(oldImage);
                 // If it doesn't fit because the queue is full, just let it get GCed.
             }
+            wakeComms();
+            return true;
         }
+        return false;
     }
 
     @OnThread(Tag.Simulation)
@@ -260,6 +336,7 @@ public class VMCommsSimulation
         pAskPrompt = askPrompt;
         pAskId = askId;
         askAnswer = null;
+        wakeComms();
         
         try
         {
@@ -295,102 +372,8 @@ public class VMCommsSimulation
             fileLock = shmFileChannel.lock(VMCommsMain.SERVER_AREA_OFFSET_BYTES,
                     VMCommsMain.SERVER_AREA_SIZE_BYTES, false);
 
-            boolean doUpdateImage;
-            World curWorld;
-            int curWorldCounter;
-            synchronized (this)
-            {
-                // Don't send double-buffered image if world has since disappeared:
-                doUpdateImage = world != null;
-                curWorld = this.world;
-                curWorldCounter = this.worldCounter;
-            }
-            
-            sharedMemory.position(1);
-            int recvSeq = sharedMemory.get();
-            if (recvSeq < 0 && Simulation.getInstance() != null)
-            {
-                int lastConsumedImg = sharedMemory.get();
-                // Only update the image if the previous one was consumed:
-                doUpdateImage &= (lastConsumedImg >= lastPaintSeq);
-                int latest = readCommands(answer);
-                if (latest != -1)
-                {
-                    lastAckCommand = latest;
-                }
-            }
-            
-            BufferedImage img = doUpdateImage ? worldImageForSending.getAndSet(null) : null;
-            int [] raw = (img == null) ? null : ((DataBufferInt) img.getData().getDataBuffer()).getData();
-
-            int imageWidth = 0;
-            int imageHeight = 0;
-            if (img != null)
-            {
-                imageWidth = img.getWidth();
-                imageHeight = img.getHeight();
-            }
-            
-            sharedMemory.position(VMCommsMain.USER_AREA_OFFSET);
-            sharedMemory.put(this.seq++);
-            if (img == null)
-            {
-                sharedMemory.put(lastPaintSeq);
-                sharedMemory.get(); // skip width
-                sharedMemory.get(); // skip height
-                sharedMemory.position(sharedMemory.position() + lastPaintSize);
-            }
-            else
-            {
-                lastPaintSeq = (seq - 1);
-                sharedMemory.put(lastPaintSeq);
-                sharedMemory.put(imageWidth);
-                sharedMemory.put(imageHeight);
-                for (int i = 0; i < raw.length; i++)
-                {
-                    sharedMemory.put(raw[i]);
-                }
-                lastPaintSize = raw.length;
-                
-                // Now that we've rendered from it, put it back into the old images for re-use:
-                worldImagesForPainting.offer(img);
-                // If it doesn't fit, just let it get GCed.
-            }
-            sharedMemory.put(lastAckCommand);
-            sharedMemory.put(stoppedWithErrorCount);
-            sharedMemory.put((int)(startOfCurExecution >> 32));
-            sharedMemory.put((int)(startOfCurExecution & 0xFFFFFFFFL));
-            if (Simulation.getInstance() != null)
-            {
-                sharedMemory.put(Simulation.getInstance().getSpeed());
-            }
-            else
-            {
-                sharedMemory.put(0);
-            }
-            sharedMemory.put(curWorld == null ? 0 : curWorldCounter);
-            sharedMemory.put(curWorld == null ? 0 : WorldVisitor.getCellSize(curWorld));
-            
-            // If not asking, put -1
-            synchronized (this)
-            {
-                if (pAskPrompt == null || answer[0] != null)
-                {
-                    sharedMemory.put(-1);
-                }
-                else
-                {
-                    // Asking, so put the ask ID, and the prompt string:
-                    int[] codepoints = pAskPrompt.codePoints().toArray();
-                    sharedMemory.put(pAskId);
-                    sharedMemory.put(codepoints.length);
-                    sharedMemory.put(codepoints);
-                }
-
-                // Write the status of the delay loop
-                sharedMemory.put(delayLoopEntered ? 1 : 0);
-                sharedMemory.put(userVMReadyForInvocations.get() ? 1 : 0);
-            }
+            readServerArea(sharedMemory, answer);
+            writeUserArea(answer);
 
             putLock.release();
 
@@ -414,6 +397,8 @@ public class VMCommsSimulation
         }
         catch (BufferOverflowException ex)
         {
+            // The image may not have been sent in full:
+            frameDiffer.reset();
             try
             {
                 putLock.release();
@@ -427,19 +412,321 @@ public class VMCommsSimulation
                 }
             }
             catch (Exception e) {}
-            // Note: the user will see this message in the terminal, so it should be helpful:
-            Debug.message("World size is too large.  If your world contains more than around 2.5 million pixels you will need to do the following.\n"
+            reportWorldTooLarge();
+        }
+            
+        if (answer[0] != null)
+        {
+            gotAskAnswer(answer[0]);
+        }
+    }
+    
+    /**
+     * Tell the user that the world image is too large for the shared memory.
+     */
+    private static void reportWorldTooLarge()
+    {
+        // Note: the user will see this message in the terminal, so it should be helpful:
+        Debug.message("World size is too large.  If your world contains more than around 2.5 million pixels you will need to do the following.\n"
                 + "Close your project, then edit project.greenfoot in a text editor to add the following line:\n"
                 + "shm.size=40000000\n"
                 + "(The default is 20000000, keep increasing if needed.)  Save the file and re-open the project in Greenfoot.");
+    }
+    
+    /**
+     * Perform communications exchange with the other VM, using the counters transport.
+     */
+    @OnThread(Tag.Worker)
+    private void doInterVMCommsCounters()
+    {
+        // One element array to allow a reference to be set by readCommands:
+        String[] answer = new String[] {null};
+        
+        // Wait for the server VM to publish, or until we have something to send:
+        int counter = serverCounter.awaitChange(lastServerCounter, COUNTERS_WAIT_NANOS, () -> commsWakeRequested);
+        commsWakeRequested = false;
+        if (counter != lastServerCounter)
+        {
+            sharedMemory.get(0, serverAreaCopy);
+            if (!serverCounter.readValid(counter))
+            {
+                // It was being written; try again:
+                return;
+            }
+            lastServerCounter = counter;
+            readServerArea(IntBuffer.wrap(serverAreaCopy), answer);
         }
-            
+        
+        userCounter.beginWrite();
+        try
+        {
+            writeUserArea(answer);
+        }
+        catch (BufferOverflowException ex)
+        {
+            // The image may not have been sent in full:
+            frameDiffer.reset();
+            reportWorldTooLarge();
+        }
+        finally
+        {
+            userCounter.endWrite();
+        }
+        
         if (answer[0] != null)
         {
             gotAskAnswer(answer[0]);
         }
     }
     
+    /**
+     * Wake the communications thread when using the counters transport, so that it sends
+     * our updated status or image immediately.
+     */
+    @OnThread(Tag.Any)
+    private void wakeComms()
+    {
+        if (transport == VMCommsMain.Transport.COUNTERS)
+        {
+            commsWakeRequested = true;
+            LockSupport.unpark(commsThread);
+        }
+    }
+    
+    /**
+     * Get the statistics for the time from sending a world image until the server VM
+     * reports that it has consumed it.
+     */
+    @OnThread(Tag.Any)
+    public LatencyStats getFrameLatency()
+    {
+        return frameLatency;
+    }
+    
+    /**
+     * Read the server VM area: its acknowledgements, and commands, which are carried out.
+     * 
+     * @param buffer  A buffer holding the server VM area, at the start of the buffer
+     * @param answer  A one-element array in which to store an ask-answer, if received
+     */
+    @OnThread(Tag.Worker)
+    private void readServerArea(IntBuffer buffer, String[] answer)
+    {
+        buffer.position(1);
+        int recvSeq = buffer.get();
+        serverAcknowledging = recvSeq < 0 && Simulation.getInstance() != null;
+        if (serverAcknowledging)
+        {
+            serverConsumedImg = buffer.get();
+            for (int slot = 0; slot < WorldImageSlots.SLOT_COUNT; slot++)
+            {
+                if (slotSentNanos[slot] != 0 && serverConsumedImg >= slotPaintSeqs[slot])
+                {
+                    frameLatency.record(System.nanoTime() - slotSentNanos[slot]);
+                    slotSentNanos[slot] = 0;
+                }
+            }
+            int latest = readCommands(buffer, answer);
+            if (latest > lastAckCommand)
+            {
+                lastAckCommand = latest;
+            }
+        }
+    }
+    
+    /**
+     * Write the debug VM area: the world image (if there is a new one, and there is a slot
+     * available for it), and our status.
+     * 
+     * @param answer  A one-element array holding an ask-answer, if one was just received
+     */
+    @OnThread(Tag.Worker)
+    private void writeUserArea(String[] answer)
+    {
+        boolean doUpdateImage;
+        World curWorld;
+        int curWorldCounter;
+        synchronized (this)
+        {
+            // Don't send double-buffered image if world has since disappeared:
+            doUpdateImage = world != null;
+            curWorld = this.world;
+            curWorldCounter = this.worldCounter;
+        }
+        
+        // The image slot to use for the next image. Only update the image if the image
+        // previously in the slot was consumed (the other slot may still be being read):
+        int nextSlot = (lastPaintSlot + 1) % WorldImageSlots.SLOT_COUNT;
+        if (serverAcknowledging)
+        {
+            doUpdateImage &= (serverConsumedImg >= slotPaintSeqs[nextSlot]);
+        }
+        
+        BufferedImage img = doUpdateImage ? worldImageForSending.getAndSet(null) : null;
+        if (img != null)
+        {
+            long transmitStart = profiler.beginPhase();
+            // Use the image's own data array; getData() would copy it:
+            int [] raw = ((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+            int imageWidth = img.getWidth();
+            int imageHeight = img.getHeight();
+            int paintSeq = this.seq;
+            // We can only send the changed regions if we know the server VM will have the previous image:
+            int regionCount = serverAcknowledging ? frameDiffer.findChangedRegions(raw, imageWidth, imageHeight) : -1;
+            if (regionCount == -1)
+            {
+                imageSlots.putImage(nextSlot, paintSeq, raw, imageWidth, imageHeight);
+                frameDiffer.frameSent(raw, imageWidth, imageHeight);
+            }
+            else
+            {
+                imageSlots.putRegions(nextSlot, paintSeq, lastPaintSeq, raw, imageWidth, imageHeight,
+                        frameDiffer.getRegions(), regionCount);
+                frameDiffer.regionsSent(raw, regionCount);
+            }
+            lastPaintSeq = paintSeq;
+            lastPaintSlot = nextSlot;
+            slotPaintSeqs[nextSlot] = paintSeq;
+            slotSentNanos[nextSlot] = System.nanoTime();
+            profiler.endPhase(Phase.TRANSMIT, transmitStart);
+            
+            // Now that we've rendered from it, put it back into the old images for re-use:
+            worldImagesForPainting.offer(img);
+            // If it doesn't fit, just let it get GCed.
+        }
+        
+        sharedMemory.position(VMCommsMain.USER_AREA_OFFSET);
+        sharedMemory.put(this.seq++);
+        sharedMemory.put(lastPaintSeq);
+        sharedMemory.put(lastPaintSlot);
+        sharedMemory.put(lastAckCommand);
+        sharedMemory.put(stoppedWithErrorCount);
+        sharedMemory.put((int)(startOfCurExecution >> 32));
+        sharedMemory.put((int)(startOfCurExecution & 0xFFFFFFFFL));
+        if (Simulation.getInstance() != null)
+        {
+            sharedMemory.put(Simulation.getInstance().getSpeed());
+        }
+        else
+        {
+            sharedMemory.put(0);
+        }
+        sharedMemory.put(curWorld == null ? 0 : curWorldCounter);
+        sharedMemory.put(curWorld == null ? 0 : WorldVisitor.getCellSize(curWorld));
+        
+        // If not asking, put -1
+        synchronized (this)
+        {
+            if (pAskPrompt == null || answer[0] != null)
+            {
+                sharedMemory.put(-1);
+            }
+            else
+            {
+                // Asking, so put the ask ID, and the prompt string:
+                int[] codepoints = pAskPrompt.codePoints().toArray();
+                // Leave room for the ID, length and following fields:
+                int maxLength = VMCommsMain.STATUS_AREA_SIZE - VMCommsMain.PROFILE_AREA_SIZE
+                        - (sharedMemory.position() - VMCommsMain.USER_AREA_OFFSET) - 6;
+                sharedMemory.put(pAskId);
+                sharedMemory.put(Math.min(codepoints.length, maxLength));
+                sharedMemory.put(codepoints, 0, Math.min(codepoints.length, maxLength));
+            }
+
+            // Write the status of the delay loop
+            sharedMemory.put(delayLoopEntered ? 1 : 0);
+            sharedMemory.put(userVMReadyForInvocations.get() ? 1 : 0);
+        }
+        
+        // Progress of loading files in the background:
+        sharedMemory.put(AssetPreloader.getInstance().getCompleted());
+        sharedMemory.put(AssetPreloader.getInstance().getRequested());
+        
+        writeProfile();
+    }
+    
+    /**
+     * Write the simulation profile block at the end of the status area: the image cache
+     * statistics, the achieved act and paint rates, the frame latency, some class names,
+     * and as many of the most recent rounds as will fit.
+     */
+    @OnThread(Tag.Worker)
+    private void writeProfile()
+    {
+        int start = VMCommsMain.USER_AREA_OFFSET + VMCommsMain.STATUS_AREA_SIZE - VMCommsMain.PROFILE_AREA_SIZE;
+        sharedMemory.position(start);
+        if (!profiler.isEnabled())
+        {
+            sharedMemory.put(0);
+            return;
+        }
+        sharedMemory.put(1);
+        
+        ImageCache imageCache = ImageCache.getInstance();
+        sharedMemory.put(clampToInt(imageCache.getHits()));
+        sharedMemory.put(clampToInt(imageCache.getMisses()));
+        sharedMemory.put(clampToInt(imageCache.getEvictions()));
+        sharedMemory.put(imageCache.getImageCount());
+        sharedMemory.put(clampToInt(imageCache.getTotalBytes() / 1024));
+        
+        // The achieved act and paint rates, in hundredths per second:
+        Simulation simulation = Simulation.getInstance();
+        sharedMemory.put(simulation == null ? 0 : (int) Math.round(simulation.getActRate() * 100));
+        sharedMemory.put(simulation == null ? 0 : (int) Math.round(simulation.getPaintRate() * 100));
+        
+        // The frame latency since profiling started, in microseconds:
+        sharedMemory.put(clampToInt(Math.round(frameLatency.getMeanMicros())));
+        sharedMemory.put(clampToInt(Math.round(frameLatency.getMaxMicros())));
+        
+        // Send the class names in turn, as many as fit each time:
+        int classCount = profiler.getClassCount();
+        if (nextProfileName >= classCount)
+        {
+            nextProfileName = 0;
+        }
+        sharedMemory.put(nextProfileName);
+        int nameCountPos = sharedMemory.position();
+        sharedMemory.put(0);
+        int nameCount = 0;
+        while (nextProfileName < classCount)
+        {
+            int[] codepoints = profiler.getClassName(nextProfileName).codePoints().toArray();
+            if (sharedMemory.position() + 1 + codepoints.length > start + VMCommsMain.PROFILE_NAMES_SIZE)
+            {
+                break;
+            }
+            sharedMemory.put(codepoints.length);
+            sharedMemory.put(codepoints);
+            nameCount++;
+            nextProfileName++;
+        }
+        sharedMemory.put(nameCountPos, nameCount);
+        
+        // Then the rounds, newest first:
+        int roundCountPos = sharedMemory.position();
+        sharedMemory.put(0);
+        int roundCount = 0;
+        int end = start + VMCommsMain.PROFILE_AREA_SIZE;
+        for (long round = profiler.getRoundsWritten() - 1; round >= 0; round--)
+        {
+            int length = profiler.copyRound(round, profileRecord, 0);
+            if (length == -1 || sharedMemory.position() + 1 + length > end)
+            {
+                break;
+            }
+            sharedMemory.put(length);
+            sharedMemory.put(profileRecord, 0, length);
+            roundCount++;
+        }
+        sharedMemory.put(roundCountPos, roundCount);
+    }
+    
+    @OnThread(Tag.Any)
+    private static int clampToInt(long value)
+    {
+        return (int) Math.min(value, Integer.MAX_VALUE);
+    }
+    
     /**
      * An "ask" answer has been received from the other VM; record it and signal the simulation
      * thread.
@@ -454,19 +741,27 @@ public class VMCommsSimulation
      * Read commands from the server VM.  Eventually, at the end of the Greenfoot
      * rewrite, this should live elsewhere (probably in WorldHandler or similar).
      *
+     * @param buffer The buffer to read from, positioned at the command count
      * @param answer A one-element array in which to store an ask-answer, if received
      * @return The command acknowledge to write back to the buffer
      */
-    private int readCommands(String[] answer)
+    private int readCommands(IntBuffer buffer, String[] answer)
     {
         int lastSeqID = -1;
-        int commandCount = sharedMemory.get();
+        int commandCount = buffer.get();
         for (int i = 0; i < commandCount; i++)
         {
-            lastSeqID = sharedMemory.get();
-            int commandLength = sharedMemory.get();
+            lastSeqID = buffer.get();
+            int commandLength = buffer.get();
+            if (lastSeqID <= lastAckCommand)
+            {
+                // We've already seen this one (the counters transport can send commands again
+                // until they are acknowledged):
+                buffer.position(buffer.position() + commandLength);
+                continue;
+            }
             int data[] = new int[commandLength];
-            sharedMemory.get(data);
+            buffer.get(data);
             if (Command.isKeyEvent(data[0]))
             {
                 KeyboardManager keyboardManager = WorldHandler.getInstance().getKeyboardManager();
@@ -553,10 +848,34 @@ public class VMCommsSimulation
                         int valueLength = data[2+keyLength];
                         String value = valueLength < 0 ? null : new String(data, 3 + keyLength, valueLength);
                         projectProperties.propertyChangedOnServerVM(key, value);
+                        if (key.equals(Simulation.SCHEDULING_PROPERTY))
+                        {
+                            Simulation.getInstance().setScheduling(Simulation.Scheduling.fromPropertyValue(value));
+                        }
+                        else if (key.equals(WorldRenderer.TILED_RENDERING_PROPERTY))
+                        {
+                            worldRenderer.setTiled(Boolean.parseBoolean(value));
+                        }
+                        else if (key.equals(ImageCache.PRELOAD_PROPERTY))
+                        {
+                            ImageCache.getInstance().setPreloadEnabled(Boolean.parseBoolean(value));
+                        }
+                        else if (key.equals(SoundFactory.MIXER_PROPERTY))
+                        {
+                            SoundFactory.setMixerEnabled(Boolean.parseBoolean(value));
+                        }
                         break;
                     case Command.COMMAND_SET_SPEED:
                         Simulation.getInstance().setSpeed(data[1]);
                         break;
+                    case Command.COMMAND_SET_PROFILING:
+                        boolean profiling = data[1] == 1;
+                        if (profiling && !profiler.isEnabled())
+                        {
+                            frameLatency.reset();
+                        }
+                        profiler.setEnabled(profiling);
+                        break;
                     case Command.COMMAND_WORLD_FOCUS_GAINED:
                         WorldHandler.getInstance().worldFocusChanged(true);
                         break;
@@ -586,6 +905,7 @@ public class VMCommsSimulation
     {
         stoppedWithErrorCount += 1;
         paintRemote(PaintWhen.FORCE);
+        wakeComms();
     }
 
     /**
@@ -595,6 +915,7 @@ public class VMCommsSimulation
     public synchronized void notifyDelayLoopEntered()
     {
         delayLoopEntered = true;
+        wakeComms();
     }
 
     /**
@@ -604,6 +925,7 @@ public class VMCommsSimulation
     public synchronized void notifyDelayLoopCompleted()
     {
         delayLoopEntered = false;
+        wakeComms();
     }
 
     /**
@@ -613,6 +935,7 @@ public class VMCommsSimulation
     public void userCodeStarting()
     {
         startOfCurExecution = System.currentTimeMillis();
+        wakeComms();
     }
 
     /**
@@ -627,5 +950,6 @@ public class VMCommsSimulation
         {
             paintRemote(PaintWhen.FORCE);
         }
+        wakeComms();
     }
 }
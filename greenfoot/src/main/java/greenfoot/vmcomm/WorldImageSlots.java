@@ -0,0 +1,199 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.nio.BufferOverflowException;
+import java.nio.IntBuffer;
+
+/**
+ * The world image slots in the debug VM area of the shared memory. The debug VM writes
+ * each new world image into one of the slots, alternating between them, so that it can
+ * write a new image while the server VM is still reading the previous one. A slot is only
+ * re-used once the server VM has consumed the image in it.
+ * 
+ * Each slot has the following format (positions are integer positions relative to the
+ * start of the slot):
+ * 
+ * Pos 0: Paint sequence of the image in the slot, or 0 if none. This is written last.
+ * Pos 1: -1 if the slot holds a full image, otherwise the paint sequence of the image
+ *        which the changed regions in the slot apply to.
+ * Pos 2: Width of world image in pixels (W)
+ * Pos 3: Height of world image in pixels (H)
+ * Pos 4: Count (R) of changed regions, if not a full image
+ * Pos 5 onwards:
+ *        For a full image, W * H pixels one row at a time with no gaps, each pixel is one
+ *        integer, in BGRA form, i.e. blue is highest 8 bits, alpha is lowest.
+ *        Otherwise R regions, each given as four integers (X, Y, RW, RH) followed by
+ *        RW * RH pixels one row at a time, which replace that area of the previous image.
+ * 
+ * All access is via absolute buffer operations, so the buffer position is not affected.
+ */
+class WorldImageSlots
+{
+    static final int SLOT_COUNT = 2;
+    
+    private static final int HEADER_SIZE = 5;
+    
+    private final IntBuffer buffer;
+    private final int start;
+    private final int slotSize;
+
+    /**
+     * Construct a WorldImageSlots using the given part of the buffer (integer positions).
+     */
+    WorldImageSlots(IntBuffer buffer, int start, int end)
+    {
+        this.buffer = buffer;
+        this.start = start;
+        this.slotSize = (end - start) / SLOT_COUNT;
+    }
+    
+    private int slotStart(int slot)
+    {
+        return start + slot * slotSize;
+    }
+
+    /**
+     * Get the paint sequence of the image in the given slot (0 if none).
+     */
+    int getPaintSeq(int slot)
+    {
+        return buffer.get(slotStart(slot));
+    }
+    
+    /**
+     * Get the paint sequence of the image that the changed regions in the given slot
+     * apply to, or -1 if the slot holds a full image.
+     */
+    int getBasePaintSeq(int slot)
+    {
+        return buffer.get(slotStart(slot) + 1);
+    }
+    
+    int getWidth(int slot)
+    {
+        return buffer.get(slotStart(slot) + 2);
+    }
+    
+    int getHeight(int slot)
+    {
+        return buffer.get(slotStart(slot) + 3);
+    }
+    
+    /**
+     * Write a full image into a slot.
+     * 
+     * @throws BufferOverflowException  if the image does not fit in a slot.
+     */
+    void putImage(int slot, int paintSeq, int[] pixels, int width, int height)
+    {
+        if (HEADER_SIZE + pixels.length > slotSize)
+        {
+            throw new BufferOverflowException();
+        }
+        int pos = slotStart(slot);
+        buffer.put(pos + 1, -1);
+        buffer.put(pos + 2, width);
+        buffer.put(pos + 3, height);
+        buffer.put(pos + 4, 0);
+        buffer.put(pos + HEADER_SIZE, pixels, 0, pixels.length);
+        buffer.put(pos, paintSeq);
+    }
+    
+    /**
+     * Write the changed regions of an image into a slot.
+     * 
+     * @param basePaintSeq  The paint sequence of the image which the regions apply to
+     * @param regions       The regions, as (x, y, width, height) quads
+     * @param regionCount   The number of regions
+     * @throws BufferOverflowException  if the regions do not fit in a slot.
+     */
+    void putRegions(int slot, int paintSeq, int basePaintSeq, int[] pixels, int width, int height,
+            int[] regions, int regionCount)
+    {
+        int slotEnd = slotStart(slot) + slotSize;
+        int pos = slotStart(slot) + HEADER_SIZE;
+        for (int i = 0; i < regionCount * 4; i += 4)
+        {
+            int x = regions[i];
+            int y = regions[i + 1];
+            int w = regions[i + 2];
+            int h = regions[i + 3];
+            if (pos + 4 + w * h > slotEnd)
+            {
+                throw new BufferOverflowException();
+            }
+            buffer.put(pos, regions, i, 4);
+            pos += 4;
+            for (int row = y; row < y + h; row++)
+            {
+                buffer.put(pos, pixels, row * width + x, w);
+                pos += w;
+            }
+        }
+        pos = slotStart(slot);
+        buffer.put(pos + 1, basePaintSeq);
+        buffer.put(pos + 2, width);
+        buffer.put(pos + 3, height);
+        buffer.put(pos + 4, regionCount);
+        buffer.put(pos, paintSeq);
+    }
+    
+    /**
+     * Read the full image from a slot (which must hold a full image) into the given array,
+     * which must be large enough.
+     */
+    void getImage(int slot, int[] pixels)
+    {
+        int length = getWidth(slot) * getHeight(slot);
+        buffer.get(slotStart(slot) + HEADER_SIZE, pixels, 0, length);
+    }
+    
+    /**
+     * Read the changed regions from a slot into the given array, which must hold the
+     * image that the regions apply to.
+     * 
+     * @return  The regions read, as (x, y, width, height) quads
+     */
+    int[] getRegions(int slot, int[] pixels)
+    {
+        int width = getWidth(slot);
+        int regionCount = buffer.get(slotStart(slot) + 4);
+        int[] regions = new int[regionCount * 4];
+        int pos = slotStart(slot) + HEADER_SIZE;
+        for (int i = 0; i < regions.length; i += 4)
+        {
+            buffer.get(pos, regions, i, 4);
+            pos += 4;
+            int x = regions[i];
+            int y = regions[i + 1];
+            int w = regions[i + 2];
+            int h = regions[i + 3];
+            for (int row = y; row < y + h; row++)
+            {
+                buffer.get(pos, pixels, row * width + x, w);
+                pos += w;
+            }
+        }
+        return regions;
+    }
+}
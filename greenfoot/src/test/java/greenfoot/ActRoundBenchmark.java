@@ -0,0 +1,223 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.core.Simulation;
+import greenfoot.core.WorldHandler;
+import greenfoot.gui.WorldRenderer;
+import greenfoot.platforms.WorldHandlerDelegate;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures the time taken and the heap allocated per act round, running complete
+ * rounds as Simulation does: the world acts, the actors to act are collected, each
+ * actor acts (moving, which updates the collision checker, and then checking for
+ * collisions), and the world is rendered and handed off for sending as the debug VM
+ * does.  Collecting the actors by copying the act-order set into a new list is compared
+ * with copying it into a re-used array.  Not run as part of the test suite; run the main
+ * method directly.
+ */
+public class ActRoundBenchmark
+{
+    private static final int WORLD_SIZE = 600;
+    private static final int MOVERS = 2000;
+    private static final int OBSTACLES = 200;
+    private static final int ROUNDS = 200;
+    
+    /**
+     * An actor which moves, turning at the edges and when it touches another mover.
+     */
+    private static class Mover extends TestObject
+    {
+        public Mover()
+        {
+            super(10, 10);
+        }
+        
+        @Override
+        public void act()
+        {
+            move(2);
+            if (isAtEdge() || getOneIntersectingObject(Mover.class) != null) {
+                turn(97);
+            }
+        }
+    }
+    
+    private static class Obstacle extends TestObject
+    {
+        public Obstacle()
+        {
+            super(20, 20);
+        }
+    }
+    
+    /**
+     * Renders every frame painted into a re-used image, and hands it off for sending, as
+     * VMCommsSimulation does.  With nothing sending, the previous frame is re-used.
+     */
+    private static class RenderingDelegate implements WorldHandlerDelegate
+    {
+        private final WorldRenderer renderer = new WorldRenderer();
+        private final AtomicReference<BufferedImage> imageForSending = new AtomicReference<BufferedImage>();
+        private BufferedImage spareImage;
+        
+        @Override
+        public boolean paint(World drawWorld, boolean forcePaint)
+        {
+            if (drawWorld == null) {
+                return false;
+            }
+            BufferedImage image = spareImage;
+            if (image == null) {
+                image = new BufferedImage(WorldVisitor.getWidthInPixels(drawWorld),
+                        WorldVisitor.getHeightInPixels(drawWorld), BufferedImage.TYPE_INT_ARGB);
+            }
+            renderer.renderWorld(drawWorld, image);
+            spareImage = imageForSending.getAndSet(image);
+            return true;
+        }
+        
+        @Override
+        public void setWorld(World oldWorld, World newWorld)
+        {
+        }
+        
+        @Override
+        public void instantiateNewWorld(String className, Runnable runIfError)
+        {
+        }
+        
+        @Override
+        public void discardWorld(World world)
+        {
+        }
+        
+        @Override
+        public void objectAddedToWorld(Actor actor)
+        {
+        }
+        
+        @Override
+        public String ask(String prompt)
+        {
+            return "";
+        }
+        
+        @Override
+        public void notifyStoppedWithError()
+        {
+        }
+    }
+    
+    private static Actor[] buffer = new Actor[0];
+    // The time spent painting (rendering and handing off) in the rounds run so far:
+    private static long paintNanos;
+    
+    public static void main(String[] args)
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        WorldHandler.initialise(new RenderingDelegate());
+        
+        for (int i = 0; i < 3; i++) {
+            run(false);
+            run(true);
+        }
+    }
+    
+    private static void run(boolean snapshot)
+    {
+        World world = new World(WORLD_SIZE, WORLD_SIZE, 1) {};
+        Random random = new Random(1);
+        for (int i = 0; i < MOVERS; i++) {
+            Mover mover = new Mover();
+            world.addObject(mover, random.nextInt(WORLD_SIZE), random.nextInt(WORLD_SIZE));
+            mover.setRotation(random.nextInt(360));
+        }
+        for (int i = 0; i < OBSTACLES; i++) {
+            world.addObject(new Obstacle(), random.nextInt(WORLD_SIZE), random.nextInt(WORLD_SIZE));
+        }
+        world.setActOrder(Obstacle.class, Mover.class);
+        WorldHandler.getInstance().setWorld(world, false);
+        
+        paintNanos = 0;
+        long startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            runRound(world, snapshot);
+        }
+        long time = System.nanoTime() - start;
+        long bytes = allocatedBytes() - startBytes;
+        System.out.printf("%s: %.1f us/round (%.1f us painting), %d bytes/round%n",
+                snapshot ? "Snapshot " : "List copy", time / 1000.0 / ROUNDS, paintNanos / 1000.0 / ROUNDS,
+                bytes / ROUNDS);
+    }
+    
+    /**
+     * Run one act round, as Simulation.runOneLoop does (without sleeping actors, or the
+     * profiler and listeners).
+     */
+    private static void runRound(World world, boolean snapshot)
+    {
+        world.act();
+        TreeActorSet set = WorldVisitor.getObjectsListInActOrder(world);
+        if (snapshot) {
+            int count = set.size();
+            buffer = set.snapshot(buffer);
+            for (int i = 0; i < count; i++) {
+                Actor actor = buffer[i];
+                buffer[i] = null;
+                actIfInWorld(actor);
+            }
+        }
+        else {
+            List<Actor> actors = new ArrayList<Actor>(set);
+            for (Actor actor : actors) {
+                actIfInWorld(actor);
+            }
+        }
+        long paintStart = System.nanoTime();
+        WorldHandler.getInstance().paint(false);
+        paintNanos += System.nanoTime() - paintStart;
+    }
+    
+    private static void actIfInWorld(Actor actor)
+    {
+        if (actor.getWorld() != null) {
+            actor.act();
+        }
+    }
+    
+    private static long allocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+}
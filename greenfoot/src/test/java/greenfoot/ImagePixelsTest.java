@@ -0,0 +1,112 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+
+/**
+ * Tests for reading and writing the pixels of a GreenfootImage in bulk.
+ */
+public class ImagePixelsTest extends TestCase
+{
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+    }
+
+    public void testMatchesColorAt()
+    {
+        GreenfootImage image = new GreenfootImage(30, 20);
+        image.setColor(new Color(10, 20, 30, 128));
+        image.fillOval(0, 0, 30, 20);
+        image.setColorAt(3, 4, Color.RED);
+
+        int[] pixels = image.getPixels(2, 3, 25, 15, null);
+        assertEquals(25 * 15, pixels.length);
+        for (int j = 0; j < 15; j++) {
+            for (int i = 0; i < 25; i++) {
+                Color c = image.getColorAt(2 + i, 3 + j);
+                int argb = c.getAlpha() << 24 | c.getRed() << 16 | c.getGreen() << 8 | c.getBlue();
+                assertEquals(argb, pixels[j * 25 + i]);
+            }
+        }
+
+        // Write them back somewhere else, via a larger array:
+        int[] larger = new int[pixels.length + 10];
+        System.arraycopy(pixels, 0, larger, 0, pixels.length);
+        GreenfootImage copy = new GreenfootImage(30, 20);
+        copy.setPixels(5, 5, 25, 15, larger);
+        assertEquals(image.getColorAt(3, 4), copy.getColorAt(6, 6));
+        assertEquals(new Color(0, 0, 0, 0), copy.getColorAt(4, 4));
+        assertSame(larger, copy.getPixels(5, 5, 25, 15, larger));
+        for (int i = 0; i < pixels.length; i++) {
+            assertEquals(pixels[i], larger[i]);
+        }
+    }
+
+    public void testCopyOnWrite()
+    {
+        GreenfootImage original = new GreenfootImage(10, 10);
+        original.setColor(Color.BLUE);
+        original.fill();
+        GreenfootImage shared = original.getCopyOnWriteClone();
+        GreenfootImage copy = new GreenfootImage(shared);
+
+        int[] red = new int[4];
+        Arrays.fill(red, 0xffff0000);
+        copy.setPixels(0, 0, 2, 2, red);
+        assertEquals(Color.RED, copy.getColorAt(1, 1));
+        assertEquals(Color.BLUE, shared.getColorAt(1, 1));
+        assertEquals(Color.BLUE, original.getColorAt(1, 1));
+    }
+
+    public void testBounds()
+    {
+        GreenfootImage image = new GreenfootImage(10, 10);
+        try {
+            image.getPixels(5, 5, 6, 1, null);
+            fail();
+        }
+        catch (IndexOutOfBoundsException e) {
+        }
+        try {
+            image.setPixels(-1, 0, 1, 1, new int[1]);
+            fail();
+        }
+        catch (IndexOutOfBoundsException e) {
+        }
+        try {
+            image.setPixels(0, 0, 2, 2, new int[3]);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+        }
+        assertEquals(0, image.getPixels(10, 10, 0, 0, null).length);
+    }
+}
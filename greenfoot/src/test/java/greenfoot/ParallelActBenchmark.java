@@ -0,0 +1,319 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.core.ParallelActRunner;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.Random;
+
+/**
+ * Compares acting a scaled-up version of the "ants" scenario one actor after another
+ * with acting the ants and pheromones in parallel. The actor classes follow those in
+ * scenarios/java/ants, except that the methods which ants call on food and ant hills are
+ * synchronized, so that ants may act in parallel. Not run as part of the test suite; run
+ * the main method directly (the parallel run only helps with more than one processor).
+ */
+public class ParallelActBenchmark
+{
+    private static final int SIZE = 1600;
+    private static final int HILLS = 40;
+    private static final int ANTS_PER_HILL = 100;
+    private static final int FOOD = 80;
+    private static final int ROUNDS = 300;
+    
+    public static void main(String[] args)
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        
+        int processors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Processors: " + processors);
+        for (int i = 0; i < 3; i++) {
+            long serial = run(null);
+            long parallel = run(new ParallelActRunner(processors));
+            System.out.printf("Serial: %.2f ms/round, parallel: %.2f ms/round%n",
+                    serial / 1e6 / ROUNDS, parallel / 1e6 / ROUNDS);
+        }
+    }
+    
+    /**
+     * Run the scenario for a number of rounds, returning the time taken in nanoseconds.
+     * If runner is null, all actors act in turn.
+     */
+    private static long run(ParallelActRunner runner)
+    {
+        World world = WorldCreator.createWorld(SIZE, SIZE, 1);
+        world.setActOrder(Ant.class, Pheromone.class, AntHill.class, Food.class);
+        if (runner != null) {
+            world.setParallelAct(Ant.class, Pheromone.class);
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < HILLS; i++) {
+            world.addObject(new AntHill(ANTS_PER_HILL), random.nextInt(SIZE), random.nextInt(SIZE));
+        }
+        for (int i = 0; i < FOOD; i++) {
+            world.addObject(new Food(), random.nextInt(SIZE), random.nextInt(SIZE));
+        }
+        
+        Actor[] actors = new Actor[0];
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            TreeActorSet set = WorldVisitor.getObjectsListInActOrder(world);
+            int count = set.size();
+            actors = set.snapshot(actors);
+            for (int i = 0; i < count; i++) {
+                if (runner != null && WorldVisitor.isParallelAct(world, actors[i])) {
+                    int end = i + 1;
+                    while (end < count && WorldVisitor.isParallelAct(world, actors[end])) {
+                        end++;
+                    }
+                    runner.act(world, actors, i, end);
+                    i = end - 1;
+                }
+                else if (actors[i].getWorld() != null) {
+                    actors[i].act();
+                }
+            }
+        }
+        return System.nanoTime() - start;
+    }
+    
+    private static class Creature extends Actor
+    {
+        private static final int SPEED = 3;
+        private int deltaX;
+        private int deltaY;
+        private final AntHill home;
+        
+        public Creature(AntHill home)
+        {
+            this.home = home;
+            setImage(new GreenfootImage(9, 9));
+        }
+        
+        public AntHill getHomeHill()
+        {
+            return home;
+        }
+        
+        public void randomWalk()
+        {
+            if (randomChance(50)) {
+                deltaX = capSpeed(deltaX + Greenfoot.getRandomNumber(2 * SPEED - 1) - SPEED + 1);
+                deltaY = capSpeed(deltaY + Greenfoot.getRandomNumber(2 * SPEED - 1) - SPEED + 1);
+            }
+            walk();
+        }
+        
+        public void walkTowardsHome()
+        {
+            if (randomChance(2)) {
+                randomWalk();
+            }
+            else {
+                headRoughlyTowards(home);
+                walk();
+            }
+        }
+        
+        public void walkAwayFromHome()
+        {
+            if (randomChance(2)) {
+                randomWalk();
+            }
+            else {
+                headRoughlyTowards(home);
+                deltaX = -deltaX;
+                deltaY = -deltaY;
+                walk();
+            }
+        }
+        
+        public void headTowards(Actor target)
+        {
+            deltaX = capSpeed(target.getX() - getX());
+            deltaY = capSpeed(target.getY() - getY());
+        }
+        
+        public void walk()
+        {
+            setLocation(getX() + deltaX, getY() + deltaY);
+            setRotation((int) (180 * Math.atan2(deltaY, deltaX) / Math.PI));
+        }
+        
+        private void headRoughlyTowards(Actor target)
+        {
+            int distanceX = Math.abs(getX() - target.getX());
+            int distanceY = Math.abs(getY() - target.getY());
+            boolean moveX = (distanceX > 0) && (Greenfoot.getRandomNumber(distanceX + distanceY) < distanceX);
+            boolean moveY = (distanceY > 0) && (Greenfoot.getRandomNumber(distanceX + distanceY) < distanceY);
+            deltaX = moveX ? (getX() > target.getX() ? -SPEED : SPEED) : 0;
+            deltaY = moveY ? (getY() > target.getY() ? -SPEED : SPEED) : 0;
+        }
+        
+        private int capSpeed(int speed)
+        {
+            return Math.max(-SPEED, Math.min(SPEED, speed));
+        }
+        
+        private boolean randomChance(int percent)
+        {
+            return Greenfoot.getRandomNumber(100) < percent;
+        }
+    }
+    
+    private static class Ant extends Creature
+    {
+        private static final int MAX_PH_LEVEL = 18;
+        private static final int PH_TIME = 30;
+        private boolean carryingFood = false;
+        private int pheromoneLevel = MAX_PH_LEVEL;
+        private int foundLastPheromone = 0;
+        
+        public Ant(AntHill home)
+        {
+            super(home);
+        }
+        
+        @Override
+        public void act()
+        {
+            if (carryingFood) {
+                walkTowardsHome();
+                if (pheromoneLevel == MAX_PH_LEVEL) {
+                    getWorld().addObject(new Pheromone(), getX(), getY());
+                    pheromoneLevel = 0;
+                }
+                else {
+                    pheromoneLevel++;
+                }
+                if (Math.abs(getX() - getHomeHill().getX()) < 4 && Math.abs(getY() - getHomeHill().getY()) < 4) {
+                    carryingFood = false;
+                    getHomeHill().countFood();
+                }
+            }
+            else {
+                if (foundLastPheromone > 0) {
+                    foundLastPheromone--;
+                    walkAwayFromHome();
+                }
+                else {
+                    Actor ph = getOneIntersectingObject(Pheromone.class);
+                    if (ph != null) {
+                        headTowards(ph);
+                        walk();
+                        if (ph.getX() == getX() && ph.getY() == getY()) {
+                            foundLastPheromone = PH_TIME;
+                        }
+                    }
+                    else {
+                        randomWalk();
+                    }
+                }
+                Food food = (Food) getOneIntersectingObject(Food.class);
+                if (food != null) {
+                    carryingFood = true;
+                    food.takeSome();
+                }
+            }
+        }
+    }
+    
+    private static class AntHill extends Actor
+    {
+        private int ants = 0;
+        private final int maxAnts;
+        private int food;
+        
+        public AntHill(int maxAnts)
+        {
+            this.maxAnts = maxAnts;
+            setImage(new GreenfootImage(40, 40));
+        }
+        
+        @Override
+        public void act()
+        {
+            if (ants < maxAnts && Greenfoot.getRandomNumber(100) < 10) {
+                getWorld().addObject(new Ant(this), getX(), getY());
+                ants++;
+            }
+        }
+        
+        public synchronized void countFood()
+        {
+            food++;
+        }
+    }
+    
+    private static class Pheromone extends Actor
+    {
+        private static final int MAX_INTENSITY = 180;
+        private int intensity = MAX_INTENSITY;
+        
+        public Pheromone()
+        {
+            updateImage();
+        }
+        
+        @Override
+        public void act()
+        {
+            intensity -= 1;
+            if (intensity <= 0) {
+                getWorld().removeObject(this);
+            }
+            else if ((intensity % 4) == 0) {
+                updateImage();
+            }
+        }
+        
+        private void updateImage()
+        {
+            int size = intensity / 3 + 5;
+            GreenfootImage image = new GreenfootImage(size + 1, size + 1);
+            image.setColor(new Color(255, 255, 255, intensity / 3));
+            image.fillOval(0, 0, size, size);
+            setImage(image);
+        }
+    }
+    
+    private static class Food extends Actor
+    {
+        private int crumbs = 100;
+        
+        public Food()
+        {
+            setImage(new GreenfootImage(30, 30));
+        }
+        
+        public synchronized void takeSome()
+        {
+            crumbs = crumbs - 3;
+            if (crumbs <= 0) {
+                getWorld().removeObject(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.core.ParallelActRunner;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for acting actors in parallel, with their changes to the world deferred.
+ */
+public class ParallelActTest extends TestCase
+{
+    private static final int ACTORS = 200;
+    
+    /** Records the order in which markers were added to the world. */
+    private static List<Integer> markersAdded = Collections.synchronizedList(new ArrayList<Integer>());
+    
+    private static class Marker extends TestObject
+    {
+        private final int index;
+        
+        public Marker(int index)
+        {
+            super(3, 3);
+            this.index = index;
+        }
+        
+        @Override
+        protected void addedToWorld(World world)
+        {
+            markersAdded.add(index);
+        }
+    }
+    
+    private static class Mover extends TestObject
+    {
+        private final int index;
+        private Mover previous;
+        private int previousXSeen = -1;
+        private boolean fail;
+        
+        public Mover(int index)
+        {
+            super(3, 3);
+            this.index = index;
+        }
+        
+        @Override
+        public void act()
+        {
+            if (fail) {
+                throw new IllegalStateException("failed");
+            }
+            if (previous != null) {
+                previousXSeen = previous.getX();
+            }
+            setLocation(getX() + 1, getY());
+            setRotation(90);
+            getWorld().addObject(new Marker(index), getX(), getY());
+        }
+    }
+    
+    private World world;
+    private Mover[] movers;
+    
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        markersAdded.clear();
+        
+        world = WorldCreator.createWorld(400, 400, 1);
+        world.setParallelAct(Mover.class);
+        movers = new Mover[ACTORS];
+        for (int i = 0; i < ACTORS; i++) {
+            movers[i] = new Mover(i);
+            if (i > 0) {
+                movers[i].previous = movers[i - 1];
+            }
+            world.addObject(movers[i], i, i);
+        }
+    }
+    
+    public void testIsParallelAct()
+    {
+        assertTrue(WorldVisitor.isParallelAct(world, movers[0]));
+        assertFalse(WorldVisitor.isParallelAct(world, new Marker(0)));
+        world.setParallelAct();
+        assertFalse(WorldVisitor.isParallelAct(world, movers[0]));
+    }
+    
+    public void testChangesAppliedInActOrder()
+    {
+        for (int parallelism : new int[] {1, 4}) {
+            setUpMarkers();
+            new ParallelActRunner(parallelism).act(world, movers.clone(), 0, ACTORS);
+            
+            for (int i = 0; i < ACTORS; i++) {
+                Mover mover = movers[i];
+                // Every actor saw the world as it was before any of them acted:
+                if (i > 0) {
+                    assertEquals(movers[i - 1].getX() - 1, mover.previousXSeen);
+                }
+                assertEquals(90, mover.getRotation());
+                // The location changed once; and the collision checker knows about it:
+                assertTrue(world.getObjectsAt(mover.getX(), mover.getY(), Mover.class).contains(mover));
+            }
+            assertEquals(ACTORS, markersAdded.size());
+            for (int i = 0; i < ACTORS; i++) {
+                assertEquals(i, markersAdded.get(i).intValue());
+            }
+        }
+    }
+    
+    public void testFailureDiscardsLaterChanges()
+    {
+        int failAt = ACTORS / 2;
+        movers[failAt].fail = true;
+        try {
+            new ParallelActRunner(4).act(world, movers.clone(), 0, ACTORS);
+            fail();
+        }
+        catch (IllegalStateException e) {
+            // Expected
+        }
+        for (int i = 0; i < ACTORS; i++) {
+            assertEquals(i < failAt ? i + 1 : i, movers[i].getX());
+        }
+        assertEquals(failAt, markersAdded.size());
+    }
+    
+    /**
+     * Actors acting in parallel should be called through the same method as in the
+     * sequential act loop, which the debugger uses to find the user's act() call.
+     */
+    public void testActsThroughSimulationHook()
+    {
+        movers[0].fail = true;
+        try {
+            new ParallelActRunner(4).act(world, movers.clone(), 0, ACTORS);
+            fail();
+        }
+        catch (IllegalStateException e) {
+            StackTraceElement caller = e.getStackTrace()[1];
+            assertEquals(Simulation.class.getName(), caller.getClassName());
+            assertEquals(Simulation.ACT_ACTOR, caller.getMethodName());
+        }
+    }
+    
+    private void setUpMarkers()
+    {
+        markersAdded.clear();
+        world.removeObjects(world.getObjects(Marker.class));
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.Arrays;
+
+/**
+ * Compares running a simple cellular automaton (each pixel becomes the brightest of
+ * itself and its left and upper neighbours, darkened slightly) over a 400x400 image,
+ * reading and writing the pixels one at a time with getColorAt and setColorAt, with
+ * doing the same through getPixels and setPixels. Not run as part of the test suite;
+ * run the main method directly.
+ */
+public class PixelAccessBenchmark
+{
+    private static final int SIZE = 400;
+    private static final int FRAMES = 20;
+
+    public static void main(String[] args)
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+
+        GreenfootImage image = new GreenfootImage(SIZE, SIZE);
+        for (int i = 0; i < 3; i++) {
+            seed(image);
+            long start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                stepPerPixel(image);
+            }
+            long perPixel = System.nanoTime() - start;
+            int[] expected = image.getPixels(0, 0, SIZE, SIZE, null);
+
+            seed(image);
+            int[] pixels = new int[SIZE * SIZE];
+            start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                stepBulk(image, pixels);
+            }
+            long bulk = System.nanoTime() - start;
+            if (! Arrays.equals(expected, image.getPixels(0, 0, SIZE, SIZE, null))) {
+                throw new IllegalStateException("The results differ");
+            }
+            System.out.printf("Per pixel: %.2f ms/frame, bulk: %.2f ms/frame%n",
+                    perPixel / 1e6 / FRAMES, bulk / 1e6 / FRAMES);
+        }
+    }
+
+    private static void seed(GreenfootImage image)
+    {
+        image.setColor(Color.BLACK);
+        image.fill();
+        image.setColor(Color.WHITE);
+        image.fillOval(SIZE / 4, SIZE / 4, SIZE / 8, SIZE / 8);
+    }
+
+    private static void stepPerPixel(GreenfootImage image)
+    {
+        for (int y = SIZE - 1; y > 0; y--) {
+            for (int x = SIZE - 1; x > 0; x--) {
+                int level = Math.max(image.getColorAt(x, y).getRed(),
+                        Math.max(image.getColorAt(x - 1, y).getRed(), image.getColorAt(x, y - 1).getRed()));
+                level = Math.max(0, level - 1);
+                image.setColorAt(x, y, new Color(level, level, level));
+            }
+        }
+    }
+
+    private static void stepBulk(GreenfootImage image, int[] pixels)
+    {
+        image.getPixels(0, 0, SIZE, SIZE, pixels);
+        for (int y = SIZE - 1; y > 0; y--) {
+            for (int x = SIZE - 1; x > 0; x--) {
+                int i = y * SIZE + x;
+                int level = Math.max(pixels[i] & 0xff, Math.max(pixels[i - 1] & 0xff, pixels[i - SIZE] & 0xff));
+                level = Math.max(0, level - 1);
+                pixels[i] = 0xff000000 | level << 16 | level << 8 | level;
+            }
+        }
+        image.setPixels(0, 0, SIZE, SIZE, pixels);
+    }
+}
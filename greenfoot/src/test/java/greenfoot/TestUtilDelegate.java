@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class TestUtilDelegate implements GreenfootUtilDelegate
@@ -69,6 +70,12 @@ public class TestUtilDelegate implements GreenfootUtilDelegate
         return null;
     }
 
+    @Override
+    public Iterable<String> getImageFiles()
+    {
+        return Collections.emptyList();
+    }
+
     @Override
     public boolean isStorageSupported()
     {
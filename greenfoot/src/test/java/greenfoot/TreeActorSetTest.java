@@ -0,0 +1,92 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot;
+
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for copying the contents of a TreeActorSet into a re-usable array.
+ */
+public class TreeActorSetTest extends TestCase
+{
+    private static class OtherObject extends TestObject
+    {
+        public OtherObject()
+        {
+            super(5, 5);
+        }
+    }
+    
+    private World world;
+    
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        world = WorldCreator.createWorld(100, 100, 1);
+        for (int i = 0; i < 20; i++) {
+            world.addObject(i % 3 == 0 ? new OtherObject() : new TestObject(5, 5), i, i);
+        }
+    }
+    
+    /**
+     * The snapshot should hold the same actors, in the same order, as iterating the set.
+     */
+    public void testSnapshotOrder()
+    {
+        world.setActOrder(OtherObject.class, TestObject.class);
+        TreeActorSet set = WorldVisitor.getObjectsListInActOrder(world);
+        
+        Actor[] snapshot = set.snapshot(new Actor[0]);
+        assertTrue(snapshot.length >= set.size());
+        assertEquals(new ArrayList<Actor>(set), Arrays.asList(snapshot).subList(0, set.size()));
+        for (int i = 0; i < 7; i++) {
+            assertTrue(snapshot[i] instanceof OtherObject);
+        }
+    }
+    
+    /**
+     * A large enough buffer should be re-used rather than replaced.
+     */
+    public void testSnapshotReusesBuffer()
+    {
+        TreeActorSet set = WorldVisitor.getObjectsListInActOrder(world);
+        Actor[] buffer = new Actor[25];
+        assertSame(buffer, set.snapshot(buffer));
+        assertNull(buffer[20]);
+        
+        List<Actor> actors = new ArrayList<Actor>(set);
+        world.removeObject(actors.get(4));
+        assertSame(buffer, set.snapshot(buffer));
+        actors.remove(4);
+        assertEquals(actors, Arrays.asList(buffer).subList(0, set.size()));
+    }
+}
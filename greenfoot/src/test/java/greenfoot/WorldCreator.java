@@ -31,4 +31,11 @@ public class WorldCreator
         WorldHandler.getInstance().setWorld(world, false);
         return world;
     }
+
+    public static World createWorld(int width, int height, int cellSize, boolean gridCollision) {
+        World world = new World(width, height, cellSize, true, gridCollision) {};
+        WorldHandler.initialise();
+        WorldHandler.getInstance().setWorld(world, false);
+        return world;
+    }
 }
@@ -0,0 +1,115 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that actors moved into the collision checker in bulk (the first time
+ * their class is queried) are found the same way as actors which were added
+ * to the collision checker one at a time.
+ */
+public class BulkAddTest extends TestCase
+{
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+    }
+    
+    private static Set<Integer> indices(Collection<?> actors, List<TestObject> list)
+    {
+        Set<Integer> result = new TreeSet<Integer>();
+        for (Object o : actors) {
+            result.add(list.indexOf(o));
+        }
+        return result;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public void testBulkMatchesIncremental()
+    {
+        World bulkWorld = WorldCreator.createWorld(200, 200, 1);
+        World incWorld = WorldCreator.createWorld(200, 200, 1);
+        List<TestObject> bulkActors = new ArrayList<TestObject>();
+        List<TestObject> incActors = new ArrayList<TestObject>();
+        
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            int w = 3 + random.nextInt(30);
+            int h = 3 + random.nextInt(30);
+            int x = random.nextInt(200);
+            int y = random.nextInt(200);
+            
+            TestObject a = new TestObject(w, h);
+            bulkWorld.addObject(a, x, y);
+            bulkActors.add(a);
+            
+            TestObject b = new TestObject(w, h);
+            incWorld.addObject(b, x, y);
+            incActors.add(b);
+            // Querying makes this, and each later, actor go straight into the checker
+            b.isTouchingP(TestObject.class);
+        }
+        
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < bulkActors.size(); i++) {
+                TestObject a = bulkActors.get(i);
+                TestObject b = incActors.get(i);
+                assertEquals(indices(b.getIntersectingObjectsP(TestObject.class), incActors),
+                        indices(a.getIntersectingObjectsP(TestObject.class), bulkActors));
+                assertEquals(b.isTouchingP(TestObject.class), a.isTouchingP(TestObject.class));
+                assertEquals(indices(b.getObjectsInRangeP(20, TestObject.class), incActors),
+                        indices(a.getObjectsInRangeP(20, TestObject.class), bulkActors));
+            }
+            
+            // Move everything, to check the bulk-built tree updates properly
+            for (int i = 0; i < bulkActors.size(); i++) {
+                int x = random.nextInt(200);
+                int y = random.nextInt(200);
+                bulkActors.get(i).setLocation(x, y);
+                incActors.get(i).setLocation(x, y);
+            }
+        }
+        
+        for (int i = 0; i < bulkActors.size(); i += 2) {
+            bulkWorld.removeObject(bulkActors.get(i));
+        }
+        assertEquals(250, bulkWorld.getObjects(null).size());
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the performance of the IBSP and grid collision checkers, using the
+ * same kinds of queries as the collision tests in this package, on a world
+ * with many similarly-sized moving actors. Not run as part of the test suite;
+ * run the main method directly.
+ */
+public class CollisionBenchmark
+{
+    private static final int WORLD_SIZE = 800;
+    private static final int ACTORS = 5000;
+    private static final int ROUNDS = 20;
+    
+    public static void main(String[] args)
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        
+        // Warm up both, then measure
+        for (int i = 0; i < 2; i++) {
+            run(false);
+            run(true);
+        }
+        System.out.println("IBSP: " + run(false) / 1000000 + " ms");
+        System.out.println("Grid: " + run(true) / 1000000 + " ms");
+    }
+    
+    /**
+     * Run the workload, returning the time taken in nanoseconds.
+     */
+    @SuppressWarnings("unchecked")
+    private static long run(boolean gridCollision)
+    {
+        World world = WorldCreator.createWorld(WORLD_SIZE, WORLD_SIZE, 1, gridCollision);
+        Random random = new Random(1);
+        List<TestObject> actors = new ArrayList<TestObject>();
+        for (int i = 0; i < ACTORS; i++) {
+            TestObject actor = new TestObject(10, 10);
+            world.addObject(actor, random.nextInt(WORLD_SIZE), random.nextInt(WORLD_SIZE));
+            actors.add(actor);
+        }
+        
+        long start = System.nanoTime();
+        int found = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (TestObject actor : actors) {
+                actor.setLocation(actor.getX() + random.nextInt(5) - 2, actor.getY() + random.nextInt(5) - 2);
+                if (actor.isTouchingP(TestObject.class)) {
+                    found++;
+                }
+                found += actor.getIntersectingObjectsP(TestObject.class).size();
+                found += actor.getObjectsInRangeP(20, TestObject.class).size();
+                found += actor.getNeighboursP(5, true, TestObject.class).size();
+                found += actor.getObjectsAtP(3, 3, TestObject.class).size();
+            }
+        }
+        long time = System.nanoTime() - start;
+        if (found < 0) {
+            System.out.println(found);
+        }
+        return time;
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.Actor;
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.WorldVisitor;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the grid collision checker, by comparing its answers with those of
+ * the default (IBSP) collision checker for identical worlds. Also tests that
+ * both checkers can be queried from several threads at once.
+ */
+public class GridCollisionTest extends TestCase
+{
+    private World ibspWorld;
+    private World gridWorld;
+    private List<TestObject> ibspActors = new ArrayList<TestObject>();
+    private List<TestObject> gridActors = new ArrayList<TestObject>();
+    
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+    }
+    
+    /**
+     * Add an actor of the given size at the same location to both worlds.
+     */
+    private void addPair(int width, int height, int x, int y, int rotation)
+    {
+        TestObject a = new TestObject(width, height);
+        a.setRotation(rotation);
+        ibspWorld.addObject(a, x, y);
+        ibspActors.add(a);
+        
+        TestObject b = new TestObject(width, height);
+        b.setRotation(rotation);
+        gridWorld.addObject(b, x, y);
+        gridActors.add(b);
+    }
+    
+    /**
+     * Map a collection of actors to their indices in the given list, so that
+     * results from the two worlds can be compared.
+     */
+    private static Set<Integer> indices(Collection<?> actors, List<TestObject> list)
+    {
+        Set<Integer> result = new TreeSet<Integer>();
+        for (Object o : actors) {
+            result.add(list.indexOf(o));
+        }
+        return result;
+    }
+    
+    /**
+     * Map a collection of actors to their indices in the given list, in order, keeping any
+     * duplicates.
+     */
+    private static List<Integer> sortedIndices(Collection<?> actors, List<TestObject> list)
+    {
+        List<Integer> result = new ArrayList<Integer>();
+        for (Object o : actors) {
+            result.add(list.indexOf(o));
+        }
+        Collections.sort(result);
+        return result;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<List<Integer>> queryAll(List<TestObject> actors)
+    {
+        List<List<Integer>> answers = new ArrayList<List<Integer>>();
+        for (TestObject actor : actors) {
+            answers.add(sortedIndices(actor.getIntersectingObjectsP(TestObject.class), actors));
+            answers.add(sortedIndices(actor.getNeighboursP(2, true, TestObject.class), actors));
+            answers.add(sortedIndices(actor.getObjectsInRangeP(3, TestObject.class), actors));
+            answers.add(sortedIndices(actor.getObjectsAtP(0, 0, null), actors));
+        }
+        return answers;
+    }
+    
+    /**
+     * Query from four threads at once, and check that each gets the expected answers.
+     */
+    private static void assertConcurrentAnswers(final List<List<Integer>> expected,
+            final List<TestObject> actors) throws InterruptedException
+    {
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run()
+                {
+                    try {
+                        for (int i = 0; i < 20; i++) {
+                            assertEquals(expected, queryAll(actors));
+                        }
+                    }
+                    catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void assertSameAnswers()
+    {
+        for (int i = 0; i < ibspActors.size(); i++) {
+            TestObject a = ibspActors.get(i);
+            TestObject b = gridActors.get(i);
+            assertEquals(indices(a.getIntersectingObjectsP(TestObject.class), ibspActors),
+                    indices(b.getIntersectingObjectsP(TestObject.class), gridActors));
+            assertEquals(indices(a.getObjectsAtP(0, 0, null), ibspActors),
+                    indices(b.getObjectsAtP(0, 0, null), gridActors));
+            assertEquals(indices(a.getNeighboursP(2, true, TestObject.class), ibspActors),
+                    indices(b.getNeighboursP(2, true, TestObject.class), gridActors));
+            assertEquals(a.isTouchingP(TestObject.class), b.isTouchingP(TestObject.class));
+            assertEquals(a.getOneObjectAtP(1, 0, null) == null, b.getOneObjectAtP(1, 0, null) == null);
+        }
+        
+        assertEquals(indices(ibspWorld.getObjects(null), ibspActors),
+                indices(gridWorld.getObjects(null), gridActors));
+    }
+    
+    public void testMatchesIBSP()
+    {
+        ibspWorld = WorldCreator.createWorld(60, 60, 5, false);
+        gridWorld = WorldCreator.createWorld(60, 60, 5, true);
+        
+        // Sizes start at 3, as a rotated single-pixel image has a degenerate
+        // corner polygon which "contains" every point.
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            addPair(3 + random.nextInt(25), 3 + random.nextInt(25),
+                    random.nextInt(60), random.nextInt(60), random.nextInt(4) * 30);
+        }
+        // One large actor, stored separately by the grid checker
+        addPair(200, 150, 30, 30, 0);
+        assertSameAnswers();
+        
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < ibspActors.size(); i++) {
+                int x = random.nextInt(60);
+                int y = random.nextInt(60);
+                ibspActors.get(i).setLocation(x, y);
+                gridActors.get(i).setLocation(x, y);
+            }
+            assertSameAnswers();
+        }
+    }
+    
+    public void testRemove()
+    {
+        ibspWorld = WorldCreator.createWorld(20, 20, 10, false);
+        gridWorld = WorldCreator.createWorld(20, 20, 10, true);
+        
+        for (int i = 0; i < 20; i++) {
+            addPair(7, 7, i, i, 0);
+        }
+        for (int i = 0; i < 20; i += 2) {
+            ibspWorld.removeObject(ibspActors.get(i));
+            gridWorld.removeObject(gridActors.get(i));
+        }
+        assertEquals(10, gridWorld.getObjects(null).size());
+        assertTrue(gridWorld.getObjectsAt(4, 4, null).isEmpty());
+        assertEquals(1, gridWorld.getObjectsAt(5, 5, null).size());
+        
+        // Removing everything and adding again re-chooses the grid size:
+        for (int i = 1; i < 20; i += 2) {
+            gridWorld.removeObject(gridActors.get(i));
+        }
+        assertTrue(gridWorld.getObjects(null).isEmpty());
+        TestObject big = new TestObject(50, 50);
+        gridWorld.addObject(big, 10, 10);
+        Actor small = new TestObject(7, 7);
+        gridWorld.addObject(small, 12, 12);
+        assertTrue(big.getIntersectingObjectsP(null).contains(small));
+    }
+    
+    public void testInRange()
+    {
+        gridWorld = WorldCreator.createWorld(10, 10, 10, true);
+        TestObject actor1 = new TestObject(20, 20);
+        gridWorld.addObject(actor1, 2, 2);
+        TestObject actor2 = new TestObject(10, 10);
+        gridWorld.addObject(actor2, 2, 4);
+        
+        assertTrue(actor1.getObjectsInRangeP(3, TestObject.class).contains(actor2));
+        actor2.setLocation(2, 6);
+        assertFalse(actor1.getObjectsInRangeP(3, TestObject.class).contains(actor2));
+        actor2.setLocation(4, 4);
+        assertTrue(actor1.getObjectsInRangeP(3, TestObject.class).contains(actor2));
+    }
+    
+    /**
+     * Queries from several threads at once (as made by actors acting in parallel) should
+     * give the same answers as when made one at a time, without reporting an actor twice.
+     */
+    public void testConcurrentQueries() throws InterruptedException
+    {
+        gridWorld = WorldCreator.createWorld(40, 40, 5, true);
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            TestObject actor = new TestObject(3 + random.nextInt(25), 3 + random.nextInt(25));
+            gridWorld.addObject(actor, random.nextInt(40), random.nextInt(40));
+            gridActors.add(actor);
+        }
+        List<List<Integer>> expected = queryAll(gridActors);
+        for (List<Integer> answer : expected) {
+            assertEquals(answer.size(), new TreeSet<Integer>(answer).size());
+        }
+        assertConcurrentAnswers(expected, gridActors);
+    }
+    
+    /**
+     * Once prepared for parallel act, the IBSP checker should answer queries from several
+     * threads at once correctly, even straight after actors have moved (which leaves area
+     * changes pending in its tree). The expected answers come from the grid checker, so
+     * that the IBSP tree is first traversed by the concurrent queries.
+     */
+    public void testConcurrentIBSPQueries() throws InterruptedException
+    {
+        ibspWorld = WorldCreator.createWorld(40, 40, 5, false);
+        gridWorld = WorldCreator.createWorld(40, 40, 5, true);
+        Random random = new Random(11);
+        for (int i = 0; i < 300; i++) {
+            addPair(3 + random.nextInt(25), 3 + random.nextInt(25),
+                    random.nextInt(40), random.nextInt(40), 0);
+        }
+        assertSameAnswers();
+        for (int i = 0; i < ibspActors.size(); i += 3) {
+            int x = random.nextInt(40);
+            int y = random.nextInt(40);
+            ibspActors.get(i).setLocation(x, y);
+            gridActors.get(i).setLocation(x, y);
+        }
+        
+        WorldVisitor.prepareForParallelAct(ibspWorld);
+        assertConcurrentAnswers(queryAll(gridActors), ibspActors);
+    }
+}
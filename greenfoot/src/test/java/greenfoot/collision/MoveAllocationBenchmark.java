@@ -0,0 +1,107 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the time taken and the memory allocated per call of Actor.move and
+ * Actor.setLocation (including updating the collision checker), with many actors moving
+ * around in a world, for both collision checkers. Not run as part of the test suite;
+ * run the main method directly.
+ */
+public class MoveAllocationBenchmark
+{
+    private static final int WORLD_SIZE = 800;
+    private static final int ACTORS = 20000;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args)
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+
+        for (int i = 0; i < 3; i++) {
+            run(false);
+            run(true);
+        }
+    }
+
+    private static void run(boolean gridCollision)
+    {
+        World world = WorldCreator.createWorld(WORLD_SIZE, WORLD_SIZE, 1, gridCollision);
+        Random random = new Random(1);
+        List<TestObject> actors = new ArrayList<TestObject>();
+        for (int i = 0; i < ACTORS; i++) {
+            TestObject actor = new TestObject(10, 10);
+            world.addObject(actor, random.nextInt(WORLD_SIZE), random.nextInt(WORLD_SIZE));
+            actor.setRotation(random.nextInt(360));
+            actors.add(actor);
+        }
+
+        long startBytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            for (TestObject actor : actors) {
+                actor.move(2);
+            }
+        }
+        report(gridCollision ? "Grid, move" : "IBSP, move", start, startBytes);
+
+        startBytes = allocatedBytes();
+        start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++) {
+            int d = (round & 1) == 0 ? 1 : -1;
+            for (TestObject actor : actors) {
+                actor.setLocation(actor.getX() + d, actor.getY() - d);
+            }
+        }
+        report(gridCollision ? "Grid, setLocation" : "IBSP, setLocation", start, startBytes);
+    }
+
+    private static void report(String what, long start, long startBytes)
+    {
+        long calls = (long) ACTORS * ROUNDS;
+        long time = System.nanoTime() - start;
+        long bytes = allocatedBytes() - startBytes;
+        System.out.printf("%s: %.1f ns/call, %.2f bytes/call%n", what, (double) time / calls, (double) bytes / calls);
+    }
+
+    /**
+     * Get the number of bytes allocated so far by this thread.
+     */
+    private static long allocatedBytes()
+    {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
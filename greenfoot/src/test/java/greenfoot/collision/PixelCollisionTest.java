@@ -0,0 +1,175 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.collision;
+
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.TestObject;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.image.BufferedImage;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for pixel-accurate collision checking.
+ */
+public class PixelCollisionTest extends TestCase
+{
+    private World world;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        world = WorldCreator.createWorld(200, 200, 1);
+        world.setPixelPerfectCollisions(true);
+    }
+
+    private static TestObject circle()
+    {
+        TestObject o = new TestObject(20, 20);
+        o.getImage().setColor(Color.RED);
+        o.getImage().fillOval(0, 0, 20, 20);
+        return o;
+    }
+
+    private static TestObject bar(int width, int height)
+    {
+        TestObject o = new TestObject(width, height);
+        o.getImage().setColor(Color.RED);
+        o.getImage().fill();
+        return o;
+    }
+
+    public void testCorners()
+    {
+        // The bounding boxes overlap at the corners, but the circles don't:
+        TestObject o1 = circle();
+        TestObject o2 = circle();
+        world.addObject(o1, 50, 50);
+        world.addObject(o2, 67, 67);
+        assertFalse(o1.intersectsP(o2));
+        assertFalse(o2.intersectsP(o1));
+        assertNull(o1.getOneIntersectingObjectP(TestObject.class));
+        assertTrue(o1.getIntersectingObjectsP(TestObject.class).isEmpty());
+
+        world.setPixelPerfectCollisions(false);
+        assertTrue(o1.intersectsP(o2));
+        world.setPixelPerfectCollisions(true);
+
+        o2.setLocation(62, 62);
+        assertTrue(o1.intersectsP(o2));
+        assertTrue(o2.intersectsP(o1));
+        assertSame(o2, o1.getOneIntersectingObjectP(TestObject.class));
+    }
+
+    public void testRotated()
+    {
+        TestObject bar = bar(40, 4);
+        TestObject dot = bar(2, 2);
+        world.addObject(bar, 100, 100);
+        world.addObject(dot, 100, 85);
+        assertFalse(bar.intersectsP(dot));
+
+        bar.setRotation(90);
+        assertTrue(bar.intersectsP(dot));
+        assertTrue(dot.intersectsP(bar));
+
+        // The dot is inside the bounding box of the bar, but not on it:
+        bar.setRotation(45);
+        assertFalse(bar.intersectsP(dot));
+        dot.setLocation(90, 90);
+        assertTrue(bar.intersectsP(dot));
+        dot.setRotation(30);
+        assertTrue(dot.intersectsP(bar));
+
+        dot.setLocation(110, 90);
+        assertFalse(bar.intersectsP(dot));
+        bar.setRotation(135);
+        assertTrue(bar.intersectsP(dot));
+    }
+
+    public void testImageChanges()
+    {
+        TestObject o1 = new TestObject(10, 10);
+        TestObject o2 = bar(10, 10);
+        world.addObject(o1, 50, 50);
+        world.addObject(o2, 55, 55);
+        assertFalse(o1.intersectsP(o2));
+
+        // Only the pixel in the overlap matters:
+        o1.getImage().setColorAt(0, 0, Color.BLUE);
+        assertFalse(o1.intersectsP(o2));
+        o1.getImage().setColorAt(9, 9, Color.BLUE);
+        assertTrue(o1.intersectsP(o2));
+
+        o1.getImage().clear();
+        assertFalse(o1.intersectsP(o2));
+
+        // Changing a copy must not affect the original:
+        GreenfootImage copy = new GreenfootImage(o2.getImage());
+        copy.clear();
+        o1.setImage(copy);
+        assertFalse(o1.intersectsP(o2));
+        o1.setImage(new GreenfootImage(o2.getImage()));
+        assertTrue(o1.intersectsP(o2));
+    }
+
+    public void testPoint()
+    {
+        TestObject point = new TestObject(1, 1);
+        point.setImage((GreenfootImage) null);
+        TestObject o = circle();
+        world.addObject(point, 41, 41);
+        world.addObject(o, 50, 50);
+        assertFalse(point.intersectsP(o));
+        assertFalse(o.intersectsP(point));
+        point.setLocation(45, 45);
+        assertTrue(point.intersectsP(o));
+        assertTrue(o.intersectsP(point));
+    }
+
+    public void testMaskWords()
+    {
+        // Masks wider than a word, overlapping at various offsets:
+        BufferedImage wide = new BufferedImage(150, 3, BufferedImage.TYPE_INT_ARGB);
+        wide.setRGB(130, 1, 0xff000000);
+        BufferedImage small = new BufferedImage(70, 3, BufferedImage.TYPE_INT_ARGB);
+        small.setRGB(65, 1, 0x01000000);
+        CollisionMask a = CollisionMask.fromImage(wide);
+        CollisionMask b = CollisionMask.fromImage(small);
+        assertTrue(a.get(130, 1));
+        assertFalse(a.get(129, 1));
+        for (int bx = 0; bx < 150; bx++) {
+            assertEquals(bx + 65 == 130, CollisionMask.intersects(a, 0, 0, b, bx, 0));
+            assertEquals(bx + 65 == 130, CollisionMask.intersects(b, bx, 0, a, 0, 0));
+            assertFalse(CollisionMask.intersects(a, 0, 0, b, bx, 1));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import greenfoot.GreenfootImage;
+import greenfoot.TestUtilDelegate;
+import greenfoot.util.GreenfootUtil;
+import junit.framework.TestCase;
+
+/**
+ * Tests for the size-bounded image cache.
+ */
+public class ImageCacheTest extends TestCase
+{
+    private ImageCache cache;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        cache = new ImageCache();
+    }
+
+    public void testLeastRecentlyUsedEvicted()
+    {
+        // Room for three 10x10 images:
+        cache.setMaxBytes(3 * 400);
+        cache.addCachedImage("a", new GreenfootImage(10, 10));
+        cache.addCachedImage("b", new GreenfootImage(10, 10));
+        cache.addCachedImage("c", new GreenfootImage(10, 10));
+        assertEquals(1200, cache.getTotalBytes());
+
+        assertNotNull(cache.getCachedImage("a"));
+        cache.addCachedImage("d", new GreenfootImage(10, 10));
+        assertEquals(3, cache.getImageCount());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.getCachedImage("b"));
+        assertNotNull(cache.getCachedImage("a"));
+        assertNotNull(cache.getCachedImage("c"));
+        assertNotNull(cache.getCachedImage("d"));
+
+        // A large image pushes out more than one:
+        cache.addCachedImage("e", new GreenfootImage(20, 10));
+        assertEquals(2, cache.getImageCount());
+        assertEquals(1200, cache.getTotalBytes());
+        assertNotNull(cache.getCachedImage("d"));
+        assertNotNull(cache.getCachedImage("e"));
+
+        // Too large to cache at all:
+        assertFalse(cache.addCachedImage("f", new GreenfootImage(40, 10)));
+        assertNull(cache.getCachedImage("f"));
+        assertEquals(2, cache.getImageCount());
+    }
+
+    public void testNullEntries()
+    {
+        cache.setMaxBytes(400);
+        cache.addCachedImage("missing", null);
+        assertTrue(cache.isNullCachedImage("missing"));
+        assertFalse(cache.isNullCachedImage("other"));
+        cache.addCachedImage("a", new GreenfootImage(10, 10));
+        cache.addCachedImage("b", new GreenfootImage(10, 10));
+        // Failures take no space, so they are not evicted:
+        assertTrue(cache.isNullCachedImage("missing"));
+        assertEquals(1, cache.getImageCount());
+
+        cache.clearImageCache();
+        assertFalse(cache.isNullCachedImage("missing"));
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    public void testCounts()
+    {
+        cache.addCachedImage("a", new GreenfootImage(10, 10));
+        cache.getCachedImage("a");
+        cache.getCachedImage("a");
+        cache.getCachedImage("b");
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        cache.addCachedImage("a", new GreenfootImage(5, 5));
+        assertEquals(100, cache.getTotalBytes());
+        cache.removeCachedImage("a");
+        assertEquals(0, cache.getTotalBytes());
+
+        cache.addCachedImage("a", new GreenfootImage(10, 10));
+        cache.addCachedImage("b", new GreenfootImage(10, 10));
+        cache.setMaxBytes(400);
+        assertEquals(1, cache.getImageCount());
+        assertNotNull(cache.getCachedImage("b"));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for measuring event rates.
+ */
+public class RateCounterTest extends TestCase
+{
+    private static final long MS = 1_000_000L;
+    
+    public void testRate()
+    {
+        RateCounter counter = new RateCounter();
+        long start = 12345 * MS;
+        assertEquals(0.0, counter.getRate());
+        // 50 events per second, for a little over a second:
+        for (int i = 0; i <= 50; i++) {
+            counter.count(start + i * 20 * MS);
+        }
+        assertEquals(50.0, counter.getRate(), 0.001);
+        
+        // The rate is only updated once the next period is complete:
+        for (int i = 1; i < 25; i++) {
+            counter.count(start + 1000 * MS + i * 40 * MS);
+        }
+        assertEquals(50.0, counter.getRate(), 0.001);
+        counter.count(start + 2000 * MS);
+        assertEquals(25.0, counter.getRate(), 0.001);
+        
+        counter.reset();
+        assertEquals(0.0, counter.getRate());
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.core;
+
+import greenfoot.core.SimulationProfiler.Phase;
+import greenfoot.vmcomm.ProfileData;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandles;
+import java.nio.IntBuffer;
+
+/**
+ * Tests for recording the simulation profile, and reading it back as the server VM does.
+ */
+public class SimulationProfilerTest extends TestCase
+{
+    private final SimulationProfiler profiler = SimulationProfiler.getInstance();
+    
+    @Override
+    protected void tearDown()
+    {
+        profiler.setEnabled(false);
+    }
+    
+    public void testDisabled()
+    {
+        profiler.setEnabled(false);
+        long rounds = profiler.getRoundsWritten();
+        assertEquals(0L, profiler.beginAct(this));
+        assertEquals(0L, profiler.beginPhase());
+        profiler.endRound();
+        assertEquals(rounds, profiler.getRoundsWritten());
+    }
+    
+    public void testRounds() throws Exception
+    {
+        profiler.setEnabled(true);
+        long firstRound = profiler.getRoundsWritten();
+        Object actor = new StringBuilder();
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i <= round; i++) {
+                long start = profiler.beginAct(actor);
+                profiler.endPhase(Phase.COLLIDE, profiler.beginPhase());
+                profiler.endAct(actor, start);
+            }
+            profiler.endPhase(Phase.RENDER, profiler.beginPhase());
+            profiler.endRound();
+        }
+        assertEquals(firstRound + 3, profiler.getRoundsWritten());
+        
+        // Put the records in a profile block, newest first, as the debug VM does:
+        IntBuffer block = IntBuffer.allocate(1000);
+        block.put(1);
+        block.put(new int[] {7, 2, 1, 3, 64});
+        block.put(5990);
+        block.put(6000);
+        block.put(new int[] {1500, 4000});
+        block.put(0);
+        block.put(profiler.getClassCount());
+        for (int i = 0; i < profiler.getClassCount(); i++) {
+            int[] codepoints = profiler.getClassName(i).codePoints().toArray();
+            block.put(codepoints.length);
+            block.put(codepoints);
+        }
+        block.put(3);
+        int[] record = new int[100];
+        for (long round = firstRound + 2; round >= firstRound; round--) {
+            int length = profiler.copyRound(round, record, 0);
+            assertEquals((int) round, record[0]);
+            block.put(length);
+            block.put(record, 0, length);
+        }
+        
+        ProfileData data = new ProfileData();
+        data.receive(block, 0);
+        // Receiving the same rounds again should make no difference:
+        data.receive(block, 0);
+        assertEquals(3, data.getRoundCount());
+        assertEquals(7, data.getImageCacheHits());
+        assertEquals(64, data.getImageCacheKilobytes());
+        assertEquals(59.9, data.getActRate(), 0.001);
+        assertEquals(60.0, data.getPaintRate(), 0.001);
+        assertEquals(1500, data.getFrameLatencyMeanMicros());
+        assertEquals(4000, data.getFrameLatencyMaxMicros());
+        
+        ProfileData.Summary summary = data.summarize(2);
+        assertEquals(2, summary.getRounds());
+        assertEquals(5, summary.getCount(Phase.ACT));
+        assertEquals(5, summary.getCount(Phase.COLLIDE));
+        assertEquals(2, summary.getCount(Phase.RENDER));
+        assertEquals(0, summary.getCount(Phase.TRANSMIT));
+        assertEquals(1, summary.getClasses().size());
+        ProfileData.ClassSummary classSummary = summary.getClasses().get(0);
+        assertEquals(StringBuilder.class.getName(), classSummary.getClassName());
+        assertEquals(5, classSummary.getActCount());
+        assertEquals(5, classSummary.getCollideCount());
+        assertTrue(classSummary.getActNanos() >= classSummary.getCollideNanos());
+        
+        StringWriter csv = new StringWriter();
+        data.writeCsv(csv);
+        String[] lines = csv.toString().split("\n");
+        // A header, then per round: a line per phase, and act and collide lines for the class:
+        assertEquals(1 + 3 * (Phase.values().length + 2), lines.length);
+        assertTrue(lines[lines.length - 1].startsWith((firstRound + 2) + "," + StringBuilder.class.getName() + ",collide,"));
+    }
+    
+    public void testClassLoadedAgain() throws Exception
+    {
+        SimulationProfiler profiler = new SimulationProfiler();
+        profiler.setEnabled(true);
+        act(profiler, new Acting());
+        act(profiler, new StringBuilder());
+        
+        // As when the project is recompiled, each time:
+        byte[] bytes = classBytes(Acting.class);
+        for (int i = 0; i < 20; i++) {
+            Class<?> cls = new ClassLoader(Acting.class.getClassLoader()) {
+                Class<?> define()
+                {
+                    return defineClass(Acting.class.getName(), bytes, 0, bytes.length);
+                }
+            }.define();
+            assertNotSame(Acting.class, cls);
+            act(profiler, cls.getDeclaredConstructor().newInstance());
+        }
+        assertEquals(2, profiler.getClassCount());
+        assertEquals(Acting.class.getName(), profiler.getClassName(0));
+        
+        profiler.endRound();
+        int[] record = new int[100];
+        assertEquals(SimulationProfiler.ROUND_HEADER_SIZE + 2 * SimulationProfiler.CLASS_ENTRY_SIZE,
+                profiler.copyRound(0, record, 0));
+        assertEquals(0, record[SimulationProfiler.ROUND_HEADER_SIZE]);
+        assertEquals(21, record[SimulationProfiler.ROUND_HEADER_SIZE + 3]);
+    }
+    
+    public void testClassLimit() throws Exception
+    {
+        SimulationProfiler profiler = new SimulationProfiler();
+        profiler.setEnabled(true);
+        // Each hidden class has a name of its own:
+        byte[] bytes = classBytes(Acting.class);
+        int classes = SimulationProfiler.MAX_CLASSES + 10;
+        for (int i = 0; i < classes; i++) {
+            Class<?> cls = MethodHandles.lookup().defineHiddenClass(bytes, false).lookupClass();
+            act(profiler, cls.getDeclaredConstructor().newInstance());
+        }
+        act(profiler, new StringBuilder());
+        assertEquals(SimulationProfiler.MAX_CLASSES, profiler.getClassCount());
+        
+        // The classes beyond the limit are counted together:
+        profiler.endRound();
+        int[] record = new int[SimulationProfiler.ROUND_HEADER_SIZE
+                + SimulationProfiler.MAX_CLASSES * SimulationProfiler.CLASS_ENTRY_SIZE];
+        assertEquals(record.length, profiler.copyRound(0, record, 0));
+        int last = record.length - SimulationProfiler.CLASS_ENTRY_SIZE;
+        assertEquals(SimulationProfiler.MAX_CLASSES - 1, record[last]);
+        assertEquals(classes + 1 - (SimulationProfiler.MAX_CLASSES - 1), record[last + 3]);
+    }
+    
+    private static void act(SimulationProfiler profiler, Object actor)
+    {
+        profiler.endAct(actor, profiler.beginAct(actor));
+    }
+    
+    private static byte[] classBytes(Class<?> cls) throws IOException
+    {
+        String resource = cls.getName().replace('.', '/') + ".class";
+        try (InputStream in = cls.getClassLoader().getResourceAsStream(resource)) {
+            return in.readAllBytes();
+        }
+    }
+    
+    /**
+     * A class of actor to load again.
+     */
+    public static class Acting
+    {
+    }
+}
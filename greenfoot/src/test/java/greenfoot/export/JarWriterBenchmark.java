@@ -0,0 +1,109 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.export;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Measures the time to write an export jar for a scenario with many classes and large
+ * images and sounds, writing each entry in turn through a JarOutputStream (as exports were
+ * once written), with a JarWriter, and with a JarWriter reusing an earlier export.  Not run
+ * as part of the test suite; run the main method directly.
+ */
+public class JarWriterBenchmark
+{
+    private static final int CLASSES = 200;
+    private static final int MEDIA = 60;
+    private static final int MEDIA_SIZE = 1 << 20;
+
+    public static void main(String[] args) throws IOException
+    {
+        File dir = Files.createTempDirectory("export").toFile();
+        File[] files = new File[CLASSES + MEDIA];
+        Random random = new Random(1);
+        for (int i = 0; i < CLASSES; i++) {
+            // Something compressible, like a class file:
+            byte[] contents = new byte[20000];
+            for (int j = 0; j < contents.length; j++) {
+                contents[j] = (byte) ('a' + random.nextInt(8));
+            }
+            files[i] = new File(dir, "Class" + i + ".class");
+            Files.write(files[i].toPath(), contents);
+        }
+        for (int i = 0; i < MEDIA; i++) {
+            byte[] contents = new byte[MEDIA_SIZE];
+            random.nextBytes(contents);
+            files[CLASSES + i] = new File(dir, "media" + i + (i % 2 == 0 ? ".png" : ".mp3"));
+            Files.write(files[CLASSES + i].toPath(), contents);
+        }
+        File jar = new File(dir, "out.jar");
+
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            try (JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jar)))) {
+                for (File f : files) {
+                    out.putNextEntry(new ZipEntry(f.getName()));
+                    Files.copy(f.toPath(), out);
+                }
+            }
+            long sequential = System.nanoTime() - start;
+            jar.delete();
+
+            start = System.nanoTime();
+            write(files, jar);
+            long parallel = System.nanoTime() - start;
+
+            // Change one class, and export again:
+            Files.write(files[0].toPath(), new byte[] {(byte) round});
+            start = System.nanoTime();
+            int reused = write(files, jar);
+            long incremental = System.nanoTime() - start;
+            jar.delete();
+
+            System.out.printf("Sequential: %.0f ms, parallel: %.0f ms, incremental: %.0f ms (%d reused)%n",
+                    sequential / 1e6, parallel / 1e6, incremental / 1e6, reused);
+        }
+
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static int write(File[] files, File jar) throws IOException
+    {
+        try (JarWriter writer = new JarWriter(jar, jar)) {
+            for (File f : files) {
+                writer.addFile(f.getName(), f);
+            }
+            writer.finish();
+            return writer.getReusedCount();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.export;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Tests for writing export jars.
+ */
+public class JarWriterTest extends TestCase
+{
+    private File dir;
+    private File jar;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        dir = Files.createTempDirectory("export").toFile();
+        jar = new File(dir, "out.jar");
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private File writeFile(String name, byte[] contents)
+        throws IOException
+    {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), contents);
+        return file;
+    }
+
+    private static byte[] text(int lines)
+    {
+        StringBuilder s = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            s.append("line ").append(i).append('\n');
+        }
+        return s.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] read(ZipFile zip, String name)
+        throws IOException
+    {
+        return zip.getInputStream(zip.getEntry(name)).readAllBytes();
+    }
+
+    public void testEntries()
+        throws IOException
+    {
+        byte[] image = new byte[5000];
+        new Random(1).nextBytes(image);
+        File imageFile = writeFile("a.png", image);
+        File textFile = writeFile("B.class", text(1000));
+
+        try (JarWriter writer = new JarWriter(jar, null)) {
+            writer.addEntry("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+            writer.addFile("images/a.png", imageFile);
+            writer.addFile("B.class", textFile);
+            writer.addFile("empty", writeFile("empty", new byte[0]));
+            // Duplicates are skipped:
+            writer.addFile("B.class", imageFile);
+            writer.finish();
+        }
+
+        try (ZipFile zip = new ZipFile(jar)) {
+            List<String> names = Collections.list(zip.entries()).stream().map(ZipEntry::getName).toList();
+            assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "images/a.png", "B.class", "empty"), names);
+            assertEquals(ZipEntry.STORED, zip.getEntry("images/a.png").getMethod());
+            assertEquals(ZipEntry.DEFLATED, zip.getEntry("B.class").getMethod());
+            assertTrue(Arrays.equals(image, read(zip, "images/a.png")));
+            assertTrue(Arrays.equals(text(1000), read(zip, "B.class")));
+            assertEquals(0, read(zip, "empty").length);
+        }
+        assertFalse(new File(jar.getPath() + ".tmp").exists());
+    }
+
+    public void testReuse()
+        throws IOException
+    {
+        File a = writeFile("A.class", text(1000));
+        File b = writeFile("B.class", text(2000));
+        try (JarWriter writer = new JarWriter(jar, jar)) {
+            writer.addFile("A.class", a);
+            writer.addFile("B.class", b);
+            writer.finish();
+            assertEquals(0, writer.getReusedCount());
+        }
+
+        // Replacing the same file, with one entry changed and one added:
+        writeFile("B.class", text(3000));
+        File c = writeFile("C.class", text(10));
+        try (JarWriter writer = new JarWriter(jar, jar)) {
+            writer.addFile("C.class", c);
+            writer.addFile("A.class", a);
+            writer.addFile("B.class", b);
+            writer.finish();
+            assertEquals(1, writer.getReusedCount());
+        }
+
+        try (ZipFile zip = new ZipFile(jar)) {
+            assertTrue(Arrays.equals(text(10), read(zip, "C.class")));
+            assertTrue(Arrays.equals(text(1000), read(zip, "A.class")));
+            assertTrue(Arrays.equals(text(3000), read(zip, "B.class")));
+        }
+    }
+
+    public void testReuseChecksContents()
+        throws IOException
+    {
+        byte[] original = text(1000);
+        // XORing with the CRC-32 polynomial keeps the CRC-32 (and the length) the same:
+        byte[] changed = original.clone();
+        byte[] polynomial = {0x41, 0x06, 0x71, (byte) 0xDB, 0x01};
+        for (int i = 0; i < polynomial.length; i++) {
+            changed[100 + i] ^= polynomial[i];
+        }
+        assertFalse(Arrays.equals(original, changed));
+
+        for (String name : new String[] {"A.class", "a.png"}) {
+            File file = writeFile(name, original);
+            try (JarWriter writer = new JarWriter(jar, jar)) {
+                writer.addFile(name, file);
+                writer.finish();
+            }
+            writeFile(name, changed);
+            try (JarWriter writer = new JarWriter(jar, jar)) {
+                writer.addFile(name, file);
+                writer.finish();
+                assertEquals(0, writer.getReusedCount());
+            }
+            try (ZipFile zip = new ZipFile(jar)) {
+                assertEquals(zip.getEntry(name).getCrc(), crc(original));
+                assertTrue(Arrays.equals(changed, read(zip, name)));
+            }
+        }
+    }
+
+    private static long crc(byte[] contents)
+    {
+        CRC32 crc = new CRC32();
+        crc.update(contents);
+        return crc.getValue();
+    }
+
+    public void testBadPrevious()
+        throws IOException
+    {
+        File previous = writeFile("previous.jar", text(10));
+        File a = writeFile("A.class", text(1000));
+        try (JarWriter writer = new JarWriter(jar, previous)) {
+            writer.addFile("A.class", a);
+            writer.finish();
+            assertEquals(0, writer.getReusedCount());
+        }
+        try (ZipFile zip = new ZipFile(jar)) {
+            assertTrue(Arrays.equals(text(1000), read(zip, "A.class")));
+        }
+    }
+
+    public void testJarContents()
+        throws IOException
+    {
+        // A library jar, with a manifest of its own:
+        File library = new File(dir, "library.jar");
+        Manifest libraryManifest = new Manifest();
+        libraryManifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(library), libraryManifest)) {
+            out.putNextEntry(new ZipEntry("lib/L.class"));
+            out.write(text(100));
+        }
+
+        byte[] manifest = "Manifest-Version: 1.0\nMain-Class: A\n".getBytes(StandardCharsets.UTF_8);
+        try (JarWriter writer = new JarWriter(jar, null)) {
+            writer.addEntry("META-INF/MANIFEST.MF", manifest);
+            writer.addJarContents(library);
+            writer.finish();
+        }
+
+        try (ZipFile zip = new ZipFile(jar)) {
+            List<String> names = Collections.list(zip.entries()).stream().map(ZipEntry::getName).toList();
+            assertEquals(Arrays.asList("META-INF/MANIFEST.MF", "lib/L.class"), names);
+            assertTrue(Arrays.equals(manifest, read(zip, "META-INF/MANIFEST.MF")));
+            assertTrue(Arrays.equals(text(100), read(zip, "lib/L.class")));
+        }
+    }
+}
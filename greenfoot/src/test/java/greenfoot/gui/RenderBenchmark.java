@@ -0,0 +1,143 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Actor;
+import greenfoot.ActorVisitor;
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.ImageVisitor;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.WorldVisitor;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Compares rendering a world of 5000 rotated actors, sharing a few images at a few
+ * angles, by drawing each through a rotated graphics context (as the world renderer
+ * used to), with the world renderer drawing them from its rotated image cache, and with
+ * it rendering in tiles. A tenth of the actors move each frame, except in a final run
+ * in tiles with none moving. Not run as part of the test suite; run the main method directly (the tiles are
+ * only drawn in parallel with more than one processor).
+ */
+public class RenderBenchmark
+{
+    private static final int SIZE = 800;
+    private static final int ACTORS = 5000;
+    private static final int IMAGES = 4;
+    private static final int ANGLES = 8;
+    private static final int FRAMES = 200;
+    
+    public static void main(String[] args)
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        
+        World world = WorldCreator.createWorld(SIZE, SIZE, 1);
+        GreenfootImage[] images = new GreenfootImage[IMAGES];
+        for (int i = 0; i < IMAGES; i++) {
+            images[i] = new GreenfootImage(16 + i * 4, 12 + i * 2);
+            images[i].setColor(new Color(50 * i, 200, 100));
+            images[i].fillOval(0, 0, images[i].getWidth(), images[i].getHeight());
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < ACTORS; i++) {
+            Actor actor = new Actor() {};
+            actor.setImage(images[random.nextInt(IMAGES)]);
+            actor.setRotation(random.nextInt(ANGLES) * 360 / ANGLES + 5);
+            world.addObject(actor, random.nextInt(SIZE), random.nextInt(SIZE));
+        }
+        
+        Actor[] actors = world.getObjects(null).toArray(new Actor[0]);
+        BufferedImage worldImage = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        WorldRenderer renderer = new WorldRenderer();
+        WorldRenderer tiledRenderer = new WorldRenderer();
+        tiledRenderer.setTiled(true);
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                moveSome(actors, frame, random);
+                renderTransformed(world, worldImage);
+            }
+            long transformed = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                moveSome(actors, frame, random);
+                renderer.renderWorld(world, worldImage);
+            }
+            long cached = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                moveSome(actors, frame, random);
+                tiledRenderer.renderWorld(world, worldImage);
+            }
+            long tiledMoving = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int frame = 0; frame < FRAMES; frame++) {
+                tiledRenderer.renderWorld(world, worldImage);
+            }
+            long tiledStill = System.nanoTime() - start;
+            System.out.printf("Transformed: %.2f ms/frame, cached: %.2f ms/frame, "
+                    + "tiled: %.2f ms/frame (moving), %.2f ms/frame (still)%n",
+                    transformed / 1e6 / FRAMES, cached / 1e6 / FRAMES,
+                    tiledMoving / 1e6 / FRAMES, tiledStill / 1e6 / FRAMES);
+        }
+    }
+    
+    /**
+     * Move a tenth of the actors (a different tenth each frame) to random locations.
+     */
+    private static void moveSome(Actor[] actors, int frame, Random random)
+    {
+        for (int i = frame % 10; i < actors.length; i += 10) {
+            actors[i].setLocation(random.nextInt(SIZE), random.nextInt(SIZE));
+        }
+    }
+    
+    /**
+     * Render the world the way the world renderer did without the cache.
+     */
+    private static void renderTransformed(World world, BufferedImage worldImage)
+    {
+        Graphics2D g = worldImage.createGraphics();
+        g.setColor(java.awt.Color.WHITE);
+        g.fillRect(0, 0, worldImage.getWidth(), worldImage.getHeight());
+        for (Actor actor : WorldVisitor.getObjectsListInPaintOrder(world)) {
+            GreenfootImage image = ActorVisitor.getDisplayImage(actor);
+            double xCenter = ActorVisitor.getX(actor) + 0.5;
+            double yCenter = ActorVisitor.getY(actor) + 0.5;
+            AffineTransform oldTx = g.getTransform();
+            g.rotate(Math.toRadians(ActorVisitor.getRotation(actor)), xCenter, yCenter);
+            ImageVisitor.drawImage(image, g, (int) Math.floor(xCenter - image.getWidth() / 2.),
+                    (int) Math.floor(yCenter - image.getHeight() / 2.), null, true);
+            g.setTransform(oldTx);
+        }
+        g.dispose();
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.ImageVisitor;
+import greenfoot.TestUtilDelegate;
+import greenfoot.util.GreenfootUtil;
+import junit.framework.TestCase;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Tests that drawing from the rotated image cache gives the same result as drawing
+ * through a rotated graphics context.
+ */
+public class RotatedImageCacheTest extends TestCase
+{
+    private RotatedImageCache cache;
+    
+    @Override
+    protected void setUp()
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        cache = new RotatedImageCache();
+    }
+    
+    public void testMatchesTransformedDrawing()
+    {
+        int[][] sizes = {{20, 10}, {21, 11}, {7, 30}, {1, 1}};
+        int[] rotations = {0, 1, 30, 45, 90, 135, 180, 269, 359};
+        for (int[] size : sizes) {
+            GreenfootImage image = makeImage(size[0], size[1]);
+            for (int cellSize : new int[] {1, 2, 5}) {
+                for (int rotation : rotations) {
+                    for (int transparency : new int[] {255, 100}) {
+                        image.setTransparency(transparency);
+                        assertSame(image, rotation, cellSize);
+                    }
+                }
+            }
+        }
+    }
+    
+    public void testModifiedImageIsRedrawn()
+    {
+        GreenfootImage image = makeImage(15, 15);
+        assertSame(image, 60, 1);
+        image.setColor(Color.RED);
+        image.fillOval(0, 0, 10, 10);
+        assertSame(image, 60, 1);
+        image.setColorAt(14, 14, Color.BLUE);
+        assertSame(image, 60, 1);
+        assertEquals(1, cache.size());
+    }
+    
+    public void testExposedImageNotCached()
+    {
+        GreenfootImage image = makeImage(15, 15);
+        image.getAwtImage();
+        BufferedImage target = new BufferedImage(50, 50, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        assertFalse(cache.drawImage(g, image, 60, 25, 25, 1));
+        g.dispose();
+        assertEquals(0, cache.size());
+    }
+    
+    private static GreenfootImage makeImage(int width, int height)
+    {
+        GreenfootImage image = new GreenfootImage(width, height);
+        image.setColor(Color.GREEN);
+        image.fill();
+        image.setColor(Color.BLACK);
+        image.drawLine(0, 0, width - 1, height / 2);
+        return image;
+    }
+    
+    /**
+     * Check that the cached drawing of an actor image in the given cell matches drawing
+     * it the way the world renderer does without the cache.
+     */
+    private void assertSame(GreenfootImage image, int rotation, int cellSize)
+    {
+        int cell = 7;
+        double xCenter = cell * cellSize + cellSize / 2.;
+        double yCenter = cell * cellSize + cellSize / 2.;
+        int size = (int) (xCenter * 2) + 2;
+        
+        BufferedImage expected = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = expected.createGraphics();
+        AffineTransform oldTx = g.getTransform();
+        g.rotate(Math.toRadians(rotation), xCenter, yCenter);
+        ImageVisitor.drawImage(image, g, (int) Math.floor(xCenter - image.getWidth() / 2.),
+                (int) Math.floor(yCenter - image.getHeight() / 2.), null, true);
+        g.setTransform(oldTx);
+        g.dispose();
+        
+        BufferedImage actual = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        g = actual.createGraphics();
+        assertTrue(cache.drawImage(g, image, rotation, xCenter, yCenter, cellSize));
+        g.dispose();
+        
+        String where = image.getWidth() + "x" + image.getHeight() + " at " + rotation
+                + " degrees, transparency " + image.getTransparency() + ", cell size " + cellSize;
+        int differing = 0;
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                // Allow for rounding when the transparency is applied in a different order:
+                for (int shift = 0; shift < 32; shift += 8) {
+                    if (Math.abs(((e >>> shift) & 0xFF) - ((a >>> shift) & 0xFF)) > 2) {
+                        differing++;
+                        break;
+                    }
+                }
+            }
+        }
+        // Where a pixel centre falls exactly on the edge of a source pixel, the rounding in the
+        // transform decides which is used, so a few pixels may come out differently (as they
+        // would drawing the same image in a different location):
+        assertTrue(differing + " pixels differ for " + where, differing <= 1 + image.getWidth() * image.getHeight() / 50);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.gui;
+
+import greenfoot.Actor;
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.TestUtilDelegate;
+import greenfoot.World;
+import greenfoot.WorldCreator;
+import greenfoot.core.Simulation;
+import greenfoot.util.GreenfootUtil;
+import junit.framework.TestCase;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Tests that rendering the world in tiles gives the same result as rendering it all at
+ * once, and that only the tiles which have changed are drawn again.
+ */
+public class TileRendererTest extends TestCase
+{
+    private static final int SIZE = 300;
+    
+    private World world;
+    private Actor[] actors;
+    
+    @Override
+    protected void setUp()
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        world = WorldCreator.createWorld(SIZE, SIZE, 1);
+        GreenfootImage background = new GreenfootImage(SIZE, SIZE);
+        background.setColor(Color.WHITE);
+        background.fill();
+        background.setColor(Color.YELLOW);
+        background.fillOval(0, 0, SIZE, SIZE);
+        world.setBackground(background);
+        
+        GreenfootImage shared = new GreenfootImage(20, 14);
+        shared.setColor(Color.BLUE);
+        shared.fill();
+        shared.setColor(Color.RED);
+        shared.drawLine(0, 0, 19, 13);
+        Random random = new Random(1);
+        actors = new Actor[200];
+        for (int i = 0; i < actors.length; i++) {
+            actors[i] = new Actor() {};
+            GreenfootImage image = shared;
+            if (i % 10 == 0) {
+                // Some images of their own, one of which can change behind our back:
+                image = new GreenfootImage(shared);
+                if (i == 50) {
+                    image.getAwtImage();
+                }
+            }
+            actors[i].setImage(image);
+            actors[i].setRotation(random.nextInt(8) * 45 + (i % 3 == 0 ? 0 : 10));
+            if (i % 7 == 0) {
+                actors[i].getImage().setTransparency(150);
+            }
+            world.addObject(actors[i], random.nextInt(SIZE), random.nextInt(SIZE));
+        }
+    }
+    
+    public void testMatchesFullRender()
+    {
+        BufferedImage expected = renderFull();
+        for (int parallelism : new int[] {1, 3}) {
+            BufferedImage actual = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+            TileRenderer renderer = new TileRenderer(new RotatedImageCache(), parallelism);
+            int tiles = renderer.render(world, actual, Collections.emptyList());
+            assertEquals(25, tiles);
+            assertImagesEqual(expected, actual);
+        }
+    }
+    
+    public void testOnlyChangedTilesDrawn()
+    {
+        BufferedImage actual = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        TileRenderer renderer = new TileRenderer(new RotatedImageCache(), 1);
+        renderer.render(world, actual, Collections.emptyList());
+        
+        // Only the tiles holding the actor whose image may have been changed are drawn:
+        int alwaysDrawn = renderer.render(world, actual, Collections.emptyList());
+        assertTrue(alwaysDrawn <= 4);
+        
+        // Move an actor from the middle of one tile to another:
+        actors[1].setRotation(0);
+        actors[1].setLocation(TileRenderer.TILE_SIZE * 3 / 2, TileRenderer.TILE_SIZE * 3 / 2);
+        renderer.render(world, actual, Collections.emptyList());
+        actors[1].setLocation(TileRenderer.TILE_SIZE * 7 / 2, TileRenderer.TILE_SIZE / 2);
+        int drawn = renderer.render(world, actual, Collections.emptyList());
+        assertTrue(drawn <= alwaysDrawn + 2);
+        assertImagesEqual(renderFull(), actual);
+        
+        // Changing an image makes the tiles it is in dirty:
+        actors[1].getImage().setColorAt(0, 0, Color.GREEN);
+        drawn = renderer.render(world, actual, Collections.emptyList());
+        assertTrue(drawn > alwaysDrawn);
+        assertImagesEqual(renderFull(), actual);
+        
+        // So does giving an actor a different image, even one just as often modified:
+        actors[1].setImage(filledImage(Color.BLUE));
+        renderer.render(world, actual, Collections.emptyList());
+        actors[1].setImage(filledImage(Color.GREEN));
+        drawn = renderer.render(world, actual, Collections.emptyList());
+        assertTrue(drawn > alwaysDrawn);
+        assertImagesEqual(renderFull(), actual);
+
+        // A different image has to be drawn in full:
+        BufferedImage other = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        assertEquals(25, renderer.render(world, other, Collections.emptyList()));
+    }
+    
+    private static GreenfootImage filledImage(Color color)
+    {
+        GreenfootImage image = new GreenfootImage(20, 14);
+        image.setColor(color);
+        image.fill();
+        return image;
+    }
+
+    private BufferedImage renderFull()
+    {
+        BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+        new WorldRenderer().renderWorld(world, image);
+        return image;
+    }
+    
+    private static void assertImagesEqual(BufferedImage expected, BufferedImage actual)
+    {
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                if (expected.getRGB(x, y) != actual.getRGB(x, y)) {
+                    fail("Pixel " + x + "," + y + " differs: " + Integer.toHexString(expected.getRGB(x, y))
+                            + " vs " + Integer.toHexString(actual.getRGB(x, y)));
+                }
+            }
+        }
+    }
+}
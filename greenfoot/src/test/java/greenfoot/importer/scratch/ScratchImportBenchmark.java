@@ -0,0 +1,196 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.importer.scratch;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Measures the time to read a synthetic Scratch project of several megabytes, with many
+ * images (both uncompressed and run-length compressed) and ADPCM sounds, and to decode
+ * and save its media.  Not run as part of the test suite; run the main method directly.
+ */
+public class ScratchImportBenchmark
+{
+    private static final int IMAGES = 40;
+    private static final int SOUNDS = 20;
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 360;
+    private static final int SOUND_BYTES = 500000;
+
+    public static void main(String[] args) throws IOException
+    {
+        File dir = Files.createTempDirectory("scratch").toFile();
+        File project = new File(dir, "project.sb");
+        writeProject(project);
+        System.out.printf("Project size: %.1f MB%n", project.length() / 1e6);
+
+        for (int round = 0; round < 3; round++) {
+            File dest = new File(dir, "import" + round);
+            long start = System.nanoTime();
+            List<ScratchObject> objects = ScratchImport.readProject(project);
+            long read = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            ScratchImport.decodeMedia(objects);
+            long decode = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            Properties props = new Properties();
+            for (ScratchObject o : objects) {
+                o.saveInto(dest, props, "");
+            }
+            long save = System.nanoTime() - start;
+
+            System.out.printf("Read: %.0f ms, decode: %.0f ms, save: %.0f ms%n",
+                    read / 1e6, decode / 1e6, save / 1e6);
+            delete(dest);
+        }
+        delete(dir);
+    }
+
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Write a project file containing only image and sound media, in the Scratch object
+     * store format.
+     */
+    private static void writeProject(File file) throws IOException
+    {
+        Random random = new Random(1);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.write("ScratchV02".getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(0); // No info block
+            out.write("ObjS\001Stch\001".getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(IMAGES + SOUNDS);
+
+            for (int i = 0; i < IMAGES; i++) {
+                out.write(ScratchUserObject.IMAGE_MEDIA);
+                out.write(1); // version
+                out.write(6); // fields
+                writeString(out, "image" + i);
+                // Form: width, height, depth, offset, bits:
+                out.write(34);
+                writeInt(out, WIDTH);
+                writeInt(out, HEIGHT);
+                writeInt(out, 32);
+                out.write(1);
+                if (i % 2 == 0) {
+                    // Uncompressed Bitmap:
+                    out.write(13);
+                    out.writeInt(WIDTH * HEIGHT);
+                    for (int p = 0; p < WIDTH * HEIGHT; p++) {
+                        out.writeInt(0xFF000000 | random.nextInt());
+                    }
+                }
+                else {
+                    out.write(11);
+                    out.writeInt(compressedSize());
+                    writeCompressedBits(out, random);
+                }
+                // Rotation centre:
+                out.write(32);
+                writeInt(out, WIDTH / 2);
+                writeInt(out, HEIGHT / 2);
+                // No text box, JPEG or composite form:
+                out.write(1);
+                out.write(1);
+                out.write(1);
+            }
+
+            for (int i = 0; i < SOUNDS; i++) {
+                out.write(ScratchUserObject.SOUND_MEDIA);
+                out.write(1); // version
+                out.write(7); // fields
+                writeString(out, "sound" + i);
+                out.write(1); // No original sound
+                writeInt(out, 100); // volume
+                writeInt(out, 50); // balance
+                writeInt(out, 22050); // sample rate
+                writeInt(out, 4); // bits per sample
+                byte[] samples = new byte[SOUND_BYTES];
+                random.nextBytes(samples);
+                out.write(11);
+                out.writeInt(samples.length);
+                out.write(samples);
+            }
+        }
+    }
+
+    private static void writeInt(DataOutputStream out, int value) throws IOException
+    {
+        out.write(4);
+        out.writeInt(value);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        out.write(9);
+        out.writeInt(value.length());
+        out.write(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Each row is half literal words, and half a repeated word:
+    private static final int LITERAL_RUN = ((WIDTH / 2) << 2) | 3;
+    private static final int REPEAT_RUN = ((WIDTH / 2) << 2) | 2;
+
+    private static int compressedSize()
+    {
+        return 5 + HEIGHT * (2 + WIDTH / 2 * 4 + 2 + 4);
+    }
+
+    /**
+     * Write image bits in the compressed Bitmap format (see ScratchImage).
+     */
+    private static void writeCompressedBits(DataOutputStream out, Random random) throws IOException
+    {
+        out.write(0xFF);
+        out.writeInt(WIDTH * HEIGHT);
+        for (int row = 0; row < HEIGHT; row++) {
+            out.write(0xE0 | (LITERAL_RUN >> 8));
+            out.write(LITERAL_RUN & 0xFF);
+            for (int p = 0; p < WIDTH / 2; p++) {
+                out.writeInt(0xFF000000 | random.nextInt());
+            }
+            out.write(0xE0 | (REPEAT_RUN >> 8));
+            out.write(REPEAT_RUN & 0xFF);
+            out.writeInt(0xFF000000 | random.nextInt());
+        }
+    }
+}
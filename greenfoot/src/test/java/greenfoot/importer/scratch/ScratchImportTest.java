@@ -0,0 +1,195 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.importer.scratch;
+
+import java.awt.image.BufferedImage;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Properties;
+
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests reading a small synthetic Scratch project, and saving its media.
+ */
+public class ScratchImportTest extends TestCase
+{
+    // A user class which the importer does not know, so its fields are kept as read:
+    private static final int OTHER_OBJECT = 150;
+    private static final int[] BITMAP = {0x12345678, 0xFF000000, -1, 0, 0x7FFFFFFF};
+    
+    private static final int WIDTH = 6;
+    private static final int HEIGHT = 4;
+    private static final int COLOUR = 0xFF336699;
+    
+    private static final int SOUND_BYTES = 100;
+    private static final int BITS_PER_SAMPLE = 4;
+    
+    private File dir;
+    
+    @Override
+    protected void setUp() throws Exception
+    {
+        dir = Files.createTempDirectory("scratch").toFile();
+    }
+    
+    @Override
+    protected void tearDown() throws Exception
+    {
+        delete(dir);
+    }
+    
+    private static void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+    
+    public void testReadAndSave() throws IOException, UnsupportedAudioFileException
+    {
+        File project = new File(dir, "project.sb");
+        writeProject(project);
+        List<ScratchObject> objects = ScratchImport.readProject(project);
+        // The project file should not be held open (or mapped):
+        assertTrue(project.delete());
+        assertEquals(3, objects.size());
+        
+        // The uncompressed bitmap, and the field after it:
+        ScratchUserObject other = (ScratchUserObject) objects.get(0);
+        int[] bitmap = (int[]) other.scratchObjects.get(0).getValue();
+        assertEquals(BITMAP.length, bitmap.length);
+        for (int i = 0; i < BITMAP.length; i++) {
+            assertEquals(BITMAP[i], bitmap[i]);
+        }
+        assertEquals("after", other.scratchObjects.get(1).getValue());
+        
+        ScratchImport.decodeMedia(objects);
+        Properties props = new Properties();
+        File imageFile = objects.get(1).saveInto(dir, props, "");
+        BufferedImage image = ImageIO.read(imageFile);
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+        assertEquals(COLOUR, image.getRGB(WIDTH - 1, HEIGHT - 1));
+        
+        // The WAV file's length should be that of the samples it holds, in frames:
+        File soundFile = objects.get(2).saveInto(dir, props, "");
+        int samples = SOUND_BYTES * 8 / BITS_PER_SAMPLE;
+        try (AudioInputStream sound = AudioSystem.getAudioInputStream(soundFile)) {
+            assertEquals(16, sound.getFormat().getSampleSizeInBits());
+            assertEquals(samples, sound.getFrameLength());
+            byte[] data = sound.readAllBytes();
+            assertEquals(samples * 2, data.length);
+        }
+    }
+    
+    /**
+     * Write a project containing an object holding a bitmap, an image with an uncompressed
+     * bitmap, and a sound, in the Scratch object store format.
+     */
+    private static void writeProject(File file) throws IOException
+    {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write("ScratchV02".getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(3); // Info block size
+            out.write(new byte[3]);
+            out.write("ObjS\001Stch\001".getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(3);
+            
+            out.write(OTHER_OBJECT);
+            out.write(1); // version
+            out.write(2); // fields
+            out.write(13); // Bitmap
+            out.writeInt(BITMAP.length);
+            for (int word : BITMAP) {
+                out.writeInt(word);
+            }
+            writeString(out, "after");
+            
+            out.write(ScratchUserObject.IMAGE_MEDIA);
+            out.write(1); // version
+            out.write(6); // fields
+            writeString(out, "image");
+            // Form: width, height, depth, offset, bits:
+            out.write(34);
+            writeInt(out, WIDTH);
+            writeInt(out, HEIGHT);
+            writeInt(out, 32);
+            out.write(1);
+            out.write(13);
+            out.writeInt(WIDTH * HEIGHT);
+            for (int p = 0; p < WIDTH * HEIGHT; p++) {
+                out.writeInt(COLOUR);
+            }
+            // Rotation centre:
+            out.write(32);
+            writeInt(out, WIDTH / 2);
+            writeInt(out, HEIGHT / 2);
+            // No text box, JPEG or composite form:
+            out.write(1);
+            out.write(1);
+            out.write(1);
+            
+            out.write(ScratchUserObject.SOUND_MEDIA);
+            out.write(1); // version
+            out.write(7); // fields
+            writeString(out, "sound");
+            out.write(1); // No original sound
+            writeInt(out, 100); // volume
+            writeInt(out, 50); // balance
+            writeInt(out, 22050); // sample rate
+            writeInt(out, BITS_PER_SAMPLE);
+            out.write(11);
+            out.writeInt(SOUND_BYTES);
+            for (int i = 0; i < SOUND_BYTES; i++) {
+                out.write(i * 37);
+            }
+        }
+    }
+    
+    private static void writeInt(DataOutputStream out, int value) throws IOException
+    {
+        out.write(4);
+        out.writeInt(value);
+    }
+    
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        out.write(9);
+        out.writeInt(value.length());
+        out.write(value.getBytes(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.platforms.standalone;
+
+import greenfoot.UserInfo;
+import greenfoot.UserInfoVisitor;
+import greenfoot.util.UserInfoStore;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tests for the standalone storage protocol, against a local storage server.
+ */
+public class LocalStorageServerTest extends TestCase
+{
+    private File dir;
+    private UserInfoStore store;
+    private LocalStorageServer server;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        dir = Files.createTempDirectory("storage").toFile();
+        store = new UserInfoStore(new File(dir, "storage.csv"));
+        server = new LocalStorageServer(store);
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        server.close();
+        store.close();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static void store(GreenfootUtilDelegateStandAlone delegate, int score)
+    {
+        UserInfo info = delegate.getCurrentUserInfo();
+        info.setScore(score);
+        info.setInt(3, score * 2);
+        info.setString(1, "s" + score);
+        assertTrue(delegate.storeCurrentUserInfo(info));
+        // Wait until the store is done, as other users' requests are not ordered after it:
+        assertEquals(score, delegate.getCurrentUserInfo().getScore());
+    }
+
+    public void testStoreAndQuery()
+    {
+        GreenfootUtilDelegateStandAlone alice = server.createDelegate(1, "alice");
+        GreenfootUtilDelegateStandAlone bob = server.createDelegate(2, "bob");
+        GreenfootUtilDelegateStandAlone carol = server.createDelegate(3, "carol");
+        assertTrue(alice.isStorageSupported());
+        assertEquals(-1, alice.getCurrentUserInfo().getRank());
+
+        store(alice, 10);
+        store(bob, 30);
+        store(carol, 20);
+
+        List<UserInfo> top = alice.getTopUserInfo(2);
+        assertEquals(2, top.size());
+        assertEquals("bob", top.get(0).getUserName());
+        assertEquals(1, top.get(0).getRank());
+        assertEquals(60, top.get(0).getInt(3));
+        assertEquals("s30", top.get(0).getString(1));
+        assertEquals("carol", top.get(1).getUserName());
+
+        UserInfo mine = alice.getCurrentUserInfo();
+        assertEquals(10, mine.getScore());
+        assertEquals(3, mine.getRank());
+
+        List<UserInfo> nearby = carol.getNearbyUserInfo(1);
+        assertEquals(1, nearby.size());
+        assertEquals("carol", nearby.get(0).getUserName());
+        assertEquals(2, nearby.get(0).getRank());
+    }
+
+    public void testDelayedStores()
+    {
+        // With the responses delayed, stores don't wait for their answers, but later
+        // requests see them:
+        server.setResponseDelay(20);
+        GreenfootUtilDelegateStandAlone alice = server.createDelegate(1, "alice");
+        store(alice, 1);
+        for (int i = 2; i <= 10; i++) {
+            UserInfo info = UserInfoVisitor.allocate("alice", -1, null);
+            info.setScore(i);
+            assertTrue(alice.storeCurrentUserInfo(info));
+        }
+        assertEquals(10, alice.getCurrentUserInfo().getScore());
+        assertEquals(1, alice.getTopUserInfo(0).size());
+    }
+
+    public void testStoreThenQueryIsOneRoundTrip()
+    {
+        GreenfootUtilDelegateStandAlone alice = server.createDelegate(1, "alice");
+        UserInfo info = alice.getCurrentUserInfo();
+        server.setResponseDelay(300);
+        long start = System.nanoTime();
+        info.setScore(7);
+        assertTrue(alice.storeCurrentUserInfo(info));
+        List<UserInfo> top = alice.getTopUserInfo(1);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertEquals(7, top.get(0).getScore());
+        // Two round trips would take at least 600 ms:
+        assertTrue("Took " + elapsed + " ms", elapsed < 550);
+    }
+
+    /**
+     * Read a message (preceded by its length) from the socket.
+     */
+    private static void readMessage(SocketChannel socket) throws IOException
+    {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (length.hasRemaining() && socket.read(length) >= 0) {
+        }
+        length.flip();
+        ByteBuffer message = ByteBuffer.allocate(length.getInt());
+        while (message.hasRemaining() && socket.read(message) >= 0) {
+        }
+    }
+
+    public void testCoalescedStores() throws Exception
+    {
+        // A server which answers one request, with success:
+        ServerSocketChannel answering = ServerSocketChannel.open();
+        answering.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        SocketChannel client = SocketChannel.open(answering.getLocalAddress());
+        try (SocketChannel socket = answering.accept()) {
+            StorageConnection connection = new StorageConnection(client);
+            CompletableFuture<ByteBuffer> first;
+            CompletableFuture<ByteBuffer> second;
+            // Stop the sender thread writing the first store before the second is made:
+            synchronized (connection) {
+                first = connection.store(storeRequest(1));
+                second = connection.store(storeRequest(2));
+            }
+            readMessage(socket);
+            ByteBuffer response = ByteBuffer.allocate(4 + 1);
+            response.putInt(1);
+            response.put((byte) 0);
+            response.flip();
+            socket.write(response);
+
+            assertEquals(0, first.get().get());
+            assertEquals(0, second.get().get());
+            connection.close();
+        }
+        answering.close();
+    }
+
+    private static ByteBuffer storeRequest(int score)
+    {
+        ByteBuffer request = ByteBuffer.allocate(4 + 5);
+        request.putInt(5);
+        request.put((byte) 2);
+        request.putInt(score);
+        request.flip();
+        return request;
+    }
+
+    public void testRejectedStore() throws IOException
+    {
+        // A server which answers the first request with an error code:
+        ServerSocketChannel rejecting = ServerSocketChannel.open();
+        rejecting.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        Thread serverThread = new Thread(() -> {
+            try (SocketChannel socket = rejecting.accept()) {
+                readMessage(socket); // handshake
+                readMessage(socket);
+                ByteBuffer response = ByteBuffer.allocate(4 + 1);
+                response.putInt(1);
+                response.put((byte) 1);
+                response.flip();
+                socket.write(response);
+                readMessage(socket);
+            }
+            catch (IOException | BufferUnderflowException e) {
+                // Closed by the client
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        GreenfootUtilDelegateStandAlone alice = new GreenfootUtilDelegateStandAlone(true,
+                InetAddress.getLoopbackAddress().getHostAddress(),
+                Integer.toString(rejecting.socket().getLocalPort()), "00", "0", "1", "alice");
+        UserInfo info = UserInfoVisitor.allocate("alice", -1, null);
+        info.setScore(5);
+        // The store doesn't wait for its answer; the next request fails because of it:
+        assertTrue(alice.storeCurrentUserInfo(info));
+        assertNull(alice.getTopUserInfo(1));
+        rejecting.close();
+    }
+}
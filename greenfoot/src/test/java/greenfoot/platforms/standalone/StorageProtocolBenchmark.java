@@ -0,0 +1,77 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.platforms.standalone;
+
+import greenfoot.UserInfo;
+import greenfoot.util.UserInfoStore;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Measures the latency and throughput of the standalone storage protocol against a local
+ * storage server, with the server's responses delayed to simulate a remote server.  Each
+ * round stores the player's score and then gets the top ten, as a scenario might at the
+ * end of each game.  Not run as part of the test suite; run the main method directly.
+ */
+public class StorageProtocolBenchmark
+{
+    private static final int ROUNDS = 100;
+    private static final int[] DELAYS = {0, 5, 20};
+
+    public static void main(String[] args) throws Exception
+    {
+        File dir = Files.createTempDirectory("storage").toFile();
+        UserInfoStore store = new UserInfoStore(new File(dir, "storage.csv"));
+        LocalStorageServer server = new LocalStorageServer(store);
+        GreenfootUtilDelegateStandAlone delegate = server.createDelegate(1, "player");
+        delegate.isStorageSupported();
+
+        for (int delay : DELAYS) {
+            server.setResponseDelay(delay);
+            UserInfo info = delegate.getCurrentUserInfo();
+
+            long start = System.nanoTime();
+            long worstTop = 0;
+            long worstStore = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                info.setScore(round);
+                long t = System.nanoTime();
+                delegate.storeCurrentUserInfo(info);
+                worstStore = Math.max(worstStore, System.nanoTime() - t);
+                t = System.nanoTime();
+                delegate.getTopUserInfo(10);
+                worstTop = Math.max(worstTop, System.nanoTime() - t);
+            }
+            long time = System.nanoTime() - start;
+            System.out.printf("Delay %d ms: %.1f rounds/s, %.2f ms/round, worst store %.2f ms, worst top %.2f ms%n",
+                    delay, ROUNDS * 1e9 / time, time / 1e6 / ROUNDS, worstStore / 1e6, worstTop / 1e6);
+        }
+
+        server.close();
+        store.close();
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+}
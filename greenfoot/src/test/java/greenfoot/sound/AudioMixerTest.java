@@ -0,0 +1,160 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import javax.sound.sampled.AudioFormat;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the software audio mixer, mixing into memory rather than to a line.
+ */
+public class AudioMixerTest extends TestCase
+{
+    private AudioMixer mixer;
+    private int finished;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        mixer = new AudioMixer(2);
+        finished = 0;
+    }
+
+    /**
+     * Mix the given number of frames, and return the samples (left and right interleaved).
+     */
+    private short[] mix(int frames)
+    {
+        byte[] buffer = new byte[frames * AudioMixer.FORMAT.getFrameSize()];
+        mixer.mix(buffer, frames);
+        short[] samples = new short[frames * 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) ((buffer[i * 2] & 0xff) | buffer[i * 2 + 1] << 8);
+        }
+        return samples;
+    }
+
+    private static short[] constant(int frames, int left, int right)
+    {
+        short[] samples = new short[frames * 2];
+        for (int i = 0; i < frames; i++) {
+            samples[i * 2] = (short) left;
+            samples[i * 2 + 1] = (short) right;
+        }
+        return samples;
+    }
+
+    public void testMixing()
+    {
+        mixer.play(constant(10, 3000, -2000), 1, 0, false, null);
+        AudioMixer.Voice voice = mixer.play(constant(10, 30000, 100), 1, 0, false, null);
+        short[] out = mix(4);
+        // Clipped on the left:
+        assertEquals(Short.MAX_VALUE, out[0]);
+        assertEquals(-1900, out[1]);
+
+        voice.setGain(0.5f);
+        voice.setPan(-1);
+        out = mix(4);
+        assertEquals(18000, out[0]);
+        assertEquals(-2000, out[1]);
+        assertEquals(2, mixer.getActiveVoiceCount());
+    }
+
+    public void testEndAndLoop()
+    {
+        AudioMixer.Voice once = mixer.play(constant(5, 100, 100), 1, 0, false, () -> finished++);
+        AudioMixer.Voice looped = mixer.play(constant(3, 10, 10), 1, 0, true, null);
+        short[] out = mix(8);
+        assertEquals(110, out[8]);
+        assertEquals(10, out[10]);
+        assertEquals(10, out[14]);
+        assertTrue(once.isFinished());
+        assertFalse(looped.isFinished());
+        assertEquals(1, finished);
+        assertEquals(1, mixer.getActiveVoiceCount());
+
+        looped.setPaused(true);
+        assertEquals(0, mix(4)[0]);
+        looped.setPaused(false);
+        looped.setLooping(false);
+        out = mix(4);
+        // 8 frames played, so 2 of 3 through the loop:
+        assertEquals(10, out[0]);
+        assertEquals(0, out[2]);
+        assertTrue(looped.isFinished());
+
+        // Stopped voices are not reported as finished:
+        AudioMixer.Voice stopped = mixer.play(constant(5, 100, 100), 1, 0, false, () -> finished++);
+        stopped.stop();
+        assertEquals(0, mix(8)[0]);
+        assertEquals(1, finished);
+        assertEquals(0, mixer.getActiveVoiceCount());
+    }
+
+    public void testVoiceLimit()
+    {
+        AudioMixer.Voice looped = mixer.play(constant(100, 1, 1), 1, 0, true, () -> finished++);
+        AudioMixer.Voice oldest = mixer.play(constant(100, 2, 2), 1, 0, false, () -> finished++);
+        mix(1);
+        AudioMixer.Voice newest = mixer.play(constant(100, 4, 4), 1, 0, false, null);
+        assertEquals(5, mix(1)[0]);
+        // The oldest voice which is not looping is the one to go:
+        assertTrue(oldest.isFinished());
+        assertFalse(looped.isFinished());
+        assertFalse(newest.isFinished());
+        assertEquals(1, finished);
+    }
+
+    public void testConversion() throws Exception
+    {
+        // 8-bit unsigned mono at half the rate:
+        byte[] data = { (byte) 128, (byte) 192, (byte) 0 };
+        AudioFormat format = new AudioFormat(AudioFormat.Encoding.PCM_UNSIGNED, AudioMixer.SAMPLE_RATE / 2,
+                8, 1, 1, AudioMixer.SAMPLE_RATE / 2, false);
+        short[] samples = SoundUtils.toStereoSamples(data, format, 3, AudioMixer.SAMPLE_RATE);
+        assertEquals(12, samples.length);
+        assertEquals(0, samples[0]);
+        assertEquals(0, samples[1]);
+        assertEquals(8192, samples[2]);
+        assertEquals(16384, samples[4]);
+        assertEquals(16384, samples[5]);
+        assertEquals(-32768, samples[8]);
+
+        // 16-bit big-endian stereo at the same rate:
+        data = new byte[] { 0x12, 0x34, (byte) 0xff, (byte) 0xfe };
+        format = new AudioFormat(AudioMixer.SAMPLE_RATE, 16, 2, true, true);
+        samples = SoundUtils.toStereoSamples(data, format, -1, AudioMixer.SAMPLE_RATE);
+        assertEquals(2, samples.length);
+        assertEquals(0x1234, samples[0]);
+        assertEquals(-2, samples[1]);
+    }
+
+    public void testVolume()
+    {
+        assertEquals(1f, AudioMixer.volumeToGain(100));
+        assertEquals(0f, AudioMixer.volumeToGain(0));
+        assertTrue(AudioMixer.volumeToGain(50) < AudioMixer.volumeToGain(51));
+    }
+}
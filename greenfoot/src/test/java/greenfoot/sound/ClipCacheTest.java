@@ -0,0 +1,134 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the size-bounded clip cache.
+ */
+public class ClipCacheTest extends TestCase
+{
+    private ClipCache cache;
+    private File dir;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        cache = new ClipCache();
+        dir = File.createTempFile("clips", "");
+        dir.delete();
+        dir.mkdir();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Write a mono 8-bit WAV file with the given number of frames.
+     */
+    private URL wav(String name, int frames) throws Exception
+    {
+        AudioFormat format = new AudioFormat(8000, 8, 1, true, false);
+        AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(new byte[frames]), format, frames);
+        File file = new File(dir, name);
+        AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file);
+        return file.toURI().toURL();
+    }
+
+    public void testEvictionBySize() throws Exception
+    {
+        URL a = wav("a.wav", 1000);
+        URL b = wav("b.wav", 1000);
+        URL c = wav("c.wav", 1000);
+        cache.setMaxBytes(2500);
+
+        ClipData dataA = cache.getCachedClip(a);
+        assertEquals(1000, dataA.getLength());
+        ClipData dataB = cache.getCachedClip(b);
+        ClipData dataC = cache.getCachedClip(c);
+        // All in use, so all kept even though over budget:
+        assertEquals(3, cache.getClipCount());
+
+        cache.releaseClipData(dataA);
+        assertEquals(2, cache.getClipCount());
+        cache.releaseClipData(dataB);
+        assertEquals(2, cache.getClipCount());
+        assertSame(dataB, cache.getCachedClip(b));
+
+        // The converted data counts too:
+        dataB.getStereoSamples(8000);
+        assertEquals(1000 + 4000 + 1000, cache.getTotalBytes());
+        cache.releaseClipData(dataB);
+        assertEquals(1, cache.getClipCount());
+        cache.releaseClipData(dataC);
+        assertEquals(1, cache.getClipCount());
+        assertEquals(1000, cache.getTotalBytes());
+    }
+
+    public void testSharedUsers() throws Exception
+    {
+        URL a = wav("a.wav", 100);
+        CompletableFuture<ClipData> first = cache.getCachedClipAsync(a);
+        CompletableFuture<ClipData> second = cache.getCachedClipAsync(a);
+        ClipData data = first.get();
+        assertSame(data, second.get());
+        assertEquals(1, cache.getClipCount());
+
+        cache.setMaxBytes(0);
+        cache.releaseClipData(data);
+        // Still used by the second:
+        assertEquals(1, cache.getClipCount());
+        cache.releaseClipData(data);
+        assertEquals(0, cache.getClipCount());
+    }
+
+    public void testFailure() throws Exception
+    {
+        URL missing = new File(dir, "missing.wav").toURI().toURL();
+        try {
+            cache.getCachedClip(missing);
+            fail();
+        }
+        catch (java.io.IOException e) {
+        }
+        assertEquals(0, cache.getClipCount());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.sound;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.URL;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for sounds played through the mixer, mixing into memory rather than to a line.
+ */
+public class MixerSoundTest extends TestCase
+{
+    private AudioMixer mixer;
+    private ClipCache cache;
+    private File file;
+    private URL url;
+
+    private final SoundPlaybackListener listener = new SoundPlaybackListener() {
+        public void playbackStarted(Sound sound) { }
+        public void playbackPaused(Sound sound) { }
+        public void playbackStopped(Sound sound) { }
+        public void soundClosed(Sound sound) { }
+    };
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        mixer = new AudioMixer(4);
+        cache = new ClipCache();
+        file = File.createTempFile("sound", ".wav");
+        AudioFormat format = new AudioFormat(8000, 8, 1, true, false);
+        AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(new byte[800]), format, 800);
+        AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file);
+        url = file.toURI().toURL();
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        file.delete();
+    }
+
+    private int activeVoices()
+    {
+        byte[] buffer = new byte[AudioMixer.FORMAT.getFrameSize()];
+        mixer.mix(buffer, 1);
+        return mixer.getActiveVoiceCount();
+    }
+
+    public void testPlayCached() throws Exception
+    {
+        // Cached already, e.g. by preloading, so the data loads as soon as it is asked for:
+        ClipData data = cache.getCachedClip(url);
+
+        MixerSound sound = new MixerSound(url, listener, mixer, cache);
+        sound.play();
+        assertTrue(sound.isPlaying());
+        assertEquals(1, activeVoices());
+
+        sound.stop();
+        assertEquals(0, activeVoices());
+        sound.loop();
+        assertTrue(sound.isPlaying());
+        assertEquals(1, activeVoices());
+        sound.close();
+        assertEquals(0, activeVoices());
+
+        // And a second sound for the same file:
+        MixerSound other = new MixerSound(url, listener, mixer, cache);
+        other.loop();
+        assertEquals(1, activeVoices());
+        other.close();
+        cache.releaseClipData(data);
+    }
+
+    public void testPlayLoading() throws Exception
+    {
+        MixerSound sound = new MixerSound(url, listener, mixer, cache);
+        sound.play();
+        assertTrue(sound.isPlaying());
+        for (int i = 0; i < 500 && mixer.getActiveVoiceCount() == 0; i++) {
+            Thread.sleep(10);
+            activeVoices();
+        }
+        assertEquals(1, mixer.getActiveVoiceCount());
+        sound.close();
+    }
+}
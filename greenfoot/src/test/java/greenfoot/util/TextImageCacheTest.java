@@ -0,0 +1,118 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.util;
+
+import greenfoot.Color;
+import greenfoot.GreenfootImage;
+import greenfoot.TestUtilDelegate;
+import greenfoot.core.Simulation;
+import greenfoot.core.TextLabel;
+import junit.framework.TestCase;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Tests for the cache of rendered text.
+ */
+public class TextImageCacheTest extends TestCase
+{
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        GreenfootUtil.initialise(new TestUtilDelegate());
+        Simulation.initialize();
+        TextImageCache.getInstance().clear();
+    }
+
+    public void testShared()
+    {
+        TextImageCache cache = TextImageCache.getInstance();
+        BufferedImage a = cache.getTextImage("Score: 10", 20, java.awt.Color.RED, null, null, 0);
+        assertSame(a, cache.getTextImage("Score: 10", 20, java.awt.Color.RED, null, null, 0));
+        assertNotSame(a, cache.getTextImage("Score: 11", 20, java.awt.Color.RED, null, null, 0));
+        assertNotSame(a, cache.getTextImage("Score: 10", 20, java.awt.Color.BLUE, null, null, 0));
+        assertNotSame(a, cache.getTextImage("Score: 10", 20, java.awt.Color.RED, null, java.awt.Color.BLACK, 0));
+        BufferedImage margin = cache.getTextImage("Score: 10", 20, java.awt.Color.RED, null, null, 2);
+        assertEquals(a.getWidth() + 4, margin.getWidth());
+        assertEquals(a.getHeight() + 4, margin.getHeight());
+        assertEquals(4, cache.getImageCount());
+        assertEquals(1, cache.getHits());
+    }
+
+    public void testMatchesDirectRendering()
+    {
+        String text = "Two\nlines";
+        GraphicsUtilities.MultiLineStringDimensions d = GraphicsUtilities.getMultiLineStringDimensions(
+                GraphicsUtilities.splitLines(text), Font.BOLD, 30);
+        BufferedImage expected = GraphicsUtilities.createCompatibleTranslucentImage(d.getWidth(), d.getHeight());
+        Graphics2D g = expected.createGraphics();
+        g.setColor(java.awt.Color.YELLOW);
+        g.fillRect(0, 0, d.getWidth(), d.getHeight());
+        GraphicsUtilities.drawOutlinedText(g, d, java.awt.Color.GREEN, null);
+        g.dispose();
+
+        GreenfootImage image = new GreenfootImage(text, 30, Color.GREEN, Color.YELLOW);
+        assertEquals(expected.getWidth(), image.getWidth());
+        assertEquals(expected.getHeight(), image.getHeight());
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), image.getAwtImage().getRGB(x, y));
+            }
+        }
+    }
+
+    public void testImagesIndependent()
+    {
+        GreenfootImage a = new GreenfootImage("Hello", 24, Color.BLACK, null);
+        GreenfootImage b = new GreenfootImage("Hello", 24, Color.BLACK, null);
+        a.setColor(Color.RED);
+        a.fill();
+        assertEquals(Color.RED, a.getColorAt(0, 0));
+        assertEquals(new Color(0, 0, 0, 0), b.getColorAt(0, 0));
+        GreenfootImage c = new GreenfootImage("Hello", 24, Color.BLACK, null);
+        assertEquals(new Color(0, 0, 0, 0), c.getColorAt(0, 0));
+    }
+
+    public void testLabelBounds()
+    {
+        TextLabel label = new TextLabel("Lives: 3", 5, 5);
+        Rectangle bounds = label.getBounds(10);
+        BufferedImage target = new BufferedImage(200, 200, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        label.draw(g, 10);
+        g.dispose();
+        boolean drawn = false;
+        for (int y = 0; y < 200; y++) {
+            for (int x = 0; x < 200; x++) {
+                if (target.getRGB(x, y) != 0) {
+                    assertTrue(bounds.contains(x, y));
+                    drawn = true;
+                }
+            }
+        }
+        assertTrue(drawn);
+    }
+}
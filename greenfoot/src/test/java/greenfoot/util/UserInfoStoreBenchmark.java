@@ -0,0 +1,83 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Measures the throughput of storing scores and querying the top and nearby users, with
+ * a few thousand users, in the local user info storage.  Not run as part of the test
+ * suite; run the main method directly.
+ */
+public class UserInfoStoreBenchmark
+{
+    private static final int USERS = 5000;
+    private static final int OPERATIONS = 200000;
+
+    public static void main(String[] args) throws IOException
+    {
+        File dir = Files.createTempDirectory("storage").toFile();
+        File file = new File(dir, "storage.csv");
+        for (int i = 0; i < 3; i++) {
+            run(file);
+        }
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static void run(File file) throws IOException
+    {
+        UserInfoStore store = new UserInfoStore(file);
+        Random random = new Random(1);
+        String[] row = new String[17];
+        for (int i = 2; i < row.length; i++) {
+            row[i] = "0";
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            row[0] = "player" + random.nextInt(USERS);
+            row[1] = Integer.toString(random.nextInt(1000000));
+            store.put(row);
+        }
+        store.flush();
+        long storeTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int rank = store.getRank("player" + random.nextInt(USERS));
+            found += store.getRows(rank - 5, rank + 5).size();
+            found += store.getRows(0, 10).size();
+        }
+        long queryTime = System.nanoTime() - start;
+        store.close();
+
+        System.out.printf("Store: %.0f/s, top and nearby query: %.0f/s (%d)%n",
+                OPERATIONS * 1e9 / storeTime, OPERATIONS * 1e9 / queryTime, found);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ This file is part of the Greenfoot program.
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling
+
+ This program is free software; you can redistribute it and/or
+ modify it under the terms of the GNU General Public License
+ as published by the Free Software Foundation; either version 2
+ of the License, or (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program; if not, write to the Free Software
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+
+ This file is subject to the Classpath exception as provided in the
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.util;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Tests for the local user info storage.
+ */
+public class UserInfoStoreTest extends TestCase
+{
+    private File dir;
+    private File file;
+
+    @Override
+    protected void setUp()
+        throws Exception
+    {
+        dir = Files.createTempDirectory("storage").toFile();
+        file = new File(dir, "storage.csv");
+    }
+
+    @Override
+    protected void tearDown()
+        throws Exception
+    {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private static String[] row(String userName, int score)
+    {
+        return new String[] {userName, Integer.toString(score), "x"};
+    }
+
+    private static void assertUsers(List<String[]> rows, String... userNames)
+    {
+        assertEquals(userNames.length, rows.size());
+        for (int i = 0; i < userNames.length; i++) {
+            assertEquals(userNames[i], rows.get(i)[0]);
+        }
+    }
+
+    public void testRanking()
+        throws IOException
+    {
+        UserInfoStore store = new UserInfoStore(file);
+        store.put(row("a", 10));
+        store.put(row("b", 30));
+        store.put(row("c", 20));
+        store.put(row("d", 20));
+        assertUsers(store.getRows(0, 10), "b", "c", "d", "a");
+        assertEquals(1, store.getRank("b"));
+        assertEquals(4, store.getRank("a"));
+        assertEquals(-1, store.getRank("e"));
+
+        // Storing again puts the user after the others with the same score:
+        store.put(row("c", 20));
+        assertUsers(store.getRows(1, 3), "d", "c");
+        store.remove("b");
+        assertNull(store.get("b"));
+        assertEquals(3, store.size());
+        assertEquals("20", store.get("c")[1]);
+        store.close();
+    }
+
+    public void testReload()
+        throws IOException
+    {
+        // A file written by an earlier version:
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("\"a\",\"5\",\"old\"\n\"b\",\"7\",\"old\"\n".getBytes(StandardCharsets.UTF_8));
+        }
+        UserInfoStore store = new UserInfoStore(file);
+        assertUsers(store.getRows(0, 10), "b", "a");
+        store.put(row("a", 8));
+        store.put(row("c", 1));
+        store.remove("b");
+        store.close();
+
+        store = new UserInfoStore(file);
+        assertUsers(store.getRows(0, 10), "a", "c");
+        assertEquals("x", store.get("a")[2]);
+        store.close();
+
+        // A line which was not completely written is ignored:
+        try (FileOutputStream out = new FileOutputStream(file.getPath() + ".journal", true)) {
+            out.write("\"d\",\"100\",\"x".getBytes(StandardCharsets.UTF_8));
+        }
+        store = new UserInfoStore(file);
+        assertUsers(store.getRows(0, 10), "a", "c");
+        store.close();
+    }
+
+    public void testStoreAfterIncompleteLine()
+        throws IOException
+    {
+        // Cut off inside a quoted value, and cut off before the end marker:
+        for (String torn : new String[] {"\"d\",\"100\",\"x", "\"d\",\"100\",\"x\","}) {
+            UserInfoStore store = new UserInfoStore(file);
+            store.put(row("a", 5));
+            store.close();
+            try (FileOutputStream out = new FileOutputStream(file.getPath() + ".journal", true)) {
+                out.write(torn.getBytes(StandardCharsets.UTF_8));
+            }
+
+            // Rows stored after loading must not be joined onto the incomplete line:
+            store = new UserInfoStore(file);
+            assertUsers(store.getRows(0, 10), "a");
+            store.put(row("b", 7));
+            store.put(row("c", 3));
+            store.close();
+
+            store = new UserInfoStore(file);
+            assertUsers(store.getRows(0, 10), "b", "a", "c");
+            assertEquals("x", store.get("c")[2]);
+            store.remove("b");
+            store.remove("c");
+            store.close();
+        }
+    }
+
+    public void testCompaction()
+        throws IOException
+    {
+        UserInfoStore store = new UserInfoStore(file);
+        for (int i = 0; i < 3000; i++) {
+            store.put(row("user" + (i % 10), i));
+        }
+        store.close();
+        // The file is only written when the journal is compacted:
+        assertTrue(file.exists());
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        store = new UserInfoStore(file);
+        assertEquals(10, store.size());
+        assertUsers(store.getRows(0, 2), "user9", "user8");
+        assertEquals("2999", store.get("user9")[1]);
+        store.close();
+    }
+
+    public void testInterruptedCompaction()
+        throws IOException
+    {
+        // As left if we stop after the CSV file is replaced, before the journal is emptied:
+        // the file has the latest rows, and the journal every change up to them.
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("\"b\",\"9\",\"x\"\n\"a\",\"3\",\"x\"\n".getBytes(StandardCharsets.UTF_8));
+        }
+        try (FileOutputStream out = new FileOutputStream(file.getPath() + ".journal")) {
+            out.write(("\"a\",\"1\",\"x\",\"#\"\n\"c\",\"5\",\"x\",\"#\"\n\"b\",\"2\",\"x\",\"#\"\n"
+                    + "\"a\",\"3\",\"x\",\"#\"\n\"c\",\"#\"\n\"b\",\"9\",\"x\",\"#\"\n").getBytes(StandardCharsets.UTF_8));
+        }
+        UserInfoStore store = new UserInfoStore(file);
+        assertUsers(store.getRows(0, 10), "b", "a");
+        assertEquals("9", store.get("b")[1]);
+        assertEquals("3", store.get("a")[1]);
+        store.close();
+    }
+}
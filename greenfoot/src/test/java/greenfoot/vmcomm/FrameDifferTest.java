@@ -0,0 +1,122 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for finding the changed regions between successive world images.
+ */
+public class FrameDifferTest extends TestCase
+{
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 150;
+    
+    private FrameDiffer differ;
+    private int[] pixels;
+    
+    @Override
+    protected void setUp()
+    {
+        differ = new FrameDiffer();
+        pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, 0xFFFFFFFF);
+    }
+    
+    public void testNoPreviousFrame()
+    {
+        assertEquals(-1, differ.findChangedRegions(pixels, WIDTH, HEIGHT));
+        differ.frameSent(pixels, WIDTH, HEIGHT);
+        assertEquals(0, differ.findChangedRegions(pixels, WIDTH, HEIGHT));
+        
+        // Different size needs full frame:
+        assertEquals(-1, differ.findChangedRegions(new int[HEIGHT * WIDTH], HEIGHT, WIDTH));
+        
+        differ.reset();
+        assertEquals(-1, differ.findChangedRegions(pixels, WIDTH, HEIGHT));
+    }
+    
+    public void testRegions()
+    {
+        differ.frameSent(pixels, WIDTH, HEIGHT);
+        
+        // One pixel in a tile at the right-hand edge (which is not a full tile wide):
+        pixels[40 * WIDTH + 199] = 0;
+        assertEquals(1, differ.findChangedRegions(pixels, WIDTH, HEIGHT));
+        assertRegion(0, 192, 32, 8, 32);
+        
+        // Pixels in two adjacent tiles form one region, with a separate tile on the bottom row:
+        pixels[5 * WIDTH + 40] = 0;
+        pixels[6 * WIDTH + 70] = 0;
+        pixels[149 * WIDTH] = 0;
+        assertEquals(3, differ.findChangedRegions(pixels, WIDTH, HEIGHT));
+        assertRegion(0, 32, 0, 64, 32);
+        assertRegion(1, 192, 32, 8, 32);
+        assertRegion(2, 0, 128, 32, 22);
+    }
+    
+    public void testLargeChange()
+    {
+        differ.frameSent(pixels, WIDTH, HEIGHT);
+        Arrays.fill(pixels, 0, WIDTH * 100, 0);
+        assertEquals(-1, differ.findChangedRegions(pixels, WIDTH, HEIGHT));
+    }
+    
+    /**
+     * Applying the changed regions of each frame to a copy of the first should give each frame.
+     */
+    public void testApplyRegions()
+    {
+        Random random = new Random(1);
+        int[] received = pixels.clone();
+        differ.frameSent(pixels, WIDTH, HEIGHT);
+        for (int frame = 0; frame < 20; frame++) {
+            for (int i = 0; i < 10; i++) {
+                pixels[random.nextInt(pixels.length)] = random.nextInt();
+            }
+            int count = differ.findChangedRegions(pixels, WIDTH, HEIGHT);
+            assertTrue(count > 0);
+            int[] regions = differ.getRegions();
+            for (int r = 0; r < count * 4; r += 4) {
+                for (int row = regions[r + 1]; row < regions[r + 1] + regions[r + 3]; row++) {
+                    int from = row * WIDTH + regions[r];
+                    System.arraycopy(pixels, from, received, from, regions[r + 2]);
+                }
+            }
+            differ.regionsSent(pixels, count);
+            assertTrue(Arrays.equals(pixels, received));
+            assertEquals(0, differ.findChangedRegions(pixels, WIDTH, HEIGHT));
+        }
+    }
+    
+    private void assertRegion(int index, int x, int y, int w, int h)
+    {
+        int[] regions = differ.getRegions();
+        assertEquals(x, regions[index * 4]);
+        assertEquals(y, regions[index * 4 + 1]);
+        assertEquals(w, regions[index * 4 + 2]);
+        assertEquals(h, regions[index * 4 + 3]);
+    }
+}
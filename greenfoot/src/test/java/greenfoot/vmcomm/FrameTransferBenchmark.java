@@ -0,0 +1,236 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Measures the rate at which world images can be passed through the shared memory
+ * image slots between two local JVMs: this JVM reads the images, and a child JVM
+ * (running this class with the "writer" argument) writes them. The reader copies
+ * each image, as the server VM does when putting it into a JavaFX image.
+ * 
+ * Not run as part of the test suite; run the main method directly, with the test
+ * classes on the classpath.
+ */
+public class FrameTransferBenchmark
+{
+    private static final int FILE_SIZE = 40_000_000;
+    private static final int FRAMES = 1000;
+    // Frames to let the JIT warm up, before timing starts:
+    private static final int WARMUP_FRAMES = 300;
+    // Integer positions of the handshake values, which the benchmark handles itself:
+    private static final int LATEST_SEQ = 0;
+    private static final int LATEST_SLOT = 1;
+    private static final int CONSUMED_SEQ = 2;
+    private static final int SLOTS_START = 0x1000;
+    
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    /** The ways of writing images: */
+    private static final String PER_INT = "per-int";
+    private static final String BULK = "bulk";
+    private static final String REGIONS = "regions";
+    
+    public static void main(String[] args) throws Exception
+    {
+        if (args.length > 0 && args[0].equals("writer"))
+        {
+            write(new File(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), args[4],
+                    Integer.parseInt(args[5]));
+            return;
+        }
+
+        int[][] sizes = {{600, 400}, {1200, 800}, {1920, 1080}};
+        for (int[] size : sizes)
+        {
+            System.out.println(size[0] + "x" + size[1] + ":");
+            run(size[0], size[1], PER_INT, 1);
+            run(size[0], size[1], BULK, 1);
+            run(size[0], size[1], BULK, 2);
+            run(size[0], size[1], REGIONS, 2);
+        }
+    }
+    
+    private static void run(int width, int height, String mode, int slotsUsed) throws Exception
+    {
+        File file = File.createTempFile("greenfoot", "shm");
+        file.deleteOnExit();
+        try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel())
+        {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            Process writer = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-cp", System.getProperty("java.class.path"), FrameTransferBenchmark.class.getName(),
+                    "writer", file.getPath(), Integer.toString(width), Integer.toString(height), mode,
+                    Integer.toString(slotsUsed)).inheritIO().start();
+            
+            IntBuffer buffer = mapped.order(ByteOrder.nativeOrder()).asIntBuffer();
+            WorldImageSlots slots = new WorldImageSlots(buffer, SLOTS_START, FILE_SIZE / 4);
+            int[] pixels = new int[width * height];
+            int[] displayed = new int[width * height];
+            int consumed = 0;
+            long start = 0;
+            while (consumed < FRAMES)
+            {
+                int latest = (int) INTS.getAcquire(mapped, LATEST_SEQ * 4);
+                if (latest == consumed)
+                {
+                    Thread.yield();
+                    continue;
+                }
+                if (consumed < WARMUP_FRAMES && latest >= WARMUP_FRAMES)
+                {
+                    start = System.nanoTime();
+                }
+                // Read the images in order:
+                for (int seq = consumed + 1; seq <= latest; seq++)
+                {
+                    for (int slot = 0; slot < slotsUsed; slot++)
+                    {
+                        if (slots.getPaintSeq(slot) == seq)
+                        {
+                            if (slots.getWidth(slot) * slots.getHeight(slot) != pixels.length)
+                            {
+                                throw new IllegalStateException("Frame " + seq + " has " + slots.getWidth(slot)
+                                        + "x" + slots.getHeight(slot) + " pixels, not " + width + "x" + height);
+                            }
+                            if (slots.getBasePaintSeq(slot) == -1)
+                            {
+                                slots.getImage(slot, pixels);
+                            }
+                            else
+                            {
+                                slots.getRegions(slot, pixels);
+                            }
+                        }
+                    }
+                }
+                System.arraycopy(pixels, 0, displayed, 0, pixels.length);
+                consumed = latest;
+                INTS.setRelease(mapped, CONSUMED_SEQ * 4, consumed);
+            }
+            long elapsed = System.nanoTime() - start;
+            writer.waitFor();
+            
+            // Check that the images were passed intact, by drawing the last one here:
+            int[] expected = new int[width * height];
+            Arrays.fill(expected, 0xFFFFFFFF);
+            for (int seq = 1; seq <= FRAMES; seq++)
+            {
+                drawFrame(expected, width, height, seq);
+            }
+            if (! Arrays.equals(expected, displayed))
+            {
+                throw new IllegalStateException("The last image read differs from the one written");
+            }
+            System.out.printf("  %-8s %d slot(s): %6.1f frames/s%n", mode, slotsUsed,
+                    (FRAMES - WARMUP_FRAMES) * 1e9 / elapsed);
+        }
+        file.delete();
+    }
+    
+    /**
+     * Draw the given frame on the one before: a few actor-sized squares, moved from the last.
+     */
+    private static void drawFrame(int[] pixels, int width, int height, int seq)
+    {
+        for (int i = 0; i < 10; i++)
+        {
+            int x = (seq * 7 + i * 97) % (width - 40);
+            int y = (seq * 3 + i * 61) % (height - 40);
+            for (int row = y; row < y + 40; row++)
+            {
+                Arrays.fill(pixels, row * width + x, row * width + x + 40, seq * 31 + i);
+            }
+        }
+    }
+    
+    /**
+     * Write FRAMES images, each drawn on the last by drawFrame.
+     */
+    private static void write(File file, int width, int height, String mode, int slotsUsed) throws Exception
+    {
+        try (FileChannel channel = new RandomAccessFile(file, "rw").getChannel())
+        {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            IntBuffer buffer = mapped.order(ByteOrder.nativeOrder()).asIntBuffer();
+            WorldImageSlots slots = new WorldImageSlots(buffer, SLOTS_START, FILE_SIZE / 4);
+            FrameDiffer differ = new FrameDiffer();
+            int[] slotSeqs = new int[slotsUsed];
+            int[] pixels = new int[width * height];
+            Arrays.fill(pixels, 0xFFFFFFFF);
+            int lastSlot = 0;
+            for (int seq = 1; seq <= FRAMES; seq++)
+            {
+                drawFrame(pixels, width, height, seq);
+                
+                int slot = (lastSlot + 1) % slotsUsed;
+                while ((int) INTS.getAcquire(mapped, CONSUMED_SEQ * 4) < slotSeqs[slot])
+                {
+                    Thread.yield();
+                }
+                
+                if (mode.equals(PER_INT))
+                {
+                    // The image is written one integer at a time, as it used to be, with
+                    // the same header as WorldImageSlots.putImage writes:
+                    buffer.position(SLOTS_START + 1);
+                    buffer.put(-1);
+                    buffer.put(width);
+                    buffer.put(height);
+                    buffer.put(0);
+                    for (int i = 0; i < pixels.length; i++)
+                    {
+                        buffer.put(pixels[i]);
+                    }
+                    buffer.put(SLOTS_START, seq);
+                }
+                else
+                {
+                    int regionCount = mode.equals(REGIONS) ? differ.findChangedRegions(pixels, width, height) : -1;
+                    if (regionCount == -1)
+                    {
+                        slots.putImage(slot, seq, pixels, width, height);
+                        differ.frameSent(pixels, width, height);
+                    }
+                    else
+                    {
+                        slots.putRegions(slot, seq, seq - 1, pixels, width, height, differ.getRegions(), regionCount);
+                        differ.regionsSent(pixels, regionCount);
+                    }
+                }
+                slotSeqs[slot] = seq;
+                lastSlot = slot;
+                INTS.setRelease(mapped, LATEST_SLOT * 4, slot);
+                INTS.setRelease(mapped, LATEST_SEQ * 4, seq);
+            }
+        }
+    }
+}
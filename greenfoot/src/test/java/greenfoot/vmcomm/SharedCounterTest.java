@@ -0,0 +1,80 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the shared memory sequence counter used by the counters transport.
+ */
+public class SharedCounterTest extends TestCase
+{
+    private ByteBuffer buffer;
+    private SharedCounter writer;
+    private SharedCounter reader;
+    
+    @Override
+    protected void setUp()
+    {
+        buffer = ByteBuffer.allocateDirect(64).order(ByteOrder.nativeOrder());
+        writer = new SharedCounter(buffer, 3);
+        reader = new SharedCounter(buffer.duplicate().order(ByteOrder.nativeOrder()), 3);
+    }
+    
+    public void testReadValidity()
+    {
+        int start = reader.get();
+        assertTrue(reader.readValid(start));
+        
+        writer.beginWrite();
+        int during = reader.get();
+        assertFalse(reader.readValid(during));
+        writer.endWrite();
+        
+        // A read which began before the write is no longer valid:
+        assertFalse(reader.readValid(start));
+        int after = reader.get();
+        assertTrue(after > start);
+        assertTrue(reader.readValid(after));
+    }
+    
+    public void testAwaitChange() throws InterruptedException
+    {
+        int start = reader.get();
+        // Times out without a change:
+        assertEquals(start, reader.awaitChange(start, 2_000_000L, () -> false));
+        // Returns immediately if the local condition holds:
+        assertEquals(start, reader.awaitChange(start, 10_000_000_000L, () -> true));
+        
+        Thread other = new Thread(() -> {
+            writer.beginWrite();
+            writer.endWrite();
+        });
+        other.start();
+        int changed = reader.awaitChange(start, 10_000_000_000L, () -> false);
+        other.join();
+        assertTrue(changed != start);
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ This file is part of the Greenfoot program. 
+ Copyright (C) 2026  Poul Henriksen and Michael Kolling 
+ 
+ This program is free software; you can redistribute it and/or 
+ modify it under the terms of the GNU General Public License 
+ as published by the Free Software Foundation; either version 2 
+ of the License, or (at your option) any later version. 
+ 
+ This program is distributed in the hope that it will be useful, 
+ but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the 
+ GNU General Public License for more details. 
+ 
+ You should have received a copy of the GNU General Public License 
+ along with this program; if not, write to the Free Software 
+ Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA. 
+ 
+ This file is subject to the Classpath exception as provided in the  
+ LICENSE.txt file that accompanied this code.
+ */
+package greenfoot.vmcomm;
+
+import java.nio.BufferOverflowException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for writing world images into, and reading them from, the shared memory image slots.
+ */
+public class WorldImageSlotsTest extends TestCase
+{
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 80;
+    
+    private WorldImageSlots slots;
+    private int[] image;
+    
+    @Override
+    protected void setUp()
+    {
+        slots = new WorldImageSlots(IntBuffer.allocate(20000), 10, 20000);
+        image = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < image.length; i++) {
+            image[i] = i;
+        }
+    }
+    
+    public void testFullImage()
+    {
+        slots.putImage(1, 7, image, WIDTH, HEIGHT);
+        assertEquals(0, slots.getPaintSeq(0));
+        assertEquals(7, slots.getPaintSeq(1));
+        assertEquals(-1, slots.getBasePaintSeq(1));
+        assertEquals(WIDTH, slots.getWidth(1));
+        assertEquals(HEIGHT, slots.getHeight(1));
+        
+        int[] received = new int[WIDTH * HEIGHT];
+        slots.getImage(1, received);
+        assertTrue(Arrays.equals(image, received));
+    }
+    
+    public void testRegions()
+    {
+        int[] received = image.clone();
+        image[5 * WIDTH + 10] = -1;
+        image[70 * WIDTH + 90] = -2;
+        int[] regions = {0, 0, 32, 32, 64, 64, 36, 16};
+        slots.putRegions(0, 8, 7, image, WIDTH, HEIGHT, regions, 2);
+        assertEquals(8, slots.getPaintSeq(0));
+        assertEquals(7, slots.getBasePaintSeq(0));
+        
+        assertTrue(Arrays.equals(regions, slots.getRegions(0, received)));
+        assertTrue(Arrays.equals(image, received));
+    }
+    
+    public void testOverflow()
+    {
+        try {
+            slots.putImage(0, 1, new int[10000], 100, 100);
+            fail();
+        }
+        catch (BufferOverflowException e) {
+            // Expected: the image is larger than a slot
+        }
+        assertEquals(0, slots.getPaintSeq(0));
+        assertEquals(0, slots.getPaintSeq(1));
+    }
+}